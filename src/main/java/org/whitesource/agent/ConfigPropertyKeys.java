@@ -53,8 +53,13 @@ public final class ConfigPropertyKeys {
     public static final String ARCHIVE_INCLUDES_PATTERN_KEY                 = "archiveIncludes";
     public static final String ARCHIVE_EXCLUDES_PATTERN_KEY                 = "archiveExcludes";
     public static final String ARCHIVE_FAST_UNPACK_KEY                      = "archiveFastUnpack";
+    public static final String ARCHIVE_STREAMING_KEY                        = "archiveStreaming";
     public static final String CALCULATE_HINTS                              = "calculate.hints";
     public static final String CALCULATE_MD5                                = "calculate.md5";
+    public static final String CALCULATE_THREADS                            = "calculate.threads";
+    public static final String CALCULATE_CACHE                              = "calculate.cache";
+    public static final String CALCULATE_CACHE_MAX_ENTRIES                  = "calculate.cache.maxEntries";
+    public static final String TEMP_FOLDER_QUOTA_MB                         = "tempFolder.quotaMB";
     public static final String REQUESTER_EMAIL                              = "requesterEmail";
     public static final String CASE_SENSITIVE_GLOB_PROPERTY_KEY             = "case.sensitive.glob";
     public static final String PROXY_HOST_PROPERTY_KEY                      = "proxy.host";
@@ -75,6 +80,9 @@ public final class ConfigPropertyKeys {
     public static final String SCM_NPM_INSTALL                              = "scm.npmInstall";
     public static final String SCM_NPM_INSTALL_TIMEOUT_MINUTES              = "scm.npmInstallTimeoutMinutes";
     public static final String SCM_REPOSITORIES_FILE                        = "scm.repositoriesFile";
+    public static final String SCM_MIRROR_CACHE_PATH                        = "scm.mirrorCachePath";
+    public static final String SCM_SPARSE_CHECKOUT                          = "scm.sparseCheckout";
+    public static final String SCM_CLONE_THREADS                            = "scm.cloneThreads";
     public static final String EXCLUDED_COPYRIGHT_KEY                       = "copyright.excludes";
     public static final String LOG_LEVEL_KEY                                = "log.level";
     public static final String FOLLOW_SYMBOLIC_LINKS                        = "followSymbolicLinks";
@@ -82,6 +90,8 @@ public final class ConfigPropertyKeys {
     public static final String ACCEPT_EXTENSIONS_LIST                       = "acceptExtensionsList";
 
     public static final String RESOLVE_ALL_DEPENDENCIES                     = "resolveAllDependencies";
+    public static final String RESOLVE_DEPENDENCIES_THREADS                 = "resolveDependencies.threads";
+    public static final String RESOLVE_DEPENDENCIES_INCREMENTAL             = "resolveDependencies.incremental";
 
     public static final String NPM_RUN_PRE_STEP                             = "npm.runPreStep";
     public static final String NPM_IGNORE_SCRIPTS                           = "npm.ignoreScripts";
@@ -91,6 +101,8 @@ public final class ConfigPropertyKeys {
     public static final String NPM_ACCESS_TOKEN                             = "npm.accessToken";
     public static final String NPM_IGNORE_NPM_LS_ERRORS                     = "npm.ignoreNpmLsErrors";
     public static final String NPM_YARN_PROJECT                             = "npm.yarnProject";
+    public static final String NPM_STREAM_LS_JSON                           = "npm.streamLsJson";
+    public static final String NPM_RESOLVE_FROM_LOCK_FILE                   = "npm.resolveFromLockFile";
     public static final String NPM_IGNORE_JAVA_SCRIPT_FILES                 = "npm.ignoreJavaScriptFiles";
     public static final String NPM_IGNORE_SOURCE_FILES                      = "npm.ignoreSourceFiles";
 
@@ -128,6 +140,7 @@ public final class ConfigPropertyKeys {
     public static final String MAVEN_IGNORE_SOURCE_FILES    = "maven.ignoreSourceFiles";
     public static final String MAVEN_RUN_PRE_STEP           = "maven.runPreStep";
     public static final String MAVEN_IGNORE_DEPENDENCY_TREE_ERRORS = "maven.ignoreMvnTreeErrors";
+    public static final String MAVEN_IN_PROCESS_RESOLUTION  = "maven.inProcessResolution";
 
     public static final String IGNORE_SOURCE_FILES          = "ignoreSourceFiles";
 
@@ -153,6 +166,7 @@ public final class ConfigPropertyKeys {
     public static final String GRADLE_IGNORE_SOURCE_FILES   = "gradle.ignoreSourceFiles";
     public static final String GRADLE_IGNORE_SCOPES         = "gradle.ignoredScopes";
     public static final String GRADLE_LOCAL_REPOSITORY_PATH         = "gradle.localRepositoryPath";
+    public static final String GRADLE_SINGLE_INVOCATION     = "gradle.singleInvocation";
 
     public static final String PAKET_RESOLVE_DEPENDENCIES   = "paket.resolveDependencies";
     public static final String PAKET_IGNORED_GROUPS         = "paket.ignoredGroups";
@@ -185,6 +199,7 @@ public final class ConfigPropertyKeys {
     public static final String SBT_IGNORE_SOURCE_FILES      = "sbt.ignoreSourceFiles";
 
     public static final String HTML_RESOLVE_DEPENDENCIES    = "html.resolveDependencies";
+    public static final String HTML_STREAMING_PARSE         = "html.streamingParse";
 
     public static final String COCOAPODS_RESOLVE_DEPENDENCIES     = "cocoapods.resolveDependencies";
     public static final String COCOAPODS_RUN_PRE_STEP             = "cocoapods.runPreStep";
@@ -217,11 +232,16 @@ public final class ConfigPropertyKeys {
     public static final String SCAN_DOCKER_IMAGES                   = "docker.scanImages";
     public static final String SCAN_TAR_IMAGES                      = "docker.tarImages";
     public static final String DELETE_TAR_FILES                     = "docker.deleteTar";
+    public static final String DOCKER_LAYER_CACHE                   = "docker.layerCache";
+    public static final String DOCKER_STREAM_SAVE                   = "docker.streamSave";
+    public static final String DOCKER_SCAN_THREADS                  = "docker.scan.threads";
+    public static final String DOCKER_SCAN_MAX_TEMP_DISK_MB         = "docker.scan.maxTempDiskMB";
     public static final String DOCKER_PULL_ENABLE                   = "docker.pull.enable";
     public static final String DOCKER_PULL_IMAGES                   = "docker.pull.images";
     public static final String DOCKER_PULL_TAGS                     = "docker.pull.tags";
     public static final String DOCKER_PULL_DIGEST                   = "docker.pull.digest";
     public static final String DOCKER_PULL_MAX_IMAGES               = "docker.pull.maxImages";
+    public static final String DOCKER_PULL_THREADS                  = "docker.pull.threads";
     public static final String DOCKER_DELETE_FORCE                  = "docker.delete.force";
     public static final String DOCKER_LOGIN_SUDO                    = "docker.login.sudo";
     // TODO: Not implemented yet
@@ -1,21 +1,41 @@
 package org.whitesource.agent;
 
+import org.slf4j.Logger;
 import org.whitesource.agent.api.model.DependencyInfo;
+import org.whitesource.agent.utils.LoggerFactory;
 
 import java.io.File;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
 
 public class DependencyCalculator {
 
     private static final List<String> progressAnimation = Arrays.asList("|", "/", Constants.DASH, "\\");
     private static final int ANIMATION_FRAMES = progressAnimation.size();
+    private static final String THREAD_NAME_PREFIX = "dependency-calculator-";
+
+    private final Logger logger = LoggerFactory.getLogger(DependencyCalculator.class);
+
     private final boolean showProgressBar;
+    private final int threads;
     private int animationIndex = 0;
+    private int processedFiles = 0;
 
     public DependencyCalculator(boolean showProgressBar) {
+        this(showProgressBar, 1);
+    }
+
+    /**
+     * @param showProgressBar whether to draw the progress bar while calculating
+     * @param threads         number of worker threads, values smaller than 1 default to the number of available processors
+     */
+    public DependencyCalculator(boolean showProgressBar, int threads) {
         this.showProgressBar = showProgressBar;
+        this.threads = threads < 1 ? Runtime.getRuntime().availableProcessors() : threads;
         this.animationIndex = 0;
+        this.processedFiles = 0;
     }
 
     public Collection<DependencyInfo> createDependencies(boolean scmConnector, int totalFiles, Map<File, Collection<String>> fileMap,
@@ -25,32 +45,102 @@ public class DependencyCalculator {
 
     public Collection<DependencyInfo> createDependencies(boolean scmConnector, int totalFiles, Map<File, Collection<String>> fileMap,
                                                          Collection<String> excludedCopyrights, boolean partialSha1Match, boolean calculateHints, boolean calculateMd5) {
-        List<DependencyInfo> allDependencies = new ArrayList<>();
+        processedFiles = 0;
         if (showProgressBar) {
             displayProgress(0, totalFiles);
         }
 
-        int index = 1;
+        // flatten the map so the output keeps the order of the file map regardless of which thread handled each file
+        List<Map.Entry<File, String>> files = new ArrayList<>();
         for (Map.Entry<File, Collection<String>> entry : fileMap.entrySet()) {
             for (String fileName : entry.getValue()) {
-                DependencyInfoFactory factory = new DependencyInfoFactory(excludedCopyrights, partialSha1Match, calculateHints, calculateMd5);
-                DependencyInfo originalDependencyInfo = factory.createDependencyInfo(entry.getKey(), fileName);
-                if (originalDependencyInfo != null) {
-                    if (scmConnector) {
-                        originalDependencyInfo.setSystemPath(fileName.replace(Constants.BACK_SLASH, Constants.FORWARD_SLASH));
-                    }
-                    allDependencies.add(originalDependencyInfo);
+                files.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), fileName));
+            }
+        }
+
+        // the factory keeps no state between files, a single instance is shared by all workers
+        DependencyInfoFactory factory = new DependencyInfoFactory(excludedCopyrights, partialSha1Match, calculateHints, calculateMd5);
+        List<DependencyInfo> allDependencies;
+        if (threads == 1 || files.size() < 2) {
+            allDependencies = new ArrayList<>();
+            for (Map.Entry<File, String> file : files) {
+                DependencyInfo dependencyInfo = createDependency(factory, scmConnector, file.getKey(), file.getValue(), totalFiles);
+                if (dependencyInfo != null) {
+                    allDependencies.add(dependencyInfo);
                 }
-                if (showProgressBar) {
-                    displayProgress(index, totalFiles);
+            }
+        } else {
+            logger.debug("Calculating dependencies of {} files using {} threads", files.size(), threads);
+            ExecutorService executorService = createExecutorService();
+            try {
+                List<Future<DependencyInfo>> futures = new ArrayList<>(files.size());
+                for (Map.Entry<File, String> file : files) {
+                    futures.add(executorService.submit(() -> createDependency(factory, scmConnector, file.getKey(), file.getValue(), totalFiles)));
+                }
+                allDependencies = new ArrayList<>();
+                for (int i = 0; i < futures.size(); i++) {
+                    try {
+                        DependencyInfo dependencyInfo = futures.get(i).get();
+                        if (dependencyInfo != null) {
+                            allDependencies.add(dependencyInfo);
+                        }
+                    } catch (ExecutionException e) {
+                        // an error of a worker (out of memory ...) only drops the file it was calculating
+                        String fileName = files.get(i).getValue();
+                        logger.warn("Failed to calculate the dependency of {}: {}", fileName, e.getCause().toString());
+                        logger.debug("Failed to calculate the dependency of " + fileName, e.getCause());
+                    }
                 }
-                index++;
+            } catch (InterruptedException e) {
+                // a partial result must not be reported as the dependencies of the scan
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Dependencies calculation was interrupted", e);
+            } finally {
+                executorService.shutdownNow();
             }
         }
         return allDependencies;
     }
 
-    private void displayProgress(int index, int totalFiles) {
+    /* --- Private methods --- */
+
+    private ExecutorService createExecutorService() {
+        AtomicInteger threadNumber = new AtomicInteger();
+        return new ThreadPoolExecutor(threads, threads, 0, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    private DependencyInfo createDependency(DependencyInfoFactory factory, boolean scmConnector, File basedir, String fileName,
+                                            int totalFiles) {
+        DependencyInfo dependencyInfo;
+        try {
+            dependencyInfo = factory.createDependencyInfo(basedir, fileName);
+            if (dependencyInfo != null && scmConnector) {
+                dependencyInfo.setSystemPath(fileName.replace(Constants.BACK_SLASH, Constants.FORWARD_SLASH));
+            }
+        } catch (RuntimeException e) {
+            // a single bad file is skipped, the dependencies of the other files are still reported
+            logger.warn("Failed to calculate the dependency of {}: {}", fileName, e.getMessage());
+            logger.debug("Failed to calculate the dependency of " + fileName, e);
+            dependencyInfo = null;
+        } finally {
+            fileProcessed(totalFiles);
+        }
+        return dependencyInfo;
+    }
+
+    // counting and drawing under the same lock keeps the progress bar monotonic when several workers finish together
+    private synchronized void fileProcessed(int totalFiles) {
+        processedFiles++;
+        if (showProgressBar) {
+            displayProgress(processedFiles, totalFiles);
+        }
+    }
+
+    private synchronized void displayProgress(int index, int totalFiles) {
         StringBuilder sb = new StringBuilder("[INFO] ");
 
         // draw each animation for 4 frames
@@ -22,15 +22,19 @@ import org.whitesource.agent.api.model.ChecksumType;
 import org.whitesource.agent.api.model.CopyrightInfo;
 import org.whitesource.agent.api.model.DependencyHintsInfo;
 import org.whitesource.agent.api.model.DependencyInfo;
-import org.whitesource.agent.hash.ChecksumUtils;
-import org.whitesource.agent.hash.HashAlgorithm;
+import org.whitesource.agent.hash.FileExtensions;
+import org.whitesource.agent.hash.HashCalculationResult;
 import org.whitesource.agent.hash.HashCalculator;
 import org.whitesource.agent.hash.HintUtils;
+import org.whitesource.agent.utils.ChecksumCache;
+import org.whitesource.agent.utils.FileFingerprint;
 
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
+import java.io.InputStream;
 import java.util.*;
+import java.util.concurrent.Semaphore;
 
 /**
  * Factory class for {@link org.whitesource.agent.api.model.DependencyInfo}.
@@ -54,6 +58,8 @@ public class DependencyInfoFactory {
     private static final String CONTAINS_YEAR_REGEX = ".*(\\d\\d\\d\\d)+.*";
 
     private static final String JAVA_SCRIPT_REGEX = ".*\\.js";
+    // the content hashes of the files too big to keep in memory are calculated by reading them again, one file at a time
+    private static final Semaphore LARGE_FILE_PERMITS = new Semaphore(1);
 
     private static final List<Character> MATH_SYMBOLS = Arrays.asList('+', '-', '=', '<', '>', '*', '/', '%', '^');
     private static final int MAX_VALID_CHAR_VALUE = 127;
@@ -105,16 +111,31 @@ public class DependencyInfoFactory {
         DependencyInfo dependency;
         try {
             File dependencyFile = new File(basedir, filename);
-            String sha1 = ChecksumUtils.calculateSHA1(dependencyFile);
-            dependency = new DependencyInfo(sha1);
-            dependency.setArtifactId(dependencyFile.getName());
-            dependency.setFilename(dependencyFile.getName());
+            ChecksumCache checksumCache = ChecksumCache.getInstance();
+            Map<ChecksumType, String> cachedChecksums = checksumCache.getChecksums(dependencyFile);
+            if (cachedChecksums != null && (!calculateMd5 || cachedChecksums.containsKey(ChecksumType.MD5))) {
+                return createCachedDependencyInfo(dependencyFile, cachedChecksums);
+            }
+
+            long fileSize = dependencyFile.length();
+            FileFingerprint fingerprint;
+            try {
+                fingerprint = FileFingerprint.calculate(dependencyFile, calculateMd5, isContentRequired(dependencyFile.getName(), fileSize));
+            } catch (OutOfMemoryError e) {
+                logger.debug("Failed keeping the content of file {}: size too big", dependencyFile.getPath());
+                fingerprint = FileFingerprint.calculate(dependencyFile, calculateMd5, false);
+            }
 
             // system path
+            String systemPath;
             try {
-                dependency.setSystemPath(dependencyFile.getCanonicalPath());
+                systemPath = dependencyFile.getCanonicalPath();
             } catch (IOException e) {
-                dependency.setSystemPath(dependencyFile.getAbsolutePath());
+                systemPath = dependencyFile.getAbsolutePath();
+            }
+            dependency = createDependencyInfo(fingerprint, dependencyFile.getName(), systemPath, fileSize);
+            if (fileSize > FileFingerprint.MAX_CONTENT_SIZE) {
+                calculateLargeFileHashes(dependency, dependencyFile);
             }
 
             // populate hints
@@ -122,42 +143,182 @@ public class DependencyInfoFactory {
                 DependencyHintsInfo hints = HintUtils.getHints(dependencyFile.getPath());
                 dependency.setHints(hints);
             }
+            checksumCache.putChecksums(dependencyFile, dependency.getChecksums());
+        } catch (IOException e) {
+            logger.warn("Failed to create dependency " + filename + " to dependency list: {}", e.getMessage());
+            dependency = null;
+        }
+        return dependency;
+    }
+
+    /**
+     * Creates a dependency from a stream, used for archive entries that are scanned without being extracted to disk.
+     * Hints are not calculated since they are read from a file.
+     *
+     * @param inputStream the content of the dependency, read to its end but not closed
+     * @param fileName    the file name of the dependency
+     * @param size        the number of bytes in the stream, or -1 if unknown
+     * @param systemPath  the path reported for the dependency
+     * @return the dependency, or null if the stream could not be read
+     */
+    public DependencyInfo createDependencyInfo(InputStream inputStream, String fileName, long size, String systemPath) {
+        try {
+            // the stream cannot be read again, the content hashes of the entries bigger than the content size are not calculated
+            FileFingerprint fingerprint = FileFingerprint.calculate(inputStream, size, calculateMd5, size >= 0 && isContentRequired(fileName, size));
+            return createDependencyInfo(fingerprint, fileName, systemPath, size);
+        } catch (IOException e) {
+            logger.warn("Failed to create dependency " + fileName + " to dependency list: {}", e.getMessage());
+            return null;
+        }
+    }
+
+    /* --- Private methods --- */
+
+    // read the file once and keep its content only if one of the content based hashes needs it
+    private boolean isContentRequired(String fileName, long fileSize) {
+        boolean javaScriptFile = fileName.toLowerCase().matches(JAVA_SCRIPT_REGEX);
+        boolean calculateSuperHash = !fileName.toLowerCase().matches(FileExtensions.BINARY_FILE_EXTENSION_REGEX);
+        boolean calculateOtherPlatformSha1 = fileSize < FileFingerprint.OTHER_PLATFORM_MAX_FILE_SIZE && fileSize < Runtime.getRuntime().freeMemory();
+        return fileSize <= FileFingerprint.MAX_CONTENT_SIZE && (javaScriptFile || calculateOtherPlatformSha1 ||
+                (calculateSuperHash && fileSize > FileFingerprint.SUPER_HASH_MIN_FILE_SIZE));
+    }
+
+    private DependencyInfo createDependencyInfo(FileFingerprint fingerprint, String fileName, String systemPath, long fileSize) throws IOException {
+        boolean javaScriptFile = fileName.toLowerCase().matches(JAVA_SCRIPT_REGEX);
+        boolean calculateSuperHash = !fileName.toLowerCase().matches(FileExtensions.BINARY_FILE_EXTENSION_REGEX);
+        boolean calculateOtherPlatformSha1 = fileSize < FileFingerprint.OTHER_PLATFORM_MAX_FILE_SIZE && fileSize < Runtime.getRuntime().freeMemory();
+
+        DependencyInfo dependency = new DependencyInfo(fingerprint.getSha1());
+        dependency.setArtifactId(fileName);
+        dependency.setFilename(fileName);
+        dependency.setSystemPath(systemPath);
+
+        // additional sha1s
+        // MD5
+        if (calculateMd5) {
+            dependency.addChecksum(ChecksumType.MD5, fingerprint.getMd5());
+        }
+
+        if (!fingerprint.hasContent()) {
+            return dependency;
+        }
+        try {
+            addContentHashes(dependency, fingerprint, fileName, systemPath, javaScriptFile, calculateOtherPlatformSha1, calculateSuperHash);
+        } catch (OutOfMemoryError e) {
+            // as when the file is read again, the dependency keeps its SHA-1
+            logger.debug("Failed calculating the content hashes of file {}: size too big", systemPath);
+        }
+        return dependency;
+    }
 
-            // additional sha1s
-            // MD5
-            if (calculateMd5) {
-                String md5 = ChecksumUtils.calculateHash(dependencyFile, HashAlgorithm.MD5);
-                dependency.addChecksum(ChecksumType.MD5, md5);
+    private void addContentHashes(DependencyInfo dependency, FileFingerprint fingerprint, String fileName, String systemPath,
+                                  boolean javaScriptFile, boolean calculateOtherPlatformSha1, boolean calculateSuperHash) throws IOException {
+        // handle JavaScript files
+        if (javaScriptFile) {
+            Map<ChecksumType, String> javaScriptChecksums;
+            try {
+                javaScriptChecksums = fingerprint.getJavaScriptHashes();
+                if (javaScriptChecksums == null || javaScriptChecksums.isEmpty()) {
+                    logger.debug("Failed to calculate javaScript hash: {}", systemPath);
+                }
+                for (Map.Entry<ChecksumType, String> entry : javaScriptChecksums.entrySet()) {
+                    dependency.addChecksum(entry.getKey(), entry.getValue());
+                }
+            } catch (Exception e) {
+                logger.warn("Failed to calculate javaScript hash for file: {}, error: {}", systemPath, e.getMessage());
+                logger.debug("Failed to calculate javaScript hash for file: {}, error: {}", systemPath, e.getStackTrace());
             }
+        }
+        // other platform SHA1
+        if (calculateOtherPlatformSha1) {
+            dependency.setOtherPlatformSha1(fingerprint.getOtherPlatformSha1());
+        }
+        // super hash
+        if (calculateSuperHash) {
+            calculateSuperHash(dependency, fileName, systemPath, fingerprint);
+        }
+    }
 
-            // handle JavaScript files
-            if (filename.toLowerCase().matches(JAVA_SCRIPT_REGEX)) {
-                Map<ChecksumType, String> javaScriptChecksums;
+    // the content hashes of a file too big to be kept during its fingerprint, read from the file as the hash calculator does
+    private void calculateLargeFileHashes(DependencyInfo dependency, File file) {
+        boolean javaScriptFile = file.getName().toLowerCase().matches(JAVA_SCRIPT_REGEX);
+        boolean calculateSuperHash = !file.getName().toLowerCase().matches(FileExtensions.BINARY_FILE_EXTENSION_REGEX);
+        if (!javaScriptFile && !calculateSuperHash) {
+            return;
+        }
+        try {
+            LARGE_FILE_PERMITS.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return;
+        }
+        try {
+            HashCalculator hashCalculator = new HashCalculator();
+            if (javaScriptFile) {
                 try {
-                    javaScriptChecksums = new HashCalculator().calculateJavaScriptHashes(dependencyFile);
-                    if (javaScriptChecksums == null || javaScriptChecksums.isEmpty()) {
-                        logger.debug("Failed to calculate javaScript hash: {}", dependencyFile.getPath());
-                    }
-                    for (Map.Entry<ChecksumType, String> entry : javaScriptChecksums.entrySet()) {
+                    for (Map.Entry<ChecksumType, String> entry : hashCalculator.calculateJavaScriptHashes(file).entrySet()) {
                         dependency.addChecksum(entry.getKey(), entry.getValue());
                     }
                 } catch (Exception e) {
-                    logger.warn("Failed to calculate javaScript hash for file: {}, error: {}", dependencyFile.getPath(), e.getMessage());
-                    logger.debug("Failed to calculate javaScript hash for file: {}, error: {}", dependencyFile.getPath(), e.getStackTrace());
+                    logger.warn("Failed to calculate javaScript hash for file: {}, error: {}", file.getPath(), e.getMessage());
+                }
+            }
+            if (calculateSuperHash) {
+                HashCalculationResult superHash = hashCalculator.calculateSuperHash(file);
+                if (superHash != null) {
+                    dependency.setFullHash(superHash.getFullHash());
+                    dependency.setMostSigBitsHash(superHash.getMostSigBitsHash());
+                    dependency.setLeastSigBitsHash(superHash.getLeastSigBitsHash());
                 }
             }
-            // other platform SHA1
-            ChecksumUtils.calculateOtherPlatformSha1(dependency, dependencyFile);
-            // super hash
-            ChecksumUtils.calculateSuperHash(dependency, dependencyFile);
         } catch (IOException e) {
-            logger.warn("Failed to create dependency " + filename + " to dependency list: {}", e.getMessage());
-            dependency = null;
+            logger.warn("Error calculating fullHash for {}, Error - {}", file.getName(), e.getMessage());
+        } catch (OutOfMemoryError e) {
+            logger.debug("Failed calculating super hash for file {}: size too big", file.getPath());
+        } finally {
+            LARGE_FILE_PERMITS.release();
+        }
+    }
+
+    private DependencyInfo createCachedDependencyInfo(File dependencyFile, Map<ChecksumType, String> checksums) {
+        DependencyInfo dependency = new DependencyInfo(checksums.get(ChecksumType.SHA1));
+        dependency.setArtifactId(dependencyFile.getName());
+        dependency.setFilename(dependencyFile.getName());
+        try {
+            dependency.setSystemPath(dependencyFile.getCanonicalPath());
+        } catch (IOException e) {
+            dependency.setSystemPath(dependencyFile.getAbsolutePath());
+        }
+        if (calculateHints) {
+            dependency.setHints(HintUtils.getHints(dependencyFile.getPath()));
+        }
+        dependency.setOtherPlatformSha1(checksums.get(ChecksumType.SHA1_OTHER_PLATFORM));
+        dependency.setFullHash(checksums.get(ChecksumType.SHA1_SUPER_HASH));
+        dependency.setMostSigBitsHash(checksums.get(ChecksumType.SHA1_SUPER_HASH_MSB));
+        dependency.setLeastSigBitsHash(checksums.get(ChecksumType.SHA1_SUPER_HASH_LSB));
+        for (Map.Entry<ChecksumType, String> entry : checksums.entrySet()) {
+            // the MD5 is only reported when requested, as if it was calculated now
+            if (calculateMd5 || entry.getKey() != ChecksumType.MD5) {
+                dependency.addChecksum(entry.getKey(), entry.getValue());
+            }
         }
         return dependency;
     }
 
-    /* --- Private methods --- */
+    private void calculateSuperHash(DependencyInfo dependency, String fileName, String systemPath, FileFingerprint fingerprint) {
+        try {
+            HashCalculationResult superHash = fingerprint.getSuperHash();
+            if (superHash != null) {
+                dependency.setFullHash(superHash.getFullHash());
+                dependency.setMostSigBitsHash(superHash.getMostSigBitsHash());
+                dependency.setLeastSigBitsHash(superHash.getLeastSigBitsHash());
+            }
+        } catch (IOException e) {
+            logger.warn("Error calculating fullHash for {}, Error - {}", fileName, e.getMessage());
+        } catch (OutOfMemoryError e) {
+            logger.debug("Failed calculating super hash for file {}: size too big", systemPath);
+        }
+    }
 
     private Collection<CopyrightInfo> extractCopyrights(File file) {
         Collection<CopyrightInfo> copyrights = new ArrayList<>();
@@ -22,9 +22,11 @@ import org.whitesource.agent.api.model.Coordinates;
 import org.whitesource.agent.api.model.DependencyInfo;
 import org.whitesource.agent.api.model.DependencyType;
 import org.whitesource.agent.archive.ArchiveExtractor;
+import org.whitesource.agent.archive.ArchiveStreamScanner;
 import org.whitesource.agent.dependency.resolver.AbstractDependencyResolver;
 import org.whitesource.agent.dependency.resolver.DependencyResolutionService;
 import org.whitesource.agent.dependency.resolver.ResolutionResult;
+import org.whitesource.agent.utils.FileIndex;
 import org.whitesource.agent.utils.FilesUtils;
 import org.whitesource.agent.utils.LoggerFactory;
 import org.whitesource.agent.utils.MemoryUsageHelper;
@@ -148,7 +150,7 @@ public class FileSystemScanner {
                                                                            Collection<String> excludedCopyrights, boolean partialSha1Match, boolean calculateHints,
                                                                            boolean calculateMd5, String[] pythonRequirementsFileIncludes) {
         AgentConfiguration agentConfiguration = new AgentConfiguration(includes, excludes, new String[]{}, new String[]{}, archiveExtractionDepth, archiveIncludes, archiveExcludes, archiveFastUnpack,
-                followSymlinks, partialSha1Match, calculateHints, calculateMd5, showProgressBar, globCaseSensitive, false, excludedCopyrights, new String[]{}, new String[]{},
+                agent.isArchiveStreaming(), followSymlinks, partialSha1Match, calculateHints, calculateMd5, agent.getCalculateThreads(), agent.isCalculateCache(), agent.getCalculateCacheMaxEntries(), agent.getTempFolderQuotaMB(), showProgressBar, globCaseSensitive, false, excludedCopyrights, new String[]{}, new String[]{},
                 pythonRequirementsFileIncludes, Constants.EMPTY_STRING);
         ProjectConfiguration projectConfiguration = new ProjectConfiguration(agentConfiguration, scannerBaseDirs, appPathsToDependencyDirs, scmConnector);
         return createProjects(projectConfiguration);
@@ -177,12 +179,30 @@ public class FileSystemScanner {
         Map<String, String> archiveToBaseDirMap = new HashMap<>();
         List<String> archiveDirectories = new ArrayList<>();
         AgentConfiguration agentConfiguration = projectConfiguration.getAgentConfiguration();
+        String[] resolversIncludesPattern = createResolversIncludesPattern(dependencyResolutionService.getDependencyResolvers());
+        ArchiveStreamScanner archiveStreamScanner = null;
         if (agentConfiguration.getArchiveExtractionDepth() > 0) {
             ArchiveExtractor archiveExtractor = new ArchiveExtractor(agentConfiguration.getArchiveIncludes(), agentConfiguration.getArchiveExcludes(),
                     agentConfiguration.getExcludes(), agentConfiguration.isArchiveFastUnpack());
+            if (agentConfiguration.isArchiveStreaming()) {
+                // archives are read in place, only the ones a resolver has to run on are extracted
+                DependencyInfoFactory dependencyInfoFactory = new DependencyInfoFactory(agentConfiguration.getExcludedCopyrights(),
+                        agentConfiguration.isPartialSha1Match(), agentConfiguration.isCalculateHints(), agentConfiguration.isCalculateMd5());
+                archiveStreamScanner = new ArchiveStreamScanner(archiveExtractor, dependencyInfoFactory, agentConfiguration.getArchiveExtractionDepth(),
+                        agentConfiguration.getIncludes(), agentConfiguration.getExcludes(), agentConfiguration.getGlobCaseSensitive(),
+                        resolversIncludesPattern, agentConfiguration.isCalculateHints());
+            }
             logger.info("Starting Archive Extraction (may take a few minutes)");
             for (String scannerBaseDir : new LinkedHashSet<>(pathsToScan)) {
-                unpackDirectory = archiveExtractor.extractArchives(scannerBaseDir, agentConfiguration.getArchiveExtractionDepth(), archiveDirectories);
+                Set<String> archivesToExtract = null;
+                if (archiveStreamScanner != null) {
+                    archivesToExtract = archiveStreamScanner.scanArchives(scannerBaseDir);
+                    if (archivesToExtract.isEmpty()) {
+                        continue;
+                    }
+                }
+                unpackDirectory = archiveExtractor.extractArchives(scannerBaseDir, agentConfiguration.getArchiveExtractionDepth(), archiveDirectories,
+                        archivesToExtract);
                 if (unpackDirectory != null) {
                     archiveExtraction = true;
                     String parentFileUrl = new File(scannerBaseDir).getParent();
@@ -210,9 +230,11 @@ public class FileSystemScanner {
         logger.info("Scanning directories {} for matching Files (may take a few minutes)", pathsToScan);
         logger.info("Included file types: {}", String.join(Constants.COMMA, agentConfiguration.getIncludes()));
         logger.info("Excluded file types: {}", String.join(Constants.COMMA, agentConfiguration.getExcludes()));
-        String[] resolversIncludesPattern = createResolversIncludesPattern(dependencyResolutionService.getDependencyResolvers());
 
-        Map<File, Collection<String>> fileMapBeforeResolve = new FilesUtils().fillFilesMap(pathsToScan, resolversIncludesPattern, agentConfiguration.getExcludes(),
+        // walk the folders once, all the following scans query the same index
+        FileIndex fileIndex = new FileIndex(agentConfiguration.isFollowSymlinks());
+        FilesUtils filesUtils = new FilesUtils(fileIndex);
+        Map<File, Collection<String>> fileMapBeforeResolve = filesUtils.fillFilesMap(pathsToScan, resolversIncludesPattern, agentConfiguration.getExcludes(),
                 agentConfiguration.isFollowSymlinks(), agentConfiguration.getGlobCaseSensitive());
         Set<String> allFiles = fileMapBeforeResolve.entrySet().stream().flatMap(folder -> folder.getValue().stream()).collect(Collectors.toSet());
 
@@ -243,7 +265,7 @@ public class FileSystemScanner {
                 pathsList.addAll(projectConfiguration.getAppPathsToDependencyDirs().get(appPath));
                 if ((appPath.equals(FSAConfiguration.DEFAULT_KEY) && projectConfiguration.getAppPathsToDependencyDirs().keySet().size() == 1) ||
                         (!appPath.equals(FSAConfiguration.DEFAULT_KEY) && projectConfiguration.getAppPathsToDependencyDirs().keySet().size() > 1)) {
-                    resolutionResult = dependencyResolutionService.resolveDependencies(pathsList, agentConfiguration.getExcludes());
+                    resolutionResult = dependencyResolutionService.resolveDependencies(pathsList, agentConfiguration.getExcludes(), fileIndex);
                 }
                 if (resolutionResult.size() == 1 && !appPath.equals(FSAConfiguration.DEFAULT_KEY)) {
                     DependencyType dependencyType = resolutionResult.stream().findFirst().get().getDependencyType();
@@ -331,16 +353,19 @@ public class FileSystemScanner {
             excludes = new String[allExcludes.size()];
             excludes = allExcludes.toArray(excludes);
             dependencyResolutionService = null;
+
+            // the package managers may have created or removed files while resolving
+            fileIndex.refresh();
         }
 
         String[] excludesExtended = excludeFileSystemAgent(excludes);
         logger.info("Scanning directories {} for matching Files (may take a few minutes)", pathsToScan);
-        Map<File, Collection<String>> fileMap = new FilesUtils().fillFilesMap(pathsToScan, agentConfiguration.getIncludes(), excludesExtended,
+        Map<File, Collection<String>> fileMap = filesUtils.fillFilesMap(pathsToScan, agentConfiguration.getIncludes(), excludesExtended,
                 agentConfiguration.isFollowSymlinks(), agentConfiguration.getGlobCaseSensitive());
         long filesCount = fileMap.entrySet().stream().flatMap(folder -> folder.getValue().stream()).count();
         totalFiles += filesCount;
         logger.info(MessageFormat.format("Total files found according to the includes/excludes pattern: {0}", totalFiles));
-        DependencyCalculator dependencyCalculator = new DependencyCalculator(showProgressBar);
+        DependencyCalculator dependencyCalculator = new DependencyCalculator(showProgressBar, agentConfiguration.getCalculateThreads());
         final Collection<DependencyInfo> filesDependencies = new LinkedList<>();
 
         if (!isIgnoreSourceFiles) {
@@ -348,6 +373,9 @@ public class FileSystemScanner {
                     projectConfiguration.isScmConnector(), totalFiles, fileMap, agentConfiguration.getExcludedCopyrights(),
                     agentConfiguration.isPartialSha1Match(), agentConfiguration.isCalculateHints(),
                     agentConfiguration.isCalculateMd5()));
+            if (archiveStreamScanner != null) {
+                filesDependencies.addAll(archiveStreamScanner.getDependencies(excludesExtended));
+            }
         }
 
         if (allProjects.size() == 1) {
@@ -395,7 +423,7 @@ public class FileSystemScanner {
                     // check all folders
 
                     String[] includesAll = {Constants.PATTERN};
-                    subDirectories = new FilesUtils().getSubDirectories(directory, includesAll, null, agentConfiguration.isFollowSymlinks(),
+                    subDirectories = filesUtils.getSubDirectories(directory, includesAll, null, agentConfiguration.isFollowSymlinks(),
                             agentConfiguration.getGlobCaseSensitive());
                     subDirectories.forEach(subFolder -> {
                         if (filesDependencies.size() > 0) {
@@ -465,6 +493,13 @@ public class FileSystemScanner {
         return allProjectsToViaComponents;
     }
 
+    /**
+     * @return the patterns of the manifest files of the enabled resolvers
+     */
+    public String[] getResolversIncludesPattern() {
+        return createResolversIncludesPattern(dependencyResolutionService.getDependencyResolvers());
+    }
+
     /* --- Private methods --- */
 
     private String[] createResolversIncludesPattern(Collection<AbstractDependencyResolver> dependencyResolvers) {
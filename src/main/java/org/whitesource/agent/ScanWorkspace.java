@@ -0,0 +1,280 @@
+/**
+ * Copyright (C) 2014 WhiteSource Ltd.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.whitesource.agent;
+
+import org.apache.commons.io.FileUtils;
+import org.slf4j.Logger;
+import org.whitesource.agent.utils.FilesUtils;
+import org.whitesource.agent.utils.LoggerFactory;
+import org.whitesource.agent.utils.UniqueNamesGenerator;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Temporary workspace of a scan.
+ * <p>
+ * The temp folders of the resolvers and archive extractors (see {@link TempFolders}) are created under the root of the
+ * workspace of the current scan. The workspace is inherited by the threads started by the scan, so scans running in
+ * the same process neither share nor delete each other's folders. The size of the root is sampled in the background
+ * to report the peak disk usage of the scan, and once the quota of the scan is exceeded the archive extraction, the
+ * pip downloads and the docker image saves are skipped.
+ * <p>
+ * The caches of the scan (checksums, registry lookups, downloaded scripts, scan manifest) are components of its
+ * workspace as well, so a scan started while another one is running does not replace the caches of the other scan.
+ * <p>
+ * Until {@link #open(long)} is called the temp folders are created directly in java.io.tmpdir, without a quota, and
+ * the components are those of the default workspace of the process.
+ */
+public class ScanWorkspace {
+
+    /* --- Static members --- */
+
+    private static final Logger logger = LoggerFactory.getLogger(ScanWorkspace.class);
+
+    private static final String WHITESOURCE_SCAN = "WhiteSource-Scan";
+    private static final String MONITOR_THREAD_NAME = "WhiteSource-ScanWorkspace-Monitor";
+    private static final String CLEANER_THREAD_NAME = "WhiteSource-ScanWorkspace-Cleaner";
+    private static final long SAMPLE_INTERVAL_SECONDS = 2;
+    private static final long BYTES_PER_MB = 1024 * 1024;
+
+    private static final ScanWorkspace DEFAULT_WORKSPACE = new ScanWorkspace(new File(System.getProperty("java.io.tmpdir")), 0, false);
+    private static final InheritableThreadLocal<ScanWorkspace> currentWorkspace = new InheritableThreadLocal<>();
+    private static final ScheduledExecutorService monitor = Executors.newSingleThreadScheduledExecutor(runnable -> createDaemonThread(runnable, MONITOR_THREAD_NAME));
+    private static final ExecutorService cleaner = Executors.newCachedThreadPool(runnable -> createDaemonThread(runnable, CLEANER_THREAD_NAME));
+    private static final List<Future<?>> pendingCleanups = new ArrayList<>();
+
+    /* --- Members --- */
+
+    private final File root;
+    private final long quotaBytes;
+    private final boolean scoped;
+    private final AtomicLong peakBytes;
+    private final AtomicBoolean quotaExceeded;
+    private final AtomicBoolean closed;
+    private final Map<Class<?>, Object> components;
+    private ScheduledFuture<?> sampling;
+
+    /* --- Constructors --- */
+
+    private ScanWorkspace(File root, long quotaBytes, boolean scoped) {
+        this.root = root;
+        this.quotaBytes = quotaBytes;
+        this.scoped = scoped;
+        this.peakBytes = new AtomicLong();
+        this.quotaExceeded = new AtomicBoolean(false);
+        this.closed = new AtomicBoolean(false);
+        this.components = new ConcurrentHashMap<>();
+    }
+
+    /* --- Static methods --- */
+
+    /**
+     * Creates the workspace of a new scan and makes it the workspace of the current thread and of the threads it starts.
+     *
+     * @param quotaMB the maximum size of the temp folders of the scan in MB, no quota if not positive
+     * @return the opened workspace
+     */
+    public static ScanWorkspace open(long quotaMB) {
+        File root = new File(System.getProperty("java.io.tmpdir"), UniqueNamesGenerator.createUniqueName(WHITESOURCE_SCAN, Constants.EMPTY_STRING));
+        ScanWorkspace workspace = new ScanWorkspace(root, quotaMB > 0 ? quotaMB * BYTES_PER_MB : 0, true);
+        try {
+            FileUtils.forceMkdir(root);
+        } catch (IOException e) {
+            logger.warn("Failed to create the scan workspace {}, using {}: {}", root.getPath(), DEFAULT_WORKSPACE.getRoot().getPath(), e.getMessage());
+            return DEFAULT_WORKSPACE;
+        }
+        workspace.sampling = monitor.scheduleWithFixedDelay(workspace::sample, SAMPLE_INTERVAL_SECONDS, SAMPLE_INTERVAL_SECONDS, TimeUnit.SECONDS);
+        currentWorkspace.set(workspace);
+        logger.debug("Opened scan workspace {}{}", root.getPath(), workspace.quotaBytes > 0 ? " with a quota of " + quotaMB + " MB" : Constants.EMPTY_STRING);
+        return workspace;
+    }
+
+    /**
+     * @return the workspace of the scan running on the current thread, java.io.tmpdir if there is none
+     */
+    public static ScanWorkspace current() {
+        ScanWorkspace workspace = currentWorkspace.get();
+        return workspace == null || workspace.closed.get() ? DEFAULT_WORKSPACE : workspace;
+    }
+
+    /**
+     * Waits for the workspaces closed asynchronously to be deleted, so they are not left behind when the process exits.
+     *
+     * @param timeoutMillis the maximum time to wait
+     */
+    public static void awaitCleanup(long timeoutMillis) {
+        List<Future<?>> cleanups;
+        synchronized (pendingCleanups) {
+            cleanups = new ArrayList<>(pendingCleanups);
+            pendingCleanups.clear();
+        }
+        long deadline = System.currentTimeMillis() + timeoutMillis;
+        for (Future<?> cleanup : cleanups) {
+            try {
+                cleanup.get(Math.max(0, deadline - System.currentTimeMillis()), TimeUnit.MILLISECONDS);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (ExecutionException | TimeoutException e) {
+                logger.debug("Scan workspace cleanup did not complete: {}", e.getMessage());
+            }
+        }
+    }
+
+    private static Thread createDaemonThread(Runnable runnable, String name) {
+        Thread thread = new Thread(runnable, name);
+        thread.setDaemon(true);
+        return thread;
+    }
+
+    /* --- Public methods --- */
+
+    /**
+     * @return the folder the temp folders of the scan are created in
+     */
+    public File getRoot() {
+        return root;
+    }
+
+    /**
+     * @param name the name of a temp folder, see {@link TempFolders}
+     * @return the path of the temp folder in the workspace
+     */
+    public String getFolder(String name) {
+        return new File(root, name).getPath();
+    }
+
+    /**
+     * @param type             the class of the component
+     * @param defaultComponent creates the component if the scan has none yet
+     * @return the component of the scan
+     */
+    public <T> T getComponent(Class<T> type, Supplier<T> defaultComponent) {
+        return type.cast(components.computeIfAbsent(type, key -> defaultComponent.get()));
+    }
+
+    /**
+     * Sets the component of the scan, replacing the component of the same class. The replaced component is closed if it
+     * is {@link Closeable}, as the components of the scan are when the workspace is closed.
+     *
+     * @param type      the class of the component
+     * @param component the component
+     */
+    public <T> void setComponent(Class<T> type, T component) {
+        closeComponent(components.put(type, component));
+    }
+
+    /**
+     * @return true if the temp folders of the scan were found larger than its quota
+     */
+    public boolean isQuotaExceeded() {
+        return quotaExceeded.get();
+    }
+
+    /**
+     * @return the largest size of the temp folders of the scan sampled so far, in bytes
+     */
+    public long getPeakBytes() {
+        return peakBytes.get();
+    }
+
+    /**
+     * Stops sampling the workspace, closes its components, reports its peak size and deletes it, unless it is the default
+     * workspace.
+     *
+     * @param async true to delete the workspace in the background, see {@link #awaitCleanup(long)}
+     */
+    public void close(boolean async) {
+        if (!scoped || !closed.compareAndSet(false, true)) {
+            return;
+        }
+        if (sampling != null) {
+            sampling.cancel(false);
+        }
+        if (currentWorkspace.get() == this) {
+            currentWorkspace.remove();
+        }
+        components.values().forEach(this::closeComponent);
+        components.clear();
+        Runnable cleanup = () -> {
+            sample();
+            logger.info("Peak temp folders usage of the scan: {} MB", peakBytes.get() / BYTES_PER_MB);
+            FilesUtils.deleteDirectory(root);
+            logger.debug("Deleted scan workspace {}", root.getPath());
+        };
+        if (async) {
+            synchronized (pendingCleanups) {
+                pendingCleanups.removeIf(Future::isDone);
+                pendingCleanups.add(cleaner.submit(cleanup));
+            }
+        } else {
+            cleanup.run();
+        }
+    }
+
+    /* --- Private methods --- */
+
+    private void closeComponent(Object component) {
+        if (component instanceof Closeable) {
+            try {
+                ((Closeable) component).close();
+            } catch (IOException e) {
+                logger.debug("Failed to close {}: {}", component.getClass().getSimpleName(), e.getMessage());
+            }
+        }
+    }
+
+    /* --- Package methods --- */
+
+    // walks the workspace to update its peak size and check its quota, files deleted during the walk are skipped
+    long sample() {
+        AtomicLong size = new AtomicLong();
+        try {
+            Files.walkFileTree(root.toPath(), new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attributes) {
+                    size.addAndGet(attributes.size());
+                    return FileVisitResult.CONTINUE;
+                }
+
+                @Override
+                public FileVisitResult visitFileFailed(Path file, IOException e) {
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            logger.debug("Failed to sample the size of {}: {}", root.getPath(), e.getMessage());
+        }
+        long bytes = size.get();
+        peakBytes.accumulateAndGet(bytes, Math::max);
+        if (quotaBytes > 0 && bytes > quotaBytes && quotaExceeded.compareAndSet(false, true)) {
+            logger.warn("The temp folders of the scan use {} MB, more than the {} MB of {}, archives, pip packages and docker images are no longer extracted",
+                    bytes / BYTES_PER_MB, quotaBytes / BYTES_PER_MB, ConfigPropertyKeys.TEMP_FOLDER_QUOTA_MB);
+        }
+        return bytes;
+    }
+}
@@ -4,14 +4,12 @@ import org.whitesource.agent.utils.FilesUtils;
 import org.whitesource.agent.utils.UniqueNamesGenerator;
 
 import java.io.File;
-import java.nio.file.Paths;
 
 
 public class TempFolders {
 
     /* --- Static members --- */
 
-    private static final String PATH_TO_TEMP_DIR = System.getProperty("java.io.tmpdir");
     private static final String WHITESOURCE_ARCHIVE_EXTRACTOR = "WhiteSource-ArchiveExtractor";
     private static final String WHITE_BUILD_GRADLE_FOLDER = "WhiteSource-Build-Gradle";
     private static final String WHITESOURCE_HTML_RESOLVER = "WhiteSource-html-resolver";
@@ -30,16 +28,12 @@ public class TempFolders {
     public static final String UNIQUE_PLATFORM_DEPENDENT_TEMP_FOLDER = UniqueNamesGenerator.createUniqueName(WHITESOURCE_PLATFORM_DEPENDENT_TMP_DIR, Constants.EMPTY_STRING);
     public static final String UNIQUE_WHITESOURCE_ARCHIVE_EXTRACTOR_TEMP_FOLDER = UniqueNamesGenerator.createUniqueName(WHITESOURCE_ARCHIVE_EXTRACTOR, Constants.EMPTY_STRING);
 
-    private static final String PATH_TO_UNIQUE_HTML_TEMP_FOLDER = Paths.get(PATH_TO_TEMP_DIR, UNIQUE_HTML_TEMP_FOLDER).toString();
-    private static final String PATH_TO_UNIQUE_GRADLE_TEMP_FOLDER = Paths.get(PATH_TO_TEMP_DIR, UNIQUE_GRADLE_TEMP_FOLDER).toString();
-    private static final String PATH_TO_UNIQUE_DOTNET_TEMP_FOLDER = Paths.get(PATH_TO_TEMP_DIR, UNIQUE_DOTNET_TEMP_FOLDER).toString();
-    private static final String PATH_TO_UNIQUE_PYTHON_TEMP_FOLDER = Paths.get(PATH_TO_TEMP_DIR, UNIQUE_PYTHON_TEMP_FOLDER).toString();
-    private static final String PATH_TO_UNIQUE_DOCKER_TEMP_FOLDER = Paths.get(PATH_TO_TEMP_DIR, UNIQUE_DOCKER_TEMP_FOLDER).toString();
-    private static final String PATH_TO_SCM_CONNECTOR_TMP_DIRECTORY = Paths.get(PATH_TO_TEMP_DIR, UNIQUE_SCM_TEMP_FOLDER).toString();
-    private static final String PATH_TO_UNIQUE_ARCHIVE_EXTRACTOR_TEMP_FOLDER = Paths.get(PATH_TO_TEMP_DIR, UNIQUE_WHITESOURCE_ARCHIVE_EXTRACTOR_TEMP_FOLDER).toString();
-
-    // Agents api temp folder - CheckSumUtils folder :: calculateOtherPlatformSha1 method
-    private static final String PATH_TO_PLATFORM_DEPENDENT_TMP_DIR = Paths.get(PATH_TO_TEMP_DIR, UNIQUE_PLATFORM_DEPENDENT_TEMP_FOLDER).toString();
+    // the temp folders are created in the workspace of the scan, see ScanWorkspace
+    private static final String[] UNIQUE_TEMP_FOLDERS = {UNIQUE_HTML_TEMP_FOLDER, UNIQUE_GRADLE_TEMP_FOLDER, UNIQUE_DOTNET_TEMP_FOLDER,
+            UNIQUE_PYTHON_TEMP_FOLDER, UNIQUE_DOCKER_TEMP_FOLDER, UNIQUE_SCM_TEMP_FOLDER,
+            // Agents api temp folder - CheckSumUtils folder :: calculateOtherPlatformSha1 method
+            UNIQUE_PLATFORM_DEPENDENT_TEMP_FOLDER,
+            UNIQUE_WHITESOURCE_ARCHIVE_EXTRACTOR_TEMP_FOLDER};
 
     /* --- Constructors --- */
 
@@ -49,15 +43,12 @@ public class TempFolders {
 
     /* --- Methods --- */
 
+    // deletes the temp folders of the current workspace, those of java.io.tmpdir once the workspace of the scan is closed
     public void deleteTempFolders() {
-        deleteTempFoldersHelper(PATH_TO_UNIQUE_HTML_TEMP_FOLDER);
-        deleteTempFoldersHelper(PATH_TO_UNIQUE_GRADLE_TEMP_FOLDER);
-        deleteTempFoldersHelper(PATH_TO_UNIQUE_DOTNET_TEMP_FOLDER);
-        deleteTempFoldersHelper(PATH_TO_UNIQUE_PYTHON_TEMP_FOLDER);
-        deleteTempFoldersHelper(PATH_TO_UNIQUE_DOCKER_TEMP_FOLDER);
-        deleteTempFoldersHelper(PATH_TO_SCM_CONNECTOR_TMP_DIRECTORY);
-        deleteTempFoldersHelper(PATH_TO_PLATFORM_DEPENDENT_TMP_DIR);
-        deleteTempFoldersHelper(PATH_TO_UNIQUE_ARCHIVE_EXTRACTOR_TEMP_FOLDER);
+        ScanWorkspace workspace = ScanWorkspace.current();
+        for (String tempFolder : UNIQUE_TEMP_FOLDERS) {
+            deleteTempFoldersHelper(workspace.getFolder(tempFolder));
+        }
     }
 
     public void deleteTempFoldersHelper(String path) {
@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2014 WhiteSource Ltd.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.whitesource.agent.archive;
+
+import org.slf4j.Logger;
+import org.whitesource.agent.utils.LoggerFactory;
+
+import java.io.File;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool running archive extractions, shared by all the depth levels of an extraction.
+ * <p>
+ * Extractions may submit more extractions (the archives found in the folder they extracted), so the next depth level
+ * starts as soon as an archive is extracted instead of waiting for the whole level.
+ * Before an extraction starts, its estimated size is reserved against the usable space of the temp volume, when it
+ * does not fit the extraction waits for the running ones to finish. An extraction always runs when no other one is
+ * running, so a full disk fails the extraction instead of blocking the scan.
+ * When the waiting thread is interrupted, the extractions which did not start are cancelled and the running ones are
+ * awaited, so no extraction still writes to the extraction folders once {@link #awaitCompletion()} returns.
+ */
+class ArchiveExtractionScheduler {
+
+    /* --- Static members --- */
+
+    private static final Logger logger = LoggerFactory.getLogger(ArchiveExtractionScheduler.class);
+
+    // extracted archives are usually a few times bigger than the archive file
+    private static final int EXPANSION_FACTOR = 4;
+    private static final long KEEP_ALIVE_SECONDS = 60;
+    private static final String THREAD_NAME_PREFIX = "archive-extractor-";
+
+    /* --- Members --- */
+
+    private final ThreadPoolExecutor executorService;
+    private final File tempFolder;
+    private final Object lock = new Object();
+    private long reservedBytes;
+    private int running;
+    private int pending;
+    private boolean cancelled;
+    private int extracted;
+    private long extractionTime;
+
+    /* --- Constructors --- */
+
+    ArchiveExtractionScheduler(int threads, File tempFolder) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executorService = new ThreadPoolExecutor(threads, threads, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // idle threads are released between scans, the scheduler is reused without being shut down
+        this.executorService.allowCoreThreadTimeOut(true);
+        this.tempFolder = tempFolder;
+    }
+
+    /* --- Package methods --- */
+
+    /**
+     * Schedules an extraction, may be called from a running extraction.
+     *
+     * @param archivePath the archive to extract, used for the disk reservation and the timing
+     * @param extraction  the extraction
+     */
+    void submit(String archivePath, Runnable extraction) {
+        long estimatedSize = new File(archivePath).length() * EXPANSION_FACTOR;
+        synchronized (lock) {
+            if (cancelled) {
+                logger.debug("Skipping the extraction of {}, the extraction was cancelled", archivePath);
+                return;
+            }
+            pending++;
+        }
+        try {
+            executorService.execute(() -> run(archivePath, estimatedSize, extraction));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Failed to schedule the extraction of {}: {}", archivePath, e.getMessage());
+            done();
+        }
+    }
+
+    /**
+     * Waits until all the submitted extractions, and the extractions they submitted, are done.
+     * If interrupted, the extractions which did not start are cancelled, the running ones are still awaited and the
+     * interrupt status is restored before returning.
+     */
+    void awaitCompletion() {
+        boolean interrupted = false;
+        synchronized (lock) {
+            while (pending > 0) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                    if (!cancelled) {
+                        logger.warn("Archive extraction was interrupted, waiting for the running extractions to stop");
+                        cancelled = true;
+                        // wakes up the extractions waiting for disk space
+                        lock.notifyAll();
+                    }
+                }
+            }
+            logger.debug("Extracted {} archives, total extraction time {} ms", extracted, extractionTime);
+            extracted = 0;
+            extractionTime = 0;
+            cancelled = false;
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /* --- Private methods --- */
+
+    private void run(String archivePath, long estimatedSize, Runnable extraction) {
+        if (!reserve(archivePath, estimatedSize)) {
+            done();
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        try {
+            extraction.run();
+        } catch (RuntimeException e) {
+            logger.warn("Error extracting file {}: {}", archivePath, e.getMessage());
+        } finally {
+            long time = System.currentTimeMillis() - startTime;
+            logger.debug("Extracted {} in {} ms", archivePath, time);
+            synchronized (lock) {
+                reservedBytes -= estimatedSize;
+                running--;
+                extracted++;
+                extractionTime += time;
+            }
+            done();
+        }
+    }
+
+    private boolean reserve(String archivePath, long estimatedSize) {
+        synchronized (lock) {
+            if (cancelled) {
+                return false;
+            }
+            // the usable space already accounts for the bytes written by the running extractions, but not for the ones to come
+            while (running > 0 && reservedBytes + estimatedSize > tempFolder.getUsableSpace()) {
+                logger.debug("Waiting for temp disk space to extract {}", archivePath);
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+                if (cancelled) {
+                    return false;
+                }
+            }
+            reservedBytes += estimatedSize;
+            running++;
+            return true;
+        }
+    }
+
+    private void done() {
+        synchronized (lock) {
+            pending--;
+            lock.notifyAll();
+        }
+    }
+}
@@ -26,6 +26,8 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.FilenameUtils;
 import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
+import org.apache.tools.ant.types.selectors.TokenizedPath;
+import org.apache.tools.ant.types.selectors.TokenizedPattern;
 import org.codehaus.plexus.archiver.tar.TarBZip2UnArchiver;
 import org.codehaus.plexus.archiver.tar.TarGZipUnArchiver;
 import org.codehaus.plexus.archiver.tar.TarUnArchiver;
@@ -41,6 +43,7 @@ import org.whitesource.agent.utils.LoggerFactory;
 import org.whitesource.agent.Constants;
 import org.whitesource.agent.utils.FilesScanner;
 import org.whitesource.agent.utils.Pair;
+import org.whitesource.agent.ScanWorkspace;
 import org.whitesource.agent.TempFolders;
 
 import java.io.*;
@@ -70,8 +73,6 @@ public class ArchiveExtractor {
     public static final String GLOB_PREFIX = "glob:";
     public static final String NULL_HEADER = "mainheader is null";
 
-    private final String JAVA_TEMP_DIR = System.getProperty("java.io.tmpdir");
-
 
     public static final List<String> ZIP_EXTENSIONS = Arrays.asList("jar", "war", "aar", "ear", "egg", "zip", "whl", "sca", "sda", "nupkg");
     public static final List<String> GEM_EXTENSIONS = Collections.singletonList("gem");
@@ -100,6 +101,7 @@ public class ArchiveExtractor {
     public static final String GLOB_PATTERN_PREFIX = Constants.PATTERN + Constants.DOT;
     public static final String PATTERN_PREFIX = ".*\\.";
     public static final String XZ_UN_ARCHIVER_FILE_NAME = "compressedFile.tar";
+    private static final String[] ALL_FILES_PATTERN = {"**/*"};
 
     static {
         ZIP_EXTENSION_PATTERN = initializePattern(ZIP_EXTENSIONS);
@@ -127,6 +129,9 @@ public class ArchiveExtractor {
     private String randomString;
     private String tempFolderNoDepth;
     private boolean fastUnpack = false;
+    private final TokenizedPattern[] archiveIncludes;
+    private final TokenizedPattern[] archiveExcludes;
+    private ArchiveExtractionScheduler scheduler;
 
     /* --- Constructors --- */
 
@@ -144,12 +149,15 @@ public class ArchiveExtractor {
         }
         this.archiveExcludesPattern = archiveExcludes;
         this.filesExcludes = filesExcludes;
+        this.archiveIncludes = ArchiveStreamScanner.tokenize(this.archiveIncludesPattern);
+        this.archiveExcludes = ArchiveStreamScanner.tokenize(this.archiveExcludesPattern);
     }
 
     private String getTempFolder(String scannerBaseDir) {
         String creationDate = new SimpleDateFormat("yyyyMMddHHmmss").format(new Date());
-        String tempFolder = JAVA_TEMP_DIR.endsWith(File.separator) ? JAVA_TEMP_DIR + TempFolders.UNIQUE_WHITESOURCE_ARCHIVE_EXTRACTOR_TEMP_FOLDER + File.separator + creationDate :
-                JAVA_TEMP_DIR + File.separator + TempFolders.UNIQUE_WHITESOURCE_ARCHIVE_EXTRACTOR_TEMP_FOLDER + File.separator + creationDate;
+        String tempDir = ScanWorkspace.current().getRoot().getPath();
+        String tempFolder = tempDir.endsWith(File.separator) ? tempDir + TempFolders.UNIQUE_WHITESOURCE_ARCHIVE_EXTRACTOR_TEMP_FOLDER + File.separator + creationDate :
+                tempDir + File.separator + TempFolders.UNIQUE_WHITESOURCE_ARCHIVE_EXTRACTOR_TEMP_FOLDER + File.separator + creationDate;
         String destDirectory = tempFolder + Constants.UNDERSCORE + this.randomString;
         int separatorIndex = scannerBaseDir.lastIndexOf(File.separator);
 
@@ -181,6 +189,19 @@ public class ArchiveExtractor {
      * @return the temp directory for the extracted files.
      */
     public String extractArchives(String scannerBaseDir, int archiveExtractionDepth, List<String> archiveDirectories) {
+        return extractArchives(scannerBaseDir, archiveExtractionDepth, archiveDirectories, null);
+    }
+
+    /**
+     * Extracts only some of the archives found in the base directory, the nested archives are extracted as usual.
+     *
+     * @param scannerBaseDir         - directory for scanning.
+     * @param archiveExtractionDepth - drill down hierarchy level in archive files
+     * @param archiveDirectories     list of directories
+     * @param archivesToExtract      paths of the archives to extract relative to the base directory, null to extract all of them
+     * @return the temp directory for the extracted files.
+     */
+    public String extractArchives(String scannerBaseDir, int archiveExtractionDepth, List<String> archiveDirectories, Set<String> archivesToExtract) {
         this.randomString = String.valueOf(ThreadLocalRandom.current().nextLong(0, LONG_BOUND));
         this.tempFolderNoDepth = getTempFolder(scannerBaseDir);
         logger.debug("Base directory is {}, extraction depth is set to {}", scannerBaseDir, archiveExtractionDepth);
@@ -201,15 +222,21 @@ public class ArchiveExtractor {
             } else {
                 String[] fileNames = retrieveFilesWithFolder.getKey();
                 folderToScan = retrieveFilesWithFolder.getValue();
+                if (curLevel == 0 && archivesToExtract != null) {
+                    fileNames = Arrays.stream(fileNames).filter(archivesToExtract::contains).toArray(String[]::new);
+                    if (fileNames.length == 0) {
+                        break;
+                    }
+                }
 
                 Pair<String, Collection<String>> filesFound = new Pair<>(folderToScan, Arrays.stream(fileNames).collect(Collectors.toList()));
-                Map<String, String> foundFiles;
                 if (fastUnpack) {
-                    foundFiles = handleArchiveFilesFast(folderToExtract, filesFound);
-                } else {
-                    foundFiles = handleArchiveFiles(folderToExtract, filesFound);
+                    // the nested archives of all the depth levels are extracted by the scheduler
+                    extractArchivesFast(filesFound, archiveExtractionDepth);
+                    allFiles.put(String.valueOf(curLevel), Collections.emptyMap());
+                    break;
                 }
-                allFiles.put(String.valueOf(curLevel), foundFiles);
+                allFiles.put(String.valueOf(curLevel), handleArchiveFiles(folderToExtract, filesFound));
             }
         }
         if (!allFiles.isEmpty()) {
@@ -225,27 +252,40 @@ public class ArchiveExtractor {
     // extract image layers
     public void extractDockerImageLayers(File imageTarFile, File imageExtractionDir, Boolean deleteTarFiles) {
         FilesScanner filesScanner = new FilesScanner();
+        boolean success = extractDockerImage(imageTarFile, imageExtractionDir, deleteTarFiles);
+        if (success) {
+            String[] fileNames = filesScanner.getDirectoryContent(imageExtractionDir.getAbsolutePath(), new String[]{LAYER_TAR}, new String[]{}, true, false);
+            for (String filename : fileNames) {
+                File layerToExtract = new File(imageExtractionDir + File.separator + filename);
+                extractDockerImageLayers(layerToExtract, layerToExtract.getParentFile(), deleteTarFiles);
+            }
+        } else {
+            logger.warn("Was not able to extract {} (docker image TAR file)", imageTarFile.getName());
+        }
+    }
+
+    /**
+     * Extracts a docker image TAR file, or a single layer TAR file, without extracting the layers it contains.
+     *
+     * @param imageTarFile       the TAR file
+     * @param imageExtractionDir the directory to extract to
+     * @param deleteTarFile      whether to delete the TAR file once extracted
+     * @return true if the file was extracted
+     */
+    public boolean extractDockerImage(File imageTarFile, File imageExtractionDir, boolean deleteTarFile) {
         boolean success = false;
         // docker layers are saved as TAR file (we save it as TAR)
         if (imageTarFile.getName().endsWith(TAR_SUFFIX)) {
             success = unTar(imageTarFile.getName().toLowerCase(), imageExtractionDir.getAbsolutePath(), imageTarFile.getPath());
             boolean deleted = false;
-            if (deleteTarFiles) {
+            if (deleteTarFile) {
                 deleted = imageTarFile.delete();
             }
             if (!deleted) {
                 logger.warn("Was not able to delete {} (docker image TAR file)", imageTarFile.getName());
             }
         }
-        if (success) {
-            String[] fileNames = filesScanner.getDirectoryContent(imageExtractionDir.getAbsolutePath(), new String[]{LAYER_TAR}, new String[]{}, true, false);
-            for (String filename : fileNames) {
-                File layerToExtract = new File(imageExtractionDir + File.separator + filename);
-                extractDockerImageLayers(layerToExtract, layerToExtract.getParentFile(), deleteTarFiles);
-            }
-        } else {
-            logger.warn("Was not able to extract {} (docker image TAR file)", imageTarFile.getName());
-        }
+        return success;
     }
 
     private String getDepthFolder(int depth) {
@@ -254,6 +294,14 @@ public class ArchiveExtractor {
 
     /* --- Private methods --- */
 
+    String[] getArchiveIncludesPattern() {
+        return archiveIncludesPattern;
+    }
+
+    String[] getArchiveExcludesPattern() {
+        return archiveExcludesPattern;
+    }
+
     private String[] createArchivesArray() {
         Collection<String> archiveExtensions = new ArrayList<>();
         archiveExtensions.addAll(ZIP_EXTENSIONS);
@@ -268,7 +316,7 @@ public class ArchiveExtractor {
         return archiveIncludesPattern;
     }
 
-    private Pair<String[], String> getSearchedFileNames(String fileOrFolderToScan) {
+    Pair<String[], String> getSearchedFileNames(String fileOrFolderToScan) {
         String[] foundFiles = null;
         File file = new File(fileOrFolderToScan);
 
@@ -310,48 +358,60 @@ public class ArchiveExtractor {
         return founded;
     }
 
-    private Map<String, String> handleArchiveFilesFast(String baseFolderToExtract, Pair<String, Collection<String>> fileNames) {
-        Collection<Pair> dataToUnpack = fileNames.getValue().stream().map(fileName -> {
-            String archivePath = Paths.get(fileNames.getKey(), fileName).toString();
-            String unpackFolder = Paths.get(baseFolderToExtract, FilenameUtils.removeExtension(fileName)).toString();
-            return new Pair(archivePath, unpackFolder);
-        }).collect(Collectors.toList());
-        return processCollections(dataToUnpack);
+    /**
+     * Extracts the archives on the shared scheduler, the archives found in an extracted archive are extracted right away
+     * instead of waiting for the whole depth level to be extracted.
+     * The extracted files end up in the same depth folders as with the level by level extraction.
+     */
+    private void extractArchivesFast(Pair<String, Collection<String>> fileNames, int archiveExtractionDepth) {
+        ArchiveExtractionScheduler scheduler = getScheduler();
+        for (String fileName : fileNames.getValue()) {
+            submitExtraction(scheduler, Paths.get(fileNames.getKey(), fileName).toString(), FilenameUtils.removeExtension(fileName),
+                    0, archiveExtractionDepth);
+        }
+        scheduler.awaitCompletion();
     }
 
-    public Map<String, String> processCollections(Collection<Pair> unitsOfWork) {
-        int numberOfThreads = Runtime.getRuntime().availableProcessors();
-        ExecutorService executorService = Executors.newFixedThreadPool(numberOfThreads);
-        List<Future<Pair>> handles = new ArrayList<>();
-
-        List<Callable<Pair>> callableList = new ArrayList<>();
-        unitsOfWork.stream().forEach(unitOfWork -> callableList.add(() -> getUnpackedResult(unitOfWork)));
+    private void submitExtraction(ArchiveExtractionScheduler scheduler, String archivePath, String relativeUnpackFolder,
+                                  int level, int archiveExtractionDepth) {
+        String unpackFolder = Paths.get(getDepthFolder(level), relativeUnpackFolder).toString();
+        scheduler.submit(archivePath, () -> {
+            getUnpackedResult(new Pair<>(archivePath, unpackFolder));
+            if (level + 1 < archiveExtractionDepth && new File(unpackFolder).isDirectory()) {
+                // the patterns are matched against the path in the depth folder, as when the whole depth folder is scanned
+                FilesScanner filesScanner = new FilesScanner();
+                for (String fileName : filesScanner.getDirectoryContent(unpackFolder, ALL_FILES_PATTERN, new String[0], false, false)) {
+                    String relativePath = Paths.get(relativeUnpackFolder, fileName).toString();
+                    if (isArchive(relativePath)) {
+                        submitExtraction(scheduler, Paths.get(unpackFolder, fileName).toString(),
+                                FilenameUtils.removeExtension(relativePath), level + 1, archiveExtractionDepth);
+                    }
+                }
+            }
+        });
+    }
 
-        for (Callable<Pair> callable : callableList) {
-            Future<Pair> handle = executorService.submit(callable);
-            handles.add(handle);
-        }
+    private boolean isArchive(String relativePath) {
+        TokenizedPath path = new TokenizedPath(relativePath);
+        return Arrays.stream(archiveIncludes).anyMatch(pattern -> pattern.matchPath(path, false))
+                && Arrays.stream(archiveExcludes).noneMatch(pattern -> pattern.matchPath(path, false));
+    }
 
-        Map<String, String> results = new HashMap<>();
-        for (Future<Pair> h : handles) {
-            try {
-                Pair<String, String> dataToUnpack = h.get();
-                results.put(dataToUnpack.getKey(), dataToUnpack.getValue());
-            } catch (InterruptedException e) {
-                logger.warn("Error: {}", e.getMessage());
-            } catch (ExecutionException e) {
-                logger.warn("Error: {}", e.getMessage());
-            }
+    private synchronized ArchiveExtractionScheduler getScheduler() {
+        if (scheduler == null) {
+            scheduler = new ArchiveExtractionScheduler(Runtime.getRuntime().availableProcessors(), ScanWorkspace.current().getRoot());
         }
-
-        executorService.shutdownNow();
-        return results;
+        return scheduler;
     }
 
     private Pair<String, String> getUnpackedResult(Pair<String, String> dataToUnpack) {
         boolean foundArchive = false;
         String innerDir = dataToUnpack.getValue();
         String fileKey = dataToUnpack.getKey();
+        if (ScanWorkspace.current().isQuotaExceeded()) {
+            logger.debug("Skipping {}, the temp folders quota of the scan is exceeded", fileKey);
+            return null;
+        }
         String lowerCaseFileName = fileKey.toLowerCase();
 
         if (lowerCaseFileName.matches(ZIP_EXTENSION_PATTERN)) {
@@ -0,0 +1,364 @@
+/**
+ * Copyright (C) 2014 WhiteSource Ltd.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.whitesource.agent.archive;
+
+import org.apache.commons.compress.archivers.ArchiveEntry;
+import org.apache.commons.compress.archivers.ArchiveInputStream;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.compress.archivers.zip.ZipArchiveInputStream;
+import org.apache.commons.compress.compressors.bzip2.BZip2CompressorInputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorInputStream;
+import org.apache.commons.compress.compressors.xz.XZCompressorInputStream;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.tools.ant.types.selectors.TokenizedPath;
+import org.apache.tools.ant.types.selectors.TokenizedPattern;
+import org.slf4j.Logger;
+import org.whitesource.agent.Constants;
+import org.whitesource.agent.DependencyInfoFactory;
+import org.whitesource.agent.ScanWorkspace;
+import org.whitesource.agent.TempFolders;
+import org.whitesource.agent.api.model.DependencyInfo;
+import org.whitesource.agent.utils.LoggerFactory;
+import org.whitesource.agent.utils.Pair;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+
+/**
+ * Scans archives without extracting them to disk.
+ * <p>
+ * The entries of every archive are read once through commons-compress input streams: entries matching the includes are
+ * hashed on the fly and nested archives are read recursively from memory, up to the archive extraction depth.
+ * The reported system paths are the same as the ones of the extracted files after {@link ArchiveExtractor}.
+ * <p>
+ * Archives that cannot be streamed (rpm, rar), that cannot be read as a stream, or that contain files a dependency
+ * resolver has to run on are reported back so they can be extracted to disk as usual.
+ */
+public class ArchiveStreamScanner {
+
+    /* --- Static members --- */
+
+    private static final Logger logger = LoggerFactory.getLogger(ArchiveStreamScanner.class);
+
+    // nested archives and entries of unknown size up to this size are kept in memory, bigger ones are spilled to a temp file
+    private static final int MAX_IN_MEMORY_ENTRY_SIZE = 32 * 1024 * 1024;
+    private static final String ZIP_ENCODING = "UTF8";
+    private static final String ALL_PATTERN = "**";
+    private static final String SPILL_FILE_PREFIX = "entry";
+    private static final List<String> HINTS_EXTENSIONS = Arrays.asList(Constants.DLL, Constants.EXE);
+
+    /* --- Members --- */
+
+    private final ArchiveExtractor archiveExtractor;
+    private final DependencyInfoFactory dependencyInfoFactory;
+    private final int archiveExtractionDepth;
+    private final TokenizedPattern[] archiveIncludes;
+    private final TokenizedPattern[] archiveExcludes;
+    private final TokenizedPattern[] includes;
+    private final TokenizedPattern[] excludes;
+    private final TokenizedPattern[] materializeIncludes;
+    private final boolean globCaseSensitive;
+    private final boolean calculateHints;
+    private final List<StreamedDependency> streamedDependencies;
+
+    /* --- Constructors --- */
+
+    /**
+     * @param archiveExtractor       the extractor of the archives that cannot be streamed, defines the archive includes and excludes
+     * @param dependencyInfoFactory  the factory hashing the entries
+     * @param archiveExtractionDepth the depth of nested archives to read
+     * @param includes               the files to report
+     * @param excludes               the files not to report
+     * @param globCaseSensitive      whether the includes and excludes are case sensitive
+     * @param materializeIncludes    files that require the archive to be extracted, the manifest files of the dependency resolvers
+     * @param calculateHints         whether hints are calculated, they are read from files so dll and exe entries require extraction
+     */
+    public ArchiveStreamScanner(ArchiveExtractor archiveExtractor, DependencyInfoFactory dependencyInfoFactory, int archiveExtractionDepth,
+                                String[] includes, String[] excludes, boolean globCaseSensitive, String[] materializeIncludes, boolean calculateHints) {
+        this.archiveExtractor = archiveExtractor;
+        this.dependencyInfoFactory = dependencyInfoFactory;
+        this.archiveExtractionDepth = archiveExtractionDepth;
+        this.archiveIncludes = tokenize(archiveExtractor.getArchiveIncludesPattern());
+        this.archiveExcludes = tokenize(archiveExtractor.getArchiveExcludesPattern());
+        this.includes = tokenize(includes);
+        this.excludes = tokenize(excludes);
+        this.materializeIncludes = tokenize(materializeIncludes);
+        this.globCaseSensitive = globCaseSensitive;
+        this.calculateHints = calculateHints;
+        this.streamedDependencies = new ArrayList<>();
+    }
+
+    /* --- Public methods --- */
+
+    /**
+     * Reads all the archives of a base directory and keeps the dependencies found in the ones that do not need extraction.
+     *
+     * @param scannerBaseDir the directory, or single archive, to scan
+     * @return the paths, relative to the base directory, of the archives that have to be extracted to disk
+     */
+    public Set<String> scanArchives(String scannerBaseDir) {
+        Set<String> archivesToExtract = new LinkedHashSet<>();
+        Pair<String[], String> archives = archiveExtractor.getSearchedFileNames(scannerBaseDir);
+        if (archives == null) {
+            return archivesToExtract;
+        }
+        // the base directory name is part of the paths the includes and excludes are matched against, as for extracted archives
+        String baseName = new File(scannerBaseDir).getName();
+        for (String archiveName : archives.getKey()) {
+            File archiveFile = new File(archives.getValue(), archiveName);
+            String systemPath = scannerBaseDir + File.separator + FilenameUtils.removeExtension(archiveName);
+            String matchPath = baseName + File.separator + FilenameUtils.removeExtension(archiveName);
+            List<StreamedDependency> dependencies = new ArrayList<>();
+            boolean streamed;
+            long startTime = System.currentTimeMillis();
+            try (InputStream inputStream = new BufferedInputStream(new FileInputStream(archiveFile))) {
+                streamed = scanArchive(inputStream, archiveFile.getName(), systemPath, matchPath, 0, dependencies);
+            } catch (IOException | RuntimeException e) {
+                logger.debug("Failed to stream archive {}, it will be extracted: {}", archiveFile.getPath(), e.getMessage());
+                streamed = false;
+            }
+            if (streamed) {
+                logger.debug("Streamed archive {} in {} ms, {} files found", archiveFile.getPath(), System.currentTimeMillis() - startTime, dependencies.size());
+                streamedDependencies.addAll(dependencies);
+            } else {
+                archivesToExtract.add(archiveName);
+            }
+        }
+        return archivesToExtract;
+    }
+
+    /**
+     * @param finalExcludes the excludes of the scan after dependency resolution, resolvers may exclude more files
+     * @return the dependencies found in the streamed archives which are not excluded
+     */
+    public Collection<DependencyInfo> getDependencies(String[] finalExcludes) {
+        TokenizedPattern[] excludePatterns = tokenize(finalExcludes);
+        Collection<DependencyInfo> dependencies = new ArrayList<>();
+        for (StreamedDependency streamedDependency : streamedDependencies) {
+            if (!matches(excludePatterns, streamedDependency.matchPath)) {
+                dependencies.add(streamedDependency.dependencyInfo);
+            }
+        }
+        return dependencies;
+    }
+
+    /* --- Private methods --- */
+
+    // returns false if the archive has to be extracted to disk
+    private boolean scanArchive(InputStream inputStream, String archiveName, String systemPath, String matchPath, int depth,
+                                List<StreamedDependency> dependencies) throws IOException {
+        String lowerCaseName = archiveName.toLowerCase();
+        boolean gem = lowerCaseName.matches(ArchiveExtractor.GEM_EXTENSION_PATTERN);
+        try (ArchiveInputStream archiveInputStream = openArchive(new CloseShieldInputStream(inputStream), lowerCaseName)) {
+            if (archiveInputStream == null) {
+                logger.debug("Archive {} cannot be streamed", archiveName);
+                return false;
+            }
+            ArchiveEntry entry;
+            while ((entry = archiveInputStream.getNextEntry()) != null) {
+                if (entry.isDirectory()) {
+                    continue;
+                }
+                if (!archiveInputStream.canReadEntryData(entry)) {
+                    logger.debug("Entry {} of archive {} cannot be streamed, the archive will be extracted", entry.getName(), archiveName);
+                    return false;
+                }
+                String entryName = entry.getName().replace('\\', '/');
+                String entryPath = entryName.replace('/', File.separatorChar);
+                String entryMatchPath = matchPath + File.separator + entryPath;
+                if (matches(materializeIncludes, entryMatchPath) || (calculateHints && isHintsFile(entryName))) {
+                    logger.debug("Archive {} contains {}, it will be extracted", archiveName, entryName);
+                    return false;
+                }
+
+                String fileName = FilenameUtils.getName(entryName);
+                boolean included = matches(includes, entryMatchPath) && !matches(excludes, entryMatchPath);
+                // the data of a gem is always read, as the extractor unpacks it together with the gem
+                boolean nestedGemData = gem && fileName.equals(ArchiveExtractor.RUBY_DATA_FILE);
+                boolean nestedArchive = nestedGemData || (depth + 1 < archiveExtractionDepth
+                        && matches(archiveIncludes, entryPath, false) && !matches(archiveExcludes, entryPath, false));
+                if (nestedArchive && isExtractedOnly(fileName)) {
+                    logger.debug("Archive {} contains the archive {} which cannot be streamed, it will be extracted", archiveName, entryName);
+                    return false;
+                }
+                if (!included && !nestedArchive) {
+                    continue;
+                }
+
+                String entrySystemPath = systemPath + File.separator + entryPath;
+                if (!nestedArchive && entry.getSize() >= 0) {
+                    // the common case, the entry is hashed while it is read
+                    addDependency(dependencies, dependencyInfoFactory.createDependencyInfo(archiveInputStream, fileName, entry.getSize(),
+                            entrySystemPath), entryMatchPath);
+                    continue;
+                }
+
+                EntryContent content = EntryContent.read(archiveInputStream);
+                try {
+                    if (included) {
+                        try (InputStream entryStream = content.openStream()) {
+                            addDependency(dependencies, dependencyInfoFactory.createDependencyInfo(entryStream, fileName, content.size,
+                                    entrySystemPath), entryMatchPath);
+                        }
+                    }
+                    if (nestedArchive) {
+                        String nestedSystemPath = nestedGemData ? entrySystemPath : systemPath + File.separator + FilenameUtils.removeExtension(entryPath);
+                        String nestedMatchPath = nestedGemData ? entryMatchPath : matchPath + File.separator + FilenameUtils.removeExtension(entryPath);
+                        try (InputStream entryStream = content.openStream()) {
+                            if (!scanArchive(entryStream, fileName, nestedSystemPath, nestedMatchPath, nestedGemData ? depth : depth + 1, dependencies)) {
+                                return false;
+                            }
+                        }
+                    }
+                } finally {
+                    content.delete();
+                }
+            }
+        }
+        return true;
+    }
+
+    private ArchiveInputStream openArchive(InputStream inputStream, String lowerCaseName) throws IOException {
+        if (lowerCaseName.matches(ArchiveExtractor.ZIP_EXTENSION_PATTERN)) {
+            return new ZipArchiveInputStream(inputStream, ZIP_ENCODING, true, true);
+        } else if (lowerCaseName.matches(ArchiveExtractor.GEM_EXTENSION_PATTERN)) {
+            return new TarArchiveInputStream(inputStream);
+        } else if (lowerCaseName.endsWith(ArchiveExtractor.TAR_GZ_SUFFIX) || lowerCaseName.endsWith(ArchiveExtractor.TGZ_SUFFIX)) {
+            return new TarArchiveInputStream(new GzipCompressorInputStream(inputStream));
+        } else if (lowerCaseName.endsWith(ArchiveExtractor.TAR_BZ2_SUFFIX)) {
+            return new TarArchiveInputStream(new BZip2CompressorInputStream(inputStream));
+        } else if (lowerCaseName.endsWith(ArchiveExtractor.XZ_SUFFIX)) {
+            return new TarArchiveInputStream(new XZCompressorInputStream(inputStream));
+        } else if (lowerCaseName.endsWith(ArchiveExtractor.TAR_SUFFIX)) {
+            return new TarArchiveInputStream(inputStream);
+        }
+        return null;
+    }
+
+    private boolean isExtractedOnly(String fileName) {
+        String lowerCaseName = fileName.toLowerCase();
+        return lowerCaseName.matches(ArchiveExtractor.RPM_EXTENSION_PATTERN) || lowerCaseName.matches(ArchiveExtractor.RAR_EXTENSION_PATTERN);
+    }
+
+    private boolean isHintsFile(String entryName) {
+        return HINTS_EXTENSIONS.contains(FilenameUtils.getExtension(entryName).toLowerCase());
+    }
+
+    private void addDependency(List<StreamedDependency> dependencies, DependencyInfo dependencyInfo, String matchPath) {
+        if (dependencyInfo != null) {
+            dependencies.add(new StreamedDependency(dependencyInfo, matchPath));
+        }
+    }
+
+    private boolean matches(TokenizedPattern[] patterns, String path) {
+        return matches(patterns, path, globCaseSensitive);
+    }
+
+    // archives are looked for case insensitively, as the extractor does
+    private boolean matches(TokenizedPattern[] patterns, String path, boolean caseSensitive) {
+        TokenizedPath tokenizedPath = new TokenizedPath(path);
+        for (TokenizedPattern pattern : patterns) {
+            if (pattern.matchPath(tokenizedPath, caseSensitive)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // normalized the same way DirectoryScanner normalizes its patterns
+    public static TokenizedPattern[] tokenize(String[] patterns) {
+        if (patterns == null) {
+            return new TokenizedPattern[0];
+        }
+        List<TokenizedPattern> tokenized = new ArrayList<>();
+        for (String pattern : patterns) {
+            if (pattern == null || pattern.isEmpty()) {
+                continue;
+            }
+            pattern = pattern.replace('/', File.separatorChar).replace('\\', File.separatorChar);
+            if (pattern.endsWith(File.separator)) {
+                pattern += ALL_PATTERN;
+            }
+            tokenized.add(new TokenizedPattern(pattern));
+        }
+        return tokenized.toArray(new TokenizedPattern[0]);
+    }
+
+    /* --- Nested classes --- */
+
+    private static class StreamedDependency {
+
+        private final DependencyInfo dependencyInfo;
+        private final String matchPath;
+
+        private StreamedDependency(DependencyInfo dependencyInfo, String matchPath) {
+            this.dependencyInfo = dependencyInfo;
+            this.matchPath = matchPath;
+        }
+    }
+
+    // the content of an entry that is read more than once, in memory or in a temp file if it is too big
+    private static class EntryContent {
+
+        private final byte[] bytes;
+        private final Path file;
+        private final long size;
+
+        private EntryContent(byte[] bytes, Path file, long size) {
+            this.bytes = bytes;
+            this.file = file;
+            this.size = size;
+        }
+
+        private static EntryContent read(InputStream inputStream) throws IOException {
+            ByteArrayOutputStream buffer = new ByteArrayOutputStream();
+            long read = IOUtils.copyLarge(inputStream, buffer, 0, MAX_IN_MEMORY_ENTRY_SIZE + 1);
+            if (read <= MAX_IN_MEMORY_ENTRY_SIZE) {
+                return new EntryContent(buffer.toByteArray(), null, read);
+            }
+            Path tempFolder = Paths.get(ScanWorkspace.current().getFolder(TempFolders.UNIQUE_WHITESOURCE_ARCHIVE_EXTRACTOR_TEMP_FOLDER));
+            Files.createDirectories(tempFolder);
+            Path file = Files.createTempFile(tempFolder, SPILL_FILE_PREFIX, null);
+            try (OutputStream outputStream = new BufferedOutputStream(Files.newOutputStream(file))) {
+                buffer.writeTo(outputStream);
+                long size = read + IOUtils.copyLarge(inputStream, outputStream);
+                return new EntryContent(null, file, size);
+            } catch (IOException e) {
+                Files.deleteIfExists(file);
+                throw e;
+            }
+        }
+
+        private InputStream openStream() throws IOException {
+            return bytes != null ? new ByteArrayInputStream(bytes) : new BufferedInputStream(Files.newInputStream(file));
+        }
+
+        private void delete() {
+            if (file != null) {
+                try {
+                    Files.deleteIfExists(file);
+                } catch (IOException e) {
+                    logger.debug("Failed to delete {}: {}", file, e.getMessage());
+                }
+            }
+        }
+    }
+}
@@ -78,6 +78,14 @@ public abstract class AbstractDependencyResolver {
         return true;
     }
 
+    /**
+     * @return the maximum number of top folders this resolver may resolve at the same time when dependencies are resolved
+     * concurrently, resolvers that run a package manager sharing a cache or keep state between folders must return 1
+     */
+    protected int getMaxConcurrency() {
+        return 1;
+    }
+
     public abstract Collection<String> getSourceFileExtensions();
 
     /* --- Protected methods --- */
@@ -35,12 +35,14 @@ import org.whitesource.agent.dependency.resolver.php.PhpDependencyResolver;
 import org.whitesource.agent.dependency.resolver.python.PythonDependencyResolver;
 import org.whitesource.agent.dependency.resolver.ruby.RubyDependencyResolver;
 import org.whitesource.agent.dependency.resolver.sbt.SbtDependencyResolver;
+import org.whitesource.agent.utils.FileIndex;
 import org.whitesource.agent.utils.FilesScanner;
 import org.whitesource.agent.utils.LoggerFactory;
 import org.whitesource.fs.configuration.ResolverConfiguration;
 
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * Holds and initiates all {@link AbstractDependencyResolver}s.
@@ -56,6 +58,7 @@ public class DependencyResolutionService {
     private final FilesScanner fileScanner;
     private final Collection<AbstractDependencyResolver> dependencyResolvers;
     private final boolean ignoreSourceFiles;
+    private final int threads;
 
     private boolean separateProjects;
     private boolean mavenAggregateModules;
@@ -78,6 +81,8 @@ public class DependencyResolutionService {
         final boolean npmIgnoreNpmLsErrors = config.getNpmIgnoreNpmLsErrors();
         final String npmAccessToken = config.getNpmAccessToken();
         final boolean npmYarnProject = config.getNpmYarnProject();
+        final boolean npmStreamLsJson = config.isNpmStreamLsJson();
+        final boolean npmResolveFromLockFile = config.isNpmResolveFromLockFile();
         final boolean npmIgnoreSourceFiles = config.isNpmIgnoreSourceFiles();
 
         final boolean bowerResolveDependencies = config.isBowerResolveDependencies();
@@ -98,6 +103,7 @@ public class DependencyResolutionService {
         final boolean mavenIgnoreSourceFiles = config.isMavenIgnoreSourceFiles();
         final boolean mavenRunPreStep = config.isMavenRunPreStep();
         final boolean mavenIgnoreDependencyTreeErrors = config.isMavenIgnoreDependencyTreeErrors();
+        final boolean mavenInProcessResolution = config.isMavenInProcessResolution();
 
         boolean pythonResolveDependencies = config.isPythonResolveDependencies();
         final String[] pythonRequirementsFileIncludes = config.getPythonRequirementsFileIncludes();
@@ -113,6 +119,7 @@ public class DependencyResolutionService {
         boolean gradleRunPreStep = config.isGradleRunPreStep();
         final String[] gradleIgnoredScopes = config.getGradleIgnoredScopes();
         final String gradleLocalRepositoryPath = config.getGradleLocalRepositoryPath();
+        final boolean gradleSingleInvocation = config.isGradleSingleInvocation();
 
         final boolean paketResolveDependencies = config.isPaketResolveDependencies();
         final String[] paketIgnoredScopes = config.getPaketIgnoredScopes();
@@ -152,12 +159,13 @@ public class DependencyResolutionService {
         final boolean hexIgnoreSourceFiles = config.isHexIgnoreSourceFiles();
 
         ignoreSourceFiles = config.isIgnoreSourceFiles();
+        threads = config.getResolveDependenciesThreads();
 
         fileScanner = new FilesScanner();
         dependencyResolvers = new ArrayList<>();
         if (npmResolveDependencies) {
             dependencyResolvers.add(new NpmDependencyResolver(npmIncludeDevDependencies, npmIgnoreSourceFiles, npmTimeoutDependenciesCollector, npmRunPreStep, npmIgnoreNpmLsErrors,
-                    npmAccessToken, npmYarnProject, npmIgnoreScripts));
+                    npmAccessToken, npmYarnProject, npmIgnoreScripts, npmStreamLsJson, npmResolveFromLockFile));
         }
         if (bowerResolveDependencies) {
             dependencyResolvers.add(new BowerDependencyResolver(npmTimeoutDependenciesCollector, bowerRunPreStep, bowerIgnoreSourceFiles));
@@ -173,7 +181,7 @@ public class DependencyResolutionService {
         }
         if (mavenResolveDependencies) {
             dependencyResolvers.add(new MavenDependencyResolver(mavenAggregateModules, mavenIgnoredScopes, mavenIgnoreSourceFiles, mavenIgnorePomModules, mavenRunPreStep,
-                    mavenIgnoreDependencyTreeErrors));
+                    mavenIgnoreDependencyTreeErrors, mavenInProcessResolution));
             this.mavenAggregateModules = mavenAggregateModules;
         }
         if (pythonResolveDependencies) {
@@ -184,7 +192,7 @@ public class DependencyResolutionService {
 
         if (gradleResolveDependencies) {
             dependencyResolvers.add(new GradleDependencyResolver(config.isGradleRunAssembleCommand(), gradleIgnoreSourceFiles, gradleAggregateModules,
-                    config.getGradlePreferredEnvironment(), gradleIgnoredScopes, gradleLocalRepositoryPath, gradleRunPreStep));
+                    config.getGradlePreferredEnvironment(), gradleIgnoredScopes, gradleLocalRepositoryPath, gradleRunPreStep, gradleSingleInvocation));
             this.gradleAggregateModules = gradleAggregateModules;
         }
 
@@ -206,7 +214,7 @@ public class DependencyResolutionService {
         }
 
         if (htmlResolveDependencies) {
-            dependencyResolvers.add(new HtmlDependencyResolver());
+            dependencyResolvers.add(new HtmlDependencyResolver(config.isHtmlStreamingParse()));
         }
 
         if (sbtResolveDependencies) {
@@ -265,7 +273,16 @@ public class DependencyResolutionService {
     }
 
     public List<ResolutionResult> resolveDependencies(Collection<String> pathsToScan, String[] excludes) {
-        Map<ResolvedFolder, AbstractDependencyResolver> topFolderResolverMap = new HashMap<>();
+        return resolveDependencies(pathsToScan, excludes, null);
+    }
+
+    /**
+     * @param fileIndex index of the scanned folders, all resolvers look for their manifest files in it instead of
+     *                  scanning the folders again, may be null
+     */
+    public List<ResolutionResult> resolveDependencies(Collection<String> pathsToScan, String[] excludes, FileIndex fileIndex) {
+        FilesScanner filesScanner = fileIndex == null ? fileScanner : new FilesScanner(fileIndex);
+        Map<ResolvedFolder, AbstractDependencyResolver> topFolderResolverMap = new LinkedHashMap<>();
         Collection<ResolutionResult> multiModuleResults = new LinkedList<>();
         Collection<ResolutionResult> htmlResults = new LinkedList<>();
 
@@ -277,7 +294,7 @@ public class DependencyResolutionService {
                 combinedExcludes.add(exclude);
             }
             logger.debug("Attempting to find the top folders of {} with pattern {}", pathsToScan, dependencyResolver.getBomPattern());
-            Collection<ResolvedFolder> topFolders = fileScanner.findTopFolders(pathsToScan, dependencyResolver.getBomPattern(), combinedExcludes);
+            Collection<ResolvedFolder> topFolders = filesScanner.findTopFolders(pathsToScan, dependencyResolver.getBomPattern(), combinedExcludes);
             topFolders.forEach(topFolder -> topFolderResolverMap.put(topFolder, dependencyResolver));
         });
         logger.debug("Attempting to reduce dependencies");
@@ -287,37 +304,38 @@ public class DependencyResolutionService {
         logger.debug("Finishing reduce dependencies");
         List<ResolutionResult> resolutionResults = new ArrayList<>();
 
-
-        topFolderResolverMap.forEach((resolvedFolder, dependencyResolver) -> {
-            if (!resolvedFolder.getTopFoldersFound().isEmpty()) {
-                logger.info("Trying to resolve " + dependencyResolver.getDependencyTypeName() + " dependencies");
-            }
-            resolvedFolder.getTopFoldersFound().forEach((topFolder, bomFiles) -> {
-                // don't print folder in case of html resolution
-                if (dependencyResolver.printResolvedFolder()) {
-                    logger.info("topFolder = " + topFolder);
+        // tasks are listed in resolver and top folder order, results are merged in the same order whatever the order they complete in
+        List<ResolverTask> tasks = new ArrayList<>();
+        topFolderResolverMap.forEach((resolvedFolder, dependencyResolver) ->
+                resolvedFolder.getTopFoldersFound().forEach((topFolder, bomFiles) ->
+                        tasks.add(new ResolverTask(resolvedFolder, dependencyResolver, topFolder, bomFiles))));
+        if (threads > 1 && tasks.size() > 1) {
+            resolveConcurrently(tasks);
+        } else {
+            ResolvedFolder lastResolvedFolder = null;
+            for (ResolverTask task : tasks) {
+                if (task.resolvedFolder != lastResolvedFolder) {
+                    logger.info("Trying to resolve " + task.dependencyResolver.getDependencyTypeName() + " dependencies");
+                    lastResolvedFolder = task.resolvedFolder;
                 }
-                logger.debug("topFolder = " + topFolder);
-                ResolutionResult result = null;
-                try {
-                    result = dependencyResolver.resolveDependencies(resolvedFolder.getOriginalScanFolder(), topFolder, bomFiles);
-                } catch (Exception e) {
-                    logger.error(e.getMessage());
-                    logger.debug("{}", e.getStackTrace());
-                }
-                if (result != null) {
-                    resolutionResults.add(result);
+                resolve(task);
+            }
+        }
 
-                    // create lists in order to match htmlResolver dependencies to their original project (Maven/Gradle/Sbt)
-                    if (multiModuleDependencyTypes.contains(dependencyResolver.getDependencyType())) {
-                        multiModuleResults.add(result);
+        for (ResolverTask task : tasks) {
+            ResolutionResult result = task.result;
+            if (result != null) {
+                resolutionResults.add(result);
 
-                    } else if (Constants.HTML.toUpperCase().equals(dependencyResolver.getDependencyTypeName())) {
-                        htmlResults.add(result);
-                    }
+                // create lists in order to match htmlResolver dependencies to their original project (Maven/Gradle/Sbt)
+                if (multiModuleDependencyTypes.contains(task.dependencyResolver.getDependencyType())) {
+                    multiModuleResults.add(result);
+
+                } else if (Constants.HTML.toUpperCase().equals(task.dependencyResolver.getDependencyTypeName())) {
+                    htmlResults.add(result);
                 }
-            });
-        });
+            }
+        }
         // match htmlResolver dependencies to their original project (Maven/Gradle/Sbt)
         findAndSetHtmlProject(multiModuleResults, htmlResults, resolutionResults);
         return resolutionResults;
@@ -364,6 +382,68 @@ public class DependencyResolutionService {
     }
 
     /* --- Private methods --- */
+
+    private void resolveConcurrently(List<ResolverTask> tasks) {
+        // each resolver gets its own queue, drained by as many workers as the resolver allows to run at once
+        Map<AbstractDependencyResolver, Queue<ResolverTask>> resolverQueues = new LinkedHashMap<>();
+        for (ResolverTask task : tasks) {
+            resolverQueues.computeIfAbsent(task.dependencyResolver, resolver -> new ConcurrentLinkedQueue<>()).add(task);
+        }
+        logger.debug("Resolving {} folders of {} resolvers using {} threads", tasks.size(), resolverQueues.size(), threads);
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(threads, tasks.size()));
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (Map.Entry<AbstractDependencyResolver, Queue<ResolverTask>> entry : resolverQueues.entrySet()) {
+                AbstractDependencyResolver dependencyResolver = entry.getKey();
+                Queue<ResolverTask> queue = entry.getValue();
+                logger.info("Trying to resolve " + dependencyResolver.getDependencyTypeName() + " dependencies");
+                int workers = Math.max(1, Math.min(dependencyResolver.getMaxConcurrency(), queue.size()));
+                for (int i = 0; i < workers; i++) {
+                    futures.add(executorService.submit(() -> {
+                        ResolverTask task;
+                        while ((task = queue.poll()) != null) {
+                            resolve(task);
+                        }
+                    }));
+                }
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Dependencies resolution was interrupted");
+        } catch (ExecutionException e) {
+            logger.warn("Failed to resolve dependencies: {}", e.getMessage());
+            logger.debug("Failed to resolve dependencies", e);
+        } finally {
+            executorService.shutdownNow();
+        }
+    }
+
+    private void resolve(ResolverTask task) {
+        AbstractDependencyResolver dependencyResolver = task.dependencyResolver;
+        // don't print folder in case of html resolution
+        if (dependencyResolver.printResolvedFolder()) {
+            logger.info("topFolder = " + task.topFolder);
+        }
+        logger.debug("topFolder = " + task.topFolder);
+        ScanManifest scanManifest = ScanManifest.getInstance();
+        ResolutionResult previousResult = scanManifest.get(dependencyResolver, task.topFolder, task.bomFiles);
+        if (previousResult != null) {
+            logger.debug("Reusing the {} dependencies of {} from the previous scan", dependencyResolver.getDependencyTypeName(), task.topFolder);
+            task.result = previousResult;
+            return;
+        }
+        try {
+            task.result = dependencyResolver.resolveDependencies(task.resolvedFolder.getOriginalScanFolder(), task.topFolder, task.bomFiles);
+            scanManifest.put(dependencyResolver, task.topFolder, task.bomFiles, task.result);
+        } catch (Exception e) {
+            logger.error(e.getMessage());
+            logger.debug("{}", e.getStackTrace());
+        }
+    }
+
     private void reduceDependencies(Map<ResolvedFolder, AbstractDependencyResolver> topFolderResolverMap) {
         //reduce the dependencies and duplicates files
         Set<String> topFolders = new HashSet<>();
@@ -389,4 +469,22 @@ public class DependencyResolutionService {
         boolean result = childFolder.contains(topFolderParent) && !childFolder.equals(topFolderParent);
         return result;
     }
-}
\ No newline at end of file
+
+    /* --- Nested classes --- */
+
+    private static class ResolverTask {
+
+        private final ResolvedFolder resolvedFolder;
+        private final AbstractDependencyResolver dependencyResolver;
+        private final String topFolder;
+        private final Set<String> bomFiles;
+        private volatile ResolutionResult result;
+
+        private ResolverTask(ResolvedFolder resolvedFolder, AbstractDependencyResolver dependencyResolver, String topFolder, Set<String> bomFiles) {
+            this.resolvedFolder = resolvedFolder;
+            this.dependencyResolver = dependencyResolver;
+            this.topFolder = topFolder;
+            this.bomFiles = bomFiles;
+        }
+    }
+}
@@ -0,0 +1,408 @@
+/**
+ * Copyright (C) 2014 WhiteSource Ltd.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.whitesource.agent.dependency.resolver;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.whitesource.agent.ScanWorkspace;
+import org.whitesource.agent.api.model.AgentProjectInfo;
+import org.whitesource.agent.api.model.DependencyInfo;
+import org.whitesource.agent.api.model.DependencyType;
+import org.whitesource.agent.utils.ChecksumCache;
+import org.whitesource.agent.utils.LoggerFactory;
+import org.whitesource.agent.utils.PersistentFile;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+/**
+ * Manifest of the previous scan, used to skip resolvers whose inputs did not change.
+ * <p>
+ * For every top folder a resolver handled, the manifest keeps the SHA-1 of its manifest files (pom.xml, package.json ...)
+ * and of the lock files of the resolver next to them (package-lock.json for npm, Gemfile.lock for ruby ...), together
+ * with the resolution result.
+ * On the next run a top folder whose inputs all have the same checksums reuses the stored result instead of running
+ * the resolver again. The whole manifest is discarded when the resolver configuration changed.
+ * <p>
+ * Without a lock file of its own resolver the result also depends on what the checksums do not cover (parent POMs
+ * outside the folder, the local maven repository, node_modules ...), so such a result is reused for a limited time
+ * only, and not at all when the manifest files or the result refer to SNAPSHOT or version range dependencies.
+ * <p>
+ * Until {@link #initialize(File, String)} is called the manifest is disabled and every top folder is resolved.
+ */
+public class ScanManifest {
+
+    /* --- Static members --- */
+
+    private static final Logger logger = LoggerFactory.getLogger(ScanManifest.class);
+
+    public static final String MANIFEST_FILE_NAME = ".ws-scan-manifest";
+
+    private static final int FORMAT_VERSION = 4;
+    private static final String MISSING_FILE = "";
+    private static final String KEY_SEPARATOR = "|";
+
+    // files that pin the versions resolved by each resolver type, a change in any of them invalidates the folder
+    private static final Map<DependencyType, List<String>> LOCK_FILES = new EnumMap<>(DependencyType.class);
+    // files next to the manifest that change the result without pinning its versions
+    private static final List<String> BUILD_FILES = Arrays.asList("bower.json", "gradle.properties", "settings.gradle");
+    private static final String SNAPSHOT = "SNAPSHOT";
+    // maven version ranges (<version>[1.0,2.0)</version>, 'group:name:[1.0,2.0)') and gradle dynamic versions (1.+, latest.release)
+    private static final Pattern DYNAMIC_VERSION = Pattern.compile("<version>\\s*[\\[(]|[:'\"][\\[(][^\\])'\"\\n]*,|[0-9.]\\+['\"]|latest\\.(release|integration)");
+    private static final long UNPINNED_MAX_AGE = TimeUnit.DAYS.toMillis(1);
+
+    static {
+        LOCK_FILES.put(DependencyType.NPM, Arrays.asList("package-lock.json", "npm-shrinkwrap.json", "yarn.lock"));
+        LOCK_FILES.put(DependencyType.RUBY, Arrays.asList("Gemfile.lock"));
+        LOCK_FILES.put(DependencyType.PHP, Arrays.asList("composer.lock"));
+        LOCK_FILES.put(DependencyType.COCOAPODS, Arrays.asList("Podfile.lock"));
+        LOCK_FILES.put(DependencyType.PYTHON, Arrays.asList("Pipfile.lock"));
+        LOCK_FILES.put(DependencyType.NUGET, Arrays.asList("paket.lock", "packages.lock.json"));
+        LOCK_FILES.put(DependencyType.HEX, Arrays.asList("mix.lock"));
+        LOCK_FILES.put(DependencyType.GO, Arrays.asList("Gopkg.lock", "glide.lock", "go.sum", "vendor.json"));
+    }
+
+
+    /* --- Members --- */
+
+    private final File manifestFile;
+    private final String configurationChecksum;
+    private final long unpinnedMaxAge;
+    private final Gson gson;
+    private final Map<String, JsonElement> previousEntries;
+    private final Map<String, JsonElement> entries;
+    private boolean modified;
+
+    /* --- Constructors --- */
+
+    private ScanManifest(File manifestFile, String configurationChecksum, long unpinnedMaxAge) {
+        this.manifestFile = manifestFile;
+        this.configurationChecksum = configurationChecksum;
+        this.unpinnedMaxAge = unpinnedMaxAge;
+        this.gson = new Gson();
+        this.previousEntries = new HashMap<>();
+        this.entries = new TreeMap<>();
+        this.modified = false;
+    }
+
+    /* --- Static methods --- */
+
+    /**
+     * @return the manifest of the current scan, disabled unless it was initialized
+     */
+    public static ScanManifest getInstance() {
+        return ScanWorkspace.current().getComponent(ScanManifest.class, () -> new ScanManifest(null, null, 0));
+    }
+
+    /**
+     * Enables the manifest and loads the entries persisted by a previous run with the same configuration, if any.
+     *
+     * @param manifestFile  the file the manifest is persisted in
+     * @param configuration the resolver configuration of the run, serialized to a string
+     * @return the enabled manifest
+     */
+    public static ScanManifest initialize(File manifestFile, String configuration) {
+        return initialize(manifestFile, configuration, UNPINNED_MAX_AGE);
+    }
+
+    /**
+     * Disables the manifest, every top folder is resolved and nothing is persisted.
+     *
+     * @return the disabled manifest
+     */
+    public static ScanManifest reset() {
+        ScanManifest manifest = new ScanManifest(null, null, 0);
+        ScanWorkspace.current().setComponent(ScanManifest.class, manifest);
+        return manifest;
+    }
+
+    static ScanManifest initialize(File manifestFile, String configuration, long unpinnedMaxAge) {
+        ScanManifest manifest = new ScanManifest(manifestFile, DigestUtils.sha1Hex(configuration), unpinnedMaxAge);
+        manifest.load();
+        ScanWorkspace.current().setComponent(ScanManifest.class, manifest);
+        return manifest;
+    }
+
+    /* --- Public methods --- */
+
+    public boolean isEnabled() {
+        return manifestFile != null;
+    }
+
+    /**
+     * Returns the result stored for a top folder if none of its inputs changed since it was stored.
+     *
+     * @param dependencyResolver the resolver of the top folder
+     * @param topFolder          the top folder
+     * @param bomFiles           the manifest files found in the top folder
+     * @return a new copy of the stored result, or null if the top folder has to be resolved
+     */
+    public ResolutionResult get(AbstractDependencyResolver dependencyResolver, String topFolder, Set<String> bomFiles) {
+        if (!isEnabled()) {
+            return null;
+        }
+        String key = getKey(dependencyResolver, topFolder);
+        JsonElement element;
+        synchronized (this) {
+            element = previousEntries.get(key);
+        }
+        if (element == null) {
+            return null;
+        }
+        try {
+            ManifestEntry entry = gson.fromJson(element, ManifestEntry.class);
+            if (!entry.inputs.equals(calculateInputs(dependencyResolver, bomFiles))) {
+                logger.debug("The manifest files of {} changed since the previous scan", topFolder);
+                return null;
+            }
+            if (!entry.pinned && System.currentTimeMillis() - entry.storedAt >= unpinnedMaxAge) {
+                logger.debug("The result of {} has no lock file and is older than {} ms", topFolder, unpinnedMaxAge);
+                return null;
+            }
+            synchronized (this) {
+                entries.put(key, element);
+            }
+            return entry.toResolutionResult();
+        } catch (JsonParseException e) {
+            logger.debug("Ignoring the manifest entry of {}: {}", topFolder, e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stores the result of a top folder together with the checksums of its inputs.
+     *
+     * @param dependencyResolver the resolver of the top folder
+     * @param topFolder          the top folder
+     * @param bomFiles           the manifest files found in the top folder
+     * @param result             the result of the resolver
+     */
+    public void put(AbstractDependencyResolver dependencyResolver, String topFolder, Set<String> bomFiles, ResolutionResult result) {
+        if (!isEnabled() || result == null) {
+            return;
+        }
+        boolean pinned = hasLockFile(dependencyResolver, bomFiles);
+        if (!pinned && (hasDynamicVersions(bomFiles) || hasSnapshots(result))) {
+            logger.debug("The result of {} depends on SNAPSHOT or version range dependencies and is not reused", topFolder);
+            return;
+        }
+        // serialized right away, the result is modified later on when html dependencies are matched to their project
+        JsonElement element = gson.toJsonTree(new ManifestEntry(calculateInputs(dependencyResolver, bomFiles), pinned, result));
+        synchronized (this) {
+            entries.put(getKey(dependencyResolver, topFolder), element);
+            modified = true;
+        }
+    }
+
+    /**
+     * Writes the entries used by the current run to disk, entries of top folders that were not scanned are dropped.
+     * The file is replaced atomically so an interrupted run never leaves a corrupted manifest behind.
+     */
+    public synchronized void save() {
+        if (!isEnabled() || (!modified && entries.size() == previousEntries.size())) {
+            return;
+        }
+        try {
+            new PersistentFile(manifestFile, FORMAT_VERSION).write(out -> {
+                Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                gson.toJson(new ManifestFile(configurationChecksum, entries), writer);
+                writer.flush();
+            });
+            modified = false;
+            logger.debug("Saved {} scan manifest entries to {}", entries.size(), manifestFile.getPath());
+        } catch (IOException e) {
+            logger.warn("Failed to save the scan manifest to {}: {}", manifestFile.getPath(), e.getMessage());
+        }
+    }
+
+    /* --- Private methods --- */
+
+    private String getKey(AbstractDependencyResolver dependencyResolver, String topFolder) {
+        // the same resolver type may be registered more than once with different patterns (packages.config, csproj)
+        return dependencyResolver.getDependencyTypeName() + KEY_SEPARATOR + String.join(",", dependencyResolver.getBomPattern())
+                + KEY_SEPARATOR + topFolder;
+    }
+
+    private List<String> getLockFiles(AbstractDependencyResolver dependencyResolver) {
+        DependencyType dependencyType = dependencyResolver.getDependencyType();
+        if (dependencyType == null) {
+            return Collections.emptyList();
+        }
+        return LOCK_FILES.getOrDefault(dependencyType, Collections.emptyList());
+    }
+
+    private Map<String, String> calculateInputs(AbstractDependencyResolver dependencyResolver, Set<String> bomFiles) {
+        List<String> lockFiles = getLockFiles(dependencyResolver);
+        Map<String, String> inputs = new TreeMap<>();
+        for (String bomFile : bomFiles) {
+            File file = new File(bomFile);
+            inputs.put(file.getPath(), checksum(file));
+            File parent = file.getParentFile();
+            if (parent != null) {
+                for (String lockFile : lockFiles) {
+                    File sibling = new File(parent, lockFile);
+                    inputs.putIfAbsent(sibling.getPath(), checksum(sibling));
+                }
+                for (String buildFile : BUILD_FILES) {
+                    File sibling = new File(parent, buildFile);
+                    inputs.putIfAbsent(sibling.getPath(), checksum(sibling));
+                }
+            }
+        }
+        return inputs;
+    }
+
+    private boolean hasLockFile(AbstractDependencyResolver dependencyResolver, Set<String> bomFiles) {
+        List<String> lockFiles = getLockFiles(dependencyResolver);
+        for (String bomFile : bomFiles) {
+            File parent = new File(bomFile).getParentFile();
+            for (String lockFile : lockFiles) {
+                if (parent != null && new File(parent, lockFile).isFile()) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    private boolean hasDynamicVersions(Set<String> bomFiles) {
+        for (String bomFile : bomFiles) {
+            try {
+                String content = new String(Files.readAllBytes(Paths.get(bomFile)), StandardCharsets.UTF_8);
+                if (content.contains(SNAPSHOT) || DYNAMIC_VERSION.matcher(content).find()) {
+                    return true;
+                }
+            } catch (IOException e) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean hasSnapshots(ResolutionResult result) {
+        Deque<DependencyInfo> dependencies = new ArrayDeque<>();
+        for (AgentProjectInfo project : result.getResolvedProjects().keySet()) {
+            dependencies.addAll(project.getDependencies());
+        }
+        while (!dependencies.isEmpty()) {
+            DependencyInfo dependency = dependencies.poll();
+            if (dependency.getVersion() != null && dependency.getVersion().contains(SNAPSHOT)) {
+                return true;
+            }
+            dependencies.addAll(dependency.getChildren());
+        }
+        return false;
+    }
+
+    private String checksum(File file) {
+        if (!file.isFile()) {
+            return MISSING_FILE;
+        }
+        try {
+            return ChecksumCache.getInstance().getSha1(file);
+        } catch (IOException e) {
+            // an unreadable file never matches, so the folder is resolved again
+            return UUID.randomUUID().toString();
+        }
+    }
+
+    private synchronized void load() {
+        if (!manifestFile.isFile()) {
+            return;
+        }
+        try {
+            boolean loaded = new PersistentFile(manifestFile, FORMAT_VERSION).read(in -> {
+                ManifestFile file = gson.fromJson(new InputStreamReader(in, StandardCharsets.UTF_8), ManifestFile.class);
+                if (file == null || !configurationChecksum.equals(file.configuration) || file.entries == null) {
+                    logger.debug("Ignoring scan manifest {} of another configuration", manifestFile.getPath());
+                    return;
+                }
+                previousEntries.putAll(file.entries);
+                logger.debug("Loaded {} scan manifest entries from {}", previousEntries.size(), manifestFile.getPath());
+            });
+            if (!loaded) {
+                logger.debug("Ignoring scan manifest {} of another version", manifestFile.getPath());
+            }
+        } catch (IOException | JsonParseException e) {
+            logger.warn("Failed to load the scan manifest from {}, all folders will be resolved: {}", manifestFile.getPath(), e.getMessage());
+        }
+    }
+
+    /* --- Nested classes --- */
+
+    private static class ManifestFile {
+
+        private String configuration;
+        private Map<String, JsonElement> entries;
+
+        private ManifestFile(String configuration, Map<String, JsonElement> entries) {
+            this.configuration = configuration;
+            this.entries = entries;
+        }
+    }
+
+    private static class ManifestEntry {
+
+        private Map<String, String> inputs;
+        private boolean pinned;
+        private long storedAt;
+        private DependencyType dependencyType;
+        private String topLevelFolder;
+        private List<String> excludes;
+        private List<ManifestProject> projects;
+
+        private ManifestEntry(Map<String, String> inputs, boolean pinned, ResolutionResult result) {
+            this.inputs = inputs;
+            this.pinned = pinned;
+            this.storedAt = System.currentTimeMillis();
+            this.dependencyType = result.getDependencyType();
+            this.topLevelFolder = result.getTopLevelFolder();
+            this.excludes = result.getExcludes() == null ? new ArrayList<>() : new ArrayList<>(result.getExcludes());
+            this.projects = new ArrayList<>();
+            for (Map.Entry<AgentProjectInfo, Path> project : result.getResolvedProjects().entrySet()) {
+                this.projects.add(new ManifestProject(project.getKey(), project.getValue() == null ? null : project.getValue().toString()));
+            }
+        }
+
+        private ResolutionResult toResolutionResult() {
+            Map<AgentProjectInfo, Path> resolvedProjects = new LinkedHashMap<>();
+            for (ManifestProject project : projects) {
+                resolvedProjects.put(project.project, project.path == null ? null : Paths.get(project.path));
+            }
+            return new ResolutionResult(resolvedProjects, excludes, dependencyType, topLevelFolder);
+        }
+    }
+
+    private static class ManifestProject {
+
+        private AgentProjectInfo project;
+        private String path;
+
+        private ManifestProject(AgentProjectInfo project, String path) {
+            this.project = project;
+            this.path = path;
+        }
+    }
+}
@@ -12,6 +12,7 @@ public class DockerImage {
     private String repository;
     private String tag;
     private String id;
+    private long size;
 
     /* --- Constructors --- */
 
@@ -76,4 +77,12 @@ public class DockerImage {
     public void setId(String id) {
         this.id = id;
     }
+
+    public long getSize() {
+        return size;
+    }
+
+    public void setSize(long size) {
+        this.size = size;
+    }
 }
@@ -0,0 +1,160 @@
+/**
+ * Copyright (C) 2014 WhiteSource Ltd.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.whitesource.agent.dependency.resolver.docker;
+
+import org.slf4j.Logger;
+import org.whitesource.agent.utils.LoggerFactory;
+
+import java.io.File;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Bounded pool saving, extracting and scanning docker images, several images are handled at once.
+ * <p>
+ * Images may be submitted while others are handled, for instance as soon as they are pulled from a remote registry.
+ * Before an image is handled, the temp disk space it needs is reserved against the temp disk budget, when it does not
+ * fit the image waits for the running ones to finish. An image always runs when no other one is running, so a full
+ * disk fails the image instead of blocking the scan.
+ */
+class DockerImageScheduler {
+
+    /* --- Static members --- */
+
+    private static final Logger logger = LoggerFactory.getLogger(DockerImageScheduler.class);
+
+    private static final String THREAD_NAME_PREFIX = "docker-image-";
+
+    /* --- Members --- */
+
+    private final ExecutorService executorService;
+    private final File tempFolder;
+    private final long tempDiskBudget;
+    private final Object lock = new Object();
+    private long reservedBytes;
+    private int running;
+    private int pending;
+
+    /* --- Constructors --- */
+
+    /**
+     * @param threads        the number of images handled at once
+     * @param tempFolder     the folder images are saved and extracted to
+     * @param tempDiskBudget the temp disk space all the running images may use, or 0 for the usable space of the temp folder
+     */
+    DockerImageScheduler(int threads, File tempFolder, long tempDiskBudget) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executorService = Executors.newFixedThreadPool(threads, runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.tempFolder = tempFolder;
+        this.tempDiskBudget = tempDiskBudget;
+    }
+
+    /* --- Package methods --- */
+
+    /**
+     * Schedules an image, may be called from any thread.
+     *
+     * @param imageName     the image name, for logging
+     * @param estimatedSize the temp disk space the image needs
+     * @param task          saves, extracts and scans the image
+     */
+    void submit(String imageName, long estimatedSize, Runnable task) {
+        synchronized (lock) {
+            pending++;
+        }
+        try {
+            executorService.execute(() -> run(imageName, estimatedSize, task));
+        } catch (RejectedExecutionException e) {
+            logger.warn("Failed to schedule the scan of image {}: {}", imageName, e.getMessage());
+            done();
+        }
+    }
+
+    /**
+     * Waits until all the submitted images are done and releases the threads.
+     */
+    void shutdown() {
+        synchronized (lock) {
+            while (pending > 0) {
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    logger.warn("Docker images scan was interrupted");
+                    break;
+                }
+            }
+        }
+        executorService.shutdown();
+    }
+
+    /* --- Private methods --- */
+
+    private void run(String imageName, long estimatedSize, Runnable task) {
+        if (!reserve(imageName, estimatedSize)) {
+            done();
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        try {
+            task.run();
+        } catch (RuntimeException e) {
+            logger.warn("Error scanning image {}: {}", imageName, e.getMessage());
+            logger.debug("Error scanning image {}", imageName, e);
+        } finally {
+            logger.debug("Scanned image {} in {} ms", imageName, System.currentTimeMillis() - startTime);
+            synchronized (lock) {
+                reservedBytes -= estimatedSize;
+                running--;
+            }
+            done();
+        }
+    }
+
+    private boolean reserve(String imageName, long estimatedSize) {
+        synchronized (lock) {
+            while (running > 0 && reservedBytes + estimatedSize > getAvailableBytes()) {
+                logger.debug("Waiting for temp disk space to scan image {}", imageName);
+                try {
+                    lock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            reservedBytes += estimatedSize;
+            running++;
+            return true;
+        }
+    }
+
+    // the usable space already accounts for the bytes written by the running images, but not for the ones to come
+    private long getAvailableBytes() {
+        long usableSpace = tempFolder.getUsableSpace();
+        return tempDiskBudget > 0 ? Math.min(tempDiskBudget, usableSpace) : usableSpace;
+    }
+
+    private void done() {
+        synchronized (lock) {
+            pending--;
+            lock.notifyAll();
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/**
+ * Copyright (C) 2014 WhiteSource Ltd.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.whitesource.agent.dependency.resolver.docker;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveInputStream;
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
+import org.apache.commons.io.input.CloseShieldInputStream;
+import org.apache.tools.ant.types.selectors.TokenizedPath;
+import org.apache.tools.ant.types.selectors.TokenizedPattern;
+import org.slf4j.Logger;
+import org.whitesource.agent.DependencyInfoFactory;
+import org.whitesource.agent.api.model.DependencyInfo;
+import org.whitesource.agent.archive.ArchiveStreamScanner;
+import org.whitesource.agent.utils.LoggerFactory;
+import org.whitesource.fs.configuration.AgentConfiguration;
+
+import java.io.*;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Scans a docker image TAR stream, the output of 'docker save', without extracting the image to disk.
+ * <p>
+ * The layer TAR files are read inline as they come: the package manager database files are written to the folder
+ * the layer would have been extracted to, so the package parsers read them as usual, and the other files matching the
+ * includes are hashed while they are read, with the same system paths as after extraction.
+ * Archives found in the layers are hashed but not extracted, and no dependency resolver runs on the image files.
+ */
+class DockerImageStreamScanner {
+
+    /* --- Static members --- */
+
+    private static final Logger logger = LoggerFactory.getLogger(DockerImageStreamScanner.class);
+
+    private static final String WHITEOUT_PREFIX = ".wh.";
+    private static final String CURRENT_FOLDER_PREFIX = "./";
+    private static final int TAR_HEADER_SIZE = 512;
+
+    /* --- Members --- */
+
+    private final DependencyInfoFactory dependencyInfoFactory;
+    private final TokenizedPattern[] includes;
+    private final TokenizedPattern[] excludes;
+    private final TokenizedPattern[] packageDatabaseIncludes;
+    private final boolean globCaseSensitive;
+
+    /* --- Constructors --- */
+
+    /**
+     * @param agentConfiguration      the includes, excludes and hashing configuration of the scan
+     * @param packageDatabaseIncludes the package manager database files to write to disk
+     * @param partialSha1Match        whether partial sha1 matching is used
+     */
+    DockerImageStreamScanner(AgentConfiguration agentConfiguration, String[] packageDatabaseIncludes, boolean partialSha1Match) {
+        this.dependencyInfoFactory = new DependencyInfoFactory(agentConfiguration.getExcludedCopyrights(), partialSha1Match,
+                agentConfiguration.isCalculateHints(), agentConfiguration.isCalculateMd5());
+        this.includes = ArchiveStreamScanner.tokenize(agentConfiguration.getIncludes());
+        this.excludes = ArchiveStreamScanner.tokenize(agentConfiguration.getExcludes());
+        this.packageDatabaseIncludes = ArchiveStreamScanner.tokenize(packageDatabaseIncludes);
+        this.globCaseSensitive = agentConfiguration.getGlobCaseSensitive();
+    }
+
+    /* --- Package methods --- */
+
+    /**
+     * Reads an image TAR stream up to the end of the archive, the stream is not closed.
+     *
+     * @param imageStream        the image TAR stream
+     * @param imageExtractionDir the folder the image would have been extracted to, package manager databases are written to it
+     * @return the files found in the image
+     * @throws IOException if the stream is not a valid image TAR
+     */
+    List<DependencyInfo> scan(InputStream imageStream, File imageExtractionDir) throws IOException {
+        List<DependencyInfo> dependencies = new ArrayList<>();
+        int layers = 0;
+        TarArchiveInputStream imageTar = new TarArchiveInputStream(new CloseShieldInputStream(imageStream));
+        TarArchiveEntry entry;
+        while ((entry = imageTar.getNextTarEntry()) != null) {
+            if (!isRegularFile(entry)) {
+                continue;
+            }
+            File entryFile = getEntryFile(imageExtractionDir, entry.getName());
+            if (entryFile == null) {
+                continue;
+            }
+            InputStream entryStream = new BufferedInputStream(new CloseShieldInputStream(imageTar));
+            if (entry.getName().endsWith(DockerResolver.LAYER_TAR_FILE_NAME) || isTar(entryStream)) {
+                File layerFolder = DockerResolver.getLayerFolder(entryFile);
+                scanLayer(entryStream, layerFolder, imageExtractionDir, dependencies);
+                layers++;
+            } else {
+                // the manifest and the configuration of the image
+                FileUtils.copyInputStreamToFile(entryStream, entryFile);
+            }
+        }
+        logger.debug("Streamed {} layers of {}, {} files found", layers, imageExtractionDir.getName(), dependencies.size());
+        return dependencies;
+    }
+
+    /* --- Private methods --- */
+
+    private void scanLayer(InputStream layerStream, File layerFolder, File imageExtractionDir, List<DependencyInfo> dependencies) throws IOException {
+        TarArchiveInputStream layerTar = new TarArchiveInputStream(layerStream);
+        TarArchiveEntry entry;
+        while ((entry = layerTar.getNextTarEntry()) != null) {
+            String fileName = FilenameUtils.getName(entry.getName());
+            // deleted files of the lower layers, as well as links, have no content
+            if (!isRegularFile(entry) || fileName.startsWith(WHITEOUT_PREFIX)) {
+                continue;
+            }
+            File file = getEntryFile(layerFolder, entry.getName());
+            if (file == null) {
+                continue;
+            }
+            // matched as the files of the extracted image folder are
+            String matchPath = imageExtractionDir.toPath().relativize(file.toPath()).toString();
+            boolean included = matches(includes, matchPath) && !matches(excludes, matchPath);
+            if (matches(packageDatabaseIncludes, matchPath)) {
+                FileUtils.copyInputStreamToFile(new CloseShieldInputStream(layerTar), file);
+                if (included) {
+                    addDependency(dependencies, dependencyInfoFactory.createDependencyInfo(file.getParentFile(), fileName));
+                }
+            } else if (included) {
+                addDependency(dependencies, dependencyInfoFactory.createDependencyInfo(layerTar, fileName, entry.getSize(), file.getPath()));
+            }
+        }
+        // the end of archive records of the layer
+        IOUtils.skip(layerStream, Long.MAX_VALUE);
+    }
+
+    private boolean isRegularFile(TarArchiveEntry entry) {
+        return entry.isFile() && !entry.isSymbolicLink() && !entry.isLink() && !entry.isCharacterDevice()
+                && !entry.isBlockDevice() && !entry.isFIFO();
+    }
+
+    // the layers of images saved by newer docker versions are blobs named after their digest
+    private boolean isTar(InputStream inputStream) throws IOException {
+        byte[] header = new byte[TAR_HEADER_SIZE];
+        inputStream.mark(TAR_HEADER_SIZE);
+        int read = IOUtils.read(inputStream, header);
+        inputStream.reset();
+        return TarArchiveInputStream.matches(header, read);
+    }
+
+    // entries that would be extracted out of the folder are ignored
+    private File getEntryFile(File folder, String entryName) {
+        String name = entryName.startsWith(CURRENT_FOLDER_PREFIX) ? entryName.substring(CURRENT_FOLDER_PREFIX.length()) : entryName;
+        Path folderPath = folder.toPath().normalize();
+        Path entryPath = folderPath.resolve(name.replace('/', File.separatorChar)).normalize();
+        if (!entryPath.startsWith(folderPath) || entryPath.equals(folderPath)) {
+            logger.debug("Ignoring docker image entry {}", entryName);
+            return null;
+        }
+        return entryPath.toFile();
+    }
+
+    private void addDependency(List<DependencyInfo> dependencies, DependencyInfo dependencyInfo) {
+        if (dependencyInfo != null) {
+            dependencies.add(dependencyInfo);
+        }
+    }
+
+    private boolean matches(TokenizedPattern[] patterns, String path) {
+        TokenizedPath tokenizedPath = new TokenizedPath(path);
+        for (TokenizedPattern pattern : patterns) {
+            if (pattern.matchPath(tokenizedPath, globCaseSensitive)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
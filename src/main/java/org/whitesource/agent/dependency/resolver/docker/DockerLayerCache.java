@@ -0,0 +1,213 @@
+/**
+ * Copyright (C) 2014 WhiteSource Ltd.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.whitesource.agent.dependency.resolver.docker;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonElement;
+import com.google.gson.JsonParseException;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.slf4j.Logger;
+import org.whitesource.agent.api.model.DependencyInfo;
+import org.whitesource.agent.utils.LoggerFactory;
+import org.whitesource.agent.utils.PersistentFile;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Scan results of docker image layers keyed by the layer digest, shared by all the images of a run and persisted
+ * between runs, so a layer shared by several images (a common base image) is extracted and scanned only once.
+ * <p>
+ * The system paths of the cached dependencies are relative to the layer folder and are resolved against the folder
+ * the layer of the current image would have been extracted to.
+ * The whole cache is discarded when the configuration changed.
+ */
+public class DockerLayerCache {
+
+    /* --- Static members --- */
+
+    private static final Logger logger = LoggerFactory.getLogger(DockerLayerCache.class);
+
+    public static final String CACHE_FILE_NAME = ".ws-docker-layers.cache";
+    public static final int DEFAULT_MAX_ENTRIES = 2000;
+
+    private static final int FORMAT_VERSION = 2;
+    private static final String LAYER_FOLDER = "${layer}";
+
+    /* --- Members --- */
+
+    private final File cacheFile;
+    private final String configurationChecksum;
+    private final Gson gson;
+    private final LinkedHashMap<String, JsonElement> entries;
+    private boolean modified;
+
+    /* --- Constructors --- */
+
+    /**
+     * @param cacheFile     the file the cache is persisted in
+     * @param configuration the configuration affecting the scan results, serialized to a string
+     */
+    public DockerLayerCache(File cacheFile, String configuration) {
+        this.cacheFile = cacheFile;
+        this.configurationChecksum = DigestUtils.sha1Hex(configuration);
+        this.gson = new Gson();
+        // access ordered, the layers not used for the longest time are evicted first
+        this.entries = new LinkedHashMap<String, JsonElement>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, JsonElement> eldest) {
+                return size() > DEFAULT_MAX_ENTRIES;
+            }
+        };
+        this.modified = false;
+        load();
+    }
+
+    /* --- Public methods --- */
+
+    /**
+     * @param digest      the layer digest
+     * @param layerFolder the folder the layer would be extracted to
+     * @return a new copy of the cached scan results of the layer, or null if the layer was not scanned yet
+     */
+    public synchronized LayerScanResult get(String digest, File layerFolder) {
+        JsonElement element = entries.get(digest);
+        if (element == null) {
+            return null;
+        }
+        try {
+            LayerScanResult result = gson.fromJson(element, LayerScanResult.class);
+            result.replaceSystemPaths(LAYER_FOLDER, layerFolder.getPath());
+            return result;
+        } catch (JsonParseException e) {
+            logger.debug("Ignoring the cached results of layer {}: {}", digest, e.getMessage());
+            entries.remove(digest);
+            return null;
+        }
+    }
+
+    /**
+     * Stores the scan results of a layer.
+     *
+     * @param digest      the layer digest
+     * @param layerFolder the folder the layer was extracted to
+     * @param result      the scan results of the layer
+     */
+    public synchronized void put(String digest, File layerFolder, LayerScanResult result) {
+        result.replaceSystemPaths(layerFolder.getPath(), LAYER_FOLDER);
+        entries.put(digest, gson.toJsonTree(result));
+        result.replaceSystemPaths(LAYER_FOLDER, layerFolder.getPath());
+        modified = true;
+    }
+
+    /**
+     * Writes the cache to disk, replacing the file atomically.
+     */
+    public synchronized void save() {
+        if (!modified) {
+            return;
+        }
+        try {
+            new PersistentFile(cacheFile, FORMAT_VERSION).write(out -> {
+                Writer writer = new OutputStreamWriter(out, StandardCharsets.UTF_8);
+                gson.toJson(new CacheFile(configurationChecksum, new LinkedHashMap<>(entries)), writer);
+                writer.flush();
+            });
+            modified = false;
+            logger.debug("Saved {} docker layers to {}", entries.size(), cacheFile.getPath());
+        } catch (IOException e) {
+            logger.warn("Failed to save the docker layer cache to {}: {}", cacheFile.getPath(), e.getMessage());
+        }
+    }
+
+    /* --- Private methods --- */
+
+    private void load() {
+        if (!cacheFile.isFile()) {
+            return;
+        }
+        try {
+            boolean loaded = new PersistentFile(cacheFile, FORMAT_VERSION).read(in -> {
+                CacheFile file = gson.fromJson(new InputStreamReader(in, StandardCharsets.UTF_8), CacheFile.class);
+                if (file == null || !configurationChecksum.equals(file.configuration) || file.layers == null) {
+                    logger.debug("Ignoring docker layer cache {} of another configuration", cacheFile.getPath());
+                    return;
+                }
+                entries.putAll(file.layers);
+                logger.debug("Loaded {} docker layers from {}", entries.size(), cacheFile.getPath());
+            });
+            if (!loaded) {
+                logger.debug("Ignoring docker layer cache {} of another version", cacheFile.getPath());
+            }
+        } catch (IOException | JsonParseException e) {
+            logger.warn("Failed to load the docker layer cache from {}, all layers will be scanned: {}", cacheFile.getPath(), e.getMessage());
+        }
+    }
+
+    /* --- Nested classes --- */
+
+    /**
+     * The packages found in the package manager databases of a layer and the files found in it.
+     */
+    public static class LayerScanResult {
+
+        private final Map<String, List<DependencyInfo>> packages;
+        private final List<DependencyInfo> files;
+
+        public LayerScanResult() {
+            this.packages = new LinkedHashMap<>();
+            this.files = new ArrayList<>();
+        }
+
+        /**
+         * @return the packages of each package manager database found in the layer
+         */
+        public Map<String, List<DependencyInfo>> getPackages() {
+            return packages;
+        }
+
+        public List<DependencyInfo> getFiles() {
+            return files;
+        }
+
+        private void replaceSystemPaths(String from, String to) {
+            packages.values().forEach(dependencies -> replaceSystemPaths(dependencies, from, to));
+            replaceSystemPaths(files, from, to);
+        }
+
+        private static void replaceSystemPaths(Collection<DependencyInfo> dependencies, String from, String to) {
+            for (DependencyInfo dependency : dependencies) {
+                String systemPath = dependency.getSystemPath();
+                if (systemPath != null && systemPath.startsWith(from)) {
+                    dependency.setSystemPath(to + systemPath.substring(from.length()));
+                }
+                replaceSystemPaths(dependency.getChildren(), from, to);
+            }
+        }
+    }
+
+    private static class CacheFile {
+
+        private String configuration;
+        private Map<String, JsonElement> layers;
+
+        private CacheFile(String configuration, Map<String, JsonElement> layers) {
+            this.configuration = configuration;
+            this.layers = layers;
+        }
+    }
+}
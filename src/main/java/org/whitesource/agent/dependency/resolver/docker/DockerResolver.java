@@ -1,11 +1,17 @@
 package org.whitesource.agent.dependency.resolver.docker;
 
+import com.google.gson.Gson;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
 import org.apache.commons.collections.map.HashedMap;
 import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.FilenameUtils;
+import org.apache.commons.io.IOUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.whitesource.agent.Constants;
 import org.whitesource.agent.FileSystemScanner;
+import org.whitesource.agent.ScanWorkspace;
 import org.whitesource.agent.TempFolders;
 import org.whitesource.agent.api.model.AgentProjectInfo;
 import org.whitesource.agent.api.model.Coordinates;
@@ -13,13 +19,18 @@ import org.whitesource.agent.api.model.DependencyInfo;
 import org.whitesource.agent.archive.ArchiveExtractor;
 import org.whitesource.agent.dependency.resolver.docker.remotedocker.RemoteDockersManager;
 import org.whitesource.agent.hash.FileExtensions;
+import org.whitesource.agent.utils.ChecksumCache;
 import org.whitesource.agent.utils.FilesScanner;
 import org.whitesource.agent.utils.LoggerFactory;
+import org.whitesource.agent.utils.Pair;
 import org.whitesource.fs.FSAConfiguration;
 
 import java.io.*;
+import java.nio.charset.StandardCharsets;
 import java.text.MessageFormat;
 import java.util.*;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -35,8 +46,20 @@ public class DockerResolver {
 
     private static final Logger logger = LoggerFactory.getLogger(DockerResolver.class);
 
-    private static final String TEMP_FOLDER = System.getProperty("java.io.tmpdir") + File.separator + TempFolders.UNIQUE_DOCKER_TEMP_FOLDER;
     private static final String DOCKER_SAVE_IMAGE_COMMAND = "docker save";
+    private static final String DOCKER = "docker";
+    private static final String SAVE = "save";
+    private static final String DOCKER_SAVE_ERROR_FILE_PREFIX = "docker-save";
+    private static final long MEGA_BYTE = 1024 * 1024;
+    // docker lists the image sizes in decimal units
+    private static final int IMAGE_SIZE_UNIT_BASE = 1000;
+    // saved images take their size once as a TAR file and once extracted
+    private static final int IMAGE_EXPANSION_FACTOR = 2;
+    private static final Pattern IMAGE_SIZE_PATTERN = Pattern.compile("([\\d.]+)([kKMGT]?B)");
+    private static final String IMAGE_SIZE_UNITS = "BKMGT";
+    private static final int DOCKER_SAVE_BUFFER_SIZE = 64 * 1024;
+    // the whole output was already read, 'docker save' only has to exit
+    private static final long DOCKER_SAVE_EXIT_TIMEOUT_SECONDS = 60;
     private static final String O_PARAMETER = "-o";
     private static final String REPOSITORY = "REPOSITORY";
     private static final String SPACES_REGEX = "\\s+";
@@ -57,16 +80,35 @@ public class DockerResolver {
     private static final String DEBIAN_LIST_PACKAGES_FILE_AVAILABLE = File.separator + "available";
     private static final String PACKAGE_LOG_TXT = "packageLog.txt";
     private static final boolean PARTIAL_SHA1_MATCH = false;
+    private static final String MANIFEST_JSON = "manifest.json";
+    private static final String MANIFEST_CONFIG = "Config";
+    private static final String MANIFEST_LAYERS = "Layers";
+    private static final String ROOTFS = "rootfs";
+    private static final String DIFF_IDS = "diff_ids";
+    private static final String SHA1_DIGEST_PREFIX = "sha1:";
+    static final String LAYER_TAR_FILE_NAME = "layer.tar";
+    private static final String LAYER_FOLDER_SUFFIX = "_layer";
+    private static final String DEBIAN_PACKAGES = "debian";
+    private static final String DEBIAN_AVAILABLE_PACKAGES = "debianAvailable";
+    private static final String ARCH_LINUX_PACKAGES = "archLinux";
+    private static final String ALPINE_PACKAGES = "alpine";
+    private static final String RPM_PACKAGES = "rpm";
 
     /* --- Members --- */
 
     private FSAConfiguration config;
+    private final String tempFolder;
+    private volatile DockerLayerCache layerCache;
+    private DockerImageScheduler imageScheduler;
+    private final Set<DockerImage> submittedImages = Collections.synchronizedSet(new HashSet<>());
+    private final AtomicInteger imageCounter = new AtomicInteger();
     private static Collection<AgentProjectInfo> projects = new LinkedList<>();
 
     /* --- Constructor --- */
 
     public DockerResolver(FSAConfiguration config) {
         this.config = config;
+        this.tempFolder = ScanWorkspace.current().getFolder(TempFolders.UNIQUE_DOCKER_TEMP_FOLDER);
     }
 
     /* --- Public methods --- */
@@ -83,33 +125,32 @@ public class DockerResolver {
         // Before calling resolveDockerImages() there is a check for isScanDockerImages()
         // If we create RemoteDockersManager outside of resolveDockerImages then we have to check isScanDockerImages()
         RemoteDockersManager remoteDockersManager = new RemoteDockersManager(config.getRemoteDocker());
-        remoteDockersManager.pullRemoteDockerImages();
+        if (config.isDockerLayerCache()) {
+            // created before the images are pulled, they may be scanned while the next ones are pulled
+            // the results of a layer depend on the scan configuration, not on the image
+            Gson gson = new Gson();
+            layerCache = new DockerLayerCache(new File(config.getOffline().getWhiteSourceFolderPath(), DockerLayerCache.CACHE_FILE_NAME),
+                    gson.toJson(config.getAgent()) + gson.toJson(config.getResolver()));
+        }
+        if (config.getDockerScanThreads() > 1) {
+            File imagesFolder = new File(tempFolder);
+            imagesFolder.mkdirs();
+            imageScheduler = new DockerImageScheduler(config.getDockerScanThreads(), imagesFolder, config.getDockerScanMaxTempDiskMB() * MEGA_BYTE);
+        }
+        if (imageScheduler != null && !config.isScanImagesTar()) {
+            // the images are scanned as soon as they are pulled, while the next ones are pulled
+            remoteDockersManager.pullRemoteDockerImages(this::scanPulledImage);
+        } else {
+            remoteDockersManager.pullRemoteDockerImages();
+        }
 
-        String line = null;
-        Collection<DockerImage> dockerImages = new LinkedList<>();
+        Collection<DockerImage> dockerImages;
         Collection<DockerImage> dockerImagesToScan;
-        Process process = null;
         try {
             // docker get list of images, use wait to get the whole list
             boolean isTarImages = config.isScanImagesTar();
             if (!isTarImages) {
-                process = Runtime.getRuntime().exec(DOCKER_IMAGES);
-                InputStream inputStream = process.getInputStream();
-                BufferedReader br = new BufferedReader(new InputStreamReader(inputStream));
-                logger.debug("Docker images list from BufferedReader");
-                while ((line = br.readLine()) != null) {
-                    logger.debug(line);
-                    // read all docker images data, skip the first line
-                    if (!line.startsWith(REPOSITORY)) {
-                        String[] dockerImageString = line.split(SPACES_REGEX);
-                        if (dockerImageString.length > 2) {
-                            dockerImages.add(new DockerImage(dockerImageString[0], dockerImageString[1], dockerImageString[2]));
-                        } else {
-                            logger.info("Docker line content is ignored: {}", line);
-                        }
-                    }
-                }
-                process.waitFor();
+                dockerImages = listDockerImages(DOCKER_IMAGES);
                 if (!dockerImages.isEmpty()) {
                     // filter docker images using includes & excludes parameter
                     dockerImagesToScan = filterDockerImagesToScan(dockerImages, config.getAgent().getDockerIncludes(), config.getAgent().getDockerExcludes());
@@ -117,7 +158,6 @@ public class DockerResolver {
                         saveDockerImages(dockerImagesToScan, projects);
                     }
                 }
-                br.close();
             } else {
                 Collection<File> tarFiles = new HashSet<>();
                 FilenameFilter filenameFilter = new FilenameFilter() {
@@ -150,8 +190,11 @@ public class DockerResolver {
             logger.error("Exception : {}", e.getMessage());
             logger.debug("Resolve Docker Images Exception : {}", e);
         } finally {
-            if (process != null) {
-                process.destroy();
+            if (imageScheduler != null) {
+                imageScheduler.shutdown();
+            }
+            if (layerCache != null) {
+                layerCache.save();
             }
         }
         remoteDockersManager.removePulledRemoteDockerImages();
@@ -160,6 +203,56 @@ public class DockerResolver {
 
     /* --- Private methods --- */
 
+    private Collection<DockerImage> listDockerImages(String command) throws IOException, InterruptedException {
+        Collection<DockerImage> dockerImages = new LinkedList<>();
+        Process process = Runtime.getRuntime().exec(command);
+        try (BufferedReader br = new BufferedReader(new InputStreamReader(process.getInputStream()))) {
+            logger.debug("Docker images list from BufferedReader");
+            String line;
+            while ((line = br.readLine()) != null) {
+                logger.debug(line);
+                // read all docker images data, skip the first line
+                if (!line.startsWith(REPOSITORY)) {
+                    String[] dockerImageString = line.split(SPACES_REGEX);
+                    if (dockerImageString.length > 2) {
+                        DockerImage dockerImage = new DockerImage(dockerImageString[0], dockerImageString[1], dockerImageString[2]);
+                        dockerImage.setSize(parseImageSize(dockerImageString[dockerImageString.length - 1]));
+                        dockerImages.add(dockerImage);
+                    } else {
+                        logger.info("Docker line content is ignored: {}", line);
+                    }
+                }
+            }
+            process.waitFor();
+        } finally {
+            process.destroy();
+        }
+        return dockerImages;
+    }
+
+    // the size column of 'docker images', for instance 72.8MB
+    private long parseImageSize(String size) {
+        Matcher matcher = IMAGE_SIZE_PATTERN.matcher(size);
+        if (!matcher.matches()) {
+            return 0;
+        }
+        int unit = IMAGE_SIZE_UNITS.indexOf(Character.toUpperCase(matcher.group(2).charAt(0)));
+        return (long) (Double.parseDouble(matcher.group(1)) * Math.pow(IMAGE_SIZE_UNIT_BASE, unit));
+    }
+
+    private void scanPulledImage(String imageURL) {
+        try {
+            Collection<DockerImage> pulledImages = filterDockerImagesToScan(listDockerImages(DOCKER_IMAGES + WHITESPACE + imageURL),
+                    config.getAgent().getDockerIncludes(), config.getAgent().getDockerExcludes());
+            saveDockerImages(pulledImages, projects);
+        } catch (IOException e) {
+            logger.warn("Error listing pulled image {}: {}", imageURL, e.getMessage());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.warn("Listing pulled image {} was interrupted", imageURL);
+        }
+    }
+
     /**
      * Filter the images using includes and excludes lists
      */
@@ -217,7 +310,16 @@ public class DockerResolver {
     /**
      * Save docker images and scan files
      */
-    private void saveDockerImages(Collection<DockerImage> dockerImages, Collection<AgentProjectInfo> projects) throws IOException {
+    private void saveDockerImages(Collection<DockerImage> dockerImages, Collection<AgentProjectInfo> projects) {
+        if (imageScheduler != null) {
+            for (DockerImage dockerImage : dockerImages) {
+                // pulled images are scanned once pulled, before all the images are listed
+                if (submittedImages.add(dockerImage)) {
+                    submitDockerImage(dockerImage, projects);
+                }
+            }
+            return;
+        }
         logger.info("Saving {} docker images", dockerImages.size());
         int counter = 1;
         int imagesCount = dockerImages.size();
@@ -229,6 +331,16 @@ public class DockerResolver {
         }
     }
 
+    private void submitDockerImage(DockerImage dockerImage, Collection<AgentProjectInfo> projects) {
+        AgentProjectInfo projectInfo = createProjectInfo(dockerImage, projects);
+        // images of the same repository are scanned at once, each in a folder of its own
+        String imageFolderName = dockerImage.getRepository() + UNDERSCORE + imageCounter.incrementAndGet();
+        long estimatedSize = config.isDockerStreamSave() && layerCache == null ? 0 : dockerImage.getSize() * IMAGE_EXPANSION_FACTOR;
+        logger.info("Scanning image {} {}", dockerImage.getRepository(), dockerImage.getTag());
+        imageScheduler.submit(dockerImage.getRepository() + COLON + dockerImage.getTag(), estimatedSize,
+                () -> scanDockerImage(dockerImage, projectInfo, imageFolderName));
+    }
+
     private void scanTarList (Collection<File> tarFilesName, Collection<AgentProjectInfo> projects) {
         int i=0;
         for (File tarFile:tarFilesName) {
@@ -250,40 +362,70 @@ public class DockerResolver {
                 projectInfo.setCoordinates(new Coordinates(null, DOCKER_NAME_FORMAT.format(DOCKER_NAME_FORMAT_STRING, id,
                         repository, tag), null));
                 projects.add(projectInfo);
-                File imageTarFile = new File(tar);
-                File imageExtractionDir = new File(TEMP_FOLDER, imageTarFile.getName());
-                imageExtractionDir.mkdirs();
-                extractAndBuildImage(imageTarFile, imageExtractionDir, projectInfo, config.deleteTarImages());
-                scanImage(imageExtractionDir, projectInfo);
-                deleteDockerArchiveFiles(null, imageExtractionDir);
+                if (imageScheduler != null) {
+                    imageScheduler.submit(tarFile.getName(), tarFile.length() * IMAGE_EXPANSION_FACTOR, () -> scanTarImage(tarFile, projectInfo));
+                } else {
+                    scanTarImage(tarFile, projectInfo);
+                }
             } else {
                 logger.info("file {} name is not in format 'Hash Name (Tag)'", tar);
             }
         }
     }
 
-    private void manageDockerImage(DockerImage dockerImage, Collection<AgentProjectInfo> projects) throws IOException {
+    private void scanTarImage(File imageTarFile, AgentProjectInfo projectInfo) {
+        File imageExtractionDir = new File(tempFolder, imageTarFile.getName());
+        imageExtractionDir.mkdirs();
+        buildImage(imageTarFile, imageExtractionDir, projectInfo);
+        deleteDockerArchiveFiles(null, imageExtractionDir);
+    }
+
+    private void manageDockerImage(DockerImage dockerImage, Collection<AgentProjectInfo> projects) {
         logger.debug("Saving image {} {}", dockerImage.getRepository(), dockerImage.getTag());
+        scanDockerImage(dockerImage, createProjectInfo(dockerImage, projects), dockerImage.getRepository());
+    }
+
+    private AgentProjectInfo createProjectInfo(DockerImage dockerImage, Collection<AgentProjectInfo> projects) {
         // create agent project info
         AgentProjectInfo projectInfo = new AgentProjectInfo();
         projectInfo.setCoordinates(new Coordinates(null, DOCKER_NAME_FORMAT.format(DOCKER_NAME_FORMAT_STRING, dockerImage.getId(),
                 dockerImage.getRepository(), dockerImage.getTag()), null));
-        projects.add(projectInfo);
+        // images may be submitted from the pulling threads
+        synchronized (projects) {
+            projects.add(projectInfo);
+        }
+        return projectInfo;
+    }
 
-        File imageTarFile = new File(TEMP_FOLDER, dockerImage.getRepository() + TAR_SUFFIX);
-        File imageExtractionDir = new File(TEMP_FOLDER, dockerImage.getRepository());
+    private void scanDockerImage(DockerImage dockerImage, AgentProjectInfo projectInfo, String imageFolderName) {
+        File imageTarFile = new File(tempFolder, imageFolderName + TAR_SUFFIX);
+        File imageExtractionDir = new File(tempFolder, imageFolderName);
         imageExtractionDir.mkdirs();
 
+        // the layer cache needs the layers on disk
+        if (config.isDockerStreamSave() && layerCache == null) {
+            if (streamImage(dockerImage, imageExtractionDir, projectInfo)) {
+                deleteDockerArchiveFiles(null, imageExtractionDir);
+                return;
+            }
+            logger.info("Saving image {} {} to a TAR file", dockerImage.getRepository(), dockerImage.getTag());
+            FileUtils.deleteQuietly(imageExtractionDir);
+            imageExtractionDir.mkdirs();
+        }
+
         boolean saved = saveImage(dockerImage, imageTarFile);
         if (saved) {
-            extractAndBuildImage(imageTarFile, imageExtractionDir, projectInfo, config.deleteTarImages());
-            scanImage(imageExtractionDir, projectInfo);
+            buildImage(imageTarFile, imageExtractionDir, projectInfo);
         }
 
         deleteDockerArchiveFiles(imageTarFile, imageExtractionDir);
     }
 
     private boolean saveImage(DockerImage dockerImage, File imageTarFile) {
+        if (ScanWorkspace.current().isQuotaExceeded()) {
+            logger.warn("Skipping image {} {}, the temp folders quota of the scan is exceeded", dockerImage.getRepository(), dockerImage.getTag());
+            return false;
+        }
         Process process = null;
         try {
             //Save image as tar file
@@ -303,6 +445,206 @@ public class DockerResolver {
         return false;
     }
 
+    /**
+     * Scans the output of 'docker save' while it is written, the image is not saved to a TAR file nor extracted.
+     *
+     * @return false if the image could not be streamed, nothing is added to the project in that case
+     */
+    private boolean streamImage(DockerImage dockerImage, File imageExtractionDir, AgentProjectInfo projectInfo) {
+        Process process = null;
+        File errorFile = null;
+        try {
+            errorFile = File.createTempFile(DOCKER_SAVE_ERROR_FILE_PREFIX, null, new File(tempFolder));
+            process = new ProcessBuilder(DOCKER, SAVE, dockerImage.getId()).redirectError(errorFile).start();
+            DockerImageStreamScanner streamScanner = new DockerImageStreamScanner(config.getAgent(), scanIncludes, PARTIAL_SHA1_MATCH);
+            List<DependencyInfo> files;
+            try (InputStream inputStream = new BufferedInputStream(process.getInputStream(), DOCKER_SAVE_BUFFER_SIZE)) {
+                files = streamScanner.scan(inputStream, imageExtractionDir);
+                // read the rest of the output so docker exits normally
+                IOUtils.skip(inputStream, Long.MAX_VALUE);
+            }
+            if (!process.waitFor(DOCKER_SAVE_EXIT_TIMEOUT_SECONDS, TimeUnit.SECONDS)) {
+                logger.warn("Error streaming image {}, 'docker save' did not exit within {} seconds", dockerImage.getRepository(),
+                        DOCKER_SAVE_EXIT_TIMEOUT_SECONDS);
+                process.destroyForcibly();
+                return false;
+            }
+            int exitValue = process.exitValue();
+            if (exitValue != 0) {
+                logger.warn("Error streaming image {}, 'docker save' exited with {}: {}", dockerImage.getRepository(), exitValue,
+                        FileUtils.readFileToString(errorFile, StandardCharsets.UTF_8).trim());
+                return false;
+            }
+            ArchiveExtractor archiveExtractor = new ArchiveExtractor(config.getAgent().getArchiveIncludes(), config.getAgent().getArchiveExcludes(), config.getAgent().getIncludes());
+            parseImagePackages(imageExtractionDir, projectInfo, archiveExtractor);
+            projectInfo.getDependencies().addAll(files);
+            return true;
+        } catch (IOException e) {
+            logger.warn("Error streaming image {}: {}", dockerImage.getRepository(), e.getMessage());
+            logger.debug("Error streaming image {}", dockerImage.getRepository(), e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            logger.error(e.getMessage());
+        } finally {
+            if (process != null) {
+                process.destroy();
+            }
+            FileUtils.deleteQuietly(errorFile);
+        }
+        return false;
+    }
+
+    private void buildImage(File imageTarFile, File imageExtractionDir, AgentProjectInfo projectInfo) {
+        if (layerCache != null) {
+            scanImageLayers(imageTarFile, imageExtractionDir, projectInfo, config.deleteTarImages());
+        } else {
+            extractAndBuildImage(imageTarFile, imageExtractionDir, projectInfo, config.deleteTarImages());
+            scanImage(imageExtractionDir, projectInfo);
+        }
+    }
+
+    /**
+     * Scans the image layer by layer, the layers found in the layer cache are neither extracted nor scanned again.
+     * The package manager database of an image is the one of its top most layer that contains it.
+     */
+    private void scanImageLayers(File imageTarFile, File imageExtractionDir, AgentProjectInfo projectInfo, boolean deleteTarFiles) {
+        ArchiveExtractor archiveExtractor = new ArchiveExtractor(config.getAgent().getArchiveIncludes(), config.getAgent().getArchiveExcludes(), config.getAgent().getIncludes());
+        if (!archiveExtractor.extractDockerImage(imageTarFile, imageExtractionDir, deleteTarFiles)) {
+            logger.warn("Was not able to extract {} (docker image TAR file)", imageTarFile.getName());
+            return;
+        }
+        Map<String, List<DependencyInfo>> packages = new HashMap<>();
+        List<DependencyInfo> files = new LinkedList<>();
+        List<Pair<String, File>> layers = getImageLayers(imageExtractionDir);
+        int cachedLayers = 0;
+        for (Pair<String, File> layer : layers) {
+            File layerFolder = getLayerFolder(layer.getValue());
+            DockerLayerCache.LayerScanResult result = layerCache.get(layer.getKey(), layerFolder);
+            if (result != null) {
+                cachedLayers++;
+            } else {
+                result = scanLayer(layer.getValue(), layerFolder, archiveExtractor, deleteTarFiles);
+                if (result == null) {
+                    continue;
+                }
+                layerCache.put(layer.getKey(), layerFolder, result);
+                // only the results of the layer are needed from now on
+                FileUtils.deleteQuietly(layerFolder);
+            }
+            packages.putAll(result.getPackages());
+            files.addAll(result.getFiles());
+        }
+        logger.info("Scanned {} layers, {} of them from the layer cache", layers.size(), cachedLayers);
+
+        parseProjectInfo(projectInfo, packages.get(DEBIAN_PACKAGES));
+        parseProjectInfo(projectInfo, packages.get(DEBIAN_AVAILABLE_PACKAGES));
+        // try to find duplicates and clear them
+        Collection<DependencyInfo> debianDependencyInfos = mergeDependencyInfos(projectInfo);
+        if (!debianDependencyInfos.isEmpty()) {
+            projectInfo.getDependencies().clear();
+            projectInfo.getDependencies().addAll(debianDependencyInfos);
+        }
+        logger.info("Found {} Debian Packages", debianDependencyInfos.size());
+        logger.info("Found {} Arch linux Packages", parseProjectInfo(projectInfo, packages.get(ARCH_LINUX_PACKAGES)));
+        logger.info("Found {} Alpine Packages", parseProjectInfo(projectInfo, packages.get(ALPINE_PACKAGES)));
+        logger.info("Found {} Rpm Packages", parseProjectInfo(projectInfo, packages.get(RPM_PACKAGES)));
+        projectInfo.getDependencies().addAll(files);
+    }
+
+    /**
+     * @return the digest and TAR file of each layer of the image, from the bottom layer to the top one
+     */
+    private List<Pair<String, File>> getImageLayers(File imageExtractionDir) {
+        List<String> layerPaths = new ArrayList<>();
+        List<String> diffIds = new ArrayList<>();
+        try {
+            JsonParser jsonParser = new JsonParser();
+            JsonObject manifest;
+            try (Reader reader = new InputStreamReader(new FileInputStream(new File(imageExtractionDir, MANIFEST_JSON)), StandardCharsets.UTF_8)) {
+                manifest = jsonParser.parse(reader).getAsJsonArray().get(0).getAsJsonObject();
+            }
+            manifest.getAsJsonArray(MANIFEST_LAYERS).forEach(layerPath -> layerPaths.add(layerPath.getAsString()));
+            // the diff ids are the digests of the layer TAR files
+            try (Reader reader = new InputStreamReader(new FileInputStream(new File(imageExtractionDir, manifest.get(MANIFEST_CONFIG).getAsString())), StandardCharsets.UTF_8)) {
+                jsonParser.parse(reader).getAsJsonObject().getAsJsonObject(ROOTFS).getAsJsonArray(DIFF_IDS)
+                        .forEach(diffId -> diffIds.add(diffId.getAsString()));
+            }
+        } catch (Exception e) {
+            logger.debug("Could not read the layer digests of {}: {}", imageExtractionDir.getName(), e.getMessage());
+        }
+        if (layerPaths.isEmpty()) {
+            layerPaths.addAll(Arrays.asList(new FilesScanner().getDirectoryContent(imageExtractionDir.getPath(),
+                    new String[]{ArchiveExtractor.LAYER_TAR}, new String[]{}, true, false)));
+        }
+
+        List<Pair<String, File>> layers = new ArrayList<>();
+        for (int i = 0; i < layerPaths.size(); i++) {
+            File layerTarFile = new File(imageExtractionDir, layerPaths.get(i));
+            String digest = null;
+            if (diffIds.size() == layerPaths.size()) {
+                digest = diffIds.get(i);
+            } else {
+                try {
+                    digest = SHA1_DIGEST_PREFIX + ChecksumCache.getInstance().getSha1(layerTarFile);
+                } catch (IOException e) {
+                    logger.warn("Was not able to read {} (docker layer TAR file): {}", layerTarFile.getPath(), e.getMessage());
+                    continue;
+                }
+            }
+            layers.add(new Pair<>(digest, layerTarFile));
+        }
+        return layers;
+    }
+
+    static File getLayerFolder(File layerTarFile) {
+        // layers of images saved by older docker versions are in a folder of their own, named after the layer id
+        if (layerTarFile.getName().equals(LAYER_TAR_FILE_NAME)) {
+            return layerTarFile.getParentFile();
+        }
+        return new File(layerTarFile.getParentFile(), FilenameUtils.getBaseName(layerTarFile.getName()) + LAYER_FOLDER_SUFFIX);
+    }
+
+    private DockerLayerCache.LayerScanResult scanLayer(File layerTarFile, File layerFolder, ArchiveExtractor archiveExtractor, boolean deleteTarFiles) {
+        if (!archiveExtractor.extractDockerImage(layerTarFile, layerFolder, deleteTarFiles)) {
+            logger.warn("Was not able to extract {} (docker layer TAR file)", layerTarFile.getPath());
+            return null;
+        }
+        DockerLayerCache.LayerScanResult result = new DockerLayerCache.LayerScanResult();
+        FilesScanner filesScanner = new FilesScanner();
+        String[] fileNames = filesScanner.getDirectoryContent(layerFolder.getPath(), scanIncludes, scanExcludes, true, false);
+        for (int i = 0; i < fileNames.length; i++) {
+            fileNames[i] = layerFolder.getPath() + File.separator + fileNames[i];
+        }
+
+        AbstractParser parser = new DebianParser();
+        File file = parser.findFile(fileNames, DEBIAN_LIST_PACKAGES_FILE);
+        if (file != null) {
+            file = getPackagesLogFile(file, archiveExtractor);
+        }
+        parseLayerPackages(result, DEBIAN_PACKAGES, parser, file);
+        parseLayerPackages(result, DEBIAN_AVAILABLE_PACKAGES, parser, parser.findFile(fileNames, DEBIAN_LIST_PACKAGES_FILE_AVAILABLE));
+        parser = new ArchLinuxParser();
+        parseLayerPackages(result, ARCH_LINUX_PACKAGES, parser, parser.findFile(fileNames, ARCH_LINUX_DESC_FOLDERS));
+        parser = new AlpineParser();
+        parseLayerPackages(result, ALPINE_PACKAGES, parser, parser.findFile(fileNames, ALPINE_LIST_PACKAGES_FILE));
+        RpmParser rpmParser = new RpmParser();
+        Collection<String> yumDbFoldersPath = new LinkedList<>();
+        RpmParser.findFolder(layerFolder, YUM_DB, yumDbFoldersPath);
+        parseLayerPackages(result, RPM_PACKAGES, rpmParser, rpmParser.checkFolders(yumDbFoldersPath, RPM_YUM_DB_FOLDER_DEFAULT_PATH));
+
+        result.getFiles().addAll(scanFiles(layerFolder));
+        return result;
+    }
+
+    private void parseLayerPackages(DockerLayerCache.LayerScanResult result, String packageManager, AbstractParser parser, File file) {
+        if (file != null) {
+            Collection<DependencyInfo> packageManagerPackages = parser.parse(file);
+            if (!packageManagerPackages.isEmpty()) {
+                result.getPackages().put(packageManager, new ArrayList<>(packageManagerPackages));
+            }
+        }
+    }
+
     private void extractAndBuildImage (File imageTarFile, File imageExtractionDir, AgentProjectInfo projectInfo, Boolean fromTarList) {
         ArchiveExtractor archiveExtractor = new ArchiveExtractor(config.getAgent().getArchiveIncludes(), config.getAgent().getArchiveExcludes(), config.getAgent().getIncludes());
         try {
@@ -318,12 +660,17 @@ public class DockerResolver {
             logger.error("Could not get file size - {}", ex);
         }
         archiveExtractor.extractDockerImageLayers(imageTarFile, imageExtractionDir, fromTarList);
+        parseImagePackages(imageExtractionDir, projectInfo, archiveExtractor);
+    }
+
+    private void parseImagePackages(File imageExtractionDir, AgentProjectInfo projectInfo, ArchiveExtractor archiveExtractor) {
         FilesScanner filesScanner = new FilesScanner();
-        String[] fileNames = filesScanner.getDirectoryContent(imageExtractionDir.getParent(), scanIncludes, scanExcludes, true, false);
+        // only the folder of the image, other images may be extracted next to it
+        String[] fileNames = filesScanner.getDirectoryContent(imageExtractionDir.getPath(), scanIncludes, scanExcludes, true, false);
 
         // build the full path correctly
         for (int i = 0; i < fileNames.length; i++) {
-            fileNames[i] = imageExtractionDir.getParent() + File.separator + fileNames[i];
+            fileNames[i] = imageExtractionDir.getPath() + File.separator + fileNames[i];
         }
 
         // check for dependencies for each docker operating system (Debian,Arch-Linux,Alpine,Rpm)
@@ -367,6 +714,10 @@ public class DockerResolver {
     }
 
     private void scanImage (File imageExtractionDir, AgentProjectInfo projectInfo) {
+        projectInfo.getDependencies().addAll(scanFiles(imageExtractionDir));
+    }
+
+    private List<DependencyInfo> scanFiles(File imageExtractionDir) {
         String extractPath = imageExtractionDir.getPath();
         Set<String> setDirs = new HashSet<>();
         setDirs.add(extractPath);
@@ -376,8 +727,7 @@ public class DockerResolver {
                 Arrays.asList(extractPath), appPathsToDependencyDirs, false, config.getAgent().getIncludes(), config.getAgent().getExcludes(),
                 config.getAgent().getGlobCaseSensitive(), config.getAgent().getArchiveExtractionDepth(), FileExtensions.ARCHIVE_INCLUDES,
                 FileExtensions.ARCHIVE_EXCLUDES, false, config.getAgent().isFollowSymlinks(), config.getAgent().getExcludedCopyrights(), PARTIAL_SHA1_MATCH, config.getAgent().getPythonRequirementsFileIncludes());
-
-        projectInfo.getDependencies().addAll(dependencyInfos);
+        return dependencyInfos;
     }
 
     /*
@@ -390,8 +740,8 @@ public class DockerResolver {
                 dockerImage.getRepository(), dockerImage.getTag()), null));
         projects.add(projectInfo);
 
-        File imageTarFile = new File(TEMP_FOLDER, dockerImage.getRepository() + TAR_SUFFIX);
-        File imageExtractionDir = new File(TEMP_FOLDER, dockerImage.getRepository());
+        File imageTarFile = new File(tempFolder, dockerImage.getRepository() + TAR_SUFFIX);
+        File imageExtractionDir = new File(tempFolder, dockerImage.getRepository());
         imageExtractionDir.mkdirs();
         try {
             //Save image as tar file
@@ -509,6 +859,14 @@ public class DockerResolver {
         return new File(file.getParent() + File.separator + PACKAGE_LOG_TXT);
     }
 
+    private int parseProjectInfo(AgentProjectInfo projectInfo, Collection<DependencyInfo> packageManagerPackages) {
+        if (packageManagerPackages != null) {
+            projectInfo.getDependencies().addAll(packageManagerPackages);
+            return packageManagerPackages.size();
+        }
+        return 0;
+    }
+
     private int parseProjectInfo(AgentProjectInfo projectInfo, AbstractParser parser, File file) {
         if (file != null) {
             Collection<DependencyInfo> packageManagerPackages = parser.parse(file);
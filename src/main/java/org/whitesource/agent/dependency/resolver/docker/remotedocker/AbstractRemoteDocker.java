@@ -5,6 +5,7 @@ import org.slf4j.Logger;
 import org.whitesource.agent.Constants;
 import org.whitesource.agent.utils.LoggerFactory;
 import org.whitesource.agent.utils.Pair;
+import org.whitesource.agent.utils.ToolDiscovery;
 import org.whitesource.fs.configuration.RemoteDockerConfiguration;
 
 import java.io.BufferedReader;
@@ -13,6 +14,12 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -27,6 +34,7 @@ public abstract class AbstractRemoteDocker {
     protected static final String DOCKER_CLI_PULL = "docker pull ";
     protected static final String LINUX_PREFIX_SUDO = "sudo ";
     protected static final String WS_SCANNED_TAG = "WS.Scanned";
+    private static final String WHITESPACE_REGEX = "\\s+";
 
     // This is a set of the pulled images only - Users may require to pull existing images - but they are not saved
     // in this set because we will remove the images that we pulled here (we don't want to remove the existing images
@@ -37,8 +45,8 @@ public abstract class AbstractRemoteDocker {
 
     protected RemoteDockerConfiguration config;
 
-    private int pulledImagesCount;
-    private int existingImagesCount;
+    private AtomicInteger pulledImagesCount;
+    private AtomicInteger existingImagesCount;
     private int maxScanImagesCount;
     private int scannedImagesCount;
 
@@ -46,8 +54,8 @@ public abstract class AbstractRemoteDocker {
 
     public AbstractRemoteDocker(RemoteDockerConfiguration config) {
         this.config = config;
-        pulledImagesCount = 0;
-        existingImagesCount = 0;
+        pulledImagesCount = new AtomicInteger();
+        existingImagesCount = new AtomicInteger();
         maxScanImagesCount = config.getMaxScanImages();
         scannedImagesCount = 0;
     }
@@ -55,14 +63,22 @@ public abstract class AbstractRemoteDocker {
     /* --- Public methods --- */
 
     public Set<AbstractRemoteDockerImage> pullRemoteDockerImages() {
+        return pullRemoteDockerImages(imageURL -> { });
+    }
+
+    /**
+     * @param pulledImageListener called with the URL of each image once it is pulled, from the pulling thread
+     * @return the pulled images
+     */
+    public Set<AbstractRemoteDockerImage> pullRemoteDockerImages(Consumer<String> pulledImageListener) {
         if (isAllSoftwareRequiredInstalled()) {
              if (loginToRemoteRegistry()) {
                  imagesFound = getRemoteRegistryImagesList();
                  if (imagesFound != null && !imagesFound.isEmpty()) {
-                     imagesPulled = pullImagesFromRemoteRegistry();
+                     imagesPulled = pullImagesFromRemoteRegistry(pulledImageListener);
                  }
-                 logger.info("{} New images were pulled", pulledImagesCount);
-                 logger.info("{} Images are up to date (not pulled)", existingImagesCount);
+                 logger.info("{} New images were pulled", pulledImagesCount.get());
+                 logger.info("{} Images are up to date (not pulled)", existingImagesCount.get());
 
                  // Logout from account if UA logged in
                  logoutRemoteDocker();
@@ -104,29 +120,60 @@ public abstract class AbstractRemoteDocker {
 
     protected abstract String getImageFullURL(AbstractRemoteDockerImage image);
 
-    private Set<AbstractRemoteDockerImage> pullImagesFromRemoteRegistry() {
-        Set<AbstractRemoteDockerImage> pulledImagesList = new HashSet<>();
+    private Set<AbstractRemoteDockerImage> pullImagesFromRemoteRegistry(Consumer<String> pulledImageListener) {
+        Set<AbstractRemoteDockerImage> pulledImagesList = Collections.synchronizedSet(new HashSet<>());
         int maxPullImages = config.getMaxPullImages();
-        int pullImagesCounter = 0;
         if (maxPullImages < 1) {
             logger.info("No images will be pull - Configuration 'docker.pull.maxImages' is equal to {} ", maxPullImages);
             return pulledImagesList;
         }
+        PullQuota pullQuota = new PullQuota(maxPullImages);
+        // the pulls are bound by the network, several of them run at once when configured
+        ExecutorService executorService = config.getPullThreads() > 1 ? Executors.newFixedThreadPool(config.getPullThreads()) : null;
+        Executor executor = executorService != null ? executorService : Runnable::run;
         for (AbstractRemoteDockerImage image : imagesFound) {
+            if (pullQuota.isReached()) {
+                break;
+            }
             // Check if image meets the required name/tag/digest
             if (isImagePullRequired(image)) {
                 String imageURL = getImageFullURL(image);
-                if (pullImageWithFullUrl(imageURL)) {
-                    pulledImagesList.add(image);
-                    pullImagesCounter++;
-                }
+                executor.execute(() -> pullImage(image, imageURL, pullQuota, pulledImagesList, pulledImageListener));
             }
-            if (pullImagesCounter >= maxPullImages) {
-                logger.info("Reached maximum images pull count of {} - will not pull any more images", pullImagesCounter);
-                break;
+        }
+        if (executorService != null) {
+            executorService.shutdown();
+            try {
+                while (!executorService.awaitTermination(1, TimeUnit.MINUTES)) {
+                    logger.debug("Waiting for the pulls of remote docker images to finish");
+                }
+            } catch (InterruptedException e) {
+                logger.info("Pulling remote docker images was interrupted");
+                executorService.shutdownNow();
+                Thread.currentThread().interrupt();
             }
         }
-        return pulledImagesList;
+        if (pullQuota.isReached()) {
+            logger.info("Reached maximum images pull count of {} - will not pull any more images", maxPullImages);
+        }
+        return new HashSet<>(pulledImagesList);
+    }
+
+    private void pullImage(AbstractRemoteDockerImage image, String imageURL, PullQuota pullQuota,
+                           Set<AbstractRemoteDockerImage> pulledImagesList, Consumer<String> pulledImageListener) {
+        if (!pullQuota.acquire()) {
+            return;
+        }
+        boolean pulled = false;
+        try {
+            pulled = pullImageWithFullUrl(imageURL);
+        } finally {
+            pullQuota.release(pulled);
+        }
+        if (pulled) {
+            pulledImagesList.add(image);
+            pulledImageListener.accept(imageURL);
+        }
     }
 
     private boolean isAllSoftwareRequiredInstalled() {
@@ -287,10 +334,10 @@ public abstract class AbstractRemoteDocker {
                         String status = resultText.substring(index);
                         logger.info("{}", status);
                         if (status.contains("Image is up to date for")) {
-                            existingImagesCount++;
+                            existingImagesCount.incrementAndGet();
                             result = false; // The image was not pulled
                         } else if (status.contains("Downloaded newer image for")) {
-                            pulledImagesCount++;
+                            pulledImagesCount.incrementAndGet();
                         }
                     }
                 } else {
@@ -344,9 +391,13 @@ public abstract class AbstractRemoteDocker {
         return val == 0;
     }
 
+    // the version commands are run once per process and shared by all the scans
+    protected boolean isToolInstalled(String versionCommand) {
+        return ToolDiscovery.getInstance().isInstalled(versionCommand.trim().split(WHITESPACE_REGEX));
+    }
+
     private boolean isDockerInstalled() {
-        String command = DOCKER_CLI_VERSION;
-        boolean installed = isCommandSuccessful(command);
+        boolean installed = isToolInstalled(DOCKER_CLI_VERSION);
         if (!installed) {
             logger.error("Docker is not installed or its path is not configured correctly");
         }
@@ -386,4 +437,46 @@ public abstract class AbstractRemoteDocker {
             return Constants.EMPTY_STRING;
         }
     }
+
+    /* --- Nested classes --- */
+
+    // the number of images to pull, an image is pulled only if the pulls in progress may not reach the maximum
+    static class PullQuota {
+
+        private final int maxPullImages;
+        private int pulled;
+        private int inProgress;
+
+        PullQuota(int maxPullImages) {
+            this.maxPullImages = maxPullImages;
+        }
+
+        synchronized boolean acquire() {
+            while (pulled + inProgress >= maxPullImages && inProgress > 0) {
+                try {
+                    wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    return false;
+                }
+            }
+            if (pulled >= maxPullImages) {
+                return false;
+            }
+            inProgress++;
+            return true;
+        }
+
+        synchronized void release(boolean imagePulled) {
+            inProgress--;
+            if (imagePulled) {
+                pulled++;
+            }
+            notifyAll();
+        }
+
+        synchronized boolean isReached() {
+            return pulled >= maxPullImages;
+        }
+    }
 }
@@ -5,6 +5,7 @@ import org.whitesource.agent.dependency.resolver.docker.remotedocker.azure.Azure
 import org.whitesource.fs.configuration.RemoteDockerConfiguration;
 
 import java.util.*;
+import java.util.function.Consumer;
 
 public class RemoteDockersManager {
 
@@ -28,11 +29,18 @@ public class RemoteDockersManager {
     }
 
     public Set<AbstractRemoteDockerImage> pullRemoteDockerImages() {
+        return pullRemoteDockerImages(imageURL -> { });
+    }
+
+    /**
+     * @param pulledImageListener called with the URL of each image once it is pulled, may be called from several threads
+     */
+    public Set<AbstractRemoteDockerImage> pullRemoteDockerImages(Consumer<String> pulledImageListener) {
         if (!remoteDockersEnabled) {
             return Collections.emptySet();
         }
         for (AbstractRemoteDocker remoteDocker : remoteDockersList) {
-            Set<AbstractRemoteDockerImage> pulledImages = remoteDocker.pullRemoteDockerImages();
+            Set<AbstractRemoteDockerImage> pulledImages = remoteDocker.pullRemoteDockerImages(pulledImageListener);
             if (pulledImages != null) {
                 pulledDockerImages.addAll(pulledImages);
             }
@@ -37,7 +37,7 @@ public class RemoteDockerAmazonECR extends AbstractRemoteDocker {
     }
 
     public boolean isRegistryCliInstalled() {
-        boolean installed = isCommandSuccessful(AWS_VERSION);
+        boolean installed = isToolInstalled(AWS_VERSION);
         if (!installed) {
             logger.error("AWS ECR is not installed or its path is not configured correctly");
         }
@@ -179,7 +179,7 @@ public class AzureRemoteDocker extends AbstractRemoteDocker {
 
     @Override
     protected boolean isRegistryCliInstalled() {
-        boolean installed = isCommandSuccessful(azureCli.getBasicCommand());
+        boolean installed = isToolInstalled(azureCli.getBasicCommand());
         if (!installed) {
             logger.error("Azure CLI is not installed");
         }
@@ -1,9 +1,8 @@
 package org.whitesource.agent.dependency.resolver.dotNet;
 
+import org.whitesource.agent.ScanWorkspace;
 import org.whitesource.agent.TempFolders;
 
-import java.nio.file.Paths;
-
 /**
  * @author raz.nitzan
  */
@@ -11,14 +10,13 @@ public class DotNetRestoreCollector extends RestoreCollector {
 
     /* --- Statics Members --- */
 
-    private static final String DOTNET_RESTORE_TMP_DIRECTORY = Paths.get(System.getProperty("java.io.tmpdir"), TempFolders.UNIQUE_DOTNET_TEMP_FOLDER).toString();
     private static final String DOTNET_COMMAND = "dotnet";
     private static final String PACKAGES = "--packages";
 
     /* --- Constructors --- */
 
     public DotNetRestoreCollector() {
-        super(DOTNET_RESTORE_TMP_DIRECTORY, DOTNET_COMMAND);
+        super(ScanWorkspace.current().getFolder(TempFolders.UNIQUE_DOTNET_TEMP_FOLDER), DOTNET_COMMAND);
     }
 
     @Override
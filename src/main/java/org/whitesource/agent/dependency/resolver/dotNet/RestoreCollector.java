@@ -7,7 +7,7 @@ import org.whitesource.agent.api.model.AgentProjectInfo;
 import org.whitesource.agent.api.model.DependencyInfo;
 import org.whitesource.agent.dependency.resolver.DependencyCollector;
 import org.whitesource.agent.dependency.resolver.npm.NpmLsJsonDependencyCollector;
-import org.whitesource.agent.hash.ChecksumUtils;
+import org.whitesource.agent.utils.ChecksumCache;
 import org.whitesource.agent.utils.CommandLineProcess;
 import org.whitesource.agent.utils.FilesUtils;
 import org.whitesource.agent.utils.LoggerFactory;
@@ -114,7 +114,7 @@ public abstract class RestoreCollector extends DependencyCollector {
 
     private String getSha1(String filePath) {
         try {
-            return ChecksumUtils.calculateSHA1(new File(filePath));
+            return ChecksumCache.getInstance().getSha1(new File(filePath));
         } catch (IOException e) {
             logger.info("Failed getting " + filePath + ". File will not be send to WhiteSource server.");
             return Constants.EMPTY_STRING;
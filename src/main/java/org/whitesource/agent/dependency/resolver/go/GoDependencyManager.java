@@ -7,7 +7,8 @@ public enum GoDependencyManager {
     GO_GRADLE("gogradle"),
     GO_VENDOR("govendor"),
     GOPM("gopm"),
-    GLIDE("glide");
+    GLIDE("glide"),
+    GO_MOD("modules");
 
 
     private final String type;
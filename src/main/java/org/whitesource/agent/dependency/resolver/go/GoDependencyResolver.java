@@ -15,6 +15,7 @@ import org.whitesource.agent.dependency.resolver.ResolutionResult;
 import org.whitesource.agent.dependency.resolver.gradle.GradleCli;
 import org.whitesource.agent.dependency.resolver.gradle.GradleMvnCommand;
 import org.whitesource.agent.hash.HashCalculator;
+import org.whitesource.agent.utils.AddDependencyFileRecursionHelper;
 import org.whitesource.agent.utils.Cli;
 import org.whitesource.agent.utils.CommandLineProcess;
 import org.whitesource.agent.utils.FilesUtils;
@@ -77,7 +78,7 @@ public class GoDependencyResolver extends AbstractDependencyResolver {
     private static final String GO_ADD_EXTERNAL = "add +external";
     private static final List<String> GO_SCRIPT_EXTENSION = Arrays.asList(GOPKG_LOCK, GODEPS_JSON, VNDR_CONF,
                                                                             BUILD_GRADLE, GLIDE_LOCK, GLIDE_YAML, GOVENDOR_JSON,
-                                                                            GOPM_FILE);
+                                                                            GOPM_FILE, GoModParser.GO_MOD, GoModParser.GO_SUM);
     private static final String IMPORTS                     = "imports";
     private static final String NAME_GLIDE                  = "- name: ";
     private static final String VERSION_GLIDE               = "  version: ";
@@ -171,6 +172,8 @@ public class GoDependencyResolver extends AbstractDependencyResolver {
                     return new String[]{Constants.PATTERN + GOVENDOR_JSON};
                 case GOPM:
                     return new String[]{Constants.PATTERN + GOPM_FILE};
+                case GO_MOD:
+                    return new String[]{Constants.PATTERN + GoModParser.GO_MOD};
             }
         }
         return new String[]{EMPTY_STRING};
@@ -178,7 +181,7 @@ public class GoDependencyResolver extends AbstractDependencyResolver {
 
     @Override
     public Collection<String> getManifestFiles(){
-        return Arrays.asList(GOPKG_LOCK, GOVENDOR_JSON, VNDR_CONF, Constants.BUILD_GRADLE, GLIDE_LOCK, GLIDE_YAML, GOVENDOR_JSON, GOPM_FILE, GO_EXTENSION);
+        return Arrays.asList(GOPKG_LOCK, GOVENDOR_JSON, VNDR_CONF, Constants.BUILD_GRADLE, GLIDE_LOCK, GLIDE_YAML, GOVENDOR_JSON, GOPM_FILE, GoModParser.GO_MOD, GO_EXTENSION);
     }
 
     @Override
@@ -214,6 +217,9 @@ public class GoDependencyResolver extends AbstractDependencyResolver {
                     case GOPM:
                         collectGoPMDependencies(rootDirectory, dependencyInfos);
                         break;
+                    case GO_MOD:
+                        collectGoModDependencies(rootDirectory, dependencyInfos);
+                        break;
                     default:
                         error = "The selected dependency manager - " + goDependencyManager.getType() + " - is not supported.";
                 }
@@ -240,6 +246,17 @@ public class GoDependencyResolver extends AbstractDependencyResolver {
     // when no dependency manager is defined - trying to run one manager after the other, till one succeeds.  if not - returning an error
     private String collectDependenciesWithoutDefinedManager(String rootDirectory, List<DependencyInfo> dependencyInfos){
         String error = null;
+        // go modules first, the other managers' files are often left in modules migrated from them
+        if (new File(rootDirectory, GoModParser.GO_MOD).isFile()) {
+            try {
+                collectGoModDependencies(rootDirectory, dependencyInfos);
+                goDependencyManager = GoDependencyManager.GO_MOD;
+                return null;
+            } catch (Exception e) {
+                logger.warn("Failed to collect the dependencies of {}: {}", GoModParser.GO_MOD, e.getMessage());
+                dependencyInfos.clear();
+            }
+        }
         try {
             collectDepDependencies(rootDirectory, dependencyInfos);
             goDependencyManager = GoDependencyManager.DEP;
@@ -395,6 +412,18 @@ public class GoDependencyResolver extends AbstractDependencyResolver {
         return dependencyInfos;
     }
 
+    private void collectGoModDependencies(String rootDirectory, List<DependencyInfo> dependencyInfos) throws Exception {
+        logger.debug("collecting dependencies using go modules");
+        File goMod = new File(rootDirectory + fileSeparator + GoModParser.GO_MOD);
+        if (!goMod.isFile()) {
+            throw new Exception("Can't find " + GoModParser.GO_MOD + " file.  Run the 'go mod init' command.");
+        }
+        // 'go mod graph' is run only when the dependency managers may run, otherwise the module cache is read
+        List<DependencyInfo> modules = new GoModParser(collectDependenciesAtRuntime).parse(goMod.getParentFile());
+        modules.stream().flatMap(AddDependencyFileRecursionHelper::flatten).forEach(this::setSha1);
+        dependencyInfos.addAll(modules);
+    }
+
     private void collectGoPMDependencies(String rootDirectory, List<DependencyInfo> dependencyInfos) throws Exception {
         logger.debug("collecting dependencies using 'GoPM'");
         File goPMFile = new File(rootDirectory + fileSeparator + GOPM_FILE);
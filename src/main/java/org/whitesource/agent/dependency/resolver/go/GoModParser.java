@@ -0,0 +1,441 @@
+package org.whitesource.agent.dependency.resolver.go;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.whitesource.agent.Constants;
+import org.whitesource.agent.api.model.DependencyInfo;
+import org.whitesource.agent.api.model.DependencyType;
+import org.whitesource.agent.utils.CommandLineProcess;
+import org.whitesource.agent.utils.LoggerFactory;
+import org.whitesource.agent.utils.ToolDiscovery;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.stream.Collectors;
+
+/**
+ * Collects the dependencies of a Go module from its go.mod and go.sum files.
+ * <p>
+ * The module graph comes from 'go mod graph' when the go toolchain is installed, otherwise from the go.mod files of the
+ * dependencies found in the module cache, without running any process. The selected version of each module is the
+ * highest version required in the graph (minimal version selection), and each module is reported once, under the first
+ * module requiring it. When go.sum lists the source hash of some modules, the modules whose source is not part of the
+ * build (only their go.mod was needed to select versions) are left out.
+ */
+public class GoModParser {
+
+    private final Logger logger = LoggerFactory.getLogger(GoModParser.class);
+
+    public static final String GO_MOD = "go.mod";
+    public static final String GO_SUM = "go.sum";
+
+    private static final String GO = "go";
+    private static final String MOD = "mod";
+    private static final String GRAPH = "graph";
+    private static final String ENV = "env";
+    private static final String VERSION = "version";
+    private static final String GOMODCACHE = "GOMODCACHE";
+    private static final String GOPATH = "GOPATH";
+    private static final String MODULE = "module";
+    private static final String REQUIRE = "require";
+    private static final String REPLACE = "replace";
+    private static final String TOOLCHAIN = "toolchain";
+    private static final String INDIRECT = "indirect";
+    private static final String COMMENT = "//";
+    private static final String ARROW = "=>";
+    private static final String AT = "@";
+    private static final String OPEN_BLOCK = "(";
+    private static final String CLOSE_BLOCK = ")";
+    private static final String QUOTE = "\"";
+    private static final String GO_MOD_SUFFIX = "/" + GO_MOD;
+    private static final String MOD_EXTENSION = ".mod";
+    private static final String CACHE_DOWNLOAD = "cache" + File.separator + "download";
+    private static final String VERSIONS_FOLDER = "@v";
+    private static final String PKG_MOD = "pkg" + File.separator + MOD;
+    private static final String INCOMPATIBLE = "+incompatible";
+    // pseudo-versions end with the timestamp and the 12 characters commit of their revision, e.g. v0.0.0-20191109021931-daa7c04131f5
+    private static final Pattern PSEUDO_VERSION = Pattern.compile(".*[-.]\\d{14}-([0-9a-f]{12})(\\+incompatible)?$");
+    private static final Pattern SEMVER = Pattern.compile("^v(\\d+)(?:\\.(\\d+))?(?:\\.(\\d+))?(?:-([^+]*))?(?:\\+.*)?$");
+
+    private final boolean useGoToolchain;
+
+    public GoModParser(boolean useGoToolchain) {
+        this.useGoToolchain = useGoToolchain;
+    }
+
+    /**
+     * @param moduleFolder the folder of the go.mod file
+     * @return the dependencies of the module, the direct dependencies at the top level
+     * @throws IOException if the go.mod file could not be read
+     */
+    public List<DependencyInfo> parse(File moduleFolder) throws IOException {
+        GoModFile goMod = parseGoMod(new File(moduleFolder, GO_MOD));
+        Map<String, String> sourceHashes = parseGoSum(new File(moduleFolder, GO_SUM));
+        Map<String, List<Module>> graph = useGoToolchain && ToolDiscovery.getInstance().isInstalled(new String[]{GO, VERSION}) ?
+                runGoModGraph(moduleFolder) : null;
+        RequirementsSource requirements;
+        if (graph != null) {
+            logger.debug("Using the module graph of 'go mod graph' for {}", moduleFolder.getPath());
+            requirements = module -> graph.getOrDefault(module.toString(), Collections.emptyList());
+        } else {
+            File moduleCache = getModuleCache();
+            logger.debug("Using the go.mod files of {} for {}", moduleCache, moduleFolder.getPath());
+            requirements = module -> readCachedRequirements(moduleCache, goMod.replace(module));
+        }
+        return buildTree(goMod, requirements, sourceHashes);
+    }
+
+    /* --- Package methods --- */
+
+    GoModFile parseGoMod(File goModFile) throws IOException {
+        GoModFile goMod = new GoModFile();
+        String block = null;
+        for (String line : Files.readAllLines(goModFile.toPath(), StandardCharsets.UTF_8)) {
+            boolean indirect = false;
+            int commentIndex = line.indexOf(COMMENT);
+            if (commentIndex >= 0) {
+                indirect = line.substring(commentIndex + COMMENT.length()).trim().startsWith(INDIRECT);
+                line = line.substring(0, commentIndex);
+            }
+            line = line.trim();
+            if (line.isEmpty()) {
+                continue;
+            }
+            if (block != null) {
+                if (line.equals(CLOSE_BLOCK)) {
+                    block = null;
+                } else {
+                    parseDirective(goMod, block, line, indirect);
+                }
+                continue;
+            }
+            String[] keywordAndArguments = line.split("\\s+", 2);
+            if (keywordAndArguments.length < 2) {
+                continue;
+            }
+            if (keywordAndArguments[1].equals(OPEN_BLOCK)) {
+                block = keywordAndArguments[0];
+            } else {
+                parseDirective(goMod, keywordAndArguments[0], keywordAndArguments[1], indirect);
+            }
+        }
+        if (goMod.modulePath == null) {
+            throw new IOException("No module directive in " + goModFile.getPath());
+        }
+        return goMod;
+    }
+
+    // the hash of the source of each module version ('<module>@<version>'), the go.mod only hashes are ignored
+    Map<String, String> parseGoSum(File goSumFile) throws IOException {
+        Map<String, String> sourceHashes = new HashMap<>();
+        if (!goSumFile.isFile()) {
+            return sourceHashes;
+        }
+        for (String line : Files.readAllLines(goSumFile.toPath(), StandardCharsets.UTF_8)) {
+            String[] fields = line.trim().split("\\s+");
+            if (fields.length == 3 && !fields[1].endsWith(GO_MOD_SUFFIX)) {
+                sourceHashes.put(fields[0] + AT + fields[1], fields[2]);
+            }
+        }
+        return sourceHashes;
+    }
+
+    List<DependencyInfo> buildTree(GoModFile goMod, RequirementsSource requirements, Map<String, String> sourceHashes) {
+        // minimal version selection, the highest version of each module reachable from the main module
+        Map<String, String> selected = new HashMap<>();
+        Set<String> visitedVersions = new HashSet<>();
+        Deque<Module> queue = new ArrayDeque<>(goMod.requires);
+        while (!queue.isEmpty()) {
+            Module module = queue.poll();
+            if (!visitedVersions.add(module.toString())) {
+                continue;
+            }
+            selected.merge(module.path, module.version, (version1, version2) -> compareVersions(version1, version2) >= 0 ? version1 : version2);
+            queue.addAll(requirements.get(module));
+        }
+
+        List<DependencyInfo> dependencies = new ArrayList<>();
+        Set<String> reported = new HashSet<>();
+        Deque<TreeNode> nodes = new ArrayDeque<>();
+        goMod.requires.stream().filter(module -> !goMod.indirectRequires.contains(module.path))
+                .forEach(module -> nodes.add(new TreeNode(module.path, null)));
+        // indirect requirements not reached from the direct ones (their parent has no go.mod) are reported at the top level
+        List<TreeNode> indirectNodes = goMod.requires.stream().filter(module -> goMod.indirectRequires.contains(module.path))
+                .map(module -> new TreeNode(module.path, null)).collect(Collectors.toList());
+        while (!nodes.isEmpty() || !indirectNodes.isEmpty()) {
+            if (nodes.isEmpty()) {
+                nodes.addAll(indirectNodes);
+                indirectNodes.clear();
+            }
+            TreeNode node = nodes.poll();
+            if (!reported.add(node.path) || goMod.modulePath.equals(node.path)) {
+                continue;
+            }
+            Module module = new Module(node.path, selected.get(node.path));
+            Module replacement = goMod.replace(module);
+            DependencyInfo parent = node.parent;
+            if (replacement == null) {
+                logger.debug("{} is replaced by a local folder", module);
+            } else if (sourceHashes.isEmpty() || sourceHashes.containsKey(replacement.toString())) {
+                DependencyInfo dependency = createDependency(replacement);
+                if (parent == null) {
+                    dependencies.add(dependency);
+                } else {
+                    parent.getChildren().add(dependency);
+                }
+                parent = dependency;
+            } else {
+                // only the go.mod of the module was needed, its requirements still hang under the requiring module
+                logger.debug("{} is not part of the build", module);
+            }
+            for (Module requirement : requirements.get(module)) {
+                nodes.add(new TreeNode(requirement.path, parent));
+            }
+        }
+        return dependencies;
+    }
+
+    /* --- Private methods --- */
+
+    private void parseDirective(GoModFile goMod, String keyword, String arguments, boolean indirect) {
+        String[] fields = arguments.trim().split("\\s+");
+        switch (keyword) {
+            case MODULE:
+                goMod.modulePath = unquote(fields[0]);
+                break;
+            case REQUIRE:
+                if (fields.length >= 2) {
+                    goMod.requires.add(new Module(unquote(fields[0]), unquote(fields[1])));
+                    if (indirect) {
+                        goMod.indirectRequires.add(unquote(fields[0]));
+                    }
+                }
+                break;
+            case REPLACE:
+                int arrowIndex = Arrays.asList(fields).indexOf(ARROW);
+                if (arrowIndex < 1 || arrowIndex == fields.length - 1) {
+                    break;
+                }
+                String source = unquote(fields[0]) + (arrowIndex == 2 ? AT + unquote(fields[1]) : Constants.EMPTY_STRING);
+                // a replacement without a version is a local folder
+                Module target = arrowIndex + 2 < fields.length ?
+                        new Module(unquote(fields[arrowIndex + 1]), unquote(fields[arrowIndex + 2])) : null;
+                goMod.replacements.put(source, target);
+                break;
+            default:
+                // go, toolchain, exclude and retract do not change the dependencies reported
+        }
+    }
+
+    private Map<String, List<Module>> runGoModGraph(File moduleFolder) {
+        try {
+            CommandLineProcess commandLineProcess = new CommandLineProcess(moduleFolder.getPath(), new String[]{GO, MOD, GRAPH});
+            List<String> lines = commandLineProcess.executeProcess();
+            if (commandLineProcess.isErrorInProcess()) {
+                logger.warn("'go mod graph' failed in {}, reading the go.mod files of the module cache", moduleFolder.getPath());
+                return null;
+            }
+            Map<String, List<Module>> graph = new HashMap<>();
+            for (String line : lines) {
+                String[] edge = line.trim().split("\\s+");
+                if (edge.length != 2 || !edge[1].contains(AT)) {
+                    continue;
+                }
+                Module requirement = Module.parse(edge[1]);
+                if (GO.equals(requirement.path) || TOOLCHAIN.equals(requirement.path)) {
+                    continue;
+                }
+                graph.computeIfAbsent(edge[0], key -> new ArrayList<>()).add(requirement);
+            }
+            return graph;
+        } catch (IOException e) {
+            logger.warn("Failed to run 'go mod graph' in {}: {}", moduleFolder.getPath(), e.getMessage());
+            return null;
+        }
+    }
+
+    private List<Module> readCachedRequirements(File moduleCache, Module module) {
+        if (module == null || moduleCache == null) {
+            return Collections.emptyList();
+        }
+        File modFile = Paths.get(moduleCache.getPath(), CACHE_DOWNLOAD, escapePath(module.path), VERSIONS_FOLDER,
+                escapePath(module.version) + MOD_EXTENSION).toFile();
+        if (!modFile.isFile()) {
+            logger.debug("No go.mod of {} in the module cache", module);
+            return Collections.emptyList();
+        }
+        try {
+            return parseGoMod(modFile).requires;
+        } catch (IOException e) {
+            logger.debug("Failed to read {}: {}", modFile.getPath(), e.getMessage());
+            return Collections.emptyList();
+        }
+    }
+
+    private File getModuleCache() {
+        String moduleCache = System.getenv(GOMODCACHE);
+        if (StringUtils.isBlank(moduleCache) && useGoToolchain) {
+            List<String> lines = ToolDiscovery.getInstance().getOutput(new String[]{GO, ENV, GOMODCACHE});
+            moduleCache = lines.isEmpty() ? null : lines.get(0).trim();
+        }
+        if (StringUtils.isBlank(moduleCache)) {
+            String goPath = System.getenv(GOPATH);
+            goPath = StringUtils.isBlank(goPath) ? Paths.get(System.getProperty(Constants.USER_HOME), GO).toString() :
+                    goPath.split(File.pathSeparator)[0];
+            moduleCache = Paths.get(goPath, PKG_MOD).toString();
+        }
+        File folder = new File(moduleCache);
+        return folder.isDirectory() ? folder : null;
+    }
+
+    private DependencyInfo createDependency(Module module) {
+        DependencyInfo dependency = new DependencyInfo();
+        dependency.setGroupId(getGroupId(module.path));
+        dependency.setArtifactId(module.path);
+        dependency.setVersion(module.version);
+        Matcher matcher = PSEUDO_VERSION.matcher(module.version);
+        if (matcher.matches()) {
+            dependency.setCommit(matcher.group(1));
+        }
+        dependency.setDependencyType(DependencyType.GO);
+        return dependency;
+    }
+
+    private String getGroupId(String name) {
+        String[] split = name.split(Constants.FORWARD_SLASH);
+        return split.length > 1 ? split[1] : Constants.EMPTY_STRING;
+    }
+
+    // the module cache escapes upper case letters as '!' followed by the lower case letter
+    private String escapePath(String path) {
+        StringBuilder escaped = new StringBuilder();
+        for (char c : path.toCharArray()) {
+            if (Character.isUpperCase(c)) {
+                escaped.append('!').append(Character.toLowerCase(c));
+            } else {
+                escaped.append(c);
+            }
+        }
+        return escaped.toString().replace('/', File.separatorChar);
+    }
+
+    private String unquote(String value) {
+        return value.startsWith(QUOTE) && value.endsWith(QUOTE) && value.length() > 1 ? value.substring(1, value.length() - 1) : value;
+    }
+
+    // semantic version precedence, pre-releases (and pseudo-versions) before releases
+    static int compareVersions(String version1, String version2) {
+        Matcher matcher1 = SEMVER.matcher(version1.replace(INCOMPATIBLE, Constants.EMPTY_STRING));
+        Matcher matcher2 = SEMVER.matcher(version2.replace(INCOMPATIBLE, Constants.EMPTY_STRING));
+        if (!matcher1.matches() || !matcher2.matches()) {
+            return version1.compareTo(version2);
+        }
+        for (int group = 1; group <= 3; group++) {
+            int result = Long.compare(toNumber(matcher1.group(group)), toNumber(matcher2.group(group)));
+            if (result != 0) {
+                return result;
+            }
+        }
+        String preRelease1 = matcher1.group(4);
+        String preRelease2 = matcher2.group(4);
+        if (preRelease1 == null || preRelease2 == null) {
+            return preRelease1 == null ? (preRelease2 == null ? 0 : 1) : -1;
+        }
+        String[] identifiers1 = preRelease1.split("\\.");
+        String[] identifiers2 = preRelease2.split("\\.");
+        for (int i = 0; i < Math.min(identifiers1.length, identifiers2.length); i++) {
+            boolean numeric1 = identifiers1[i].matches("\\d+");
+            boolean numeric2 = identifiers2[i].matches("\\d+");
+            int result;
+            if (numeric1 && numeric2) {
+                result = Long.compare(Long.parseLong(identifiers1[i]), Long.parseLong(identifiers2[i]));
+            } else if (numeric1 || numeric2) {
+                result = numeric1 ? -1 : 1;
+            } else {
+                result = identifiers1[i].compareTo(identifiers2[i]);
+            }
+            if (result != 0) {
+                return result;
+            }
+        }
+        return Integer.compare(identifiers1.length, identifiers2.length);
+    }
+
+    private static long toNumber(String value) {
+        return value == null ? 0 : Long.parseLong(value);
+    }
+
+    /* --- Nested classes --- */
+
+    interface RequirementsSource {
+        List<Module> get(Module module);
+    }
+
+    static class GoModFile {
+
+        private String modulePath;
+        private final List<Module> requires = new ArrayList<>();
+        // the requirements marked '// indirect', needed by the dependencies rather than by the module itself
+        private final Set<String> indirectRequires = new HashSet<>();
+        // keyed by '<module>' or '<module>@<version>', a null target is a local folder
+        private final Map<String, Module> replacements = new HashMap<>();
+
+        String getModulePath() {
+            return modulePath;
+        }
+
+        List<Module> getRequires() {
+            return requires;
+        }
+
+        // the module actually built for a module version, null if it is replaced by a local folder
+        Module replace(Module module) {
+            String key = module.toString();
+            if (replacements.containsKey(key)) {
+                return replacements.get(key);
+            }
+            if (replacements.containsKey(module.path)) {
+                return replacements.get(module.path);
+            }
+            return module;
+        }
+    }
+
+    static class Module {
+
+        private final String path;
+        private final String version;
+
+        Module(String path, String version) {
+            this.path = path;
+            this.version = version;
+        }
+
+        static Module parse(String pathAndVersion) {
+            int atIndex = pathAndVersion.lastIndexOf(AT);
+            return new Module(pathAndVersion.substring(0, atIndex), pathAndVersion.substring(atIndex + 1));
+        }
+
+        @Override
+        public String toString() {
+            return path + AT + version;
+        }
+    }
+
+    private static class TreeNode {
+
+        private final String path;
+        private final DependencyInfo parent;
+
+        private TreeNode(String path, DependencyInfo parent) {
+            this.path = path;
+            this.parent = parent;
+        }
+    }
+}
@@ -8,7 +8,9 @@ import org.whitesource.agent.dependency.resolver.DependencyCollector;
 import org.whitesource.agent.utils.Cli;
 import org.whitesource.agent.utils.CommandLineProcess;
 
+import java.io.File;
 import java.io.IOException;
+import java.util.Arrays;
 import java.util.List;
 
 public class GradleCli extends Cli {
@@ -16,9 +18,12 @@ public class GradleCli extends Cli {
 
     protected static final String GRADLE_ASSEMBLE = "assemble";
     protected static final String GRADLE_PROJECTS = "projects";
+    protected static final String GRADLE_DEPENDENCY_REPORT = "wsDependencyReport";
+    protected static final String GRADLE_DOWNLOAD_DEPENDENCIES = "wsDownloadDependencies";
     private final String GRADLE_COMMAND = "gradle";
     private final String GRADLE_COMMAND_W_WINDOWS = "gradlew";
     private final String GRADLE_COMMAND_W_LINUX = "./gradlew";
+    private final String BAT_SUFFIX = ".bat";
 
     private String topLevelFolderGradlew = null;
 
@@ -30,11 +35,49 @@ public class GradleCli extends Cli {
     }
 
     public List<String> runGradleCmd(String rootDirectory, String[] params, boolean firstTime) {
+        return runGradleCmd(rootDirectory, params, firstTime, false);
+    }
+
+    /**
+     * Runs a gradle command with additional parameters.
+     * The other gradle environment is used only if the command can not be started or the gradle wrapper is missing, a
+     * build that failed, even if only some of its projects failed with '--continue', is not run again.
+     *
+     * @return the output of the command, also when the build failed, or null if the command could not be run
+     */
+    public List<String> runGradleCmd(String rootDirectory, GradleMvnCommand command, String... extraParams) {
+        if (isWrapperMissing(rootDirectory)) {
+            logger.debug("Gradle wrapper not found for {}, using {}", rootDirectory, GRADLE_COMMAND);
+            this.preferredEnvironment = Constants.GRADLE;
+        }
+        return runGradleCmd(rootDirectory, getGradleCommandParams(command, extraParams), true, true);
+    }
+
+    public String[] getGradleCommandParams(GradleMvnCommand command, String... extraParams) {
+        // added as is, the parameters may contain paths with spaces
+        String[] commandParams = getGradleCommandParams(command);
+        String[] params = Arrays.copyOf(commandParams, commandParams.length + extraParams.length);
+        System.arraycopy(extraParams, 0, params, commandParams.length, extraParams.length);
+        return params;
+    }
+
+    public String[] getGradleCommandParams(GradleMvnCommand command) {
+        return super.getCommandParams(getGradleCommand(), command.getCommand());
+    }
+
+    public void setTopLevelFolderGradlew(String topLevelFolderGradlew) {
+        this.topLevelFolderGradlew = topLevelFolderGradlew;
+    }
+
+    private List<String> runGradleCmd(String rootDirectory, String[] params, boolean firstTime, boolean keepFailedOutput) {
         try {
             // run gradle dependencies to get dependency tree
             CommandLineProcess commandLineProcess = new CommandLineProcess(rootDirectory, params);
             List<String> lines = commandLineProcess.executeProcess();
-            if (commandLineProcess.isErrorInProcess()) {
+            if (commandLineProcess.isErrorInProcess() && keepFailedOutput) {
+                logger.warn("Gradle command {} failed on {}, using the output of the projects that succeeded", params, rootDirectory);
+                return lines;
+            } else if (commandLineProcess.isErrorInProcess()) {
                 // in case gradle is not installed on the local machine, using 'gradlew' command, which uses local gradle wrapper
                 this.preferredEnvironment = this.preferredEnvironment.equals(Constants.GRADLE) ? Constants.GRADLE : Constants.GRADLE_WRAPPER;
                 params = getGradleCommandParams(GradleMvnCommand.DEPENDENCIES);
@@ -48,10 +91,12 @@ public class GradleCli extends Cli {
             }
         } catch (IOException e) {
             if (firstTime && StringUtils.isNotBlank(params[0]) && params[0].contains(GRADLE_COMMAND)) {
+                String gradleCommand = getGradleCommand();
                 this.preferredEnvironment = this.preferredEnvironment.equals(Constants.GRADLE_WRAPPER) ? Constants.GRADLE : Constants.GRADLE_WRAPPER;
-                params = getGradleCommandParams(GradleMvnCommand.DEPENDENCIES);
+                // the same command with the other environment
+                params = keepFailedOutput ? replaceGradleCommand(params, gradleCommand, getGradleCommand()) : getGradleCommandParams(GradleMvnCommand.DEPENDENCIES);
                 // calling 'runGradleCmd' recursively only once, for otherwise there will be a stack-over-flow error
-                return runGradleCmd(rootDirectory, params, false);
+                return runGradleCmd(rootDirectory, params, false, keepFailedOutput);
             } else {
                 logger.warn("Error getting results after running Gradle command {} on {}, {}", params, rootDirectory, e.getMessage());
                 logger.debug("Error: {}", e.getStackTrace());
@@ -60,22 +105,34 @@ public class GradleCli extends Cli {
         return null;
     }
 
-    public String[] getGradleCommandParams(GradleMvnCommand command) {
-        String gradleCommand;
+    private String getGradleCommand() {
         // WSE-753 - use the default gradle environment, set from the config file
         if (preferredEnvironment.equals(Constants.GRADLE_WRAPPER)) {
             if (this.topLevelFolderGradlew != null) {
-                gradleCommand = this.topLevelFolderGradlew + Constants.FORWARD_SLASH + GRADLE_COMMAND_W_WINDOWS;
-            } else {
-                gradleCommand = DependencyCollector.isWindows() ? GRADLE_COMMAND_W_WINDOWS : GRADLE_COMMAND_W_LINUX;
+                return this.topLevelFolderGradlew + Constants.FORWARD_SLASH + GRADLE_COMMAND_W_WINDOWS;
             }
-        } else {
-            gradleCommand = GRADLE_COMMAND;
+            return DependencyCollector.isWindows() ? GRADLE_COMMAND_W_WINDOWS : GRADLE_COMMAND_W_LINUX;
         }
-        return super.getCommandParams(gradleCommand, command.getCommand());
+        return GRADLE_COMMAND;
     }
 
-    public void setTopLevelFolderGradlew(String topLevelFolderGradlew) {
-        this.topLevelFolderGradlew = topLevelFolderGradlew;
+    private String[] replaceGradleCommand(String[] params, String gradleCommand, String otherGradleCommand) {
+        String[] otherParams = Arrays.copyOf(params, params.length);
+        for (int i = 0; i < otherParams.length; i++) {
+            if (otherParams[i].equals(gradleCommand)) {
+                otherParams[i] = otherGradleCommand;
+                break;
+            }
+        }
+        return otherParams;
+    }
+
+    // on windows a missing wrapper does not fail to start, 'cmd' fails instead
+    private boolean isWrapperMissing(String rootDirectory) {
+        if (!preferredEnvironment.equals(Constants.GRADLE_WRAPPER)) {
+            return false;
+        }
+        File wrapperFolder = new File(this.topLevelFolderGradlew != null ? this.topLevelFolderGradlew : rootDirectory);
+        return !new File(wrapperFolder, GRADLE_COMMAND_W_WINDOWS).isFile() && !new File(wrapperFolder, GRADLE_COMMAND_W_WINDOWS + BAT_SUFFIX).isFile();
     }
 }
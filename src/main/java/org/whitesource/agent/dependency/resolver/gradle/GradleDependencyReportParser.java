@@ -0,0 +1,164 @@
+package org.whitesource.agent.dependency.resolver.gradle;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import org.slf4j.Logger;
+import org.whitesource.agent.Constants;
+import org.whitesource.agent.api.model.DependencyInfo;
+import org.whitesource.agent.api.model.DependencyType;
+import org.whitesource.agent.utils.ChecksumCache;
+import org.whitesource.agent.utils.FilesUtils;
+import org.whitesource.agent.utils.LoggerFactory;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * Parses the JSON reports written by the 'gradleDependencyReport.gradle' init script, one report per gradle project,
+ * holding the resolved dependency graph of each configuration with the files of the resolved artifacts.
+ * <p>
+ * As with the 'gradle dependencies' output, a dependency found more than once in a project is reported once, and the
+ * dependencies of other projects of the build are added in place of the project itself.
+ */
+class GradleDependencyReportParser {
+
+    /* --- Static members --- */
+
+    private static final String JSON_EXTENSION = ".json";
+
+    private final Logger logger = LoggerFactory.getLogger(GradleDependencyReportParser.class);
+
+    /* --- Members --- */
+
+    private final Gson gson;
+
+    /* --- Constructors --- */
+
+    GradleDependencyReportParser() {
+        this.gson = new Gson();
+    }
+
+    /* --- Package methods --- */
+
+    /**
+     * @param reportFolder the folder the init script wrote the reports to
+     * @return the reports of the projects, by the canonical path of the project folder
+     */
+    Map<String, ProjectReport> readReports(File reportFolder) {
+        Map<String, ProjectReport> reports = new HashMap<>();
+        File[] reportFiles = reportFolder.listFiles((dir, name) -> name.endsWith(JSON_EXTENSION));
+        if (reportFiles == null) {
+            return reports;
+        }
+        for (File reportFile : reportFiles) {
+            try (Reader reader = new BufferedReader(new InputStreamReader(new FileInputStream(reportFile), StandardCharsets.UTF_8))) {
+                ProjectReport report = gson.fromJson(reader, ProjectReport.class);
+                if (report != null && report.projectDir != null) {
+                    reports.put(new File(report.projectDir).getCanonicalPath(), report);
+                }
+            } catch (IOException | JsonParseException e) {
+                logger.warn("Couldn't read gradle dependency report {}, error: {}", reportFile.getPath(), e.getMessage());
+            }
+        }
+        return reports;
+    }
+
+    /**
+     * @param report        the report of a project
+     * @param ignoredScopes the configurations to ignore
+     * @param bomFile       the build file of the project
+     * @return the dependency trees of the project
+     */
+    List<DependencyInfo> parse(ProjectReport report, String[] ignoredScopes, String bomFile) {
+        logger.info("Start parsing gradle dependency report of: {}", report.path);
+        Set<String> ignoredConfigurations = new HashSet<>(Arrays.asList(ignoredScopes));
+        List<DependencyInfo> dependencies = new ArrayList<>();
+        Set<String> foundComponents = new HashSet<>();
+        Set<String> sha1s = new HashSet<>();
+        if (report.configurations == null) {
+            return dependencies;
+        }
+        for (ConfigurationReport configuration : report.configurations) {
+            if (ignoredConfigurations.contains(configuration.name) || configuration.dependencies == null || configuration.components == null) {
+                continue;
+            }
+            addDependencies(configuration, configuration.dependencies, dependencies, foundComponents, sha1s, new HashSet<>(), bomFile);
+        }
+        return dependencies;
+    }
+
+    /* --- Private methods --- */
+
+    private void addDependencies(ConfigurationReport configuration, List<String> componentKeys, Collection<DependencyInfo> dependencies,
+                                 Set<String> foundComponents, Set<String> sha1s, Set<String> visitedProjects, String bomFile) {
+        for (String componentKey : componentKeys) {
+            Component component = configuration.components.get(componentKey);
+            if (component == null || component.dependencies == null) {
+                continue;
+            }
+            if (component.project != null) {
+                // the project itself is not reported, only its dependencies
+                if (visitedProjects.add(componentKey)) {
+                    addDependencies(configuration, component.dependencies, dependencies, foundComponents, sha1s, visitedProjects, bomFile);
+                }
+                continue;
+            }
+            if (!foundComponents.add(componentKey)) {
+                continue;
+            }
+            DependencyInfo dependency = createDependency(component, bomFile);
+            if (dependency.getSha1() != null && !sha1s.add(dependency.getSha1())) {
+                continue;
+            }
+            dependencies.add(dependency);
+            addDependencies(configuration, component.dependencies, dependency.getChildren(), foundComponents, sha1s, visitedProjects, bomFile);
+        }
+    }
+
+    private DependencyInfo createDependency(Component component, String bomFile) {
+        DependencyInfo dependency = new DependencyInfo(component.group, component.name, component.version);
+        dependency.setDependencyType(DependencyType.GRADLE);
+        if (component.files != null && !component.files.isEmpty()) {
+            File file = new File(component.files.get(0));
+            try {
+                dependency.setSha1(ChecksumCache.getInstance().getSha1(file));
+                dependency.setSystemPath(file.getPath());
+                dependency.setFilename(file.getName());
+                dependency.setDependencyFile(bomFile);
+                dependency.setType(FilesUtils.getFileExtension(file.getPath()));
+            } catch (IOException e) {
+                logger.warn("Couldn't calculate sha1 for {}, error: {}", file.getPath(), e.getMessage());
+            }
+        } else {
+            logger.debug("No file resolved for " + component.group + Constants.DOT + component.name + Constants.DOT + component.version);
+        }
+        return dependency;
+    }
+
+    /* --- Nested classes --- */
+
+    static class ProjectReport {
+
+        private String path;
+        private String projectDir;
+        private List<ConfigurationReport> configurations;
+    }
+
+    private static class ConfigurationReport {
+
+        private String name;
+        private List<String> dependencies;
+        private Map<String, Component> components;
+    }
+
+    private static class Component {
+
+        private String group;
+        private String name;
+        private String version;
+        private String project;
+        private List<String> files;
+        private List<String> dependencies;
+    }
+}
@@ -1,8 +1,6 @@
 package org.whitesource.agent.dependency.resolver.gradle;
 
 import org.apache.commons.io.FileUtils;
-import org.apache.commons.io.IOUtils;
-import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.whitesource.agent.Constants;
 import org.whitesource.agent.TempFolders;
@@ -20,7 +18,6 @@ import java.io.*;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.nio.file.StandardOpenOption;
 import java.util.*;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
@@ -35,12 +32,15 @@ public class GradleDependencyResolver extends AbstractDependencyResolver {
 
     private static final String JAR_EXTENSION = Constants.DOT + Constants.JAR;
     private static final String PROJECT = "--- Project";
-    public static final String COPY_DEPENDENCIES_TASK_TXT = "copyDependenciesTask.txt";
-    private static final String DEPENDENCIES = "dependencies";
-    private static final String CURLY_BRACKETS_OPEN = "{";
-    private static final String CURLY_BRACKTES_CLOSE = "}";
-    private static final String TASK_COPY_DEPENDENCIES_HEADER = "task copyDependencies(type: Copy) {";
-    private static final String TASK_COPY_DEPENDENCIES_FOOTER = "    into \"lib\"";
+    public static final String DOWNLOAD_DEPENDENCIES_INIT_SCRIPT = "gradleDownloadDependencies.gradle";
+    public static final String DEPENDENCY_REPORT_INIT_SCRIPT = "gradleDependencyReport.gradle";
+    private static final String DEPENDENCY_REPORT_FOLDER = "dependencyReport";
+    private static final String INIT_SCRIPT = "--init-script";
+    private static final String DEPENDENCY_REPORT_DIR_PROPERTY = "-PwsDependencyReportDir=";
+    private static final String CONTINUE = "--continue";
+    private static final String DAEMON = "--daemon";
+    private static final String RESOLVED_PROJECT_PREFIX = "wsResolvedProject=";
+    private static final String SETTINGS_GRADLE = "settings.gradle";
 
     /* --- Private Members --- */
 
@@ -51,7 +51,9 @@ public class GradleDependencyResolver extends AbstractDependencyResolver {
     private boolean ignoreSourceCode;
     private boolean gradleAggregateModules;
     private boolean gradleRunPreStep;
+    private boolean gradleSingleInvocation;
     private HashMap<String, List<String>> dependencyTrees;
+    private GradleDependencyReportParser gradleDependencyReportParser;
 
 
     private final Logger logger = LoggerFactory.getLogger(GradleDependencyResolver.class);
@@ -60,6 +62,11 @@ public class GradleDependencyResolver extends AbstractDependencyResolver {
 
     public GradleDependencyResolver(boolean runAssembleCommand, boolean ignoreSourceCode, boolean gradleAggregateModules, String gradlePreferredEnvironment, String[] gradleIgnoredScopes,
                                     String gradleLocalRepositoryPath, boolean gradleRunPreStep) {
+        this(runAssembleCommand, ignoreSourceCode, gradleAggregateModules, gradlePreferredEnvironment, gradleIgnoredScopes, gradleLocalRepositoryPath, gradleRunPreStep, false);
+    }
+
+    public GradleDependencyResolver(boolean runAssembleCommand, boolean ignoreSourceCode, boolean gradleAggregateModules, String gradlePreferredEnvironment, String[] gradleIgnoredScopes,
+                                    String gradleLocalRepositoryPath, boolean gradleRunPreStep, boolean gradleSingleInvocation) {
         super();
         gradleCli = new GradleCli(gradlePreferredEnvironment);
         gradleLinesParser = new GradleLinesParser(runAssembleCommand, gradleCli, gradleLocalRepositoryPath);
@@ -68,7 +75,9 @@ public class GradleDependencyResolver extends AbstractDependencyResolver {
         this.ignoreSourceCode = ignoreSourceCode;
         this.gradleAggregateModules = gradleAggregateModules;
         this.gradleRunPreStep = gradleRunPreStep;
+        this.gradleSingleInvocation = gradleSingleInvocation;
         this.dependencyTrees = new HashMap<>();
+        this.gradleDependencyReportParser = new GradleDependencyReportParser();
     }
 
     /* --- Overridden methods --- */
@@ -93,6 +102,9 @@ public class GradleDependencyResolver extends AbstractDependencyResolver {
         if (gradleRunPreStep) {
             downloadMissingDependencies(projectFolder);
         }
+        // resolve all the modules of the build at once, the modules missing from the reports are scanned one by one
+        Map<String, GradleDependencyReportParser.ProjectReport> dependencyReports = gradleSingleInvocation && bomFiles.size() > 0 ?
+                getDependencyReports(topLevelFolder) : new HashMap<>();
 
         for (String bomFile : bomFiles) {
             String bomFileFolder = new File(bomFile).getParent();
@@ -111,21 +123,27 @@ public class GradleDependencyResolver extends AbstractDependencyResolver {
             //                logger.debug("Ignoring project at {} - because it was not listed by \"gradle projects\" command", moduleRelativeName);
             //                continue;
             //            }
-            List<String> lines = getDependenciesTree(bomFileFolder, moduleName);
-            if (lines != null) {
-                List<DependencyInfo> dependencies = collectDependencies(lines, bomFileFolder, bomFileFolder.equals(topLevelFolder), bomFile);
-                if (dependencies.size() > 0) {
-                    AgentProjectInfo agentProjectInfo = new AgentProjectInfo();
-                    agentProjectInfo.getDependencies().addAll(dependencies);
-                    if (!gradleAggregateModules) {
-                        Coordinates coordinates = new Coordinates();
-                        coordinates.setArtifactId(moduleName);
-                        agentProjectInfo.setCoordinates(coordinates);
-                    }
-                    projectInfoPathMap.put(agentProjectInfo, bomFolder.toPath());
-                    if (ignoreSourceCode) {
-                        excludes.addAll(normalizeLocalPath(projectFolder, topLevelFolder, extensionPattern(GRADLE_SCRIPT_EXTENSION), null));
-                    }
+            List<DependencyInfo> dependencies = null;
+            GradleDependencyReportParser.ProjectReport dependencyReport = dependencyReports.get(getCanonicalPath(bomFolder));
+            if (dependencyReport != null) {
+                dependencies = gradleDependencyReportParser.parse(dependencyReport, ignoredScopes, bomFile);
+            } else {
+                List<String> lines = getDependenciesTree(bomFileFolder, moduleName);
+                if (lines != null) {
+                    dependencies = collectDependencies(lines, bomFileFolder, bomFileFolder.equals(topLevelFolder), bomFile);
+                }
+            }
+            if (dependencies != null && dependencies.size() > 0) {
+                AgentProjectInfo agentProjectInfo = new AgentProjectInfo();
+                agentProjectInfo.getDependencies().addAll(dependencies);
+                if (!gradleAggregateModules) {
+                    Coordinates coordinates = new Coordinates();
+                    coordinates.setArtifactId(moduleName);
+                    agentProjectInfo.setCoordinates(coordinates);
+                }
+                projectInfoPathMap.put(agentProjectInfo, bomFolder.toPath());
+                if (ignoreSourceCode) {
+                    excludes.addAll(normalizeLocalPath(projectFolder, topLevelFolder, extensionPattern(GRADLE_SCRIPT_EXTENSION), null));
                 }
             }
         }
@@ -195,6 +213,51 @@ public class GradleDependencyResolver extends AbstractDependencyResolver {
         return lines;
     }
 
+    // run the dependency report init script once on the top folder, all the projects of the build write their report
+    private Map<String, GradleDependencyReportParser.ProjectReport> getDependencyReports(String topLevelFolder) {
+        Map<String, GradleDependencyReportParser.ProjectReport> dependencyReports = new HashMap<>();
+        String tempFolder = new FilesUtils().createTmpFolder(false, TempFolders.UNIQUE_GRADLE_TEMP_FOLDER);
+        if (tempFolder == null) {
+            return dependencyReports;
+        }
+        File reportFolder = new File(tempFolder, DEPENDENCY_REPORT_FOLDER);
+        try {
+            File initScript = writeInitScript(tempFolder, DEPENDENCY_REPORT_INIT_SCRIPT);
+            FileUtils.forceMkdir(reportFolder);
+            logger.info("Resolving the dependencies of all the gradle projects of {}", topLevelFolder);
+            // the reports of the projects resolved successfully are used even if others failed
+            gradleCli.runGradleCmd(topLevelFolder, GradleMvnCommand.DEPENDENCY_REPORT, INIT_SCRIPT, initScript.getPath(),
+                    DEPENDENCY_REPORT_DIR_PROPERTY + reportFolder.getPath(), CONTINUE);
+            dependencyReports = gradleDependencyReportParser.readReports(reportFolder);
+            logger.debug("Found the dependency reports of {} gradle projects", dependencyReports.size());
+        } catch (IOException e) {
+            logger.warn("Couldn't run the gradle dependency report on {}, error: {}", topLevelFolder, e.getMessage());
+            logger.debug("Error: {}", e.getStackTrace());
+        } finally {
+            FileUtils.deleteQuietly(new File(tempFolder));
+        }
+        return dependencyReports;
+    }
+
+    private File writeInitScript(String tempFolder, String initScriptName) throws IOException {
+        File initScript = new File(tempFolder, initScriptName);
+        try (InputStream inputStream = Main.class.getClassLoader().getResourceAsStream(initScriptName)) {
+            if (inputStream == null) {
+                throw new IOException("Could not read " + initScriptName);
+            }
+            FileUtils.copyInputStreamToFile(inputStream, initScript);
+        }
+        return initScript;
+    }
+
+    private String getCanonicalPath(File folder) {
+        try {
+            return folder.getCanonicalPath();
+        } catch (IOException e) {
+            return folder.getAbsolutePath();
+        }
+    }
+
     private List<DependencyInfo> collectDependencies(List<String> lines, String directory, boolean isParent, String bomFile) {
         List<DependencyInfo> dependencyInfos = new ArrayList<>();
         String directoryName = Constants.EMPTY_STRING;
@@ -244,162 +307,43 @@ public class GradleDependencyResolver extends AbstractDependencyResolver {
         return resultProjectsList;
     }
 
-    // copy all the bom files (build.gradle) to temp folder and run the command "gradle copyDependencies"
+    // resolve the configurations of the projects with an init script, so the missing dependencies are downloaded without
+    // copying or editing the project; a folder already resolved as part of a build found higher in the tree is skipped
     private void downloadMissingDependencies(String projectFolder) {
         logger.debug("running pre-steps on folder {}", projectFolder);
         String tempFolder = new FilesUtils().createTmpFolder(false, TempFolders.UNIQUE_GRADLE_TEMP_FOLDER);
-        File buildGradleTempDirectory = new File(tempFolder);
-        if (copyProjectFolder(projectFolder, buildGradleTempDirectory)) {
-            try {
-                Stream<Path> pathStream = Files.walk(Paths.get(buildGradleTempDirectory.getPath()), Integer.MAX_VALUE).filter(file -> file.getFileName().toString().equals(Constants.BUILD_GRADLE));
-                pathStream.forEach(path -> {
-                    File buildGradleTmp = new File(path.toString());
-                    if (buildGradleTmp.exists()) {
-                        if (appendTaskToBomFile(buildGradleTmp)) {
-                            runPreStepCommand(buildGradleTmp);
-                            removeTaskFromBomFile(buildGradleTmp);
-                        }
-                    } else {
-                        logger.warn("Could not find the path {}", buildGradleTmp.getPath());
-                    }
-                });
-            } catch (IOException e) {
-                logger.warn("Couldn't list all 'build.gradle' files, error: {}", e.getMessage());
-                logger.debug("Error: {}", e.getStackTrace());
-            } finally {
-                new TempFolders().deleteTempFoldersHelper(Paths.get(System.getProperty("java.io.tmpdir"), TempFolders.UNIQUE_GRADLE_TEMP_FOLDER).toString());
-            }
-        }
-    }
-
-    // copy project to local temp directory
-    private boolean copyProjectFolder(String projectFolder, File buildGradleTempDirectory) {
-        try {
-            FileUtils.copyDirectory(new File(projectFolder), buildGradleTempDirectory);
-        } catch (IOException e) {
-            logger.error("Could not copy the folder {} to {} , the cause {}", projectFolder, buildGradleTempDirectory.getPath(), e.getMessage());
-            return false;
+        if (tempFolder == null) {
+            return;
         }
-        logger.debug("copied folder {} to temp folder successfully", projectFolder);
-        return true;
-    }
-
-    // append new task to bom file
-    private boolean appendTaskToBomFile(File buildGradleTmp) {
-        FileReader fileReader;
-        BufferedReader bufferedReader = null;
-        InputStream inputStream = null;
-        boolean hasDependencies = false;
-        try {
-            // appending the task only if the build.gradle file has 'dependencies {' node (only at the beginning of the line)
-            // otherwise, later when the task is ran it'll fail
-            fileReader = new FileReader(buildGradleTmp);
-            bufferedReader = new BufferedReader(fileReader);
-            String currLine;
-            while ((currLine = bufferedReader.readLine()) != null) {
-                if (currLine.indexOf(DEPENDENCIES + Constants.WHITESPACE + CURLY_BRACKETS_OPEN) == 0 || currLine.indexOf(DEPENDENCIES + CURLY_BRACKETS_OPEN) == 0) {
-                    hasDependencies = true;
-                    break;
+        try (Stream<Path> pathStream = Files.walk(Paths.get(projectFolder), Integer.MAX_VALUE)) {
+            File initScript = writeInitScript(tempFolder, DOWNLOAD_DEPENDENCIES_INIT_SCRIPT);
+            // a settings file marks the root of a multi-project build, which resolves all its projects at once
+            List<File> buildFolders = pathStream.filter(file -> file.getFileName().toString().equals(Constants.BUILD_GRADLE) ||
+                    file.getFileName().toString().equals(SETTINGS_GRADLE))
+                    .map(path -> path.getParent().toFile())
+                    .distinct()
+                    .sorted(Comparator.comparingInt(folder -> folder.toPath().getNameCount()))
+                    .collect(Collectors.toList());
+            Set<String> resolvedFolders = new HashSet<>();
+            for (File buildFolder : buildFolders) {
+                if (resolvedFolders.contains(getCanonicalPath(buildFolder))) {
+                    continue;
                 }
-            }
-            if (hasDependencies) {
-                byte[] bytes;
-                List<String> lines = getDependenciesTree(buildGradleTmp.getParent(), buildGradleTmp.getParentFile().getName());
+                // the daemon started by the first build is reused by the next ones
+                List<String> lines = gradleCli.runGradleCmd(buildFolder.getPath(), GradleMvnCommand.DOWNLOAD_DEPENDENCIES,
+                        INIT_SCRIPT, initScript.getPath(), DAEMON, CONTINUE);
+                resolvedFolders.add(getCanonicalPath(buildFolder));
+                // also the output of a failed build, the projects it resolved before failing are not resolved again
                 if (lines != null) {
-                    List<String> scopes = getScopes(lines);
-                    String copyDependenciesTask = Constants.NEW_LINE + TASK_COPY_DEPENDENCIES_HEADER + Constants.NEW_LINE;
-                    for (String scope : scopes) {
-                        copyDependenciesTask = copyDependenciesTask.concat("   from configurations." + scope + Constants.NEW_LINE);
-                    }
-                    copyDependenciesTask = copyDependenciesTask.concat(TASK_COPY_DEPENDENCIES_FOOTER + Constants.NEW_LINE + CURLY_BRACKTES_CLOSE);
-                    bytes = copyDependenciesTask.getBytes();
-                } else {
-                    ClassLoader classLoader = Main.class.getClassLoader();
-                    inputStream = classLoader.getResourceAsStream(COPY_DEPENDENCIES_TASK_TXT);
-                    bytes = IOUtils.toByteArray(inputStream);
-                }
-                if (bytes.length > 0) {
-                    Files.write(Paths.get(buildGradleTmp.getPath()), bytes, StandardOpenOption.APPEND);
-                } else if (lines == null) {
-                    logger.warn("Could not read {}", COPY_DEPENDENCIES_TASK_TXT);
-                } else {
-                    logger.warn("Could not read dependencies' tree");
-                }
-            }
-        } catch (IOException e) {
-            logger.error("Could not write into the file {}, the cause {}", buildGradleTmp.getPath(), e.getMessage());
-            hasDependencies = false;
-        }
-        try {
-            if (inputStream != null) {
-                inputStream.close();
-            }
-            if (bufferedReader != null) {
-                bufferedReader.close();
-            }
-        } catch (IOException e) {
-            logger.error("Could close the file, cause", e.getMessage());
-        }
-        return hasDependencies;
-    }
-
-    private List<String> getScopes(List<String> lines) {
-        List<String> scopes = new ArrayList<>();
-        for (int i = 1; i < lines.size(); i++) {
-            String currLine = lines.get(i);
-            String prevLine = lines.get(i - 1);
-            if ((currLine.startsWith(Constants.PLUS) || currLine.startsWith(Constants.BACK_SLASH)) &&
-                    (!prevLine.startsWith(Constants.WHITESPACE) && !prevLine.startsWith(Constants.PIPE) && !prevLine.startsWith(Constants.PLUS) && !prevLine.startsWith(Constants.BACK_SLASH))) {
-                String scope = prevLine.split(" - ")[0];
-                scopes.add(scope);
-            }
-        }
-        return scopes;
-    }
-
-    // run pre step command gradle copyDependencies
-    private void runPreStepCommand(File bomFile) {
-        String directory = bomFile.getParent();
-        String[] gradleCommandParams = gradleCli.getGradleCommandParams(GradleMvnCommand.COPY_DEPENDENCIES);
-        if (StringUtils.isNotEmpty(directory) && gradleCommandParams.length > 0) {
-            gradleCli.runGradleCmd(directory, gradleCommandParams, true);
-        } else {
-            logger.warn("Could not run gradle command");
-        }
-    }
-
-    // there are cases where modules are connected to each other, and in such cases some scopes inside the copy-dependencies task interfere with other modules;
-    // therefore, after running the copy-dependencies task removing it from the build.gradle file
-    private void removeTaskFromBomFile(File buildGradleTmp) {
-        FileReader fileReader;
-        BufferedReader bufferedReader = null;
-        try {
-            fileReader = new FileReader(buildGradleTmp);
-            bufferedReader = new BufferedReader(fileReader);
-            String currLine;
-            String originalLines = "";
-            while ((currLine = bufferedReader.readLine()) != null) {
-                if (currLine.equals(TASK_COPY_DEPENDENCIES_HEADER)) {
-                    break;
-                } else {
-                    originalLines = originalLines.concat(currLine + Constants.NEW_LINE);
+                    lines.stream().filter(line -> line.startsWith(RESOLVED_PROJECT_PREFIX))
+                            .forEach(line -> resolvedFolders.add(getCanonicalPath(new File(line.substring(RESOLVED_PROJECT_PREFIX.length())))));
                 }
             }
-            if (!originalLines.isEmpty()) {
-                byte[] bytes = originalLines.getBytes();
-                Files.write(Paths.get(buildGradleTmp.getPath()), bytes, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
-            }
         } catch (IOException e) {
-            logger.warn("Couldn't remove 'copyDependencies' task from {}, error: {}", buildGradleTmp.getPath(), e.getMessage());
+            logger.warn("Couldn't download the missing dependencies of {}, error: {}", projectFolder, e.getMessage());
             logger.debug("Error: {}", e.getStackTrace());
         } finally {
-            try {
-                if (bufferedReader != null) {
-                    bufferedReader.close();
-                }
-            } catch (IOException e) {
-                logger.error("Could close the file, cause", e.getMessage());
-            }
+            FileUtils.deleteQuietly(new File(tempFolder));
         }
     }
-}
\ No newline at end of file
+}
@@ -10,6 +10,7 @@ import org.whitesource.agent.dependency.resolver.maven.MavenTreeDependencyCollec
 import org.whitesource.agent.utils.FilesScanner;
 import org.whitesource.agent.utils.FilesUtils;
 import org.whitesource.agent.utils.LoggerFactory;
+import org.whitesource.agent.utils.ToolDiscovery;
 
 import java.io.File;
 import java.io.IOException;
@@ -241,8 +242,7 @@ public class GradleLinesParser extends MavenTreeDependencyCollector {
     }
 
     private String getDotGradleFolderPath() {
-        String currentUsersHomeDir = System.getProperty(Constants.USER_HOME);
-        File dotGradle = Paths.get(currentUsersHomeDir, ".gradle", "caches", "modules-2", "files-2.1").toFile();
+        File dotGradle = Paths.get(ToolDiscovery.getInstance().getGradleUserHome(), "caches", "modules-2", "files-2.1").toFile();
 
         if (dotGradle.exists()) {
             return dotGradle.getAbsolutePath();
@@ -4,11 +4,12 @@ import org.whitesource.agent.Constants;
 import org.whitesource.agent.dependency.resolver.go.GoDependencyResolver;
 
 public enum GradleMvnCommand {
-    COPY_DEPENDENCIES(Constants.COPY_DEPENDENCIES),
+    DOWNLOAD_DEPENDENCIES(GradleCli.GRADLE_DOWNLOAD_DEPENDENCIES),
     DEPENDENCIES(Constants.DEPENDENCIES),
     ASSEMBLE(GradleCli.GRADLE_ASSEMBLE),
     LOCK(GoDependencyResolver.GRADLE_LOCK),
     PROJECTS(GradleCli.GRADLE_PROJECTS),
+    DEPENDENCY_REPORT(GradleCli.GRADLE_DEPENDENCY_REPORT),
     GO_DEPENDENCIES(GoDependencyResolver.GO_DEPENDENCIES),
     GO_LOCK(GoDependencyResolver.GRADLE_GO_LOCK);
 
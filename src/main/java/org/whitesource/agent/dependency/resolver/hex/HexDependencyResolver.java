@@ -9,7 +9,7 @@ import org.whitesource.agent.api.model.DependencyType;
 import org.whitesource.agent.dependency.resolver.AbstractDependencyResolver;
 import org.whitesource.agent.dependency.resolver.DependencyCollector;
 import org.whitesource.agent.dependency.resolver.ResolutionResult;
-import org.whitesource.agent.hash.ChecksumUtils;
+import org.whitesource.agent.utils.ChecksumCache;
 import org.whitesource.agent.utils.Cli;
 import org.whitesource.agent.utils.LoggerFactory;
 
@@ -318,7 +318,7 @@ public class HexDependencyResolver extends AbstractDependencyResolver {
                 File tarFile = getTarFile(name);
                 if (tarFile != null){
                     try {
-                        sha1 = ChecksumUtils.calculateSHA1(tarFile);
+                        sha1 = ChecksumCache.getInstance().getSha1(tarFile);
                         // extracting the version from the TAR file's name
                         Pattern versionPattern = Pattern.compile(VERSION_REGEX);
                         Matcher matcher = versionPattern.matcher(tarFile.getName());
@@ -352,7 +352,7 @@ public class HexDependencyResolver extends AbstractDependencyResolver {
         }
         File tarFile = new File(dotHexCachePath + fileSeparator + name + Constants.DASH + version + TAR_EXTENSION);
         try {
-            return ChecksumUtils.calculateSHA1(tarFile);
+            return ChecksumCache.getInstance().getSha1(tarFile);
         } catch (IOException e) {
             logger.warn("Failed calculating SHA1 of {}.  Make sure HEX is installed", tarFile.getPath());
             logger.debug("Error: {}", e.getStackTrace());
@@ -1,8 +1,5 @@
 package org.whitesource.agent.dependency.resolver.html;
 
-import com.sun.jersey.api.client.Client;
-import com.sun.jersey.api.client.ClientResponse;
-import com.sun.jersey.api.client.WebResource;
 import org.apache.commons.lang.StringUtils;
 import org.jsoup.Jsoup;
 import org.jsoup.nodes.Document;
@@ -11,20 +8,22 @@ import org.jsoup.select.Elements;
 import org.slf4j.Logger;
 import org.whitesource.agent.Constants;
 import org.whitesource.agent.DependencyInfoFactory;
-import org.whitesource.agent.TempFolders;
 import org.whitesource.agent.api.model.DependencyInfo;
 import org.whitesource.agent.api.model.DependencyType;
 import org.whitesource.agent.dependency.resolver.AbstractDependencyResolver;
 import org.whitesource.agent.dependency.resolver.ResolutionResult;
-import org.whitesource.agent.utils.FilesUtils;
 import org.whitesource.agent.utils.LoggerFactory;
 
-import javax.ws.rs.core.MediaType;
+import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.IOException;
-import java.io.PrintWriter;
+import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -44,11 +43,21 @@ public class HtmlDependencyResolver extends AbstractDependencyResolver {
     public final String[] includesPattern = new String[htmlTypeExtensions.size()];
     private final Pattern patternOfFirstLetter = Pattern.compile("[a-zA-Z].*");
     private final Pattern patternOfLegitSrcUrl = Pattern.compile("<%.*%>");
-    private Map<String, String> urlResponseMap = new HashMap<>();
+    private final Set<String> reportedUrls = Collections.synchronizedSet(new HashSet<>());
+    private final DependencyInfoFactory dependencyInfoFactory = new DependencyInfoFactory();
+    private final boolean streamingParse;
 
     /* --- Constructors --- */
 
     public HtmlDependencyResolver() {
+        this(false);
+    }
+
+    /**
+     * @param streamingParse true to find the script urls with {@link SrcAttributeScanner} instead of a jsoup document
+     */
+    public HtmlDependencyResolver(boolean streamingParse) {
+        this.streamingParse = streamingParse;
         int i = 0;
         for (String extension : htmlTypeExtensions) {
             this.includesPattern[i++] = Constants.PATTERN + Constants.DOT + extension;
@@ -59,41 +68,78 @@ public class HtmlDependencyResolver extends AbstractDependencyResolver {
 
     @Override
     protected ResolutionResult resolveDependencies(String projectFolder, String topLevelFolder, Set<String> bomFiles) {
-        Collection<DependencyInfo> dependencies = new LinkedList<>();
+        // create list of links for .js files for each html file
+        Map<String, List<String>> scriptUrlsByFile = getScriptUrls(bomFiles);
 
-        for (String htmlFile : bomFiles) {
-            Document htmlFileDocument;
-            try {
-                // todo consider collect other tags - not ser only
-                htmlFileDocument = Jsoup.parse(new File(htmlFile), Constants.UTF8);
-                Elements script = htmlFileDocument.getElementsByAttribute(Constants.SRC);
-                // create list of links for .js files for each html file
-                List<String> scriptUrls = new LinkedList<>();
-                for (Element srcLink : script) {
-                    String src = srcLink.attr(Constants.SRC);
-                    if (src != null && isLegitSrcUrl(src)) {
-                        String srcUrl = fixUrls(src);
-                        if (srcUrl != null) {
-                            scriptUrls.add(srcUrl);
-                        }
-                    }
+        // each script is reported once, for the first html file referencing it
+        List<String> newScriptUrls = new LinkedList<>();
+        for (List<String> scriptUrls : scriptUrlsByFile.values()) {
+            for (String scriptUrl : scriptUrls) {
+                if (!reportedUrls.contains(scriptUrl)) {
+                    newScriptUrls.add(scriptUrl);
                 }
-                dependencies.addAll(collectJsFilesAndCalcHashes(scriptUrls, htmlFile, this.urlResponseMap));
-            } catch (IOException e) {
-                logger.debug("Cannot parse the html file: {}", htmlFile);
             }
         }
+        Map<String, byte[]> scripts = ScriptFetcher.getInstance().fetchAll(newScriptUrls);
 
-        // delete parent folder of HTML Resolver
-        try {
-            new TempFolders().deleteTempFoldersHelper(Paths.get(System.getProperty("java.io.tmpdir"), TempFolders.UNIQUE_HTML_TEMP_FOLDER).toString());
-        } catch (Exception e) {
-            logger.debug("Failed to delete HTML Dependency Resolver Folder{}", e.getMessage());
+        Collection<DependencyInfo> dependencies = new LinkedList<>();
+        for (Map.Entry<String, List<String>> entry : scriptUrlsByFile.entrySet()) {
+            dependencies.addAll(collectJsFilesAndCalcHashes(entry.getValue(), entry.getKey(), scripts));
         }
         // check the type and excludes
         return new ResolutionResult(dependencies, getExcludes(), getDependencyType(), topLevelFolder);
     }
 
+    // the html files are parsed concurrently, the urls are returned in the order of the files
+    Map<String, List<String>> getScriptUrls(Set<String> htmlFiles) {
+        Map<String, List<String>> scriptUrlsByFile = new LinkedHashMap<>();
+        if (htmlFiles.isEmpty()) {
+            return scriptUrlsByFile;
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(Runtime.getRuntime().availableProcessors(), htmlFiles.size()));
+        try {
+            Map<String, Future<List<String>>> futures = new LinkedHashMap<>();
+            for (String htmlFile : htmlFiles) {
+                futures.put(htmlFile, executorService.submit(() -> getScriptUrls(htmlFile)));
+            }
+            for (Map.Entry<String, Future<List<String>>> future : futures.entrySet()) {
+                try {
+                    scriptUrlsByFile.put(future.getKey(), future.getValue().get());
+                } catch (ExecutionException e) {
+                    logger.debug("Cannot parse the html file: {}", future.getKey());
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executorService.shutdownNow();
+        }
+        return scriptUrlsByFile;
+    }
+
+    private List<String> getScriptUrls(String htmlFile) throws IOException {
+        // todo consider collect other tags - not ser only
+        List<String> srcAttributes = streamingParse ? SrcAttributeScanner.getSrcAttributes(Files.readAllBytes(Paths.get(htmlFile))) : null;
+        if (srcAttributes == null) {
+            srcAttributes = new LinkedList<>();
+            Document htmlFileDocument = Jsoup.parse(new File(htmlFile), Constants.UTF8);
+            Elements script = htmlFileDocument.getElementsByAttribute(Constants.SRC);
+            for (Element srcLink : script) {
+                srcAttributes.add(srcLink.attr(Constants.SRC));
+            }
+        }
+        List<String> scriptUrls = new LinkedList<>();
+        for (String src : srcAttributes) {
+            if (src != null && isLegitSrcUrl(src)) {
+                String srcUrl = fixUrls(src);
+                if (srcUrl != null) {
+                    scriptUrls.add(srcUrl);
+                }
+            }
+        }
+        return scriptUrls;
+    }
+
     private boolean isLegitSrcUrl(String srcUrl) {
         // Remove parameters if JS is called with parameters
         // For example: http://somexample.com/test.js?a=1&b=3
@@ -110,55 +156,25 @@ public class HtmlDependencyResolver extends AbstractDependencyResolver {
         return false;
     }
 
-    private List<DependencyInfo> collectJsFilesAndCalcHashes(List<String> scriptUrls, String htmlFilePath, Map<String, String> urlResponseMap) {
+    private List<DependencyInfo> collectJsFilesAndCalcHashes(List<String> scriptUrls, String htmlFilePath, Map<String, byte[]> scripts) {
         List<DependencyInfo> dependencies = new LinkedList<>();
-        String body = null;
-        String tempFolder = new FilesUtils().createTmpFolder(false, TempFolders.UNIQUE_HTML_TEMP_FOLDER);
-        File tempFolderFile = new File(tempFolder);
-        String dependencyFileName = null;
-        if (tempFolder != null) {
-            for (String scriptUrl : scriptUrls) {
-                try {
-                    if (urlResponseMap.containsKey(scriptUrl)) {
-                        body = urlResponseMap.get(scriptUrl);
-                    } else {
-                        Client client = Client.create();
-                        WebResource webResource = client.resource(scriptUrl);
-                        ClientResponse response = webResource.accept(MediaType.APPLICATION_JSON).get(ClientResponse.class);
-                        if (response.getStatus() != 200) {
-                            logger.debug("Could not reach the registry using the URL: {}.", scriptUrl);
-                        } else {
-                            logger.debug("Found a dependency in html file {}, URL: {}", htmlFilePath, scriptUrl);
-                            body = response.getEntity(String.class);
-
-                            String fileName = scriptUrl.substring(scriptUrl.lastIndexOf(Constants.FORWARD_SLASH) + 1);
-                            dependencyFileName = tempFolder + File.separator + fileName;
-                            PrintWriter writer = new PrintWriter(dependencyFileName, Constants.UTF8);
-                            if (writer != null) {
-                                writer.println(body);
-                                writer.close();
-                            }
-                            DependencyInfoFactory dependencyInfoFactory = new DependencyInfoFactory();
-                            DependencyInfo dependencyInfo = dependencyInfoFactory.createDependencyInfo(tempFolderFile, fileName);
-                            if (dependencyInfo != null) {
-                                dependencies.add(dependencyInfo);
-                                dependencyInfo.setSystemPath(htmlFilePath);
-                                dependencyInfo.setDependencyFile(htmlFilePath);
-                            }
-                        }
-                    }
-                } catch (IOException e) {
-                    logger.debug("Failed writing to file {}", dependencyFileName);
-                } catch (Exception e) {
-                    logger.debug("Could not reach the registry using the URL: {}.", scriptUrl);
-                } finally {
-                    if (StringUtils.isNotBlank(scriptUrl)) {
-                        urlResponseMap.put(scriptUrl, body);
-                    }
-                }
+        for (String scriptUrl : scriptUrls) {
+            if (StringUtils.isBlank(scriptUrl) || !reportedUrls.add(scriptUrl)) {
+                continue;
+            }
+            byte[] body = scripts.get(scriptUrl);
+            if (body == null) {
+                continue;
+            }
+            logger.debug("Found a dependency in html file {}, URL: {}", htmlFilePath, scriptUrl);
+            // the script is hashed as downloaded, without writing it to a file
+            String fileName = scriptUrl.substring(scriptUrl.lastIndexOf(Constants.FORWARD_SLASH) + 1);
+            DependencyInfo dependencyInfo = dependencyInfoFactory.createDependencyInfo(new ByteArrayInputStream(body), fileName, body.length, htmlFilePath);
+            if (dependencyInfo != null) {
+                dependencies.add(dependencyInfo);
+                dependencyInfo.setDependencyFile(htmlFilePath);
             }
         }
-        FilesUtils.deleteDirectory(tempFolderFile);
         return dependencies;
     }
 
@@ -0,0 +1,413 @@
+package org.whitesource.agent.dependency.resolver.html;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.whitesource.agent.Constants;
+import org.whitesource.agent.ScanWorkspace;
+import org.whitesource.agent.utils.LoggerFactory;
+import org.whitesource.agent.utils.PersistentFile;
+
+import javax.ws.rs.core.MediaType;
+import java.io.*;
+import java.net.URI;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * Downloads the scripts referenced by html files, shared by all the html resolvers of a scan.
+ * <p>
+ * A single jersey client is reused for all the downloads, at most {@link #MAX_CONCURRENT_REQUESTS} requests are sent
+ * at a time and at most {@link #MAX_REQUESTS_PER_HOST} to the same host. Each url is downloaded once, concurrent
+ * downloads of the same url wait for a single request and the recent results, failures included, are kept in memory
+ * until the next run, see {@link #initialize(File)} and {@link #reset()}.
+ * <p>
+ * Once {@link #initialize(File)} was called, the scripts served with an ETag or a Last-Modified header are kept in a
+ * folder by the SHA-1 of their content, so the next runs send conditional requests and read the scripts that did not
+ * change from the folder.
+ */
+public class ScriptFetcher implements Closeable {
+
+    /* --- Static members --- */
+
+    private static final Logger logger = LoggerFactory.getLogger(ScriptFetcher.class);
+
+    public static final String CACHE_FOLDER_NAME = ".ws-html-scripts";
+    public static final int MAX_CONCURRENT_REQUESTS = 16;
+    public static final int MAX_REQUESTS_PER_HOST = 4;
+
+    private static final String INDEX_FILE_NAME = "index";
+    private static final String OBJECTS_FOLDER_NAME = "objects";
+    private static final int MAX_ENTRIES = 20000;
+    private static final int MAX_FETCHED_SCRIPTS = 2000;
+    private static final int FORMAT_VERSION = 1;
+    private static final int CONNECT_TIMEOUT_MILLIS = 30000;
+    private static final int READ_TIMEOUT_MILLIS = 60000;
+    private static final int STATUS_OK = 200;
+    private static final int STATUS_NOT_MODIFIED = 304;
+    private static final String ETAG = "ETag";
+    private static final String LAST_MODIFIED = "Last-Modified";
+    private static final String IF_NONE_MATCH = "If-None-Match";
+    private static final String IF_MODIFIED_SINCE = "If-Modified-Since";
+
+
+    /* --- Members --- */
+
+    private final File cacheFolder;
+    private final Client client;
+    private final Semaphore requests;
+    private final ConcurrentHashMap<String, Semaphore> hostRequests;
+    private final LinkedHashMap<String, CacheEntry> entries;
+    private final LinkedHashMap<String, FetchResult> fetchedScripts;
+    private final ConcurrentHashMap<String, CompletableFuture<FetchResult>> pendingFetches;
+    private boolean modified;
+
+    /* --- Constructors --- */
+
+    ScriptFetcher(File cacheFolder) {
+        this.cacheFolder = cacheFolder;
+        this.client = Client.create();
+        this.client.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        this.client.setReadTimeout(READ_TIMEOUT_MILLIS);
+        this.requests = new Semaphore(MAX_CONCURRENT_REQUESTS);
+        this.hostRequests = new ConcurrentHashMap<>();
+        // access ordered, the least recently used entries are evicted first
+        this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+        this.fetchedScripts = new LinkedHashMap<String, FetchResult>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, FetchResult> eldest) {
+                return size() > MAX_FETCHED_SCRIPTS;
+            }
+        };
+        this.pendingFetches = new ConcurrentHashMap<>();
+        this.modified = false;
+    }
+
+    /* --- Static methods --- */
+
+    /**
+     * @return the fetcher of the current scan, the scripts are kept in memory only unless it was initialized
+     */
+    public static ScriptFetcher getInstance() {
+        return ScanWorkspace.current().getComponent(ScriptFetcher.class, () -> new ScriptFetcher(null));
+    }
+
+    /**
+     * Keeps the downloaded scripts in a folder and loads those of the previous runs, if any.
+     *
+     * @param cacheFolder the folder the scripts are kept in
+     * @return the initialized fetcher
+     */
+    public static ScriptFetcher initialize(File cacheFolder) {
+        ScriptFetcher scriptFetcher = new ScriptFetcher(cacheFolder);
+        scriptFetcher.load();
+        ScanWorkspace.current().setComponent(ScriptFetcher.class, scriptFetcher);
+        return scriptFetcher;
+    }
+
+    /**
+     * Starts a run without persistence, the scripts and failures of the previous runs are dropped.
+     *
+     * @return the fetcher of the run
+     */
+    public static ScriptFetcher reset() {
+        ScriptFetcher scriptFetcher = new ScriptFetcher(null);
+        ScanWorkspace.current().setComponent(ScriptFetcher.class, scriptFetcher);
+        return scriptFetcher;
+    }
+
+    /* --- Public methods --- */
+
+    /**
+     * Downloads scripts concurrently.
+     *
+     * @param urls the urls of the scripts
+     * @return the content of each script by url, in the order of the urls, null for the scripts that could not be downloaded
+     */
+    public Map<String, byte[]> fetchAll(Collection<String> urls) {
+        Map<String, byte[]> scripts = new LinkedHashMap<>();
+        Set<String> distinctUrls = new LinkedHashSet<>(urls);
+        if (distinctUrls.isEmpty()) {
+            return scripts;
+        }
+        ExecutorService executorService = Executors.newFixedThreadPool(Math.min(MAX_CONCURRENT_REQUESTS, distinctUrls.size()));
+        try {
+            Map<String, Future<byte[]>> futures = new LinkedHashMap<>();
+            for (String url : distinctUrls) {
+                futures.put(url, executorService.submit(() -> fetch(url)));
+            }
+            for (Map.Entry<String, Future<byte[]>> future : futures.entrySet()) {
+                try {
+                    scripts.put(future.getKey(), future.getValue().get());
+                } catch (ExecutionException e) {
+                    logger.debug("Failed to download {}: {}", future.getKey(), e.getMessage());
+                    scripts.put(future.getKey(), null);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } finally {
+            executorService.shutdownNow();
+        }
+        return scripts;
+    }
+
+    /**
+     * Downloads a script, unless it was already downloaded during the run.
+     *
+     * @param url the url of the script
+     * @return the content of the script, null if it could not be downloaded
+     */
+    public byte[] fetch(String url) {
+        FetchResult result = getFetched(url);
+        if (result != null) {
+            return result.content;
+        }
+        CompletableFuture<FetchResult> fetch = new CompletableFuture<>();
+        CompletableFuture<FetchResult> pendingFetch = pendingFetches.putIfAbsent(url, fetch);
+        if (pendingFetch != null) {
+            // the same url is already downloaded by another thread
+            return pendingFetch.join().content;
+        }
+        try {
+            result = getFetched(url);
+            if (result == null) {
+                result = new FetchResult(request(url));
+                putFetched(url, result);
+            }
+            return result.content;
+        } finally {
+            fetch.complete(result == null ? new FetchResult(null) : result);
+            pendingFetches.remove(url);
+        }
+    }
+
+    /**
+     * Writes the index of the kept scripts to disk if the fetcher was initialized and scripts were downloaded during
+     * the run, and deletes the scripts no longer in the index.
+     */
+    public synchronized void save() {
+        if (cacheFolder == null || !modified) {
+            return;
+        }
+        try {
+            new PersistentFile(new File(cacheFolder, INDEX_FILE_NAME), FORMAT_VERSION).write(out -> {
+                out.writeInt(entries.size());
+                for (Map.Entry<String, CacheEntry> entry : entries.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(entry.getValue().eTag);
+                    out.writeUTF(entry.getValue().lastModified);
+                    out.writeUTF(entry.getValue().sha1);
+                }
+            });
+            modified = false;
+            deleteUnusedObjects();
+            logger.debug("Saved {} html scripts to {}", entries.size(), cacheFolder.getPath());
+        } catch (IOException e) {
+            logger.warn("Failed to save the html scripts to {}: {}", cacheFolder.getPath(), e.getMessage());
+        }
+    }
+
+    /**
+     * Releases the connections of the fetcher, called when the fetcher of the scan is replaced or the scan ends.
+     */
+    @Override
+    public void close() {
+        client.destroy();
+    }
+
+    /* --- Private methods --- */
+
+    private byte[] request(String url) {
+        CacheEntry entry = getEntry(url);
+        byte[] stored = entry == null ? null : readObject(entry.sha1);
+        Semaphore hostLimit = hostRequests.computeIfAbsent(getHost(url), host -> new Semaphore(MAX_REQUESTS_PER_HOST));
+        try {
+            requests.acquire();
+            try {
+                hostLimit.acquire();
+                try {
+                    WebResource.Builder resource = client.resource(url).accept(MediaType.WILDCARD);
+                    if (stored != null) {
+                        if (StringUtils.isNotBlank(entry.eTag)) {
+                            resource = resource.header(IF_NONE_MATCH, entry.eTag);
+                        }
+                        if (StringUtils.isNotBlank(entry.lastModified)) {
+                            resource = resource.header(IF_MODIFIED_SINCE, entry.lastModified);
+                        }
+                    }
+                    ClientResponse response = resource.get(ClientResponse.class);
+                    try {
+                        if (response.getStatus() == STATUS_NOT_MODIFIED && stored != null) {
+                            logger.debug("{} was not modified since the previous run", url);
+                            return stored;
+                        }
+                        if (response.getStatus() != STATUS_OK) {
+                            logger.debug("Got {} status code using the URL: {}.", response.getStatus(), url);
+                            return null;
+                        }
+                        byte[] content = response.getEntity(byte[].class);
+                        store(url, response.getHeaders().getFirst(ETAG), response.getHeaders().getFirst(LAST_MODIFIED), content);
+                        return content;
+                    } finally {
+                        // the connection goes back to the keep alive pool only once the response is consumed
+                        response.close();
+                    }
+                } finally {
+                    hostLimit.release();
+                }
+            } finally {
+                requests.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return null;
+        } catch (Exception e) {
+            if (stored != null) {
+                logger.debug("Could not reach the URL: {}, using the script of the previous run: {}", url, e.getMessage());
+                return stored;
+            }
+            logger.debug("Could not reach the URL: {}. Got an error: {}", url, e.getMessage());
+            return null;
+        }
+    }
+
+    private String getHost(String url) {
+        try {
+            String host = URI.create(url).getHost();
+            return host == null ? Constants.EMPTY_STRING : host;
+        } catch (IllegalArgumentException e) {
+            return Constants.EMPTY_STRING;
+        }
+    }
+
+    // only the scripts that can be validated by the next runs are kept
+    private void store(String url, String eTag, String lastModified, byte[] content) {
+        if (cacheFolder == null || (StringUtils.isBlank(eTag) && StringUtils.isBlank(lastModified))) {
+            return;
+        }
+        String sha1 = DigestUtils.sha1Hex(content);
+        File objectFile = getObjectFile(sha1);
+        if (!objectFile.isFile()) {
+            File tempFile = new File(objectFile.getParentFile(), sha1 + Constants.UNDERSCORE + Thread.currentThread().getId() + PersistentFile.TEMP_SUFFIX);
+            try {
+                Files.createDirectories(objectFile.getParentFile().toPath());
+                Files.write(tempFile.toPath(), content);
+                PersistentFile.replace(tempFile.toPath(), objectFile.toPath());
+            } catch (IOException e) {
+                logger.debug("Failed to keep the script of {}: {}", url, e.getMessage());
+                tempFile.delete();
+                return;
+            }
+        }
+        putEntry(url, new CacheEntry(StringUtils.defaultString(eTag), StringUtils.defaultString(lastModified), sha1));
+    }
+
+    private byte[] readObject(String sha1) {
+        File objectFile = getObjectFile(sha1);
+        if (!objectFile.isFile()) {
+            return null;
+        }
+        try {
+            byte[] content = Files.readAllBytes(objectFile.toPath());
+            // a partially written script is downloaded again
+            return sha1.equals(DigestUtils.sha1Hex(content)) ? content : null;
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    private File getObjectFile(String sha1) {
+        return new File(new File(cacheFolder, OBJECTS_FOLDER_NAME), sha1);
+    }
+
+    private void deleteUnusedObjects() {
+        File[] objectFiles = new File(cacheFolder, OBJECTS_FOLDER_NAME).listFiles();
+        if (objectFiles == null) {
+            return;
+        }
+        Set<String> usedObjects = new HashSet<>();
+        for (CacheEntry entry : entries.values()) {
+            usedObjects.add(entry.sha1);
+        }
+        for (File objectFile : objectFiles) {
+            if (!usedObjects.contains(objectFile.getName()) && !objectFile.getName().endsWith(PersistentFile.TEMP_SUFFIX)) {
+                objectFile.delete();
+            }
+        }
+    }
+
+    private synchronized FetchResult getFetched(String url) {
+        return fetchedScripts.get(url);
+    }
+
+    private synchronized void putFetched(String url, FetchResult result) {
+        fetchedScripts.put(url, result);
+    }
+
+    private synchronized CacheEntry getEntry(String url) {
+        return entries.get(url);
+    }
+
+    private synchronized void putEntry(String url, CacheEntry entry) {
+        entries.put(url, entry);
+        modified = true;
+    }
+
+    private synchronized void load() {
+        File indexFile = new File(cacheFolder, INDEX_FILE_NAME);
+        if (!indexFile.isFile()) {
+            return;
+        }
+        try {
+            boolean loaded = new PersistentFile(indexFile, FORMAT_VERSION).read(in -> {
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String url = in.readUTF();
+                    entries.put(url, new CacheEntry(in.readUTF(), in.readUTF(), in.readUTF()));
+                }
+            });
+            if (!loaded) {
+                logger.debug("Ignoring html scripts index {} of an unknown version", indexFile.getPath());
+                return;
+            }
+            logger.debug("Loaded {} html scripts from {}", entries.size(), cacheFolder.getPath());
+        } catch (IOException e) {
+            logger.warn("Failed to load the html scripts from {}, they will be downloaded again: {}", cacheFolder.getPath(), e.getMessage());
+            entries.clear();
+        }
+    }
+
+    /* --- Nested classes --- */
+
+    private static class CacheEntry {
+
+        private final String eTag;
+        private final String lastModified;
+        private final String sha1;
+
+        private CacheEntry(String eTag, String lastModified, String sha1) {
+            this.eTag = eTag;
+            this.lastModified = lastModified;
+            this.sha1 = sha1;
+        }
+    }
+
+    private static class FetchResult {
+
+        private final byte[] content;
+
+        private FetchResult(byte[] content) {
+            this.content = content;
+        }
+    }
+}
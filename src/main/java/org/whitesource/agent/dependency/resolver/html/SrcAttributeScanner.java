@@ -0,0 +1,609 @@
+package org.whitesource.agent.dependency.resolver.html;
+
+import org.jsoup.parser.Parser;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Finds the src attributes of an html file in a single pass over its bytes, without building a jsoup document.
+ * <p>
+ * The file is tokenized the way jsoup 1.11 tokenizes it: comments, doctypes and CDATA sections are skipped, the content
+ * of script, style, title and the other raw text elements is not parsed for tags, a tag cut by the end of the file is
+ * dropped, attribute names are case insensitive and the character references of the values are decoded. The tree
+ * building rules that drop tags are applied as well (the tags of a select or of a noscript in the head), so the values
+ * are returned in document order, as the elements with a src attribute of the jsoup document.
+ * <p>
+ * The tables are scanned as well, jsoup only moves the elements they hold (foster parenting), so the values are the
+ * same but may not be in document order. The files with tags whose tree building rules drop or copy elements (frames,
+ * templates, the table tags of a select) or drop or copy their src attribute (html, body, formatting elements, table
+ * tags out of a table) are left to jsoup, {@link #getSrcAttributes(byte[])} returns null for them.
+ */
+class SrcAttributeScanner {
+
+    /* --- Static members --- */
+
+    private static final String SRC = "src";
+    private static final String SCRIPT = "script";
+    private static final String PLAINTEXT = "plaintext";
+    private static final String SELECT = "select";
+    private static final String TEMPLATE = "template";
+    private static final String NOSCRIPT = "noscript";
+    private static final String[] RAW_TEXT_TAGS = {"style", "xmp", "iframe", "noembed", "noframes"};
+    private static final String[] RCDATA_TAGS = {"title", "textarea"};
+    private static final String[] SELECT_CLOSING_TAGS = {"input", "keygen", "textarea"};
+    private static final String[] HEAD_TAGS = {"html", "head", "base", "basefont", "bgsound", "link", "meta", "title",
+            "noscript", "noframes", "style", "script", "template"};
+    private static final String[] HEAD_NOSCRIPT_TAGS = {"basefont", "bgsound", "link", "meta", "noframes", "style"};
+    private static final String[] HEAD_CLOSING_END_TAGS = {"head", "body", "html", "br"};
+    // the tree building rules of jsoup drop these elements and the elements around them
+    private static final String[] JSOUP_TAGS = {"frameset", "frame", "template"};
+    // jsoup moves the elements of a table before it, and closes a select of a table on these tags
+    private static final String[] TABLE_TAGS = {"table", "caption", "colgroup", "col", "tbody", "thead", "tfoot", "tr", "td", "th"};
+    // jsoup copies the attributes of these elements, to the html or body element already open or to the clones of formatting
+    // elements, or drops them (table tags out of a table)
+    private static final String[] JSOUP_SRC_TAGS = {"html", "head", "body", "form", "isindex", "a", "b", "big", "code", "em", "font", "i",
+            "nobr", "s", "small", "strike", "strong", "tt", "u", "table", "caption", "colgroup", "col", "tbody", "thead", "tfoot",
+            "tr", "td", "th"};
+    private static final String DOCTYPE = "doctype";
+    private static final String CDATA_START = "[CDATA[";
+    private static final String CDATA_END = "]]>";
+    private static final String COMMENT_END = "-->";
+    private static final String COMMENT_END_BANG = "--!>";
+    private static final char REPLACEMENT_CHAR = '\uFFFD';
+    private static final char AMPERSAND = '&';
+
+    /* --- Members --- */
+
+    private final byte[] content;
+    private final int length;
+    private int position;
+    private boolean inHead;
+    private boolean inHeadNoscript;
+    private boolean inSelect;
+
+    /* --- Constructors --- */
+
+    private SrcAttributeScanner(byte[] content) {
+        this.content = content;
+        this.length = content.length;
+        this.position = 0;
+        this.inHead = true;
+        this.inHeadNoscript = false;
+        this.inSelect = false;
+    }
+
+    /* --- Static methods --- */
+
+    /**
+     * @param content the bytes of an UTF-8 html file
+     * @return the values of the src attributes in document order, null if the file starts with an UTF-16 or UTF-32
+     * byte order mark or holds tags dropped or copied by jsoup, and should be parsed by jsoup
+     */
+    static List<String> getSrcAttributes(byte[] content) {
+        if (content.length >= 2 && ((content[0] == (byte) 0xFE && content[1] == (byte) 0xFF) ||
+                (content[0] == (byte) 0xFF && content[1] == (byte) 0xFE))) {
+            return null;
+        }
+        if (content.length >= 4 && content[0] == 0 && content[1] == 0 && content[2] == (byte) 0xFE && content[3] == (byte) 0xFF) {
+            return null;
+        }
+        SrcAttributeScanner scanner = new SrcAttributeScanner(content);
+        if (content.length >= 3 && content[0] == (byte) 0xEF && content[1] == (byte) 0xBB && content[2] == (byte) 0xBF) {
+            scanner.position = 3;
+        }
+        return scanner.scan();
+    }
+
+    /* --- Private methods --- */
+
+    private List<String> scan() {
+        List<String> srcAttributes = new ArrayList<>();
+        while (position < length) {
+            if (content[position] != '<') {
+                if (!isWhitespace(content[position]) && !inHeadNoscript) {
+                    inHead = false;
+                }
+                position++;
+                continue;
+            }
+            int next = position + 1;
+            if (next >= length) {
+                break;
+            }
+            byte c = content[next];
+            if (letterLength(next) > 0) {
+                // start tag
+                position = next;
+                Tag tag = readTag();
+                if (tag == null) {
+                    break;
+                }
+                if (contains(JSOUP_TAGS, tag.name) || (tag.src != null && contains(JSOUP_SRC_TAGS, tag.name))
+                        || (inSelect && contains(TABLE_TAGS, tag.name))) {
+                    return null;
+                }
+                if (!handleStartTag(tag, srcAttributes)) {
+                    break;
+                }
+            } else if (c == '/') {
+                int nameStart = next + 1;
+                if (nameStart >= length) {
+                    break;
+                }
+                if (letterLength(nameStart) > 0) {
+                    // the attributes of end tags are not kept
+                    position = nameStart;
+                    Tag tag = readTag();
+                    if (tag == null) {
+                        break;
+                    }
+                    if (inSelect && contains(TABLE_TAGS, tag.name)) {
+                        return null;
+                    }
+                    handleEndTag(tag);
+                } else if (content[nameStart] == '>') {
+                    position = nameStart + 1;
+                } else if (!skipPast((byte) '>', nameStart)) {
+                    break;
+                }
+            } else if (c == '!') {
+                if (!skipMarkupDeclaration(next + 1)) {
+                    break;
+                }
+            } else if (c == '?') {
+                if (!skipPast((byte) '>', next + 1)) {
+                    break;
+                }
+            } else {
+                // a '<' that does not start a tag is text
+                if (!inHeadNoscript) {
+                    inHead = false;
+                }
+                position = next;
+            }
+        }
+        return srcAttributes;
+    }
+
+    // applies the few tree building rules of jsoup that drop elements, false if the rest of the file is text
+    private boolean handleStartTag(Tag tag, List<String> srcAttributes) {
+        if (inHeadNoscript) {
+            // jsoup keeps the head elements of a noscript in the head and turns the other tags to text
+            if (!contains(HEAD_NOSCRIPT_TAGS, tag.name)) {
+                return true;
+            }
+        } else if (inHead && !contains(HEAD_TAGS, tag.name)) {
+            inHead = false;
+        }
+        if (tag.name.equals(NOSCRIPT) && inHead && !inHeadNoscript) {
+            inHeadNoscript = !tag.selfClosing;
+        } else if (tag.name.equals(SELECT)) {
+            inSelect = !inSelect;
+        } else if (inSelect && contains(SELECT_CLOSING_TAGS, tag.name)) {
+            inSelect = false;
+        }
+        // jsoup drops the tags of a select except its options, scripts and templates
+        boolean dropped = inSelect && !tag.name.equals(SCRIPT) && !tag.name.equals(TEMPLATE);
+        if (tag.src != null && !dropped) {
+            srcAttributes.add(tag.src);
+        }
+        if (dropped) {
+            return true;
+        }
+        if (tag.name.equals(PLAINTEXT)) {
+            return false;
+        }
+        // a self-closed raw text tag has no content
+        return tag.selfClosing || skipText(tag.name);
+    }
+
+    private void handleEndTag(Tag tag) {
+        if (inHeadNoscript) {
+            inHeadNoscript = !tag.name.equals(NOSCRIPT);
+        } else if (contains(HEAD_CLOSING_END_TAGS, tag.name)) {
+            inHead = false;
+        }
+        if (tag.name.equals(SELECT)) {
+            inSelect = false;
+        }
+    }
+
+    // reads a tag from its name to its closing '>', null if the file ends before the tag is closed
+    private Tag readTag() {
+        int nameStart = position;
+        while (position < length && !isWhitespace(content[position]) && content[position] != '/' && content[position] != '>') {
+            position++;
+        }
+        if (position >= length) {
+            return null;
+        }
+        Tag tag = new Tag(new String(content, nameStart, position - nameStart, StandardCharsets.UTF_8).toLowerCase(Locale.ENGLISH));
+        // only the attributes named src are decoded, the others do not change which src attribute jsoup returns
+        Map<String, String> attributes = null;
+        while (true) {
+            // before attribute name, a '/' right before the '>' closes the tag
+            boolean selfClosing = false;
+            while (position < length && (isWhitespace(content[position]) || content[position] == '/')) {
+                selfClosing = content[position] == '/';
+                position++;
+            }
+            if (position >= length) {
+                return null;
+            }
+            if (content[position] == '>') {
+                tag.selfClosing = selfClosing;
+                position++;
+                break;
+            }
+            // attribute name, a quote, '<' or '=' starting it is part of it
+            int attributeNameStart = position++;
+            while (position < length && !isWhitespace(content[position]) && content[position] != '/' && content[position] != '='
+                    && content[position] != '>') {
+                position++;
+            }
+            String attributeName = isSrcName(attributeNameStart, position) ? decode(attributeNameStart, position).trim() : null;
+            while (position < length && isWhitespace(content[position])) {
+                position++;
+            }
+            if (position >= length) {
+                return null;
+            }
+            String value = "";
+            if (content[position] == '=') {
+                position++;
+                while (position < length && isWhitespace(content[position])) {
+                    position++;
+                }
+                if (position >= length) {
+                    // jsoup keeps a tag cut before an attribute value
+                    attributes = putAttribute(attributes, attributeName, value);
+                    tag.src = getSrc(attributes);
+                    return tag;
+                }
+                byte quote = content[position];
+                if (quote == '"' || quote == '\'') {
+                    int valueStart = ++position;
+                    while (position < length && content[position] != quote) {
+                        position++;
+                    }
+                    if (position >= length) {
+                        return null;
+                    }
+                    value = attributeName == null ? value : decodeValue(valueStart, position);
+                    position++;
+                } else if (quote != '>') {
+                    int valueStart = position;
+                    while (position < length && !isWhitespace(content[position]) && content[position] != '>') {
+                        position++;
+                    }
+                    if (position >= length) {
+                        return null;
+                    }
+                    value = attributeName == null ? value : decodeValue(valueStart, position);
+                }
+            }
+            attributes = putAttribute(attributes, attributeName, value);
+        }
+        tag.src = getSrc(attributes);
+        return tag;
+    }
+
+    // an attribute repeated with the same case keeps its last value, as in jsoup
+    private Map<String, String> putAttribute(Map<String, String> attributes, String attributeName, String value) {
+        if (attributeName == null || attributeName.isEmpty()) {
+            return attributes;
+        }
+        if (attributes == null) {
+            attributes = new LinkedHashMap<>();
+        }
+        attributes.put(attributeName, value);
+        return attributes;
+    }
+
+    // jsoup lower cases the attribute names once the tag is read and returns the first src attribute
+    private String getSrc(Map<String, String> attributes) {
+        if (attributes == null) {
+            return null;
+        }
+        for (Map.Entry<String, String> attribute : attributes.entrySet()) {
+            if (attribute.getKey().toLowerCase(Locale.ENGLISH).equals(SRC)) {
+                return attribute.getValue();
+            }
+        }
+        return null;
+    }
+
+    // skips the content of raw text elements up to their end tag, false if the file ends first
+    private boolean skipText(String tagName) {
+        if (tagName.equals(SCRIPT)) {
+            return skipScriptData();
+        }
+        boolean rcdata = contains(RCDATA_TAGS, tagName);
+        if (!rcdata && !contains(RAW_TEXT_TAGS, tagName)) {
+            return true;
+        }
+        // jsoup parses the tags of a title or textarea once no '</title' or '</textarea' follows them, in lower or upper case
+        int tagsStart = length;
+        if (rcdata) {
+            tagsStart = position;
+            String upperCaseTagName = tagName.toUpperCase(Locale.ENGLISH);
+            for (int i = position; i + 1 < length; i++) {
+                if (content[i] == '<' && content[i + 1] == '/' && (matches(i + 2, tagName) || matches(i + 2, upperCaseTagName))) {
+                    tagsStart = i + 2;
+                }
+            }
+        }
+        while (position < length) {
+            if (content[position] == '<' && (isEndTag(position + 1, tagName) || (position >= tagsStart && letterLength(position + 1) > 0))) {
+                return true;
+            }
+            position++;
+        }
+        return false;
+    }
+
+    // the script data states of the tokenizer, an end tag within '<!-- <script>' and '</script>' does not end the script
+    private boolean skipScriptData() {
+        ScriptState state = ScriptState.DATA;
+        while (position < length) {
+            byte c = content[position];
+            switch (state) {
+                case DATA:
+                    if (c == '<') {
+                        if (isEndTag(position + 1, SCRIPT)) {
+                            return true;
+                        }
+                        if (matches(position + 1, "!--")) {
+                            position += 3;
+                            state = ScriptState.ESCAPED_DASH_DASH;
+                        }
+                    }
+                    break;
+                case ESCAPED:
+                case ESCAPED_DASH:
+                case ESCAPED_DASH_DASH:
+                    if (c == '-') {
+                        state = state == ScriptState.ESCAPED ? ScriptState.ESCAPED_DASH : ScriptState.ESCAPED_DASH_DASH;
+                    } else if (c == '<') {
+                        if (isEndTag(position + 1, SCRIPT)) {
+                            return true;
+                        }
+                        int letters = readLetters(position + 1);
+                        if (letters > 0 && isScriptTagName(position + 1, letters)) {
+                            position += letters;
+                            state = ScriptState.DOUBLE_ESCAPED;
+                        } else {
+                            state = ScriptState.ESCAPED;
+                        }
+                    } else if (c == '>' && state == ScriptState.ESCAPED_DASH_DASH) {
+                        state = ScriptState.DATA;
+                    } else {
+                        state = ScriptState.ESCAPED;
+                    }
+                    break;
+                default:
+                    if (c == '-') {
+                        state = state == ScriptState.DOUBLE_ESCAPED ? ScriptState.DOUBLE_ESCAPED_DASH : ScriptState.DOUBLE_ESCAPED_DASH_DASH;
+                    } else if (c == '<') {
+                        state = ScriptState.DOUBLE_ESCAPED;
+                        if (position + 1 < length && content[position + 1] == '/') {
+                            int letters = readLetters(position + 2);
+                            if (letters > 0 && isScriptTagName(position + 2, letters)) {
+                                position += letters + 1;
+                                state = ScriptState.ESCAPED;
+                            }
+                        }
+                    } else if (c == '>' && state == ScriptState.DOUBLE_ESCAPED_DASH_DASH) {
+                        state = ScriptState.DATA;
+                    } else {
+                        state = ScriptState.DOUBLE_ESCAPED;
+                    }
+                    break;
+            }
+            position++;
+        }
+        return false;
+    }
+
+    // '</' followed by the tag name and a whitespace, '/' or '>', the position is left on the '<'
+    private boolean isEndTag(int index, String tagName) {
+        if (index >= length || content[index] != '/') {
+            return false;
+        }
+        int letters = readLetters(index + 1);
+        int end = index + 1 + letters;
+        return letters == tagName.length() && end < length && isTagNameEnd(content[end])
+                && new String(content, index + 1, letters, StandardCharsets.UTF_8).toLowerCase(Locale.ENGLISH).equals(tagName);
+    }
+
+    // letters followed by a whitespace, '/' or '>' spelling 'script', jsoup compares them case sensitively
+    private boolean isScriptTagName(int index, int letters) {
+        int end = index + letters;
+        return letters == SCRIPT.length() && end < length && isTagNameEnd(content[end]) && matches(index, SCRIPT);
+    }
+
+    private boolean skipMarkupDeclaration(int index) {
+        if (matches(index, "--")) {
+            int commentStart = index + 2;
+            if (commentStart < length && content[commentStart] == '>') {
+                position = commentStart + 1;
+                return true;
+            }
+            if (commentStart + 1 < length && content[commentStart] == '-' && content[commentStart + 1] == '>') {
+                position = commentStart + 2;
+                return true;
+            }
+            int end = indexOf(COMMENT_END, commentStart);
+            int endBang = indexOf(COMMENT_END_BANG, commentStart);
+            // jsoup does not end a comment of dashes only with '--!>'
+            int dashes = commentStart;
+            while (dashes < length && content[dashes] == '-') {
+                dashes++;
+            }
+            if (endBang >= 0 && endBang <= dashes) {
+                endBang = indexOf(COMMENT_END_BANG, endBang + 1);
+            }
+            if (end < 0 && endBang < 0) {
+                return false;
+            }
+            if (end < 0 || (endBang >= 0 && endBang < end)) {
+                position = endBang + COMMENT_END_BANG.length();
+            } else {
+                position = end + COMMENT_END.length();
+            }
+            return true;
+        }
+        if (matchesIgnoreCase(index, DOCTYPE)) {
+            return skipPast((byte) '>', index);
+        }
+        if (matches(index, CDATA_START)) {
+            int end = indexOf(CDATA_END, index + CDATA_START.length());
+            if (end < 0) {
+                return false;
+            }
+            // jsoup keeps a CDATA section as text
+            for (int i = index + CDATA_START.length(); i < end && !inHeadNoscript; i++) {
+                if (!isWhitespace(content[i])) {
+                    inHead = false;
+                }
+            }
+            position = end + CDATA_END.length();
+            return true;
+        }
+        return skipPast((byte) '>', index);
+    }
+
+    private boolean skipPast(byte b, int index) {
+        while (index < length && content[index] != b) {
+            index++;
+        }
+        if (index >= length) {
+            return false;
+        }
+        position = index + 1;
+        return true;
+    }
+
+    private int indexOf(String text, int index) {
+        for (int i = index; i + text.length() <= length; i++) {
+            if (matches(i, text)) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    private boolean matches(int index, String text) {
+        if (index + text.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (content[index + i] != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean matchesIgnoreCase(int index, String text) {
+        if (index + text.length() > length) {
+            return false;
+        }
+        for (int i = 0; i < text.length(); i++) {
+            if (Character.toLowerCase((char) content[index + i]) != text.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    // the number of bytes of the letters starting at the index, jsoup accepts any unicode letter in tag names
+    private int readLetters(int index) {
+        int end = index;
+        int letter;
+        while ((letter = letterLength(end)) > 0) {
+            end += letter;
+        }
+        return end - index;
+    }
+
+    // the number of bytes of the letter at the index, 0 if it is not a letter
+    private int letterLength(int index) {
+        if (index >= length) {
+            return 0;
+        }
+        int b = content[index] & 0xFF;
+        if (b < 0x80) {
+            return (b >= 'a' && b <= 'z') || (b >= 'A' && b <= 'Z') ? 1 : 0;
+        }
+        int size = b >= 0xF0 ? 4 : b >= 0xE0 ? 3 : b >= 0xC0 ? 2 : 0;
+        if (size == 0 || index + size > length) {
+            return 0;
+        }
+        String character = new String(content, index, size, StandardCharsets.UTF_8);
+        // letters outside of the basic multilingual plane are read by jsoup as two surrogates, which are not letters
+        return character.length() == 1 && Character.isLetter(character.charAt(0)) ? size : 0;
+    }
+
+    // false only for the names that cannot read 'src' once trimmed and lower cased
+    private boolean isSrcName(int start, int end) {
+        if (end - start == SRC.length()) {
+            return matchesIgnoreCase(start, SRC);
+        }
+        for (int i = start; i < end; i++) {
+            // control characters are trimmed
+            if ((content[i] & 0xFF) <= ' ') {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String decode(int start, int end) {
+        return new String(content, start, end - start, StandardCharsets.UTF_8).replace('\0', REPLACEMENT_CHAR);
+    }
+
+    private String decodeValue(int start, int end) {
+        String value = decode(start, end);
+        return value.indexOf(AMPERSAND) < 0 ? value : Parser.unescapeEntities(value, true);
+    }
+
+    private static boolean contains(String[] tagNames, String tagName) {
+        for (String name : tagNames) {
+            if (name.equals(tagName)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean isWhitespace(byte b) {
+        return b == ' ' || b == '\t' || b == '\n' || b == '\r' || b == '\f';
+    }
+
+    private static boolean isTagNameEnd(byte b) {
+        return isWhitespace(b) || b == '/' || b == '>';
+    }
+
+    /* --- Nested classes --- */
+
+    private enum ScriptState {
+        DATA, ESCAPED, ESCAPED_DASH, ESCAPED_DASH_DASH, DOUBLE_ESCAPED, DOUBLE_ESCAPED_DASH, DOUBLE_ESCAPED_DASH_DASH
+    }
+
+    private static class Tag {
+
+        private final String name;
+        private String src;
+        private boolean selfClosing;
+
+        private Tag(String name) {
+            this.name = name;
+        }
+    }
+}
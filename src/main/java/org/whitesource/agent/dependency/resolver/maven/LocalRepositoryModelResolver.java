@@ -0,0 +1,136 @@
+/**
+ * Copyright (C) 2017 WhiteSource Ltd.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.whitesource.agent.dependency.resolver.maven;
+
+import org.apache.maven.artifact.versioning.ArtifactVersion;
+import org.apache.maven.artifact.versioning.DefaultArtifactVersion;
+import org.apache.maven.artifact.versioning.InvalidVersionSpecificationException;
+import org.apache.maven.artifact.versioning.VersionRange;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Parent;
+import org.apache.maven.model.Repository;
+import org.apache.maven.model.building.FileModelSource;
+import org.apache.maven.model.building.ModelSource2;
+import org.apache.maven.model.resolution.ModelResolver;
+import org.apache.maven.model.resolution.UnresolvableModelException;
+import org.whitesource.agent.Constants;
+
+import java.io.File;
+import java.nio.file.Paths;
+
+/**
+ * Resolves the parent and imported POMs from the local maven repository only, nothing is downloaded.
+ * <p>
+ * Version ranges are resolved to the highest matching version found in the local repository.
+ */
+class LocalRepositoryModelResolver implements ModelResolver {
+
+    /* --- Static members --- */
+
+    private static final String POM_EXTENSION = ".pom";
+
+    /* --- Members --- */
+
+    private final String localRepositoryPath;
+
+    /* --- Constructors --- */
+
+    LocalRepositoryModelResolver(String localRepositoryPath) {
+        this.localRepositoryPath = localRepositoryPath;
+    }
+
+    /* --- Overridden methods --- */
+
+    @Override
+    public ModelSource2 resolveModel(String groupId, String artifactId, String version) throws UnresolvableModelException {
+        File pomFile = getPomFile(groupId, artifactId, version);
+        if (!pomFile.isFile()) {
+            throw new UnresolvableModelException("POM not found in the local repository: " + pomFile.getPath(), groupId, artifactId, version);
+        }
+        return new FileModelSource(pomFile);
+    }
+
+    @Override
+    public ModelSource2 resolveModel(Parent parent) throws UnresolvableModelException {
+        String version = resolveVersion(parent.getGroupId(), parent.getArtifactId(), parent.getVersion());
+        // the version of the parent is updated when it is a range
+        parent.setVersion(version);
+        return resolveModel(parent.getGroupId(), parent.getArtifactId(), version);
+    }
+
+    @Override
+    public ModelSource2 resolveModel(Dependency dependency) throws UnresolvableModelException {
+        String version = resolveVersion(dependency.getGroupId(), dependency.getArtifactId(), dependency.getVersion());
+        dependency.setVersion(version);
+        return resolveModel(dependency.getGroupId(), dependency.getArtifactId(), version);
+    }
+
+    @Override
+    public void addRepository(Repository repository) {
+        // only the local repository is used
+    }
+
+    @Override
+    public void addRepository(Repository repository, boolean replace) {
+        // only the local repository is used
+    }
+
+    @Override
+    public ModelResolver newCopy() {
+        return this;
+    }
+
+    /* --- Package methods --- */
+
+    File getArtifactFolder(String groupId, String artifactId) {
+        return Paths.get(localRepositoryPath, groupId.replace(Constants.DOT, File.separator), artifactId).toFile();
+    }
+
+    File getPomFile(String groupId, String artifactId, String version) {
+        return new File(new File(getArtifactFolder(groupId, artifactId), version), artifactId + Constants.DASH + version + POM_EXTENSION);
+    }
+
+    /**
+     * @return the version itself, or for a range the highest matching version found in the local repository
+     * @throws UnresolvableModelException if no version of the local repository matches the range
+     */
+    String resolveVersion(String groupId, String artifactId, String version) throws UnresolvableModelException {
+        if (version == null || version.isEmpty() ||
+                (version.charAt(0) != Constants.OPEN_SQUARE_BRACKET && version.charAt(0) != Constants.OPEN_BRACKET)) {
+            return version;
+        }
+        try {
+            VersionRange versionRange = VersionRange.createFromVersionSpec(version);
+            ArtifactVersion highestVersion = null;
+            String[] localVersions = getArtifactFolder(groupId, artifactId).list();
+            if (localVersions != null) {
+                for (String localVersion : localVersions) {
+                    ArtifactVersion artifactVersion = new DefaultArtifactVersion(localVersion);
+                    if (versionRange.containsVersion(artifactVersion) && getPomFile(groupId, artifactId, localVersion).isFile() &&
+                            (highestVersion == null || artifactVersion.compareTo(highestVersion) > 0)) {
+                        highestVersion = artifactVersion;
+                    }
+                }
+            }
+            if (highestVersion == null) {
+                throw new UnresolvableModelException("No version matching " + version + " in the local repository", groupId, artifactId, version);
+            }
+            return highestVersion.toString();
+        } catch (InvalidVersionSpecificationException e) {
+            throw new UnresolvableModelException(e.getMessage(), groupId, artifactId, version, e);
+        }
+    }
+}
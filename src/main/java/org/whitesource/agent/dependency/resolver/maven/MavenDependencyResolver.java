@@ -53,8 +53,16 @@ public class MavenDependencyResolver extends AbstractDependencyResolver {
     /* --- Constructor --- */
 
     public MavenDependencyResolver(boolean mavenAggregateModules, String[] mavenIgnoredScopes, boolean ignoreSourceFiles, boolean ignorePomModules, boolean runPreStep,boolean mavenIgnoreDependencyTreeErrors) {
+        this(mavenAggregateModules, mavenIgnoredScopes, ignoreSourceFiles, ignorePomModules, runPreStep, mavenIgnoreDependencyTreeErrors, false);
+    }
+
+    public MavenDependencyResolver(boolean mavenAggregateModules, String[] mavenIgnoredScopes, boolean ignoreSourceFiles, boolean ignorePomModules, boolean runPreStep,
+                                   boolean mavenIgnoreDependencyTreeErrors, boolean mavenInProcessResolution) {
         super();
-        this.dependencyCollector = new MavenTreeDependencyCollector(mavenIgnoredScopes, ignorePomModules, runPreStep, mavenIgnoreDependencyTreeErrors);
+        // in process, the effective POMs are built and the transitive dependencies read from the local repository without running maven
+        this.dependencyCollector = mavenInProcessResolution ?
+                new MavenModelDependencyCollector(mavenIgnoredScopes, ignorePomModules, runPreStep, mavenIgnoreDependencyTreeErrors) :
+                new MavenTreeDependencyCollector(mavenIgnoredScopes, ignorePomModules, runPreStep, mavenIgnoreDependencyTreeErrors);
         this.bomParser = new MavenPomParser(ignorePomModules);
         this.mavenAggregateModules = mavenAggregateModules;
         this.ignoreSourceFiles = ignoreSourceFiles;
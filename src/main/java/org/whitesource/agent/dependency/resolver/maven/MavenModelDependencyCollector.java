@@ -0,0 +1,361 @@
+/**
+ * Copyright (C) 2017 WhiteSource Ltd.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.whitesource.agent.dependency.resolver.maven;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.maven.model.Dependency;
+import org.apache.maven.model.Exclusion;
+import org.apache.maven.model.Model;
+import org.apache.maven.model.building.*;
+import org.apache.maven.model.resolution.UnresolvableModelException;
+import org.slf4j.Logger;
+import org.whitesource.agent.Constants;
+import org.whitesource.agent.api.model.AgentProjectInfo;
+import org.whitesource.agent.api.model.Coordinates;
+import org.whitesource.agent.api.model.DependencyInfo;
+import org.whitesource.agent.api.model.DependencyType;
+import org.whitesource.agent.utils.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+/**
+ * Collects the dependencies of maven projects in process, without running 'mvn dependency:tree'.
+ * <p>
+ * The effective POMs of the modules (parents, imported BOMs, dependency management, properties and profiles) are built
+ * with the maven model builder, and the transitive dependencies are read from the POMs of the local repository and
+ * mediated as maven does: nearest definition first, then first declaration, with the dependency management of the
+ * module applied to the transitive dependencies. Nothing is downloaded, a dependency whose POM is missing from the
+ * local repository is reported without its transitive dependencies.
+ */
+public class MavenModelDependencyCollector extends MavenTreeDependencyCollector {
+
+    /* --- Static members --- */
+
+    private static final Logger logger = LoggerFactory.getLogger(MavenModelDependencyCollector.class);
+
+    private static final String POM_XML = "pom.xml";
+    private static final String SCOPE_COMPILE = "compile";
+    private static final String SCOPE_RUNTIME = "runtime";
+    private static final String SCOPE_PROVIDED = "provided";
+    private static final String SCOPE_TEST = "test";
+    private static final String SCOPE_SYSTEM = "system";
+    private static final String TESTS_CLASSIFIER = "tests";
+    private static final String WILDCARD = "*";
+    // the types of the maven artifact handlers packaged as jar files
+    private static final Set<String> JAR_TYPES = new HashSet<>(Arrays.asList(Constants.JAR, "test-jar", EJB, "ejb-client",
+            "bundle", "maven-plugin", "java-source", "javadoc"));
+
+    /* --- Members --- */
+
+    private final ModelBuilder modelBuilder;
+    private final ModelCache modelCache;
+    private final Map<String, Model> repositoryModels;
+    private final Map<String, Model> reactorModels;
+    private LocalRepositoryModelResolver modelResolver;
+
+    /* --- Constructors --- */
+
+    public MavenModelDependencyCollector(String[] mavenIgnoredScopes, boolean ignorePomModules, boolean runPreStep, boolean mavenIgnoreDependencyTreeErrors) {
+        super(mavenIgnoredScopes, ignorePomModules, runPreStep, mavenIgnoreDependencyTreeErrors);
+        this.modelBuilder = new DefaultModelBuilderFactory().newInstance();
+        this.modelCache = new MemoryModelCache();
+        this.repositoryModels = new HashMap<>();
+        this.reactorModels = new HashMap<>();
+    }
+
+    /* --- Overridden methods --- */
+
+    @Override
+    public Collection<AgentProjectInfo> collectDependencies(String rootDirectory) {
+        if (runPreStep) {
+            runCleanInstall(rootDirectory);
+        }
+        if (StringUtils.isBlank(M2Path)) {
+            this.M2Path = getMavenM2Path(Constants.DOT);
+        }
+        if (M2Path == null) {
+            logger.warn("Could not find the local maven repository, running 'mvn dependency:tree'");
+            return super.collectDependencies(rootDirectory);
+        }
+        modelResolver = new LocalRepositoryModelResolver(M2Path);
+
+        List<Model> modules = new ArrayList<>();
+        collectModules(new File(rootDirectory, POM_XML), modules, new HashSet<>());
+        if (modules.isEmpty()) {
+            logger.warn("Could not build the effective POM of {}, running 'mvn dependency:tree'", rootDirectory);
+            return super.collectDependencies(rootDirectory);
+        }
+        reactorModels.clear();
+        modules.forEach(module -> reactorModels.put(getCoordinatesKey(module.getGroupId(), module.getArtifactId(), module.getVersion()), module));
+        logger.info("End parsing pom files , found : " + String.join(Constants.COMMA,
+                modules.stream().map(Model::getArtifactId).collect(Collectors.toList())));
+
+        return modules.stream()
+                .filter(module -> !ignorePomModules || !Constants.POM.equals(module.getPackaging()))
+                .map(module -> {
+                    AgentProjectInfo projectInfo = new AgentProjectInfo();
+                    projectInfo.setCoordinates(new Coordinates(module.getGroupId(), module.getArtifactId(), module.getVersion()));
+                    List<DependencyInfo> dependencies = resolveDependencyTree(module);
+                    logger.debug("Project/Module coordinates: {}", projectInfo.getCoordinates().toString());
+                    logger.debug("Total project direct dependencies found : {}", dependencies.size());
+                    dependencies.stream().filter(dependency -> StringUtils.isNotEmpty(dependency.getSha1()) ||
+                            (StringUtils.isNotEmpty(dependency.getGroupId()) && StringUtils.isNotEmpty(dependency.getArtifactId())
+                                    && StringUtils.isNotEmpty(dependency.getVersion()))).forEach(dependency ->
+                            projectInfo.getDependencies().add(dependency));
+                    return projectInfo;
+                }).collect(Collectors.toList());
+    }
+
+    /* --- Private methods --- */
+
+    private void collectModules(File pomFile, List<Model> modules, Set<String> visitedPomFiles) {
+        try {
+            if (!pomFile.isFile() || !visitedPomFiles.add(pomFile.getCanonicalPath())) {
+                return;
+            }
+        } catch (IOException e) {
+            return;
+        }
+        Model model = buildModel(pomFile, null);
+        if (model == null) {
+            logger.warn("Could not build the effective POM of {}", pomFile.getPath());
+            errorsRunningDependencyTree = true;
+            return;
+        }
+        modules.add(model);
+        for (String module : model.getModules()) {
+            File moduleFile = new File(pomFile.getParentFile(), module);
+            if (moduleFile.isDirectory()) {
+                moduleFile = new File(moduleFile, POM_XML);
+            }
+            collectModules(moduleFile, modules, visitedPomFiles);
+        }
+    }
+
+    // breadth first, so the first occurrence of a dependency is the nearest one
+    private List<DependencyInfo> resolveDependencyTree(Model module) {
+        List<DependencyInfo> dependencies = new ArrayList<>();
+        Map<String, Dependency> managedDependencies = new HashMap<>();
+        if (module.getDependencyManagement() != null) {
+            module.getDependencyManagement().getDependencies().forEach(dependency -> managedDependencies.put(getConflictKey(dependency), dependency));
+        }
+        Map<String, List<DependencyInfo>> pathToDependenciesMap = new HashMap<>();
+        Set<String> resolvedKeys = new HashSet<>();
+        Queue<DependencyNode> queue = new LinkedList<>();
+        for (Dependency dependency : module.getDependencies()) {
+            String scope = StringUtils.defaultIfEmpty(dependency.getScope(), SCOPE_COMPILE);
+            if (!mavenIgnoredScopes.contains(scope)) {
+                queue.add(new DependencyNode(dependency, scope, getExclusions(Collections.emptySet(), dependency), null));
+            }
+        }
+        while (!queue.isEmpty()) {
+            DependencyNode node = queue.poll();
+            Dependency dependency = node.dependency;
+            if (!resolvedKeys.add(getConflictKey(dependency))) {
+                continue;
+            }
+            String version;
+            try {
+                version = modelResolver.resolveVersion(dependency.getGroupId(), dependency.getArtifactId(), dependency.getVersion());
+            } catch (UnresolvableModelException e) {
+                logger.debug("Could not resolve the version of {}:{}:{} - {}", dependency.getGroupId(), dependency.getArtifactId(),
+                        dependency.getVersion(), e.getMessage());
+                continue;
+            }
+            DependencyInfo dependencyInfo = createDependencyInfo(dependency, version, node.scope, pathToDependenciesMap);
+            if (node.parent == null) {
+                dependencies.add(dependencyInfo);
+            } else {
+                node.parent.getChildren().add(dependencyInfo);
+            }
+
+            Model model = getModel(dependency.getGroupId(), dependency.getArtifactId(), version);
+            if (model == null) {
+                continue;
+            }
+            for (Dependency child : model.getDependencies()) {
+                String childScope = StringUtils.defaultIfEmpty(child.getScope(), SCOPE_COMPILE);
+                // test and provided dependencies, as well as optional ones, are not transitive
+                if (child.isOptional() || SCOPE_TEST.equals(childScope) || SCOPE_PROVIDED.equals(childScope) || isExcluded(node.exclusions, child)) {
+                    continue;
+                }
+                Dependency managedDependency = managedDependencies.get(getConflictKey(child));
+                if (managedDependency != null) {
+                    child = child.clone();
+                    if (managedDependency.getVersion() != null) {
+                        child.setVersion(managedDependency.getVersion());
+                    }
+                    if (managedDependency.getScope() != null) {
+                        childScope = managedDependency.getScope();
+                    }
+                }
+                if (child.getVersion() == null) {
+                    logger.debug("No version for {}:{} in {}", child.getGroupId(), child.getArtifactId(), model.getId());
+                    continue;
+                }
+                queue.add(new DependencyNode(child, getTransitiveScope(node.scope, childScope), getExclusions(node.exclusions, child), dependencyInfo));
+            }
+        }
+        // the sha1s of the files are calculated in parallel
+        pathToDependenciesMap.keySet().stream().parallel().collect(Collectors.toMap(file -> file, file -> getSha1(file)))
+                .forEach((path, sha1) -> pathToDependenciesMap.get(path).forEach(dependency -> dependency.setSha1(sha1)));
+        return dependencies;
+    }
+
+    private DependencyInfo createDependencyInfo(Dependency dependency, String version, String scope, Map<String, List<DependencyInfo>> pathToDependenciesMap) {
+        DependencyInfo dependencyInfo = new DependencyInfo(dependency.getGroupId(), dependency.getArtifactId(), version);
+        dependencyInfo.setDependencyType(DependencyType.MAVEN);
+        dependencyInfo.setScope(scope);
+        dependencyInfo.setType(dependency.getType());
+
+        String classifier = dependency.getClassifier();
+        if (StringUtils.isBlank(classifier) && TEST_JAR.equals(dependency.getType())) {
+            classifier = TESTS_CLASSIFIER;
+        }
+        String extension = JAR_TYPES.contains(dependency.getType()) ? Constants.JAR : dependency.getType();
+        String fileName = dependency.getArtifactId() + Constants.DASH + version +
+                (StringUtils.isBlank(classifier) ? Constants.EMPTY_STRING : Constants.DASH + classifier) + Constants.DOT + extension;
+        File file = SCOPE_SYSTEM.equals(scope) && dependency.getSystemPath() != null ? new File(dependency.getSystemPath()) :
+                new File(new File(modelResolver.getArtifactFolder(dependency.getGroupId(), dependency.getArtifactId()), version), fileName);
+        if (file.isFile()) {
+            dependencyInfo.setFilename(file.getName());
+            dependencyInfo.setSystemPath(file.getPath());
+            pathToDependenciesMap.computeIfAbsent(file.getPath(), path -> new ArrayList<>()).add(dependencyInfo);
+        }
+        return dependencyInfo;
+    }
+
+    // the modules of the project are used as they are, instead of their installed POMs
+    private Model getModel(String groupId, String artifactId, String version) {
+        String key = getCoordinatesKey(groupId, artifactId, version);
+        Model reactorModel = reactorModels.get(key);
+        if (reactorModel != null) {
+            return reactorModel;
+        }
+        if (!repositoryModels.containsKey(key)) {
+            File pomFile = modelResolver.getPomFile(groupId, artifactId, version);
+            Model model = null;
+            if (pomFile.isFile()) {
+                model = buildModel(null, new FileModelSource(pomFile));
+            } else {
+                logger.debug("Could not find {} in the local repository", pomFile.getPath());
+            }
+            repositoryModels.put(key, model);
+        }
+        return repositoryModels.get(key);
+    }
+
+    private Model buildModel(File pomFile, ModelSource2 modelSource) {
+        DefaultModelBuildingRequest request = new DefaultModelBuildingRequest();
+        if (pomFile != null) {
+            request.setPomFile(pomFile);
+            request.setModelSource(new FileModelSource(pomFile));
+        } else {
+            request.setModelSource(modelSource);
+        }
+        request.setValidationLevel(ModelBuildingRequest.VALIDATION_LEVEL_MINIMAL);
+        request.setProcessPlugins(false);
+        request.setTwoPhaseBuilding(false);
+        request.setSystemProperties(System.getProperties());
+        request.setModelResolver(modelResolver);
+        request.setModelCache(modelCache);
+        try {
+            return modelBuilder.build(request).getEffectiveModel();
+        } catch (ModelBuildingException e) {
+            logger.debug("Could not build the effective POM of {} - {}", pomFile != null ? pomFile.getPath() : modelSource.getLocation(), e.getMessage());
+            return null;
+        }
+    }
+
+    private String getTransitiveScope(String parentScope, String scope) {
+        if (SCOPE_COMPILE.equals(parentScope) || SCOPE_SYSTEM.equals(parentScope)) {
+            return scope;
+        }
+        if (SCOPE_RUNTIME.equals(parentScope)) {
+            return SCOPE_RUNTIME;
+        }
+        // provided and test
+        return parentScope;
+    }
+
+    private Set<String> getExclusions(Set<String> parentExclusions, Dependency dependency) {
+        if (dependency.getExclusions().isEmpty()) {
+            return parentExclusions;
+        }
+        Set<String> exclusions = new HashSet<>(parentExclusions);
+        for (Exclusion exclusion : dependency.getExclusions()) {
+            exclusions.add(exclusion.getGroupId() + Constants.COLON + exclusion.getArtifactId());
+        }
+        return exclusions;
+    }
+
+    private boolean isExcluded(Set<String> exclusions, Dependency dependency) {
+        for (String exclusion : exclusions) {
+            String[] parts = exclusion.split(Constants.COLON);
+            if ((WILDCARD.equals(parts[0]) || parts[0].equals(dependency.getGroupId())) &&
+                    (WILDCARD.equals(parts[1]) || parts[1].equals(dependency.getArtifactId()))) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private String getConflictKey(Dependency dependency) {
+        return dependency.getGroupId() + Constants.COLON + dependency.getArtifactId() + Constants.COLON + dependency.getType() +
+                Constants.COLON + StringUtils.defaultString(dependency.getClassifier());
+    }
+
+    private String getCoordinatesKey(String groupId, String artifactId, String version) {
+        return groupId + Constants.COLON + artifactId + Constants.COLON + version;
+    }
+
+    /* --- Nested classes --- */
+
+    private static class DependencyNode {
+
+        private final Dependency dependency;
+        private final String scope;
+        private final Set<String> exclusions;
+        private final DependencyInfo parent;
+
+        private DependencyNode(Dependency dependency, String scope, Set<String> exclusions, DependencyInfo parent) {
+            this.dependency = dependency;
+            this.scope = scope;
+            this.exclusions = exclusions;
+            this.parent = parent;
+        }
+    }
+
+    // the raw models and imported POMs shared by all the models built, parents and BOMs are read once
+    private static class MemoryModelCache implements ModelCache {
+
+        private final Map<String, Object> entries = new ConcurrentHashMap<>();
+
+        @Override
+        public void put(String groupId, String artifactId, String version, String tag, Object data) {
+            entries.put(groupId + Constants.COLON + artifactId + Constants.COLON + version + Constants.COLON + tag, data);
+        }
+
+        @Override
+        public Object get(String groupId, String artifactId, String version, String tag) {
+            return entries.get(groupId + Constants.COLON + artifactId + Constants.COLON + version + Constants.COLON + tag);
+        }
+    }
+}
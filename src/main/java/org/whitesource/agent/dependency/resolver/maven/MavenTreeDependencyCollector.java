@@ -25,8 +25,9 @@ import org.whitesource.agent.api.model.Coordinates;
 import org.whitesource.agent.api.model.DependencyInfo;
 import org.whitesource.agent.api.model.DependencyType;
 import org.whitesource.agent.dependency.resolver.DependencyCollector;
-import org.whitesource.agent.hash.ChecksumUtils;
+import org.whitesource.agent.utils.ChecksumCache;
 import org.whitesource.agent.utils.CommandLineProcess;
+import org.whitesource.agent.utils.ToolDiscovery;
 
 import java.io.File;
 import java.io.IOException;
@@ -63,15 +64,15 @@ public class MavenTreeDependencyCollector extends DependencyCollector {
     private final String MVN_CLEAN = "clean";
     private final String MVN_INSTALL = "install";
     private final String MVN_SKIP_TESTS = "-DskipTests";
-    private boolean errorsRunningDependencyTree = false;
+    protected boolean errorsRunningDependencyTree = false;
 
     /* --- Members --- */
 
     protected String M2Path;
-    private Set<String> mavenIgnoredScopes;
+    protected Set<String> mavenIgnoredScopes;
     private boolean showMavenTreeError;
-    private boolean ignorePomModules;
-    private boolean runPreStep;
+    protected boolean ignorePomModules;
+    protected boolean runPreStep;
     private MavenLinesParser mavenLinesParser;
     private boolean mavenIgnoreDependencyTreeErrors;
     /* --- Constructors --- */
@@ -104,21 +105,11 @@ public class MavenTreeDependencyCollector extends DependencyCollector {
     @Override
     public Collection<AgentProjectInfo> collectDependencies(String rootDirectory) {
         Collection<AgentProjectInfo> projects = new ArrayList<>();
-        if (!this.isMavenExist(rootDirectory)) {
+        if (!this.isMavenExist()) {
             logger.warn("Please install maven");
         } else {
             if (runPreStep) {
-                try {
-                    CommandLineProcess mvnCleanInstall = new CommandLineProcess(rootDirectory, getCleanInstallCommandParams());
-                    mvnCleanInstall.executeProcess();
-                    if (mvnCleanInstall.isErrorInProcess()) {
-                        logger.warn("Failed to execute the command {}", getCleanInstallCommandParams());
-                    }
-
-                } catch (Exception e) {
-                    logger.warn("Error while execute dependencies after running {} on {}, {}", getCleanInstallCommandParams(), rootDirectory, e.getMessage());
-                    logger.debug("Error: {}", e.getStackTrace());
-                }
+                runCleanInstall(rootDirectory);
             }
 
             if (StringUtils.isBlank(M2Path)) {
@@ -185,29 +176,38 @@ public class MavenTreeDependencyCollector extends DependencyCollector {
         return projects;
     }
 
+    protected void runCleanInstall(String rootDirectory) {
+        try {
+            CommandLineProcess mvnCleanInstall = new CommandLineProcess(rootDirectory, getCleanInstallCommandParams());
+            mvnCleanInstall.executeProcess();
+            if (mvnCleanInstall.isErrorInProcess()) {
+                logger.warn("Failed to execute the command {}", getCleanInstallCommandParams());
+            }
+
+        } catch (Exception e) {
+            logger.warn("Error while execute dependencies after running {} on {}, {}", getCleanInstallCommandParams(), rootDirectory, e.getMessage());
+            logger.debug("Error: {}", e.getStackTrace());
+        }
+    }
+
     protected String getSha1(String filePath) {
         try {
-            return ChecksumUtils.calculateSHA1(new File(filePath));
+            return ChecksumCache.getInstance().getSha1(new File(filePath));
         } catch (IOException e) {
             logger.warn("Failed getting " + filePath + ". Consider run 'mvn clean install' ");
             return Constants.EMPTY_STRING;
         }
     }
 
-    private boolean isMavenExist(String rootDirectory) {
-        try {
-            CommandLineProcess mvnProcess = new CommandLineProcess(rootDirectory, getVersionCommandParams());
-            List<String> lines = mvnProcess.executeProcess();
-            if (mvnProcess.isErrorInProcess() || lines.isEmpty()) {
-                logger.debug("Failed to get maven version");
-                return false;
-            } else {
-                logger.debug("Maven : {}", lines);
-                return true;
-            }
-        } catch (IOException io) {
-            logger.debug("Failed to get maven version : {}", io.getMessage());
+    private boolean isMavenExist() {
+        // the version is probed once per process, not per scanned folder
+        List<String> lines = ToolDiscovery.getInstance().getOutput(getVersionCommandParams());
+        if (lines.isEmpty()) {
+            logger.debug("Failed to get maven version");
             return false;
+        } else {
+            logger.debug("Maven : {}", lines);
+            return true;
         }
     }
 
@@ -293,24 +293,18 @@ public class MavenTreeDependencyCollector extends DependencyCollector {
         } else {
             params = new String[]{MVN_COMMAND, MVN_PARAMS_M2PATH_PATH, MVN_PARAMS_M2PATH_LOCAL};
         }
-        try {
-            CommandLineProcess mvnProcess = new CommandLineProcess(rootDirectory, params);
-            List<String> lines = mvnProcess.executeProcess();
-            if (!mvnProcess.isErrorInProcess()) {
-                Optional<String> pathLine = lines.stream().filter(line -> (new File(line).exists())).findFirst();
-                if (pathLine.isPresent()) {
-                    return pathLine.get();
-                } else {
-                    logger.warn("could not get m2 path : {} out: {}", rootDirectory, lines.stream().reduce(Constants.EMPTY_STRING, String::concat));
-                    showMavenTreeError = true;
-                    return null;
-                }
+        List<String> lines = ToolDiscovery.getInstance().getOutput(params);
+        if (!lines.isEmpty()) {
+            Optional<String> pathLine = lines.stream().filter(line -> (new File(line).exists())).findFirst();
+            if (pathLine.isPresent()) {
+                return pathLine.get();
             } else {
-                logger.warn("Failed to scan and send {}", getLsCommandParams());
+                logger.warn("could not get m2 path : {} out: {}", rootDirectory, lines.stream().reduce(Constants.EMPTY_STRING, String::concat));
+                showMavenTreeError = true;
                 return null;
             }
-        } catch (IOException io) {
-            logger.warn("could not get m2 path : {}", io.getMessage());
+        } else {
+            logger.warn("could not get m2 path : {}", String.join(Constants.WHITESPACE, params));
             showMavenTreeError = true;
             return null;
         }
@@ -92,7 +92,7 @@ public class NpmBomParser extends BomParser {
         return bom;
     }
 
-    private RegistryType getRegistryType(String resolved) {
+    static RegistryType getRegistryType(String resolved) {
         RegistryType registryType = null;
         if (StringUtils.isNotBlank(resolved)) {
             if (resolved.contains(ARTIFACTORY_FORWARD_SLASH)) {
@@ -15,11 +15,7 @@
  */
 package org.whitesource.agent.dependency.resolver.npm;
 
-import com.sun.jersey.api.client.Client;
-import com.sun.jersey.api.client.ClientResponse;
-import com.sun.jersey.api.client.WebResource;
 import org.eclipse.jgit.util.StringUtils;
-import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.whitesource.agent.Constants;
 import org.whitesource.agent.api.model.AgentProjectInfo;
@@ -34,7 +30,6 @@ import org.whitesource.agent.utils.FilesScanner;
 import org.whitesource.agent.utils.LoggerFactory;
 import org.whitesource.fs.StatusCode;
 
-import javax.ws.rs.core.MediaType;
 import java.io.File;
 import java.nio.file.Paths;
 import java.util.*;
@@ -66,16 +61,9 @@ public class NpmDependencyResolver extends AbstractDependencyResolver {
     private static final String WS_BOWER_FOLDER = "**/.ws_bower/**/";
     private static final String TEST = "**/test/**/";
     private static final long NPM_DEFAULT_LS_TIMEOUT = 60;
-    private static final String VERSIONS = "versions";
-    private static final String DIST = "dist";
-    private static final String SHASUM = "shasum";
 
     private static final String EXCLUDE_TOP_FOLDER = "node_modules";
-    private static final String AUTHORIZATION = "Authorization";
-    private static final String BEARER = "Bearer";
-    private static final String BASIC = "Basic";
     private static final int NUM_THREADS = 8;
-    private static final String URL_SLASH = "%2F";
 
     /* --- Members --- */
 
@@ -91,8 +79,33 @@ public class NpmDependencyResolver extends AbstractDependencyResolver {
 
     public NpmDependencyResolver(boolean includeDevDependencies, boolean ignoreSourceFiles, long npmTimeoutDependenciesCollector,
                                  boolean runPreStep, boolean npmIgnoreNpmLsErrors, String npmAccessToken, boolean npmYarnProject, boolean ignoreScripts) {
+        this(includeDevDependencies, ignoreSourceFiles, npmTimeoutDependenciesCollector, runPreStep, npmIgnoreNpmLsErrors, npmAccessToken,
+                npmYarnProject, ignoreScripts, false);
+    }
+
+    public NpmDependencyResolver(boolean includeDevDependencies, boolean ignoreSourceFiles, long npmTimeoutDependenciesCollector,
+                                 boolean runPreStep, boolean npmIgnoreNpmLsErrors, String npmAccessToken, boolean npmYarnProject, boolean ignoreScripts,
+                                 boolean streamLsJson) {
+        this(includeDevDependencies, ignoreSourceFiles, npmTimeoutDependenciesCollector, runPreStep, npmIgnoreNpmLsErrors, npmAccessToken,
+                npmYarnProject, ignoreScripts, streamLsJson, false);
+    }
+
+    /**
+     * @param resolveFromLockFile collect the dependencies of projects with a 'package-lock.json' or 'npm-shrinkwrap.json' from the
+     *                            lock file, without running 'npm install' and 'npm ls'
+     */
+    public NpmDependencyResolver(boolean includeDevDependencies, boolean ignoreSourceFiles, long npmTimeoutDependenciesCollector,
+                                 boolean runPreStep, boolean npmIgnoreNpmLsErrors, String npmAccessToken, boolean npmYarnProject, boolean ignoreScripts,
+                                 boolean streamLsJson, boolean resolveFromLockFile) {
         super();
-        bomCollector = npmYarnProject ? new YarnDependencyCollector(includeDevDependencies, npmTimeoutDependenciesCollector, ignoreSourceFiles, ignoreScripts) : new NpmLsJsonDependencyCollector(includeDevDependencies, npmTimeoutDependenciesCollector, npmIgnoreNpmLsErrors, ignoreScripts);
+        if (npmYarnProject) {
+            bomCollector = new YarnDependencyCollector(includeDevDependencies, npmTimeoutDependenciesCollector, ignoreSourceFiles, ignoreScripts);
+        } else if (resolveFromLockFile) {
+            bomCollector = new NpmLockDependencyCollector(includeDevDependencies, npmTimeoutDependenciesCollector, npmIgnoreNpmLsErrors, ignoreScripts,
+                    streamLsJson, npmAccessToken);
+        } else {
+            bomCollector = new NpmLsJsonDependencyCollector(includeDevDependencies, npmTimeoutDependenciesCollector, npmIgnoreNpmLsErrors, ignoreScripts, streamLsJson);
+        }
         bomParser = new NpmBomParser();
         this.ignoreSourceFiles = ignoreSourceFiles;
         this.runPreStep = runPreStep;
@@ -128,68 +141,84 @@ public class NpmDependencyResolver extends AbstractDependencyResolver {
 
     @Override
     protected ResolutionResult resolveDependencies(String projectFolder, String topLevelFolder, Set<String> bomFiles) {
-        if (runPreStep) {
-            getDependencyCollector().executePreparationStep(topLevelFolder);
-            String[] excludesArray = new String[getExcludes().size()];
-            excludesArray = getExcludes().toArray(excludesArray);
-            String[] otherBomFiles = filesScanner.getDirectoryContent(topLevelFolder, getBomPattern(), excludesArray, false, false);
-            Arrays.stream(otherBomFiles).forEach(file -> bomFiles.add(Paths.get(topLevelFolder, file).toString()));
-        }
-
         logger.debug("Attempting to parse package.json files");
-        // parse package.json files
-        Collection<BomFile> parsedBomFiles = new LinkedList<>();
-
-        Map<File, List<File>> mapBomFiles = bomFiles.stream().map(file -> new File(file)).collect(Collectors.groupingBy(File::getParentFile));
-
-        List<File> files = mapBomFiles.entrySet().stream().map(entry -> {
-            if (entry.getValue().size() > 1) {
-                return entry.getValue().stream().filter(this::fileShouldBeParsed).findFirst().get();
+        // parse the package.json files of the modules, those of the installed packages are parsed only for the modules collected via 'npm ls'
+        Collection<BomFile> parsedBomFiles = parseBomFiles(bomFiles.stream()
+                .filter(file -> !isInstalledPackage(topLevelFolder, file)).collect(Collectors.toList()));
+        // in case there is more than one module (i.e. - many package.json files outside of node_modules folder) - collect their dependencies as well
+        List<String> moduleFolders = new ArrayList<>();
+        moduleFolders.add(topLevelFolder);
+        parsedBomFiles.stream()
+                .map(bomFile -> bomFile.getLocalFileName().substring(0, bomFile.getLocalFileName().lastIndexOf(fileSeparator)))
+                .filter(moduleFolder -> !moduleFolders.contains(moduleFolder))
+                .forEach(moduleFolders::add);
+
+        // the lock file lists the installed packages with their checksums, neither 'npm install' nor their package.json files are needed
+        NpmLockDependencyCollector lockCollector = getDependencyCollector() instanceof NpmLockDependencyCollector ?
+                (NpmLockDependencyCollector) getDependencyCollector() : null;
+        Collection<DependencyInfo> dependencies = new LinkedList<>();
+        List<String> lsFolders = new ArrayList<>();
+        for (String moduleFolder : moduleFolders) {
+            Collection<AgentProjectInfo> lockProjects = lockCollector == null ? null : lockCollector.collectDependenciesFromLockFile(moduleFolder);
+            if (lockProjects == null) {
+                lsFolders.add(moduleFolder);
             } else {
-                return entry.getValue().stream().findFirst().get();
+                logger.debug("Collected the dependencies of {} from its lock file", moduleFolder);
+                lockProjects.forEach(project -> dependencies.addAll(project.getDependencies()));
             }
-        }).collect(Collectors.toList());
+        }
 
-        files.forEach(bomFile -> {
-            BomFile parsedBomFile = getBomParser().parseBomFile(bomFile.getAbsolutePath());
-            if (parsedBomFile != null && parsedBomFile.isValid()) {
-                parsedBomFiles.add(parsedBomFile);
+        // the dependencies of the modules 'npm ls' succeeded for
+        Collection<DependencyInfo> lsDependencies = new LinkedList<>();
+        Collection<BomFile> lsBomFiles = new LinkedList<>();
+        List<String> lsFailedFolders = new ArrayList<>();
+        if (!lsFolders.isEmpty()) {
+            if (runPreStep && lsFolders.contains(topLevelFolder)) {
+                getDependencyCollector().executePreparationStep(topLevelFolder);
+                String[] excludesArray = new String[getExcludes().size()];
+                excludesArray = getExcludes().toArray(excludesArray);
+                String[] otherBomFiles = filesScanner.getDirectoryContent(topLevelFolder, getBomPattern(), excludesArray, false, false);
+                Arrays.stream(otherBomFiles).forEach(file -> bomFiles.add(Paths.get(topLevelFolder, file).toString()));
             }
-        });
-
-        logger.debug("Trying to collect dependencies via 'npm ls'");
-        // try to collect dependencies via 'npm ls'
-        List<String> bomFilesNames = parsedBomFiles.stream().map(BomFile::getLocalFileName).filter(s -> s.contains(EXCLUDE_TOP_FOLDER) == false).collect(Collectors.toList());
-        Collection<AgentProjectInfo> projects = getDependencyCollector().collectDependencies(topLevelFolder);
-        // in case there is more than one module (i.e. - many package.json files outside of node_modules folder) - collect their dependencies as well
-        bomFilesNames.stream().forEach(bomFilePath -> {
-            bomFilePath = bomFilePath.substring(0, bomFilePath.lastIndexOf(fileSeparator));
-            if (bomFilePath.equals(topLevelFolder) == false){
-                projects.addAll(getDependencyCollector().collectDependencies(bomFilePath));
+            parsedBomFiles.stream()
+                    .filter(bomFile -> lsFolders.contains(getModuleFolder(bomFile.getLocalFileName(), moduleFolders)))
+                    .forEach(lsBomFiles::add);
+            lsBomFiles.addAll(parseBomFiles(bomFiles.stream()
+                    .filter(file -> isInstalledPackage(topLevelFolder, file) && lsFolders.contains(getModuleFolder(file, moduleFolders)))
+                    .collect(Collectors.toList())));
+
+            logger.debug("Trying to collect dependencies via 'npm ls'");
+            for (String lsFolder : lsFolders) {
+                Collection<AgentProjectInfo> projects = lockCollector == null ? getDependencyCollector().collectDependencies(lsFolder) :
+                        lockCollector.collectDependenciesWithNpmLs(lsFolder);
+                boolean lsFailed = getDependencyCollector().getNpmLsFailureStatus();
+                if (lsFailed) {
+                    lsFailedFolders.add(lsFolder);
+                }
+                projects.forEach(project -> (lsFailed ? dependencies : lsDependencies).addAll(project.getDependencies()));
             }
-        });
+            dependencies.addAll(lsDependencies);
+        }
 
-        Collection<DependencyInfo> dependencies = projects.stream().flatMap(project -> project.getDependencies().stream()).collect(Collectors.toList());
         // this code turn the dependencies tree recursively into a flat-list,
         // so that each dependency has its dependencyFile set
         dependencies.stream()
                 .flatMap(AddDependencyFileRecursionHelper::flatten)
                 .forEach(dependencyInfo -> dependencyInfo.setDependencyFile(projectFolder + fileSeparator + PACKAGE_JSON));
 
-        boolean lsSuccess = !getDependencyCollector().getNpmLsFailureStatus();
-        // flag that indicates if the number of the dependencies is zero and npm ls succeeded
-        boolean zeroDependenciesList = false;
-        if (lsSuccess) {
+        if (!lsDependencies.isEmpty()) {
             logger.debug("'npm ls succeeded");
-            if (!dependencies.isEmpty()) {
-                handleLsSuccess(parsedBomFiles, dependencies, npmAccessToken);
-            } else {
-                zeroDependenciesList = true;
-            }
-        } else {
-            logger.debug("'npm ls failed");
-            dependencies.addAll(collectPackageJsonDependencies(parsedBomFiles));
+            // the dependencies collected from a lock file already have their checksums
+            handleLsSuccess(lsBomFiles, lsDependencies, npmAccessToken);
+        }
+        if (!lsFailedFolders.isEmpty()) {
+            logger.debug("'npm ls failed in {}", lsFailedFolders);
+            dependencies.addAll(collectPackageJsonDependencies(lsBomFiles.stream()
+                    .filter(bomFile -> lsFailedFolders.contains(getModuleFolder(bomFile.getLocalFileName(), moduleFolders)))
+                    .collect(Collectors.toList())));
         }
+        // flag that indicates if the number of the dependencies is zero and npm ls succeeded
+        boolean zeroDependenciesList = dependencies.isEmpty() && lsFailedFolders.isEmpty();
         //removeDependenciesWithoutSha1(dependencies);
         logger.debug("Creating excludes for .js files upon finding NPM dependencies");
         // create excludes for .js files upon finding NPM dependencies
@@ -258,7 +287,7 @@ public class NpmDependencyResolver extends AbstractDependencyResolver {
         String sha1 = packageJson.getSha1();
         String registryPackageUrl = packageJson.getRegistryPackageUrl();
         if (StringUtils.isEmptyOrNull(sha1) && !StringUtils.isEmptyOrNull(registryPackageUrl)) {
-            sha1 = getSha1FromRegistryPackageUrl(registryPackageUrl, packageJson.isScopedPackage(), packageJson.getVersion(), packageJson.getRegistryType(), npmAccessToken);
+            sha1 = NpmRegistryClient.getInstance().getSha1(registryPackageUrl, packageJson.isScopedPackage(), packageJson.getVersion(), packageJson.getRegistryType(), npmAccessToken);
         }
         dependency.setSha1(sha1);
         dependency.setGroupId(packageJson.getName());
@@ -271,62 +300,6 @@ public class NpmDependencyResolver extends AbstractDependencyResolver {
 
     /* --- Private methods --- */
 
-    private String getSha1FromRegistryPackageUrl(String registryPackageUrl, boolean isScopeDep, String versionOfPackage, RegistryType registryType, String npmAccessToken) {
-
-        String uriScopeDep = registryPackageUrl;
-        if (isScopeDep) {
-            try {
-                uriScopeDep = registryPackageUrl.replace(BomFile.DUMMY_PARAMETER_SCOPE_PACKAGE, URL_SLASH);
-            } catch (Exception e) {
-                logger.warn("Failed creating uri of {}", registryPackageUrl);
-                return Constants.EMPTY_STRING;
-            }
-        }
-
-
-        String responseFromRegistry = null;
-        try {
-            Client client = Client.create();
-            ClientResponse response;
-            WebResource resource;
-            resource = client.resource(uriScopeDep);
-            if (StringUtils.isEmptyOrNull(npmAccessToken)) {
-                response = resource.accept(MediaType.APPLICATION_JSON).get(ClientResponse.class);
-                logger.debug("npm.accessToken is not defined");
-            } else {
-                logger.debug("npm.accessToken is defined");
-                if (registryType == RegistryType.VISUAL_STUDIO) {
-                    String userCredentials = BEARER + Constants.COLON + npmAccessToken;
-                    String basicAuth = BASIC + Constants.WHITESPACE + new String(Base64.getEncoder().encode(userCredentials.getBytes()));
-                    response = resource.accept(MediaType.APPLICATION_JSON).header("Authorization", basicAuth).get(ClientResponse.class);
-                } else {
-                    // Bearer authorization
-                    String userCredentials = BEARER + Constants.WHITESPACE + npmAccessToken;
-                    response = resource.accept(MediaType.APPLICATION_JSON).header("Authorization", userCredentials).get(ClientResponse.class);
-                }
-            }
-            if (response.getStatus() >= 200 && response.getStatus() < 300) {
-                responseFromRegistry = response.getEntity(String.class);
-            } else {
-                logger.debug("Got {} status code from registry using the url {}.", response.getStatus(), uriScopeDep);
-            }
-        } catch (Exception e) {
-            logger.warn("Could not reach the registry using the URL: {}. Got an error: {}", registryPackageUrl, e.getMessage());
-            return Constants.EMPTY_STRING;
-        }
-        if (responseFromRegistry == null) {
-            return Constants.EMPTY_STRING;
-        }
-        JSONObject jsonRegistry = new JSONObject(responseFromRegistry);
-        String shasum;
-        if (isScopeDep) {
-            shasum = jsonRegistry.getJSONObject(VERSIONS).getJSONObject(versionOfPackage).getJSONObject(DIST).getString(SHASUM);
-        } else {
-            shasum = jsonRegistry.getJSONObject(DIST).getString(SHASUM);
-        }
-        return shasum;
-    }
-
     /**
      * Collect dependencies from package.json files - without 'npm ls'
      */
@@ -371,6 +344,42 @@ public class NpmDependencyResolver extends AbstractDependencyResolver {
         }
     }
 
+    private Collection<BomFile> parseBomFiles(Collection<String> bomFiles) {
+        Collection<BomFile> parsedBomFiles = new LinkedList<>();
+        Map<File, List<File>> mapBomFiles = bomFiles.stream().map(file -> new File(file)).collect(Collectors.groupingBy(File::getParentFile));
+
+        List<File> files = mapBomFiles.entrySet().stream().map(entry -> {
+            if (entry.getValue().size() > 1) {
+                return entry.getValue().stream().filter(this::fileShouldBeParsed).findFirst().get();
+            } else {
+                return entry.getValue().stream().findFirst().get();
+            }
+        }).collect(Collectors.toList());
+
+        files.forEach(bomFile -> {
+            BomFile parsedBomFile = getBomParser().parseBomFile(bomFile.getAbsolutePath());
+            if (parsedBomFile != null && parsedBomFile.isValid()) {
+                parsedBomFiles.add(parsedBomFile);
+            }
+        });
+        return parsedBomFiles;
+    }
+
+    private boolean isInstalledPackage(String topLevelFolder, String file) {
+        return file.startsWith(topLevelFolder) && file.substring(topLevelFolder.length()).contains(EXCLUDE_TOP_FOLDER);
+    }
+
+    // the innermost module folder holding the file
+    private String getModuleFolder(String file, List<String> moduleFolders) {
+        String moduleFolder = null;
+        for (String folder : moduleFolders) {
+            if (file.startsWith(folder + fileSeparator) && (moduleFolder == null || folder.length() > moduleFolder.length())) {
+                moduleFolder = folder;
+            }
+        }
+        return moduleFolder;
+    }
+
     private boolean fileShouldBeParsed(File file) {
         return (file.getAbsolutePath().endsWith(getPreferredFileName()));
     }
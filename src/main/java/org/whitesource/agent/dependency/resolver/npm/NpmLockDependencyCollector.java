@@ -0,0 +1,503 @@
+/**
+ * Copyright (C) 2017 WhiteSource Ltd.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.whitesource.agent.dependency.resolver.npm;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.whitesource.agent.Constants;
+import org.whitesource.agent.api.model.AgentProjectInfo;
+import org.whitesource.agent.api.model.DependencyInfo;
+import org.whitesource.agent.api.model.DependencyType;
+import org.whitesource.agent.dependency.resolver.BomFile;
+import org.whitesource.agent.utils.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * Collects the dependencies of npm projects from their lock file ('npm-shrinkwrap.json' or 'package-lock.json'),
+ * without running 'npm ls' and without reading the package.json files of node_modules.
+ * <p>
+ * The lock file is read with a streaming parser into the installed packages keyed by their folder
+ * ('node_modules/a/node_modules/b'), from the 'packages' of lock file versions 2 and 3 or from the nested 'dependencies'
+ * of version 1, and the requirements of each package are resolved the way node does, from its own node_modules up to
+ * the root. The tree is built breadth first, a package installed once but required by several packages is reported
+ * once, at its shallowest position, as 'npm ls' does with deduped packages. A linked package (a workspace or a 'file:'
+ * dependency) is read from the folder its link resolves to, and the workspaces of a project are packages of its root.
+ * <p>
+ * The SHA-1 of a package is taken from its integrity field when it holds one, otherwise it is looked up in the registry.
+ * Folders without a readable lock file of their own or of the project they are a workspace of are collected with 'npm ls'.
+ */
+public class NpmLockDependencyCollector extends NpmLsJsonDependencyCollector {
+
+    /* --- Static members --- */
+
+    private final Logger logger = LoggerFactory.getLogger(NpmLockDependencyCollector.class);
+
+    public static final String NPM_SHRINKWRAP_JSON = "npm-shrinkwrap.json";
+    public static final String PACKAGE_LOCK_JSON = "package-lock.json";
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final String PACKAGE_JSON = "package.json";
+    private static final String NODE_MODULES = "node_modules/";
+    private static final String PACKAGES = "packages";
+    private static final String REQUIRES = "requires";
+    private static final String RESOLVED = "resolved";
+    private static final String INTEGRITY = "integrity";
+    private static final String DEV = "dev";
+    private static final String LINK = "link";
+    private static final String DEV_DEPENDENCIES = "devDependencies";
+    private static final String OPTIONAL_DEPENDENCIES = "optionalDependencies";
+    private static final String PEER_DEPENDENCIES = "peerDependencies";
+    private static final String WORKSPACES = "workspaces";
+    private static final String PARENT_FOLDER = "../";
+    private static final String SHA1_INTEGRITY_PREFIX = "sha1-";
+    private static final String NPM_ALIAS_PREFIX = "npm:";
+    private static final String AT = "@";
+    private static final String ROOT = "";
+
+    /* --- Members --- */
+
+    private final String npmAccessToken;
+
+    /* --- Constructors --- */
+
+    public NpmLockDependencyCollector(boolean includeDevDependencies, long npmTimeoutDependenciesCollector, boolean ignoreNpmLsErrors,
+                                      boolean ignoreScripts, boolean streamLsJson, String npmAccessToken) {
+        super(includeDevDependencies, npmTimeoutDependenciesCollector, ignoreNpmLsErrors, ignoreScripts, streamLsJson);
+        this.npmAccessToken = npmAccessToken;
+    }
+
+    /* --- Static methods --- */
+
+    /**
+     * @return the lock file of the folder, 'npm-shrinkwrap.json' first as npm does, or null if there is none
+     */
+    public static File findLockFile(File folder) {
+        for (String lockFileName : new String[]{NPM_SHRINKWRAP_JSON, PACKAGE_LOCK_JSON}) {
+            File lockFile = new File(folder, lockFileName);
+            if (lockFile.isFile()) {
+                return lockFile;
+            }
+        }
+        return null;
+    }
+
+    /* --- Overridden methods --- */
+
+    @Override
+    public Collection<AgentProjectInfo> collectDependencies(String rootDirectory) {
+        Collection<AgentProjectInfo> projects = collectDependenciesFromLockFile(rootDirectory);
+        if (projects != null) {
+            return projects;
+        }
+        return collectDependenciesWithNpmLs(rootDirectory);
+    }
+
+    /* --- Public methods --- */
+
+    /**
+     * Collects the dependencies of a folder from its lock file, or from the lock file of the project it is a workspace of.
+     *
+     * @param rootDirectory the folder of the package.json
+     * @return the project of the folder, or null if no readable lock file lists the folder
+     */
+    public Collection<AgentProjectInfo> collectDependenciesFromLockFile(String rootDirectory) {
+        File folder = new File(rootDirectory).getAbsoluteFile();
+        File lockFile = findLockFile(folder);
+        String rootPath = ROOT;
+        if (lockFile == null) {
+            // a workspace of a project is installed by the lock file of the project
+            for (File parent = folder.getParentFile(); parent != null && lockFile == null; parent = parent.getParentFile()) {
+                lockFile = findLockFile(parent);
+                rootPath = parent.toPath().relativize(folder.toPath()).toString().replace(File.separatorChar, '/');
+            }
+        }
+        if (lockFile == null) {
+            logger.debug("No lock file for {}", rootDirectory);
+            return null;
+        }
+        try {
+            LockFile parsedLockFile = parseLockFile(lockFile);
+            if (parsedLockFile.packages.containsKey(rootPath)) {
+                this.npmLsFailureStatus = false;
+                return getSingleProjectList(getDependencies(parsedLockFile, rootPath, lockFile.getParentFile()));
+            }
+            logger.debug("{} is not listed in {}", rootDirectory, lockFile.getPath());
+        } catch (IOException e) {
+            logger.warn("Could not read {}: {}", lockFile.getPath(), e.getMessage());
+        }
+        return null;
+    }
+
+    /**
+     * Collects the dependencies of a folder with 'npm ls', for the folders {@link #collectDependenciesFromLockFile} returned null for.
+     *
+     * @param rootDirectory the folder of the package.json
+     * @return the project of the folder
+     */
+    public Collection<AgentProjectInfo> collectDependenciesWithNpmLs(String rootDirectory) {
+        logger.debug("Running 'npm ls' in {}", rootDirectory);
+        return super.collectDependencies(rootDirectory);
+    }
+
+    /* --- Package methods --- */
+
+    LockFile parseLockFile(File lockFile) throws IOException {
+        LockFile parsedLockFile = new LockFile();
+        Map<String, PackageEntry> nestedDependencies = new HashMap<>();
+        try (JsonParser parser = JSON_FACTORY.createParser(lockFile)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Not a JSON object");
+            }
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (PACKAGES.equals(fieldName) && token == JsonToken.START_OBJECT) {
+                    while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                        String path = parser.getCurrentName();
+                        parser.nextToken();
+                        parsedLockFile.packages.put(path, readPackage(parser));
+                    }
+                } else if (Constants.DEPENDENCIES.equals(fieldName) && token == JsonToken.START_OBJECT && parsedLockFile.packages.isEmpty()) {
+                    readNestedDependencies(parser, ROOT, nestedDependencies);
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        if (parsedLockFile.packages.isEmpty()) {
+            // lock file version 1, the requirements of the root are those of its package.json
+            File packageJson = new File(lockFile.getParentFile(), PACKAGE_JSON);
+            PackageEntry root = packageJson.isFile() ? readPackageJson(packageJson) : new PackageEntry();
+            if (!packageJson.isFile()) {
+                nestedDependencies.keySet().stream().filter(path -> path.lastIndexOf(NODE_MODULES) == 0)
+                        .forEach(path -> root.dependencies.add(path.substring(NODE_MODULES.length())));
+            }
+            parsedLockFile.packages.put(ROOT, root);
+            parsedLockFile.packages.putAll(nestedDependencies);
+        }
+        return parsedLockFile;
+    }
+
+    Collection<DependencyInfo> getDependencies(LockFile lockFile, String rootPath, File lockFileFolder) {
+        List<DependencyInfo> dependencies = new ArrayList<>();
+        // the dependencies are compared by value, including their children which are still added, so they are not used as keys
+        List<DependencyInfo> missingSha1 = new ArrayList<>();
+        List<PackageEntry> missingSha1Entries = new ArrayList<>();
+        Set<String> visitedPaths = new HashSet<>();
+        visitedPaths.add(rootPath);
+        Deque<Requirement> queue = new ArrayDeque<>();
+        PackageEntry root = lockFile.packages.get(rootPath);
+        addRequirements(queue, root, rootPath, null, includeDevDependencies);
+        if (root.workspaces) {
+            // as with 'npm ls', the workspaces of the project are packages of its root
+            lockFile.packages.forEach((path, entry) -> {
+                if (entry.link && path.lastIndexOf(NODE_MODULES) == 0 && entry.resolved != null && !entry.resolved.startsWith(PARENT_FOLDER)) {
+                    queue.add(new Requirement(path.substring(NODE_MODULES.length()), rootPath, null));
+                }
+            });
+        }
+        while (!queue.isEmpty()) {
+            Requirement requirement = queue.poll();
+            String path = resolve(lockFile, requirement.fromPath, requirement.name);
+            if (path == null) {
+                logger.debug("{} required by '{}' is not installed", requirement.name, requirement.fromPath);
+                continue;
+            }
+            PackageEntry entry = lockFile.packages.get(path);
+            if (entry.dev && !includeDevDependencies) {
+                continue;
+            }
+            String packagePath = path;
+            if (entry.link) {
+                // a workspace or a 'file:' dependency, the package is listed under the folder the link resolves to
+                packagePath = entry.resolved;
+                entry = packagePath == null ? null : lockFile.packages.get(packagePath);
+                if (entry == null) {
+                    logger.debug("The link {} does not resolve to a package of the lock file", path);
+                    continue;
+                }
+            }
+            if ((entry.dev && !includeDevDependencies) || !visitedPaths.add(packagePath)) {
+                continue;
+            }
+            DependencyInfo dependency = createDependency(entry, path, packagePath, lockFileFolder);
+            if (dependency == null) {
+                continue;
+            }
+            if (requirement.parent == null) {
+                dependencies.add(dependency);
+            } else {
+                requirement.parent.getChildren().add(dependency);
+            }
+            if (StringUtils.isEmpty(dependency.getSha1())) {
+                missingSha1.add(dependency);
+                missingSha1Entries.add(entry);
+            }
+            addRequirements(queue, entry, packagePath, dependency, false);
+        }
+        // the registry is queried only for the packages whose integrity is not a SHA-1, on the threads of the registry client
+        List<CompletableFuture<String>> lookups = new ArrayList<>();
+        for (int i = 0; i < missingSha1.size(); i++) {
+            lookups.add(getSha1FromRegistry(missingSha1Entries.get(i), missingSha1.get(i)));
+        }
+        for (int i = 0; i < missingSha1.size(); i++) {
+            missingSha1.get(i).setSha1(lookups.get(i).join());
+        }
+        return dependencies;
+    }
+
+    /* --- Private methods --- */
+
+    private void addRequirements(Deque<Requirement> queue, PackageEntry entry, String path, DependencyInfo parent, boolean includeDev) {
+        entry.dependencies.forEach(name -> queue.add(new Requirement(name, path, parent)));
+        if (includeDev) {
+            entry.devDependencies.forEach(name -> queue.add(new Requirement(name, path, parent)));
+        }
+    }
+
+    // the folder of the package installed for a requirement, from the node_modules of the requiring package up to the root
+    private String resolve(LockFile lockFile, String fromPath, String name) {
+        String path = fromPath;
+        while (true) {
+            String candidate = (path.isEmpty() ? ROOT : path + Constants.FORWARD_SLASH) + NODE_MODULES + name;
+            if (lockFile.packages.containsKey(candidate)) {
+                return candidate;
+            }
+            if (path.isEmpty()) {
+                return null;
+            }
+            int nodeModulesIndex = path.lastIndexOf(NODE_MODULES);
+            path = nodeModulesIndex <= 0 ? ROOT : path.substring(0, nodeModulesIndex - 1);
+        }
+    }
+
+    // the name is that of the installed path, the package may be linked from another folder
+    private DependencyInfo createDependency(PackageEntry entry, String path, String packagePath, File lockFileFolder) {
+        String name = entry.name != null ? entry.name : path.substring(path.lastIndexOf(NODE_MODULES) + NODE_MODULES.length());
+        String version = entry.version;
+        if (version != null && version.startsWith(NPM_ALIAS_PREFIX)) {
+            // aliased package, 'npm:<name>@<version>'
+            String aliased = version.substring(NPM_ALIAS_PREFIX.length());
+            int versionIndex = aliased.lastIndexOf(AT);
+            if (versionIndex > 0) {
+                name = aliased.substring(0, versionIndex);
+                version = aliased.substring(versionIndex + 1);
+            }
+        }
+        if (StringUtils.isBlank(version)) {
+            logger.debug("No version for {} in the lock file", path);
+            return null;
+        }
+        String filename = NpmBomParser.getNpmArtifactId(name, version);
+        DependencyInfo dependency = new DependencyInfo();
+        dependency.setGroupId(name);
+        dependency.setArtifactId(filename);
+        dependency.setVersion(version);
+        dependency.setFilename(filename);
+        dependency.setDependencyType(DependencyType.NPM);
+        dependency.setSystemPath(new File(lockFileFolder, packagePath + Constants.FORWARD_SLASH + PACKAGE_JSON).getPath());
+        dependency.setSha1(getSha1FromIntegrity(entry.integrity));
+        return dependency;
+    }
+
+    private String getSha1FromIntegrity(String integrity) {
+        if (integrity == null) {
+            return null;
+        }
+        // the integrity may hold several hashes separated by spaces, e.g. 'sha512-... sha1-...'
+        for (String hash : integrity.split(Constants.WHITESPACE)) {
+            if (hash.startsWith(SHA1_INTEGRITY_PREFIX)) {
+                try {
+                    byte[] sha1 = Base64.getDecoder().decode(hash.substring(SHA1_INTEGRITY_PREFIX.length()));
+                    StringBuilder hex = new StringBuilder();
+                    for (byte b : sha1) {
+                        hex.append(String.format("%02x", b));
+                    }
+                    return hex.toString();
+                } catch (IllegalArgumentException e) {
+                    logger.debug("Invalid integrity {}", hash);
+                }
+            }
+        }
+        return null;
+    }
+
+    private CompletableFuture<String> getSha1FromRegistry(PackageEntry entry, DependencyInfo dependency) {
+        if (StringUtils.isBlank(entry.resolved)) {
+            return CompletableFuture.completedFuture(Constants.EMPTY_STRING);
+        }
+        BomFile packageJson = new BomFile(dependency.getGroupId(), dependency.getVersion(), null, dependency.getFilename(),
+                dependency.getSystemPath(), null, null, entry.resolved, NpmBomParser.getRegistryType(entry.resolved));
+        String registryPackageUrl;
+        try {
+            registryPackageUrl = packageJson.getRegistryPackageUrl();
+        } catch (RuntimeException e) {
+            // not a registry url, e.g. a git or a tarball dependency
+            logger.debug("No registry url for {}: {}", entry.resolved, e.getMessage());
+            return CompletableFuture.completedFuture(Constants.EMPTY_STRING);
+        }
+        if (StringUtils.isEmpty(registryPackageUrl)) {
+            return CompletableFuture.completedFuture(Constants.EMPTY_STRING);
+        }
+        return NpmRegistryClient.getInstance().getSha1Async(registryPackageUrl, packageJson.isScopedPackage(), dependency.getVersion(),
+                packageJson.getRegistryType(), npmAccessToken);
+    }
+
+    private PackageEntry readPackage(JsonParser parser) throws IOException {
+        PackageEntry entry = new PackageEntry();
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String fieldName = parser.getCurrentName();
+            JsonToken token = parser.nextToken();
+            if (!readPackageField(parser, entry, fieldName, token)) {
+                switch (fieldName) {
+                    case Constants.NAME:
+                        // the name differs from the folder only for aliased packages
+                        entry.name = parser.getValueAsString();
+                        break;
+                    case Constants.DEPENDENCIES:
+                    case OPTIONAL_DEPENDENCIES:
+                    case PEER_DEPENDENCIES:
+                        readNames(parser, entry.dependencies);
+                        break;
+                    case DEV_DEPENDENCIES:
+                        readNames(parser, entry.devDependencies);
+                        break;
+                    case WORKSPACES:
+                        entry.workspaces = true;
+                        parser.skipChildren();
+                        break;
+                    default:
+                        parser.skipChildren();
+                }
+            }
+        }
+        return entry;
+    }
+
+    private void readNestedDependencies(JsonParser parser, String parentPath, Map<String, PackageEntry> packages) throws IOException {
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            String path = (parentPath.isEmpty() ? ROOT : parentPath + Constants.FORWARD_SLASH) + NODE_MODULES + name;
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                parser.skipChildren();
+                continue;
+            }
+            PackageEntry entry = new PackageEntry();
+            while (parser.nextToken() == JsonToken.FIELD_NAME) {
+                String fieldName = parser.getCurrentName();
+                JsonToken token = parser.nextToken();
+                if (!readPackageField(parser, entry, fieldName, token)) {
+                    if (REQUIRES.equals(fieldName)) {
+                        readNames(parser, entry.dependencies);
+                    } else if (Constants.DEPENDENCIES.equals(fieldName) && token == JsonToken.START_OBJECT) {
+                        readNestedDependencies(parser, path, packages);
+                    } else {
+                        parser.skipChildren();
+                    }
+                }
+            }
+            packages.put(path, entry);
+        }
+    }
+
+    // the fields common to the two layouts
+    private boolean readPackageField(JsonParser parser, PackageEntry entry, String fieldName, JsonToken token) throws IOException {
+        switch (fieldName) {
+            case Constants.VERSION:
+                entry.version = parser.getValueAsString();
+                return true;
+            case RESOLVED:
+                entry.resolved = parser.getValueAsString();
+                return true;
+            case INTEGRITY:
+                entry.integrity = parser.getValueAsString();
+                return true;
+            case DEV:
+                entry.dev = token == JsonToken.VALUE_TRUE;
+                return true;
+            case LINK:
+                entry.link = token == JsonToken.VALUE_TRUE;
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    private void readNames(JsonParser parser, Collection<String> names) throws IOException {
+        if (parser.getCurrentToken() != JsonToken.START_OBJECT) {
+            parser.skipChildren();
+            return;
+        }
+        while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            names.add(parser.getCurrentName());
+            parser.nextToken();
+            parser.skipChildren();
+        }
+    }
+
+    private PackageEntry readPackageJson(File packageJson) throws IOException {
+        try (JsonParser parser = JSON_FACTORY.createParser(packageJson)) {
+            if (parser.nextToken() != JsonToken.START_OBJECT) {
+                throw new IOException("Not a JSON object");
+            }
+            return readPackage(parser);
+        }
+    }
+
+    /* --- Nested classes --- */
+
+    static class LockFile {
+        // the installed packages by folder, the root package is keyed by an empty path
+        final Map<String, PackageEntry> packages = new LinkedHashMap<>();
+    }
+
+    static class PackageEntry {
+
+        private String name;
+        private String version;
+        private String resolved;
+        private String integrity;
+        private boolean dev;
+        private boolean link;
+        private boolean workspaces;
+        // the names of the required packages, in declaration order
+        private final Set<String> dependencies = new LinkedHashSet<>();
+        private final Set<String> devDependencies = new LinkedHashSet<>();
+
+        private PackageEntry() {
+        }
+    }
+
+    private static class Requirement {
+
+        private final String name;
+        private final String fromPath;
+        private final DependencyInfo parent;
+
+        private Requirement(String name, String fromPath, DependencyInfo parent) {
+            this.name = name;
+            this.fromPath = fromPath;
+            this.parent = parent;
+        }
+    }
+}
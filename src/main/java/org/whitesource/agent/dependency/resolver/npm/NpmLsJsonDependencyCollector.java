@@ -71,14 +71,24 @@ public class NpmLsJsonDependencyCollector extends DependencyCollector {
     protected boolean npmLsFailureStatus;
     protected final long npmTimeoutDependenciesCollector;
     private final boolean ignoreScripts;
+    private final boolean streamLsJson;
 
     /* --- Constructors --- */
 
     public NpmLsJsonDependencyCollector(boolean includeDevDependencies, long npmTimeoutDependenciesCollector, boolean ignoreNpmLsErrors, boolean ignoreScripts) {
+        this(includeDevDependencies, npmTimeoutDependenciesCollector, ignoreNpmLsErrors, ignoreScripts, false);
+    }
+
+    /**
+     * @param streamLsJson parse the 'npm ls --json' output while it is read, without running 'npm ls' a second time
+     */
+    public NpmLsJsonDependencyCollector(boolean includeDevDependencies, long npmTimeoutDependenciesCollector, boolean ignoreNpmLsErrors,
+                                        boolean ignoreScripts, boolean streamLsJson) {
         this.npmTimeoutDependenciesCollector = npmTimeoutDependenciesCollector;
         this.includeDevDependencies = includeDevDependencies;
         this.ignoreNpmLsErrors = ignoreNpmLsErrors;
         this.ignoreScripts = ignoreScripts;
+        this.streamLsJson = streamLsJson;
         this.npmLsFailureStatus = false;
     }
 
@@ -90,19 +100,23 @@ public class NpmLsJsonDependencyCollector extends DependencyCollector {
         try {
             CommandLineProcess npmLsJson = new CommandLineProcess(rootDirectory, getLsCommandParamsJson());
             npmLsJson.setTimeoutReadLineSeconds(this.npmTimeoutDependenciesCollector);
-            List<String> linesOfNpmLsJson = npmLsJson.executeProcess();
-            // flag that indicates if the 'npm ls' command failed
-            this.npmLsFailureStatus = npmLsJson.isErrorInProcess() && !this.ignoreNpmLsErrors;
-            StringBuilder json = new StringBuilder();
-            for (String line : linesOfNpmLsJson) {
-                json.append(line);
-            }
-            if (json != null && json.length() > 0 && (!npmLsJson.isErrorInProcess() || this.ignoreNpmLsErrors)) {
-                logger.debug("'npm ls' output is not empty");
-                if(npmLsJson.isErrorInProcess() && this.ignoreNpmLsErrors) {
-                    logger.info("Ignore errors of 'npm ls'");
+            if (this.streamLsJson) {
+                collectDependenciesStreaming(npmLsJson, dependencies);
+            } else {
+                List<String> linesOfNpmLsJson = npmLsJson.executeProcess();
+                // flag that indicates if the 'npm ls' command failed
+                this.npmLsFailureStatus = npmLsJson.isErrorInProcess() && !this.ignoreNpmLsErrors;
+                StringBuilder json = new StringBuilder();
+                for (String line : linesOfNpmLsJson) {
+                    json.append(line);
+                }
+                if (json != null && json.length() > 0 && (!npmLsJson.isErrorInProcess() || this.ignoreNpmLsErrors)) {
+                    logger.debug("'npm ls' output is not empty");
+                    if(npmLsJson.isErrorInProcess() && this.ignoreNpmLsErrors) {
+                        logger.info("Ignore errors of 'npm ls'");
+                    }
+                    getDependencies(new JSONObject(json.toString()), rootDirectory, dependencies);
                 }
-                getDependencies(new JSONObject(json.toString()), rootDirectory, dependencies);
             }
         } catch (IOException e) {
             this.npmLsFailureStatus = true;
@@ -110,13 +124,7 @@ public class NpmLsJsonDependencyCollector extends DependencyCollector {
             logger.debug("Error: {}", e.getStackTrace());
         }
 
-        if (dependencies.isEmpty()) {
-            if (!showNpmLsError && this.npmLsFailureStatus) {
-                logger.warn("Failed to getting dependencies after running '{}', run {} on {} folder", getLsCommandParams(), getInstallParams(), rootDirectory);
-                showNpmLsError = true;
-            }
-        }
-        return getSingleProjectList(dependencies);
+        return getSingleProjectList(getDependenciesOrLogFailure(dependencies, rootDirectory));
     }
 
     public boolean executePreparationStep(String folder) {
@@ -134,6 +142,29 @@ public class NpmLsJsonDependencyCollector extends DependencyCollector {
 
     /* --- Private methods --- */
 
+    private void collectDependenciesStreaming(CommandLineProcess npmLsJson, Collection<DependencyInfo> dependencies) throws IOException {
+        NpmLsJsonStreamParser parser = new NpmLsJsonStreamParser(this);
+        npmLsJson.executeProcess(parser);
+        // flag that indicates if the 'npm ls' command failed
+        this.npmLsFailureStatus = npmLsJson.isErrorInProcess() && !this.ignoreNpmLsErrors;
+        if (!npmLsJson.isErrorInProcess() || this.ignoreNpmLsErrors) {
+            if (npmLsJson.isErrorInProcess()) {
+                logger.info("Ignore errors of 'npm ls'");
+            }
+            dependencies.addAll(parser.getDependencies());
+        }
+    }
+
+    private Collection<DependencyInfo> getDependenciesOrLogFailure(Collection<DependencyInfo> dependencies, String rootDirectory) {
+        if (dependencies.isEmpty()) {
+            if (!showNpmLsError && this.npmLsFailureStatus) {
+                logger.warn("Failed to getting dependencies after running '{}', run {} on {} folder", getLsCommandParams(), getInstallParams(), rootDirectory);
+                showNpmLsError = true;
+            }
+        }
+        return dependencies;
+    }
+
     private int getDependencies(JSONObject npmLsJson, List<String> linesOfNpmLs, int currentLineNumber, Collection<DependencyInfo> dependencies) {
         if (npmLsJson.has(Constants.DEPENDENCIES)) {
             JSONObject dependenciesJsonObject = npmLsJson.getJSONObject(Constants.DEPENDENCIES);
@@ -0,0 +1,250 @@
+/**
+ * Copyright (C) 2017 WhiteSource Ltd.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.whitesource.agent.dependency.resolver.npm;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.core.async.ByteArrayFeeder;
+import org.json.JSONObject;
+import org.whitesource.agent.Constants;
+import org.whitesource.agent.api.model.DependencyInfo;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.function.Consumer;
+
+/**
+ * Parses the output of 'npm ls --json' line by line while the command runs and builds the dependency trees directly,
+ * without keeping the JSON document in memory.
+ * <p>
+ * A package installed once but required by several packages is listed more than once, in full or marked as deduped
+ * depending on the npm version. Only one occurrence is kept: the one with the most child dependencies, the first one
+ * in breadth first order on a tie.
+ */
+class NpmLsJsonStreamParser implements Consumer<String> {
+
+    /* --- Static members --- */
+
+    private static final JsonFactory JSON_FACTORY = new JsonFactory();
+    private static final byte[] NEW_LINE = {'\n'};
+    private static final String RESOLVED = "resolved";
+
+    /* --- Members --- */
+
+    private final NpmLsJsonDependencyCollector collector;
+    private final JsonParser parser;
+    private final ByteArrayFeeder feeder;
+    private final Deque<PackageNode> packages;
+    private PackageNode root;
+    private String fieldName;
+    private int skippedDepth;
+    private IOException error;
+
+    /* --- Constructors --- */
+
+    NpmLsJsonStreamParser(NpmLsJsonDependencyCollector collector) throws IOException {
+        this.collector = collector;
+        this.parser = JSON_FACTORY.createNonBlockingByteArrayParser();
+        this.feeder = (ByteArrayFeeder) parser.getNonBlockingInputFeeder();
+        this.packages = new ArrayDeque<>();
+    }
+
+    /* --- Overridden methods --- */
+
+    @Override
+    public void accept(String line) {
+        if (error != null) {
+            return;
+        }
+        try {
+            byte[] bytes = line.getBytes(StandardCharsets.UTF_8);
+            feeder.feedInput(bytes, 0, bytes.length);
+            parseAvailableTokens();
+            feeder.feedInput(NEW_LINE, 0, NEW_LINE.length);
+            parseAvailableTokens();
+        } catch (IOException e) {
+            error = e;
+        }
+    }
+
+    /* --- Package methods --- */
+
+    /**
+     * @return the dependencies of the root package, once the whole output was passed to the parser
+     * @throws IOException if the output is not a valid JSON document
+     */
+    Collection<DependencyInfo> getDependencies() throws IOException {
+        if (error == null) {
+            feeder.endOfInput();
+            parseAvailableTokens();
+        }
+        if (error != null) {
+            throw error;
+        }
+        if (root == null) {
+            return new ArrayList<>();
+        }
+        if (!packages.isEmpty()) {
+            throw new IOException("Unexpected end of 'npm ls' output");
+        }
+        removeDuplicates(root.dependencies);
+        return root.dependencies;
+    }
+
+    /* --- Private methods --- */
+
+    private void parseAvailableTokens() throws IOException {
+        JsonToken token;
+        while ((token = parser.nextToken()) != null && token != JsonToken.NOT_AVAILABLE) {
+            handleToken(token);
+        }
+    }
+
+    private void handleToken(JsonToken token) throws IOException {
+        // objects and arrays that are not packages, or the dependencies of a package, are skipped
+        if (skippedDepth > 0) {
+            if (token.isStructStart()) {
+                skippedDepth++;
+            } else if (token.isStructEnd()) {
+                skippedDepth--;
+            }
+            return;
+        }
+        PackageNode current = packages.peek();
+        switch (token) {
+            case FIELD_NAME:
+                fieldName = parser.getCurrentName();
+                break;
+            case START_OBJECT:
+                if (root == null) {
+                    root = new PackageNode(null);
+                    packages.push(root);
+                } else if (current == null) {
+                    skippedDepth++;
+                } else if (current.inDependencies) {
+                    packages.push(new PackageNode(fieldName));
+                } else if (Constants.DEPENDENCIES.equals(fieldName)) {
+                    current.inDependencies = true;
+                } else {
+                    skippedDepth++;
+                }
+                break;
+            case START_ARRAY:
+                skippedDepth++;
+                break;
+            case END_OBJECT:
+                if (current == null) {
+                    break;
+                }
+                if (current.inDependencies) {
+                    current.inDependencies = false;
+                } else {
+                    packages.pop();
+                    if (current != root) {
+                        addDependency(current, packages.peek());
+                    }
+                }
+                break;
+            case VALUE_STRING:
+                if (current != null && !current.inDependencies) {
+                    if (Constants.VERSION.equals(fieldName)) {
+                        current.fields.put(Constants.VERSION, parser.getText());
+                    } else if (RESOLVED.equals(fieldName)) {
+                        current.fields.put(RESOLVED, parser.getText());
+                    }
+                }
+                break;
+            case VALUE_TRUE:
+            case VALUE_FALSE:
+                if (current != null && !current.inDependencies &&
+                        (Constants.MISSING.equals(fieldName) || NpmLsJsonDependencyCollector.PEER_MISSING.equals(fieldName))) {
+                    current.fields.put(fieldName, token == JsonToken.VALUE_TRUE);
+                }
+                break;
+            default:
+                break;
+        }
+    }
+
+    private void addDependency(PackageNode node, PackageNode parent) {
+        // the same fields the collector reads from the 'npm ls --json' document
+        DependencyInfo dependency = collector.getDependency(node.alias, new JSONObject(node.fields));
+        if (dependency != null) {
+            dependency.getChildren().addAll(node.dependencies);
+            parent.dependencies.add(dependency);
+        }
+    }
+
+    private void removeDuplicates(Collection<DependencyInfo> dependencies) {
+        // the occurrence with the most children of each package, the others are deduped references
+        Map<String, DependencyInfo> fullDependencies = new HashMap<>();
+        Queue<DependencyInfo> queue = new LinkedList<>(dependencies);
+        while (!queue.isEmpty()) {
+            DependencyInfo dependency = queue.poll();
+            DependencyInfo full = fullDependencies.get(getKey(dependency));
+            if (full == null || full.getChildren().size() < dependency.getChildren().size()) {
+                fullDependencies.put(getKey(dependency), dependency);
+            }
+            queue.addAll(dependency.getChildren());
+        }
+
+        // top down, the first occurrence of each package is kept and only the children of kept packages are visited,
+        // so a kept package never sits under a dropped one. It takes the children of the full occurrence, which can
+        // not be one of its ancestors and is dropped when visited.
+        Set<String> keptKeys = new HashSet<>();
+        Queue<Collection<DependencyInfo>> levels = new LinkedList<>();
+        levels.add(dependencies);
+        while (!levels.isEmpty()) {
+            Iterator<DependencyInfo> iterator = levels.poll().iterator();
+            while (iterator.hasNext()) {
+                DependencyInfo dependency = iterator.next();
+                String key = getKey(dependency);
+                if (!keptKeys.add(key)) {
+                    iterator.remove();
+                    continue;
+                }
+                DependencyInfo full = fullDependencies.get(key);
+                if (full != dependency) {
+                    dependency.setChildren(new ArrayList<>(full.getChildren()));
+                    full.getChildren().clear();
+                }
+                levels.add(dependency.getChildren());
+            }
+        }
+    }
+
+    private String getKey(DependencyInfo dependency) {
+        return dependency.getGroupId() + Constants.AT + dependency.getVersion();
+    }
+
+    /* --- Nested classes --- */
+
+    private static class PackageNode {
+
+        private final String alias;
+        private final Map<String, Object> fields;
+        private final List<DependencyInfo> dependencies;
+        private boolean inDependencies;
+
+        private PackageNode(String alias) {
+            this.alias = alias;
+            this.fields = new HashMap<>();
+            this.dependencies = new ArrayList<>();
+        }
+    }
+}
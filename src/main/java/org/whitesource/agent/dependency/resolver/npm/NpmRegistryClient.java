@@ -0,0 +1,322 @@
+/**
+ * Copyright (C) 2017 WhiteSource Ltd.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.whitesource.agent.dependency.resolver.npm;
+
+import com.sun.jersey.api.client.Client;
+import com.sun.jersey.api.client.ClientResponse;
+import com.sun.jersey.api.client.WebResource;
+import org.eclipse.jgit.util.StringUtils;
+import org.json.JSONException;
+import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.whitesource.agent.Constants;
+import org.whitesource.agent.ScanWorkspace;
+import org.whitesource.agent.dependency.resolver.BomFile;
+import org.whitesource.agent.utils.LoggerFactory;
+import org.whitesource.agent.utils.PersistentFile;
+
+import javax.ws.rs.core.MediaType;
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Looks up the SHA-1 of npm packages in their registry, shared by all the npm and bower resolvers of a scan.
+ * <p>
+ * A single jersey client is reused for all the requests, so the connections to the registry are kept alive between
+ * lookups, and at most {@link #MAX_CONCURRENT_REQUESTS} requests are sent at a time. Lookups of many packages are run
+ * by {@link #getSha1Async}, on threads of the client bounded the same way, instead of blocking shared pools. Concurrent lookups of the same
+ * package version wait for a single request, and the checksums found are kept in an LRU map, which is written to the
+ * whitesource folder at the end of the scan once {@link #initialize(File)} was called, so the next runs skip the
+ * registry for packages they already looked up.
+ */
+public class NpmRegistryClient implements Closeable {
+
+    /* --- Static members --- */
+
+    private static final Logger logger = LoggerFactory.getLogger(NpmRegistryClient.class);
+
+    public static final String CACHE_FILE_NAME = ".ws-npm-registry.cache";
+    public static final int MAX_CONCURRENT_REQUESTS = 8;
+
+    private static final int MAX_ENTRIES = 200000;
+    private static final int FORMAT_VERSION = 1;
+    private static final int CONNECT_TIMEOUT_MILLIS = 30000;
+    private static final int READ_TIMEOUT_MILLIS = 60000;
+    private static final String VERSIONS = "versions";
+    private static final String DIST = "dist";
+    private static final String SHASUM = "shasum";
+    private static final String AUTHORIZATION = "Authorization";
+    private static final String BEARER = "Bearer";
+    private static final String BASIC = "Basic";
+    private static final String URL_SLASH = "%2F";
+    private static final String VERSION_SEPARATOR = "#";
+    private static final long KEEP_ALIVE_SECONDS = 60;
+    private static final String THREAD_NAME_PREFIX = "npm-registry-";
+
+
+    /* --- Members --- */
+
+    private final File cacheFile;
+    private final Client client;
+    private final Semaphore requests;
+    private final ThreadPoolExecutor executorService;
+    private final LinkedHashMap<String, String> checksums;
+    private final ConcurrentHashMap<String, CompletableFuture<String>> pendingLookups;
+    private boolean modified;
+
+    /* --- Constructors --- */
+
+    NpmRegistryClient(File cacheFile) {
+        this.cacheFile = cacheFile;
+        this.client = Client.create();
+        this.client.setConnectTimeout(CONNECT_TIMEOUT_MILLIS);
+        this.client.setReadTimeout(READ_TIMEOUT_MILLIS);
+        this.requests = new Semaphore(MAX_CONCURRENT_REQUESTS);
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.executorService = new ThreadPoolExecutor(MAX_CONCURRENT_REQUESTS, MAX_CONCURRENT_REQUESTS, KEEP_ALIVE_SECONDS, TimeUnit.SECONDS,
+                new LinkedBlockingQueue<>(), runnable -> {
+            Thread thread = new Thread(runnable, THREAD_NAME_PREFIX + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        // idle threads are released between lookups, the pool is shut down with the client
+        this.executorService.allowCoreThreadTimeOut(true);
+        // access ordered, the least recently used checksums are evicted first
+        this.checksums = new LinkedHashMap<String, String>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, String> eldest) {
+                return size() > MAX_ENTRIES;
+            }
+        };
+        this.pendingLookups = new ConcurrentHashMap<>();
+        this.modified = false;
+    }
+
+    /* --- Static methods --- */
+
+    /**
+     * @return the client of the current scan, its checksums are kept in memory only unless it was initialized
+     */
+    public static NpmRegistryClient getInstance() {
+        return ScanWorkspace.current().getComponent(NpmRegistryClient.class, () -> new NpmRegistryClient(null));
+    }
+
+    /**
+     * Persists the checksums found in a file and loads those of the previous runs, if any.
+     *
+     * @param cacheFile the file the checksums are persisted in
+     * @return the initialized client
+     */
+    public static NpmRegistryClient initialize(File cacheFile) {
+        NpmRegistryClient registryClient = new NpmRegistryClient(cacheFile);
+        registryClient.load();
+        ScanWorkspace.current().setComponent(NpmRegistryClient.class, registryClient);
+        return registryClient;
+    }
+
+    /**
+     * Starts a run without persistence, the checksums of the previous runs are dropped.
+     *
+     * @return the client of the run
+     */
+    public static NpmRegistryClient reset() {
+        NpmRegistryClient registryClient = new NpmRegistryClient(null);
+        ScanWorkspace.current().setComponent(NpmRegistryClient.class, registryClient);
+        return registryClient;
+    }
+
+    /* --- Public methods --- */
+
+    /**
+     * Returns the SHA-1 of a package version, from the cache or from the registry.
+     *
+     * @param registryPackageUrl the url of the package in the registry, see {@link BomFile#getRegistryPackageUrl()}
+     * @param isScopeDep         true if the package is scoped, its url then returns all the versions of the package
+     * @param versionOfPackage   the version of the package
+     * @param registryType       the type of the registry, used for the authorization header
+     * @param npmAccessToken     the access token of the registry, may be empty
+     * @return the SHA-1 of the package, empty if it could not be found
+     */
+    public String getSha1(String registryPackageUrl, boolean isScopeDep, String versionOfPackage, RegistryType registryType, String npmAccessToken) {
+        String key = registryPackageUrl + VERSION_SEPARATOR + versionOfPackage;
+        String sha1 = getCached(key);
+        if (sha1 != null) {
+            return sha1;
+        }
+        CompletableFuture<String> lookup = new CompletableFuture<>();
+        CompletableFuture<String> pendingLookup = pendingLookups.putIfAbsent(key, lookup);
+        if (pendingLookup != null) {
+            // the same package version is already looked up by another thread
+            return pendingLookup.join();
+        }
+        try {
+            sha1 = getCached(key);
+            if (sha1 == null) {
+                sha1 = requestSha1(registryPackageUrl, isScopeDep, versionOfPackage, registryType, npmAccessToken);
+                if (!sha1.isEmpty()) {
+                    putCached(key, sha1);
+                }
+            }
+            return sha1;
+        } finally {
+            lookup.complete(sha1 == null ? Constants.EMPTY_STRING : sha1);
+            pendingLookups.remove(key);
+        }
+    }
+
+    /**
+     * Looks up the SHA-1 of a package version on a thread of the client, see {@link #getSha1}.
+     *
+     * @return the future SHA-1 of the package, empty if it could not be found
+     */
+    public CompletableFuture<String> getSha1Async(String registryPackageUrl, boolean isScopeDep, String versionOfPackage, RegistryType registryType, String npmAccessToken) {
+        String sha1 = getCached(registryPackageUrl + VERSION_SEPARATOR + versionOfPackage);
+        if (sha1 != null) {
+            return CompletableFuture.completedFuture(sha1);
+        }
+        return CompletableFuture.supplyAsync(() -> getSha1(registryPackageUrl, isScopeDep, versionOfPackage, registryType, npmAccessToken), executorService);
+    }
+
+    /**
+     * Writes the checksums to disk if the client was initialized and new ones were found during the run.
+     */
+    public synchronized void save() {
+        if (cacheFile == null || !modified) {
+            return;
+        }
+        try {
+            new PersistentFile(cacheFile, FORMAT_VERSION).write(out -> {
+                out.writeInt(checksums.size());
+                for (Map.Entry<String, String> entry : checksums.entrySet()) {
+                    out.writeUTF(entry.getKey());
+                    out.writeUTF(entry.getValue());
+                }
+            });
+            modified = false;
+            logger.debug("Saved {} npm registry checksums to {}", checksums.size(), cacheFile.getPath());
+        } catch (IOException e) {
+            logger.warn("Failed to save the npm registry checksums to {}: {}", cacheFile.getPath(), e.getMessage());
+        }
+    }
+
+    /**
+     * Releases the connections and the threads of the client, called when the client of the scan is replaced or the scan ends.
+     */
+    @Override
+    public void close() {
+        executorService.shutdownNow();
+        client.destroy();
+    }
+
+    /* --- Private methods --- */
+
+    private String requestSha1(String registryPackageUrl, boolean isScopeDep, String versionOfPackage, RegistryType registryType, String npmAccessToken) {
+        String uriScopeDep = registryPackageUrl;
+        if (isScopeDep) {
+            uriScopeDep = registryPackageUrl.replace(BomFile.DUMMY_PARAMETER_SCOPE_PACKAGE, URL_SLASH);
+        }
+
+        String responseFromRegistry = null;
+        try {
+            requests.acquire();
+            try {
+                WebResource.Builder resource = client.resource(uriScopeDep).accept(MediaType.APPLICATION_JSON);
+                if (StringUtils.isEmptyOrNull(npmAccessToken)) {
+                    logger.debug("npm.accessToken is not defined");
+                } else {
+                    logger.debug("npm.accessToken is defined");
+                    if (registryType == RegistryType.VISUAL_STUDIO) {
+                        String userCredentials = BEARER + Constants.COLON + npmAccessToken;
+                        String basicAuth = BASIC + Constants.WHITESPACE + new String(Base64.getEncoder().encode(userCredentials.getBytes(StandardCharsets.UTF_8)), StandardCharsets.UTF_8);
+                        resource = resource.header(AUTHORIZATION, basicAuth);
+                    } else {
+                        // Bearer authorization
+                        resource = resource.header(AUTHORIZATION, BEARER + Constants.WHITESPACE + npmAccessToken);
+                    }
+                }
+                ClientResponse response = resource.get(ClientResponse.class);
+                try {
+                    if (response.getStatus() >= 200 && response.getStatus() < 300) {
+                        responseFromRegistry = response.getEntity(String.class);
+                    } else {
+                        logger.debug("Got {} status code from registry using the url {}.", response.getStatus(), uriScopeDep);
+                    }
+                } finally {
+                    // the connection goes back to the keep alive pool only once the response is consumed
+                    response.close();
+                }
+            } finally {
+                requests.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return Constants.EMPTY_STRING;
+        } catch (Exception e) {
+            logger.warn("Could not reach the registry using the URL: {}. Got an error: {}", registryPackageUrl, e.getMessage());
+            return Constants.EMPTY_STRING;
+        }
+        if (responseFromRegistry == null) {
+            return Constants.EMPTY_STRING;
+        }
+        try {
+            JSONObject jsonRegistry = new JSONObject(responseFromRegistry);
+            if (isScopeDep) {
+                return jsonRegistry.getJSONObject(VERSIONS).getJSONObject(versionOfPackage).getJSONObject(DIST).getString(SHASUM);
+            }
+            return jsonRegistry.getJSONObject(DIST).getString(SHASUM);
+        } catch (JSONException e) {
+            logger.debug("No shasum for version {} in the response of {}: {}", versionOfPackage, uriScopeDep, e.getMessage());
+            return Constants.EMPTY_STRING;
+        }
+    }
+
+    private synchronized String getCached(String key) {
+        return checksums.get(key);
+    }
+
+    private synchronized void putCached(String key, String sha1) {
+        checksums.put(key, sha1);
+        modified = true;
+    }
+
+    private synchronized void load() {
+        if (cacheFile == null || !cacheFile.isFile()) {
+            return;
+        }
+        try {
+            boolean loaded = new PersistentFile(cacheFile, FORMAT_VERSION).read(in -> {
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String key = in.readUTF();
+                    checksums.put(key, in.readUTF());
+                }
+            });
+            if (!loaded) {
+                logger.debug("Ignoring npm registry cache {} of an unknown version", cacheFile.getPath());
+                return;
+            }
+            logger.debug("Loaded {} npm registry checksums from {}", checksums.size(), cacheFile.getPath());
+        } catch (IOException e) {
+            logger.warn("Failed to load the npm registry checksums from {}, they will be looked up again: {}", cacheFile.getPath(), e.getMessage());
+            checksums.clear();
+        }
+    }
+}
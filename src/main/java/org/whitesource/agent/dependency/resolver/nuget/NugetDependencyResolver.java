@@ -150,6 +150,12 @@ public class NugetDependencyResolver extends AbstractDependencyResolver{
         return dependencies;
     }
 
+    @Override
+    protected int getMaxConcurrency() {
+        // parsing the package files is independent per folder, the restore command shares the nuget packages folder
+        return runPreStep ? 1 : Integer.MAX_VALUE;
+    }
+
     @Override
     protected Collection<String> getRelevantScannedFolders(Collection<String> scannedFolders) {
         // Nuget resolver should scan all folders and should not remove any folder
@@ -7,11 +7,10 @@ import org.apache.commons.lang.StringUtils;
 import org.whitesource.agent.Constants;
 import org.whitesource.agent.api.model.AgentProjectInfo;
 import org.whitesource.agent.api.model.DependencyInfo;
+import org.whitesource.agent.utils.ToolDiscovery;
 
-import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
 import java.text.MessageFormat;
 import java.util.*;
 
@@ -192,22 +191,11 @@ public class PackageManagerExtractor {
 
     private String getSystemArchitecture() {
         String arch = Constants.EMPTY_STRING;
-        String outputStr = null;
-        BufferedReader bufferedReader = null;
-        Process process = null;
-        try {
-            process = Runtime.getRuntime().exec(ARCH_LINUX_ARCHITECTURE_COMMAND);
-            process.waitFor();
-            bufferedReader = new BufferedReader(new InputStreamReader(process.getInputStream()));
-            outputStr = bufferedReader.readLine();
-            if (StringUtils.isNotBlank(outputStr) && SYSTEM_ARCHITECTURES.contains(outputStr)) {
-                arch = outputStr;
-            }
-            bufferedReader.close();
-        } catch (IOException e) {
-            logger.warn("Error processing arch linux command {}, error : {}", LinuxPkgManagerCommand.ARCH_LINUX, e.getMessage());
-        } catch (InterruptedException e) {
-            logger.warn("Error InterruptedException {}, error : {}", LinuxPkgManagerCommand.ARCH_LINUX, e.getMessage());
+        List<String> lines = ToolDiscovery.getInstance().getOutput(ARCH_LINUX_ARCHITECTURE_COMMAND.split(Constants.WHITESPACE));
+        if (lines.isEmpty()) {
+            logger.warn("Error processing arch linux command {}", LinuxPkgManagerCommand.ARCH_LINUX);
+        } else if (StringUtils.isNotBlank(lines.get(0)) && SYSTEM_ARCHITECTURES.contains(lines.get(0))) {
+            arch = lines.get(0);
         }
         return arch;
     }
@@ -8,7 +8,7 @@ import org.whitesource.agent.api.model.AgentProjectInfo;
 import org.whitesource.agent.api.model.DependencyInfo;
 import org.whitesource.agent.api.model.DependencyType;
 import org.whitesource.agent.dependency.resolver.DependencyCollector;
-import org.whitesource.agent.hash.ChecksumUtils;
+import org.whitesource.agent.utils.ChecksumCache;
 
 import java.io.BufferedReader;
 import java.io.File;
@@ -201,7 +201,7 @@ abstract class AbstractPaketDependencyCollector extends DependencyCollector {
         String sha1 = Constants.EMPTY_STRING;
         if (calcSha1File != null) {
             try {
-                sha1 = ChecksumUtils.calculateSHA1(calcSha1File);
+                sha1 = ChecksumCache.getInstance().getSha1(calcSha1File);
             } catch (IOException e) {
                 logger.warn("Failed getting " + calcSha1File.getAbsolutePath() + ". Could not calculate sha1 for this file.");
                 logger.debug("Error calculating sha1: {}", e.getMessage());
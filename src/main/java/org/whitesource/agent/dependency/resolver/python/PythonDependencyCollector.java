@@ -6,12 +6,13 @@ import org.json.JSONArray;
 import org.json.JSONObject;
 import org.slf4j.Logger;
 import org.whitesource.agent.Constants;
+import org.whitesource.agent.ScanWorkspace;
 import org.whitesource.agent.TempFolders;
 import org.whitesource.agent.api.model.AgentProjectInfo;
 import org.whitesource.agent.api.model.DependencyInfo;
 import org.whitesource.agent.api.model.DependencyType;
 import org.whitesource.agent.dependency.resolver.DependencyCollector;
-import org.whitesource.agent.hash.ChecksumUtils;
+import org.whitesource.agent.utils.ChecksumCache;
 import org.whitesource.agent.utils.CommandLineProcess;
 import org.whitesource.agent.utils.FilesUtils;
 import org.whitesource.agent.utils.LoggerFactory;
@@ -254,6 +255,10 @@ public class PythonDependencyCollector extends DependencyCollector {
             if (failed && ignorePipEnvInstallErrors) {
                 logger.info("Failed to download all dependencies at once, Try to install dependencies one by one. It might take a few minutes.");
                 for (String dependencyNamesVersion : dependencyNamesVersions) {
+                    if (ScanWorkspace.current().isQuotaExceeded()) {
+                        logger.warn("Skipping the download of '{}', the temp folders quota of the scan is exceeded", dependencyNamesVersion);
+                        break;
+                    }
                     failed = processCommand(new String[]{PIPENV, RUN, pipPath, DOWNLOAD, dependencyNamesVersion, D_PARAMETER, tempDirPackages}, true);
                     if (failed) {
                         logger.warn("pipenv run pip download {} failed to execute", dependencyNamesVersion);
@@ -489,7 +494,7 @@ public class PythonDependencyCollector extends DependencyCollector {
 
     private String getSha1(File file) {
         try {
-            return ChecksumUtils.calculateSHA1(file);
+            return ChecksumCache.getInstance().getSha1(file);
         } catch (IOException e) {
             logger.warn("Failed getting. {} File will not be send to WhiteSource server.", file);
             return EMPTY_STRING;
@@ -587,6 +592,10 @@ public class PythonDependencyCollector extends DependencyCollector {
     }
 
     private void downloadOneDependency(String packageName) {
+        if (ScanWorkspace.current().isQuotaExceeded()) {
+            logger.warn("Skipping the download of '{}', the temp folders quota of the scan is exceeded", packageName);
+            return;
+        }
         int currentCounter = this.counterFolders.incrementAndGet();
         String message = "Failed to download the transitive dependencies of '";
         try {
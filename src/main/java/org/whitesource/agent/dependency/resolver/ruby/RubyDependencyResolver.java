@@ -7,8 +7,9 @@ import org.whitesource.agent.api.model.DependencyInfo;
 import org.whitesource.agent.api.model.DependencyType;
 import org.whitesource.agent.dependency.resolver.AbstractDependencyResolver;
 import org.whitesource.agent.dependency.resolver.ResolutionResult;
-import org.whitesource.agent.hash.ChecksumUtils;
+import org.whitesource.agent.utils.ChecksumCache;
 import org.whitesource.agent.utils.LoggerFactory;
+import org.whitesource.agent.utils.ToolDiscovery;
 
 import java.io.*;
 import java.util.*;
@@ -412,7 +413,7 @@ public class RubyDependencyResolver extends AbstractDependencyResolver {
                         if (!lines.isEmpty()) {
                             File file = findMaxVersionFile(partialDependency.getGroupId(), pathToGems);
                             if (file != null) {
-                                String sha1 = ChecksumUtils.calculateSHA1(file);
+                                String sha1 = ChecksumCache.getInstance().getSha1(file);
                                 fillDependency(sha1, partialDependency, getVersionFromFileName(file.getName(), partialDependency.getGroupId()), gemLockFile, pathToGems, dependencyInfos);
                             } else {
                                 logger.warn("Can't find version for {}", partialDependency.getGroupId());
@@ -546,7 +547,8 @@ public class RubyDependencyResolver extends AbstractDependencyResolver {
     // Ruby's cache is inside the installation folder.  path can be found by running command 'gem environment gemdir'
     private String findPathToGems() throws FileNotFoundException {
         String[] commandParams = cli.getCommandParams(GEM, ENVIRONMENT);
-        List<String> lines = cli.runCmd(rootDirectory, commandParams);
+        // version managers (rbenv, rvm) may select a different ruby per folder, so the probe is cached per folder
+        List<String> lines = ToolDiscovery.getInstance().getOutput(rootDirectory, commandParams);
         String path = null;
         if (!lines.isEmpty()) {
             path = lines.get(0) + fileSeparator + CACHE;
@@ -561,11 +563,11 @@ public class RubyDependencyResolver extends AbstractDependencyResolver {
         String sha1 = null;
         File file = new File(pathToGems + fileSeparator + name + Constants.DASH + version + Constants.DOT + GEM);
         if (file.isFile()) {
-            sha1 = ChecksumUtils.calculateSHA1(file);
+            sha1 = ChecksumCache.getInstance().getSha1(file);
         } else {
             file = installMissingGem(name, version, file);
             if (file != null) {
-                sha1 = ChecksumUtils.calculateSHA1(file);
+                sha1 = ChecksumCache.getInstance().getSha1(file);
             }
         }
         return sha1;
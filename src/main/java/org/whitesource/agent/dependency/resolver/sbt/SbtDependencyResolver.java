@@ -13,7 +13,7 @@ import org.whitesource.agent.api.model.DependencyType;
 import org.whitesource.agent.dependency.resolver.AbstractDependencyResolver;
 import org.whitesource.agent.dependency.resolver.DependencyCollector;
 import org.whitesource.agent.dependency.resolver.ResolutionResult;
-import org.whitesource.agent.hash.ChecksumUtils;
+import org.whitesource.agent.utils.ChecksumCache;
 import org.whitesource.agent.utils.Cli;
 import org.whitesource.agent.utils.FilesScanner;
 import org.whitesource.agent.utils.FilesUtils;
@@ -268,7 +268,7 @@ public class SbtDependencyResolver extends AbstractDependencyResolver {
                         if (revision.getArtifacts().size() > 0 && revision.getArtifacts().get(0) != null) {
                             File jarFile = new File(revision.getArtifacts().get(0).getPathToJar());
                             if (jarFile.isFile()) {
-                                String sha1 = ChecksumUtils.calculateSHA1(jarFile);
+                                String sha1 = ChecksumCache.getInstance().getSha1(jarFile);
                                 if (sha1 != null) {
                                     DependencyInfo dependencyInfo = new DependencyInfo(groupId, artifactId, version);
                                     dependencyInfo.setSha1(sha1);
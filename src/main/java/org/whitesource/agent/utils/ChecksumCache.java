@@ -0,0 +1,315 @@
+/**
+ * Copyright (C) 2014 WhiteSource Ltd.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.whitesource.agent.utils;
+
+import org.slf4j.Logger;
+import org.whitesource.agent.ScanWorkspace;
+import org.whitesource.agent.api.model.ChecksumType;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * Persistent cache of file checksums, shared by all the hashing call sites of a scan.
+ * <p>
+ * Entries are keyed by the canonical path of the file and are valid only as long as the size, the last modified time
+ * and the file key (inode, where the file system provides one) of the file did not change.
+ * The cache is kept in memory as an LRU map capped at a maximum number of entries, and is written to a compact
+ * gzip file at the end of the scan so the next run can skip hashing unchanged files.
+ * <p>
+ * Until {@link #initialize(File, int)} is called the cache is disabled and every lookup hashes the file.
+ */
+public class ChecksumCache {
+
+    /* --- Static members --- */
+
+    private static final Logger logger = LoggerFactory.getLogger(ChecksumCache.class);
+
+    public static final String CACHE_FILE_NAME = ".ws-checksums.cache";
+    public static final int DEFAULT_MAX_ENTRIES = 500000;
+
+    private static final int FORMAT_VERSION = 1;
+    private static final String NO_FILE_KEY = "";
+
+
+    /* --- Members --- */
+
+    private final File cacheFile;
+    private final int maxEntries;
+    private final LinkedHashMap<String, CacheEntry> entries;
+    private boolean modified;
+
+    /* --- Constructors --- */
+
+    private ChecksumCache(File cacheFile, int maxEntries) {
+        this.cacheFile = cacheFile;
+        this.maxEntries = maxEntries;
+        // access ordered, the least recently used entries are evicted first
+        this.entries = new LinkedHashMap<String, CacheEntry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, CacheEntry> eldest) {
+                return size() > ChecksumCache.this.maxEntries;
+            }
+        };
+        this.modified = false;
+    }
+
+    /* --- Static methods --- */
+
+    /**
+     * @return the cache of the current scan, disabled unless it was initialized
+     */
+    public static ChecksumCache getInstance() {
+        return ScanWorkspace.current().getComponent(ChecksumCache.class, () -> new ChecksumCache(null, 0));
+    }
+
+    /**
+     * Enables the cache and loads the entries persisted by a previous run, if any.
+     *
+     * @param cacheFile  the file the cache is persisted in
+     * @param maxEntries the maximum number of entries to keep, values smaller than 1 use the default
+     * @return the enabled cache
+     */
+    public static ChecksumCache initialize(File cacheFile, int maxEntries) {
+        ChecksumCache cache = new ChecksumCache(cacheFile, maxEntries < 1 ? DEFAULT_MAX_ENTRIES : maxEntries);
+        cache.load();
+        ScanWorkspace.current().setComponent(ChecksumCache.class, cache);
+        return cache;
+    }
+
+    /**
+     * Disables the cache, the entries of the previous cache are neither used nor persisted.
+     *
+     * @return the disabled cache
+     */
+    public static ChecksumCache reset() {
+        ChecksumCache cache = new ChecksumCache(null, 0);
+        ScanWorkspace.current().setComponent(ChecksumCache.class, cache);
+        return cache;
+    }
+
+    /* --- Public methods --- */
+
+    public boolean isEnabled() {
+        return cacheFile != null;
+    }
+
+    /**
+     * Returns the SHA-1 of a file, hashing it only if it is not cached or changed since it was cached.
+     *
+     * @param file the file to hash
+     * @return the SHA-1 of the file
+     * @throws IOException if the file cannot be read
+     */
+    public String getSha1(File file) throws IOException {
+        if (!isEnabled()) {
+            return FileFingerprint.calculate(file, false, false).getSha1();
+        }
+        FileKey key = FileKey.of(file);
+        CacheEntry entry = get(key);
+        if (entry != null) {
+            String sha1 = entry.checksums.get(ChecksumType.SHA1);
+            if (sha1 != null) {
+                return sha1;
+            }
+        }
+        String sha1 = FileFingerprint.calculate(file, false, false).getSha1();
+        Map<ChecksumType, String> checksums = new EnumMap<>(ChecksumType.class);
+        checksums.put(ChecksumType.SHA1, sha1);
+        put(key, checksums, false);
+        return sha1;
+    }
+
+    /**
+     * Returns all the checksums of a file stored by {@link #putChecksums(File, Map)}.
+     *
+     * @param file the file to look up
+     * @return the cached checksums, or null if the file is not cached, changed since it was cached, or only its SHA-1 is known
+     */
+    public Map<ChecksumType, String> getChecksums(File file) {
+        if (!isEnabled()) {
+            return null;
+        }
+        try {
+            CacheEntry entry = get(FileKey.of(file));
+            return entry == null || !entry.complete ? null : new EnumMap<>(entry.checksums);
+        } catch (IOException e) {
+            logger.debug("Failed to read the attributes of {}: {}", file.getPath(), e.getMessage());
+            return null;
+        }
+    }
+
+    /**
+     * Stores all the checksums calculated for a file.
+     *
+     * @param file      the file the checksums were calculated for
+     * @param checksums the checksums of the file
+     */
+    public void putChecksums(File file, Map<ChecksumType, String> checksums) {
+        if (!isEnabled() || checksums == null || !checksums.containsKey(ChecksumType.SHA1)) {
+            return;
+        }
+        try {
+            put(FileKey.of(file), new EnumMap<>(checksums), true);
+        } catch (IOException e) {
+            logger.debug("Failed to read the attributes of {}: {}", file.getPath(), e.getMessage());
+        }
+    }
+
+    /**
+     * Writes the cache to disk if it changed during the run.
+     * The file is replaced atomically so an interrupted run never leaves a corrupted cache behind.
+     */
+    public synchronized void save() {
+        if (!isEnabled() || !modified) {
+            return;
+        }
+        try {
+            new PersistentFile(cacheFile, FORMAT_VERSION).write(out -> {
+                out.writeInt(entries.size());
+                // iteration order is least recently used first, so the order survives the next load
+                for (Map.Entry<String, CacheEntry> mapEntry : entries.entrySet()) {
+                    CacheEntry entry = mapEntry.getValue();
+                    out.writeUTF(mapEntry.getKey());
+                    out.writeLong(entry.size);
+                    out.writeLong(entry.lastModified);
+                    out.writeUTF(entry.fileKey);
+                    out.writeBoolean(entry.complete);
+                    out.writeByte(entry.checksums.size());
+                    for (Map.Entry<ChecksumType, String> checksum : entry.checksums.entrySet()) {
+                        out.writeUTF(checksum.getKey().name());
+                        out.writeUTF(checksum.getValue());
+                    }
+                }
+            });
+            modified = false;
+            logger.debug("Saved {} checksum cache entries to {}", entries.size(), cacheFile.getPath());
+        } catch (IOException e) {
+            logger.warn("Failed to save the checksum cache to {}: {}", cacheFile.getPath(), e.getMessage());
+        }
+    }
+
+    /* --- Private methods --- */
+
+    private synchronized CacheEntry get(FileKey key) {
+        CacheEntry entry = entries.get(key.path);
+        if (entry == null) {
+            return null;
+        }
+        if (entry.size != key.size || entry.lastModified != key.lastModified || !entry.fileKey.equals(key.fileKey)) {
+            entries.remove(key.path);
+            modified = true;
+            return null;
+        }
+        return entry;
+    }
+
+    private synchronized void put(FileKey key, Map<ChecksumType, String> checksums, boolean complete) {
+        CacheEntry existing = entries.get(key.path);
+        // never downgrade a complete entry of the same file to a SHA-1 only entry
+        if (!complete && existing != null && existing.complete && existing.size == key.size
+                && existing.lastModified == key.lastModified && existing.fileKey.equals(key.fileKey)) {
+            return;
+        }
+        entries.put(key.path, new CacheEntry(key.size, key.lastModified, key.fileKey, complete, checksums));
+        modified = true;
+    }
+
+    private synchronized void load() {
+        if (!cacheFile.isFile()) {
+            return;
+        }
+        try {
+            boolean loaded = new PersistentFile(cacheFile, FORMAT_VERSION).read(in -> {
+                int count = in.readInt();
+                for (int i = 0; i < count; i++) {
+                    String path = in.readUTF();
+                    long size = in.readLong();
+                    long lastModified = in.readLong();
+                    String fileKey = in.readUTF();
+                    boolean complete = in.readBoolean();
+                    int checksumsCount = in.readUnsignedByte();
+                    Map<ChecksumType, String> checksums = new EnumMap<>(ChecksumType.class);
+                    for (int j = 0; j < checksumsCount; j++) {
+                        String type = in.readUTF();
+                        String value = in.readUTF();
+                        try {
+                            checksums.put(ChecksumType.valueOf(type), value);
+                        } catch (IllegalArgumentException e) {
+                            // checksum type of another api version, the entry is still usable without it
+                            complete = false;
+                        }
+                    }
+                    entries.put(path, new CacheEntry(size, lastModified, fileKey, complete, checksums));
+                }
+            });
+            if (!loaded) {
+                logger.debug("Ignoring checksum cache {} of an unknown version", cacheFile.getPath());
+                return;
+            }
+            logger.debug("Loaded {} checksum cache entries from {}", entries.size(), cacheFile.getPath());
+        } catch (IOException e) {
+            logger.warn("Failed to load the checksum cache from {}, it will be rebuilt: {}", cacheFile.getPath(), e.getMessage());
+            entries.clear();
+            modified = true;
+        }
+    }
+
+    /* --- Nested classes --- */
+
+    private static class FileKey {
+
+        private final String path;
+        private final long size;
+        private final long lastModified;
+        private final String fileKey;
+
+        private FileKey(String path, long size, long lastModified, String fileKey) {
+            this.path = path;
+            this.size = size;
+            this.lastModified = lastModified;
+            this.fileKey = fileKey;
+        }
+
+        private static FileKey of(File file) throws IOException {
+            Path path = file.toPath();
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            Object fileKey = attributes.fileKey();
+            return new FileKey(file.getCanonicalPath(), attributes.size(), attributes.lastModifiedTime().toMillis(),
+                    fileKey == null ? NO_FILE_KEY : fileKey.toString());
+        }
+    }
+
+    private static class CacheEntry {
+
+        private final long size;
+        private final long lastModified;
+        private final String fileKey;
+        private final boolean complete;
+        private final Map<ChecksumType, String> checksums;
+
+        private CacheEntry(long size, long lastModified, String fileKey, boolean complete, Map<ChecksumType, String> checksums) {
+            this.size = size;
+            this.lastModified = lastModified;
+            this.fileKey = fileKey;
+            this.complete = complete;
+            this.checksums = checksums;
+        }
+    }
+}
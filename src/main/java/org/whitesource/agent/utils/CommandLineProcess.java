@@ -2,7 +2,6 @@ package org.whitesource.agent.utils;
 
 import com.sun.jna.Native;
 import com.sun.jna.platform.win32.Kernel32;
-import org.apache.commons.compress.utils.IOUtils;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
@@ -13,7 +12,8 @@ import org.whitesource.agent.dependency.resolver.DependencyCollector;
 import java.io.*;
 import java.util.LinkedList;
 import java.util.List;
-import java.util.concurrent.*;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
 
 /**
  * @author raz.nitzan
@@ -34,6 +34,8 @@ public class CommandLineProcess {
     private static final long DEFAULT_TIMEOUT_READLINE_SECONDS = 300;
     private static final long DEFAULT_TIMEOUT_PROCESS_MINUTES = 15;
     private static final String WINDOWS_SEPARATOR = "\\";
+    private static final String PUMP_THREAD_NAME = "process-output-pump";
+    private static final int BUFFER_SIZE = 64 * 1024;
     private final Logger logger = LoggerFactory.getLogger(org.whitesource.agent.utils.CommandLineProcess.class);
 
     public CommandLineProcess(String rootDirectory, String[] args) {
@@ -44,11 +46,24 @@ public class CommandLineProcess {
     }
 
     public List<String> executeProcess() throws IOException {
-        return executeProcess(true, false);
+        List<String> linesOutput = new LinkedList<>();
+        executeProcess(linesOutput::add, false);
+        return linesOutput;
     }
 
-    private List<String> executeProcess(boolean includeOutput, boolean includeErrorLines) throws IOException {
-        List<String> linesOutput = new LinkedList<>();
+    /**
+     * Executes the process and passes each non blank line of its output to the consumer as soon as it is read,
+     * so large outputs can be parsed without being kept in memory.
+     * The consumer is called from the thread reading the output.
+     *
+     * @param lineConsumer receives the output lines in order
+     * @throws IOException if the process could not be started
+     */
+    public void executeProcess(Consumer<String> lineConsumer) throws IOException {
+        executeProcess(lineConsumer, false);
+    }
+
+    private void executeProcess(Consumer<String> lineConsumer, boolean includeErrorLines) throws IOException {
         ProcessBuilder pb = new ProcessBuilder(args);
         String osName = System.getProperty(Constants.OS_NAME);
         if (osName.startsWith(Constants.WINDOWS)) {
@@ -62,24 +77,16 @@ public class CommandLineProcess {
         } else {
             pb.redirectError(new File(redirectErrorOutput));
         }
-        if (!includeOutput || includeErrorLines) {
+        if (lineConsumer == null || includeErrorLines) {
             pb.redirectOutput(new File(redirectErrorOutput));
         }
         if (!includeErrorLines) {
             logger.debug("start execute command '{}' in '{}'", String.join(Constants.WHITESPACE, args), rootDirectory);
         }
         this.processStart = pb.start();
-        if (includeOutput) {
-            InputStreamReader inputStreamReader;
-            BufferedReader reader;
-            ExecutorService executorService = Executors.newFixedThreadPool(1);
-            if (!includeErrorLines) {
-                inputStreamReader = new InputStreamReader(this.processStart.getInputStream());
-            } else {
-                inputStreamReader = new InputStreamReader(this.processStart.getErrorStream());
-            }
-            reader = new BufferedReader(inputStreamReader);
-            this.errorInProcess = readBlock(inputStreamReader, reader, executorService, linesOutput, includeErrorLines);
+        if (lineConsumer != null) {
+            InputStream inputStream = includeErrorLines ? this.processStart.getErrorStream() : this.processStart.getInputStream();
+            this.errorInProcess = readBlock(inputStream, lineConsumer, includeErrorLines);
         }
         try {
             this.processStart.waitFor(this.timeoutProcessMinutes, TimeUnit.MINUTES);
@@ -90,14 +97,13 @@ public class CommandLineProcess {
         if (this.processStart.isAlive() && errorInProcess) {
             logger.debug("error executing command destroying process");
             this.processStart.destroy();
-            return linesOutput;
+            return;
         }
         if (this.getExitStatus() != 0) {
             logger.debug("error in execute command {}", this.getExitStatus());
             this.errorInProcess = true;
         }
         printErrors();
-        return linesOutput;
     }
 
     // using this technique to print to the log the Process's errors as it the easiest way i found to do so -
@@ -160,50 +166,44 @@ public class CommandLineProcess {
         return path;
     }
 
-    private boolean readBlock(InputStreamReader inputStreamReader, BufferedReader reader, ExecutorService executorService, List<String> lines, boolean includeErrorLines) {
-        boolean wasError = false;
-        boolean continueReadingLines = true;
+    /**
+     * Reads the output on a dedicated thread while the calling thread watches it, reading stops with an error when no
+     * line was read for the read line timeout.
+     */
+    private boolean readBlock(InputStream inputStream, Consumer<String> lineConsumer, boolean includeErrorLines) {
+        if (!includeErrorLines) {
+            logger.debug("trying to read lines using '{}'", commandArgsToString());
+        }
+        OutputPump pump = new OutputPump(inputStream, lineConsumer);
+        Thread pumpThread = new Thread(pump, PUMP_THREAD_NAME);
+        pumpThread.setDaemon(true);
+        pumpThread.start();
+        long timeoutMillis = TimeUnit.SECONDS.toMillis(this.timeoutReadLineSeconds);
         try {
-            if (!includeErrorLines) {
-                logger.debug("trying to read lines using '{}'", commandArgsToString());
-            }
-            int lineIndex = 1;
-            String line = Constants.EMPTY_STRING;
-            while (continueReadingLines && line != null) {
-                Future<String> future = executorService.submit(new CommandLineProcess.ReadLineTask(reader));
-                try {
-                    line = future.get(this.timeoutReadLineSeconds, TimeUnit.SECONDS);
-                    if (!includeErrorLines) {
-                        if (StringUtils.isNotBlank(line)) {
-                            logger.debug("Read line #{}: {}", lineIndex, line);
-                            lines.add(line);
-                        } else {
-                            logger.debug("Finished reading {} lines", lineIndex - 1);
-                        }
-                    } else {
-                        if (StringUtils.isNotBlank(line)) {
-                            lines.add(line);
-                        }
-                    }
-                } catch (TimeoutException e) {
-                    logger.debug("Received timeout when reading line #" + lineIndex, e.getStackTrace());
-                    continueReadingLines = false;
-                    wasError = true;
-                } catch (Exception e) {
-                    logger.debug("Error reading line #" + lineIndex, e.getStackTrace());
-                    continueReadingLines = false;
-                    wasError = true;
+            while (pumpThread.isAlive()) {
+                long idleMillis = System.currentTimeMillis() - pump.lastReadTime;
+                if (idleMillis >= timeoutMillis) {
+                    // the process is destroyed by the caller, which ends the pump thread
+                    pump.stop();
+                    logger.debug("Received timeout when reading line #{}", pump.lineCount + 1);
+                    return true;
                 }
-                lineIndex++;
+                pumpThread.join(timeoutMillis - idleMillis);
             }
-        } catch (Exception e) {
-            logger.error("error parsing output : {}", e.getStackTrace());
-        } finally {
-            executorService.shutdown();
-            IOUtils.closeQuietly(inputStreamReader);
-            IOUtils.closeQuietly(reader);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            pump.stop();
+            logger.debug("Interrupted when reading line #{}", pump.lineCount + 1);
+            return true;
+        }
+        if (pump.error != null) {
+            logger.debug("Error reading line #{}: {}", pump.lineCount + 1, pump.error.getMessage());
+            return true;
+        }
+        if (!includeErrorLines) {
+            logger.debug("Finished reading {} lines", pump.lineCount);
         }
-        return wasError;
+        return false;
     }
 
     private String commandArgsToString() {
@@ -217,11 +217,13 @@ public class CommandLineProcess {
     }
 
     public void executeProcessWithoutOutput() throws IOException {
-        executeProcess(false, false);
+        executeProcess(null, false);
     }
 
     public List<String> executeProcessWithErrorOutput() throws IOException {
-        return executeProcess(false, true);
+        List<String> linesOutput = new LinkedList<>();
+        executeProcess(linesOutput::add, true);
+        return linesOutput;
     }
 
     public void setTimeoutReadLineSeconds(long timeoutReadLineSeconds) {
@@ -245,23 +247,56 @@ public class CommandLineProcess {
 
     /* --- Nested classes --- */
 
-    class ReadLineTask implements Callable<String> {
+    /**
+     * Reads the lines of a process output stream with bulk buffered reads and hands them to a consumer.
+     */
+    private static class OutputPump implements Runnable {
 
         /* --- Members --- */
 
-        private final BufferedReader reader;
+        private final InputStream inputStream;
+        private final Consumer<String> lineConsumer;
+        private volatile long lastReadTime;
+        private volatile int lineCount;
+        private volatile Exception error;
+        private boolean stopped;
 
         /* --- Constructors --- */
 
-        ReadLineTask(BufferedReader reader) {
-            this.reader = reader;
+        OutputPump(InputStream inputStream, Consumer<String> lineConsumer) {
+            this.inputStream = inputStream;
+            this.lineConsumer = lineConsumer;
+            this.lastReadTime = System.currentTimeMillis();
         }
 
         /* --- Overridden methods --- */
 
         @Override
-        public String call() throws Exception {
-            return reader.readLine();
+        public void run() {
+            try (BufferedReader reader = new BufferedReader(new InputStreamReader(inputStream), BUFFER_SIZE)) {
+                String line;
+                while ((line = reader.readLine()) != null) {
+                    lastReadTime = System.currentTimeMillis();
+                    if (StringUtils.isNotBlank(line)) {
+                        synchronized (this) {
+                            // lines read after a timeout are dropped, the caller already uses the consumer's result
+                            if (stopped) {
+                                return;
+                            }
+                            lineConsumer.accept(line);
+                        }
+                        lineCount++;
+                    }
+                }
+            } catch (IOException | RuntimeException e) {
+                error = e;
+            }
+        }
+
+        /* --- Private methods --- */
+
+        private synchronized void stop() {
+            stopped = true;
         }
     }
 }
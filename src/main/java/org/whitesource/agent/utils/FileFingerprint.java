@@ -0,0 +1,285 @@
+/**
+ * Copyright (C) 2014 WhiteSource Ltd.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.whitesource.agent.utils;
+
+import org.apache.commons.io.IOUtils;
+import org.whitesource.agent.api.model.ChecksumType;
+import org.whitesource.agent.hash.HashAlgorithm;
+import org.whitesource.agent.hash.HashCalculationResult;
+import org.whitesource.agent.hash.HashCalculator;
+import org.whitesource.agent.hash.WssHashException;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Map;
+
+/**
+ * Reads a file exactly once and derives all the digests the agent needs from that single pass.
+ * <p>
+ * SHA-1 and MD5 are fed chunk by chunk from a reusable direct buffer. When one of the content based hashes
+ * (other platform SHA-1, super hash, JavaScript hashes) is requested for a file of at most {@link #MAX_CONTENT_SIZE}
+ * bytes, the file bytes are kept in memory during the same pass and the remaining hashes are calculated from them
+ * instead of reopening the file. Bigger files are always streamed.
+ * <p>
+ * The produced values are identical to the ones of {@link org.whitesource.agent.hash.ChecksumUtils} and
+ * {@link HashCalculator}: a leading UTF-8 BOM is ignored by SHA-1 and MD5, content based hashes use the raw bytes.
+ */
+public class FileFingerprint {
+
+    /* --- Static members --- */
+
+    private static final int BUFFER_SIZE = 64 * 1024;
+    private static final byte[] UTF8_BOM = {(byte) 0xEF, (byte) 0xBB, (byte) 0xBF};
+    private static final String EMPTY_FILE_SHA1 = "da39a3ee5e6b4b0d3255bfef95601890afd80709";
+    private static final String CRLF = "\r\n";
+    private static final String NEW_LINE = "\n";
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    // same limits the hash calculator applies before loading a file into memory
+    public static final long OTHER_PLATFORM_MAX_FILE_SIZE = 10 * 1024 * 1024;
+    public static final long SUPER_HASH_MIN_FILE_SIZE = 512;
+    // the parallel workers each keep the content of the file they read, so it is kept for small files only
+    public static final long MAX_CONTENT_SIZE = 10 * 1024 * 1024;
+
+    // every worker thread reuses its own direct buffer instead of allocating one per file
+    private static final ThreadLocal<ByteBuffer> READ_BUFFER = ThreadLocal.withInitial(() -> ByteBuffer.allocateDirect(BUFFER_SIZE));
+
+    /* --- Members --- */
+
+    private final String sha1;
+    private final String md5;
+    private final byte[] content;
+
+    /* --- Constructors --- */
+
+    private FileFingerprint(String sha1, String md5, byte[] content) {
+        this.sha1 = sha1;
+        this.md5 = md5;
+        this.content = content;
+    }
+
+    /* --- Public methods --- */
+
+    /**
+     * Calculates the digests of a file in a single read.
+     *
+     * @param file          the file to read
+     * @param calculateMd5  whether to calculate the MD5 digest alongside the SHA-1
+     * @param retainContent whether to keep the file bytes for the content based hashes, ignored for files bigger than
+     *                      {@link #MAX_CONTENT_SIZE}
+     * @return the fingerprint of the file
+     * @throws IOException if the file cannot be read
+     */
+    public static FileFingerprint calculate(File file, boolean calculateMd5, boolean retainContent) throws IOException {
+        MessageDigest sha1Digest = getDigest(HashAlgorithm.SHA1);
+        MessageDigest md5Digest = calculateMd5 ? getDigest(HashAlgorithm.MD5) : null;
+        byte[] content = null;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (retainContent && size <= MAX_CONTENT_SIZE) {
+                content = readContent(channel, (int) size);
+                int offset = hasBom(content, content.length) ? UTF8_BOM.length : 0;
+                sha1Digest.update(content, offset, content.length - offset);
+                if (md5Digest != null) {
+                    md5Digest.update(content, offset, content.length - offset);
+                }
+            } else {
+                ByteBuffer buffer = READ_BUFFER.get();
+                boolean firstChunk = true;
+                while (fill(channel, buffer) > 0) {
+                    buffer.flip();
+                    if (firstChunk) {
+                        firstChunk = false;
+                        if (buffer.remaining() >= UTF8_BOM.length && buffer.get(0) == UTF8_BOM[0]
+                                && buffer.get(1) == UTF8_BOM[1] && buffer.get(2) == UTF8_BOM[2]) {
+                            buffer.position(UTF8_BOM.length);
+                        }
+                    }
+                    if (md5Digest != null) {
+                        md5Digest.update(buffer.duplicate());
+                    }
+                    sha1Digest.update(buffer);
+                    buffer.clear();
+                }
+                buffer.clear();
+            }
+        }
+
+        String md5 = md5Digest == null ? null : toHex(md5Digest.digest());
+        return new FileFingerprint(toHex(sha1Digest.digest()), md5, content);
+    }
+
+    /**
+     * Calculates the digests of a stream in a single read, used for entries read directly from an archive.
+     * The stream is read to its end but not closed.
+     *
+     * @param inputStream   the stream to read
+     * @param size          the number of bytes in the stream, or -1 if unknown
+     * @param calculateMd5  whether to calculate the MD5 digest alongside the SHA-1
+     * @param retainContent whether to keep the bytes for the content based hashes, ignored if the size is unknown or
+     *                      bigger than {@link #MAX_CONTENT_SIZE}
+     * @return the fingerprint of the stream
+     * @throws IOException if the stream cannot be read
+     */
+    public static FileFingerprint calculate(InputStream inputStream, long size, boolean calculateMd5, boolean retainContent) throws IOException {
+        MessageDigest sha1Digest = getDigest(HashAlgorithm.SHA1);
+        MessageDigest md5Digest = calculateMd5 ? getDigest(HashAlgorithm.MD5) : null;
+        byte[] content = null;
+
+        if (retainContent && size >= 0 && size <= MAX_CONTENT_SIZE) {
+            content = IOUtils.toByteArray(inputStream);
+            int offset = hasBom(content, content.length) ? UTF8_BOM.length : 0;
+            sha1Digest.update(content, offset, content.length - offset);
+            if (md5Digest != null) {
+                md5Digest.update(content, offset, content.length - offset);
+            }
+        } else {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            boolean firstChunk = true;
+            int read;
+            // fill the whole buffer so the BOM check always sees the first bytes
+            while ((read = IOUtils.read(inputStream, buffer)) > 0) {
+                int offset = firstChunk && hasBom(buffer, read) ? UTF8_BOM.length : 0;
+                firstChunk = false;
+                sha1Digest.update(buffer, offset, read - offset);
+                if (md5Digest != null) {
+                    md5Digest.update(buffer, offset, read - offset);
+                }
+            }
+        }
+
+        String md5 = md5Digest == null ? null : toHex(md5Digest.digest());
+        return new FileFingerprint(toHex(sha1Digest.digest()), md5, content);
+    }
+
+    /**
+     * @return the SHA-1 of the file with line endings converted to the other platform, or null if not applicable
+     * @throws IOException if the content was not retained
+     */
+    public String getOtherPlatformSha1() throws IOException {
+        byte[] bytes = getContent();
+        if (bytes.length >= OTHER_PLATFORM_MAX_FILE_SIZE || bytes.length >= Runtime.getRuntime().freeMemory()) {
+            return null;
+        }
+        String fileContent = new String(bytes);
+        String otherPlatformContent;
+        if (fileContent.contains(CRLF)) {
+            otherPlatformContent = fileContent.replace(CRLF, NEW_LINE);
+        } else if (fileContent.contains(NEW_LINE)) {
+            otherPlatformContent = fileContent.replace(NEW_LINE, CRLF);
+        } else {
+            return null;
+        }
+        byte[] otherPlatformBytes = otherPlatformContent.getBytes();
+        int offset = hasBom(otherPlatformBytes, otherPlatformBytes.length) ? UTF8_BOM.length : 0;
+        MessageDigest digest = getDigest(HashAlgorithm.SHA1);
+        digest.update(otherPlatformBytes, offset, otherPlatformBytes.length - offset);
+        String otherPlatformSha1 = toHex(digest.digest());
+        return EMPTY_FILE_SHA1.equals(otherPlatformSha1) ? null : otherPlatformSha1;
+    }
+
+    /**
+     * @return the super hash of the file, or null if the file is too small
+     * @throws IOException if the content was not retained
+     */
+    public HashCalculationResult getSuperHash() throws IOException {
+        byte[] bytes = getContent();
+        if (bytes.length <= SUPER_HASH_MIN_FILE_SIZE) {
+            return null;
+        }
+        return new HashCalculator().calculateSuperHash(bytes);
+    }
+
+    /**
+     * @return the JavaScript specific hashes of the file
+     * @throws IOException      if the content was not retained
+     * @throws WssHashException if the content could not be parsed
+     */
+    public Map<ChecksumType, String> getJavaScriptHashes() throws IOException, WssHashException {
+        return new HashCalculator().calculateJavaScriptHashes(getContent());
+    }
+
+    /* --- Private methods --- */
+
+    private byte[] getContent() throws IOException {
+        if (content == null) {
+            throw new IOException("File content was not retained during fingerprinting");
+        }
+        return content;
+    }
+
+    private static byte[] readContent(FileChannel channel, int size) throws IOException {
+        byte[] bytes = new byte[size];
+        ByteBuffer buffer = ByteBuffer.wrap(bytes);
+        fill(channel, buffer);
+        // the file may have been truncated since its size was read
+        return buffer.position() == size ? bytes : Arrays.copyOf(bytes, buffer.position());
+    }
+
+    // reads until the buffer is full or the end of the file, so the BOM check always sees the first bytes
+    private static int fill(FileChannel channel, ByteBuffer buffer) throws IOException {
+        int total = 0;
+        int read;
+        while (buffer.hasRemaining() && (read = channel.read(buffer)) > 0) {
+            total += read;
+        }
+        return total;
+    }
+
+    private static boolean hasBom(byte[] bytes, int length) {
+        return length >= UTF8_BOM.length && bytes[0] == UTF8_BOM[0] && bytes[1] == UTF8_BOM[1] && bytes[2] == UTF8_BOM[2];
+    }
+
+    private static MessageDigest getDigest(HashAlgorithm algorithm) {
+        try {
+            return MessageDigest.getInstance(algorithm.getAlgorithm());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e.getMessage(), e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        for (int i = 0; i < bytes.length; i++) {
+            int value = bytes[i] & 0xFF;
+            chars[i * 2] = HEX_DIGITS[value >>> 4];
+            chars[i * 2 + 1] = HEX_DIGITS[value & 0x0F];
+        }
+        return new String(chars);
+    }
+
+    /* --- Getters --- */
+
+    public String getSha1() {
+        return sha1;
+    }
+
+    public String getMd5() {
+        return md5;
+    }
+
+    public boolean hasContent() {
+        return content != null;
+    }
+}
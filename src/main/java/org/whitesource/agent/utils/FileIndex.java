@@ -0,0 +1,415 @@
+/**
+ * Copyright (C) 2017 WhiteSource Ltd.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.whitesource.agent.utils;
+
+import org.apache.tools.ant.types.selectors.TokenizedPath;
+import org.apache.tools.ant.types.selectors.TokenizedPattern;
+import org.slf4j.Logger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.*;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.*;
+
+/**
+ * In-memory index of one or more directory trees, built with a single walk per base directory.
+ * <p>
+ * All the consumers of a scan (the manifest patterns of the resolvers, the includes/excludes of the file scanner
+ * and the sub directory discovery) query the same tree instead of scanning the file system again.
+ * Matching follows the semantics of {@link org.apache.tools.ant.DirectoryScanner}, so a query returns the same
+ * sorted relative paths as a directory scan of the indexed folder.
+ * <p>
+ * Base directories are indexed lazily on their first query. When the tree may have been changed (i.e. after running
+ * package managers) {@link #refresh()} re-reads only the directories whose modification time changed.
+ */
+public class FileIndex {
+
+    /* --- Static members --- */
+
+    private static final Logger logger = LoggerFactory.getLogger(FileIndex.class);
+
+    private static final String ALL_PATTERN = "**";
+    // directories modified this close to their listing may have changed within the file system timestamp granularity
+    private static final long TIMESTAMP_GRANULARITY = 2000;
+
+    /* --- Members --- */
+
+    private final boolean followSymlinks;
+    private final Map<Path, Node> roots;
+
+    /* --- Constructors --- */
+
+    /**
+     * @param followSymlinks whether symbolic links to directories are walked, when false they are not indexed at all
+     */
+    public FileIndex(boolean followSymlinks) {
+        this.followSymlinks = followSymlinks;
+        this.roots = new LinkedHashMap<>();
+    }
+
+    /* --- Public methods --- */
+
+    /**
+     * @param directory      the directory to look up
+     * @param followSymlinks the symbolic links mode of the query
+     * @return whether the index can answer a query for the directory, it can't if the directory is not a folder
+     * or if the query follows symbolic links that were not walked
+     */
+    public synchronized boolean canServe(String directory, boolean followSymlinks) {
+        Node node = getNode(directory);
+        return node != null && node.directory && (!followSymlinks || this.followSymlinks || !node.hasSymbolicLinks());
+    }
+
+    /**
+     * Returns the files of a directory matching the patterns, as {@link org.apache.tools.ant.DirectoryScanner#getIncludedFiles()}.
+     */
+    public synchronized String[] getIncludedFiles(String directory, String[] includes, String[] excludes, boolean followSymlinks, boolean caseSensitive) {
+        return getIncluded(directory, includes, excludes, followSymlinks, caseSensitive, false);
+    }
+
+    /**
+     * Returns the sub directories of a directory matching the patterns, as {@link org.apache.tools.ant.DirectoryScanner#getIncludedDirectories()}.
+     */
+    public synchronized String[] getIncludedDirectories(String directory, String[] includes, String[] excludes, boolean followSymlinks, boolean caseSensitive) {
+        return getIncluded(directory, includes, excludes, followSymlinks, caseSensitive, true);
+    }
+
+    /**
+     * Re-reads the directories that changed since they were indexed.
+     */
+    public synchronized void refresh() {
+        int[] relisted = new int[1];
+        for (Map.Entry<Path, Node> root : roots.entrySet()) {
+            if (root.getValue().directory) {
+                refresh(root.getKey(), root.getValue(), new HashSet<>(), relisted);
+            }
+        }
+        logger.debug("File index refreshed, {} changed directories were read again", relisted[0]);
+    }
+
+    /* --- Private methods --- */
+
+    private String[] getIncluded(String directory, String[] includes, String[] excludes, boolean followSymlinks, boolean caseSensitive, boolean directories) {
+        Node node = getNode(directory);
+        if (node == null || !node.directory || (!followSymlinks && isLinked(directory))) {
+            return new String[0];
+        }
+        Query query = new Query(includes, excludes, followSymlinks, caseSensitive, directories);
+        if (directories && query.isIncluded(TokenizedPath.EMPTY_PATH)) {
+            query.result.add(TokenizedPath.EMPTY_PATH.toString());
+        }
+        collect(node, TokenizedPath.EMPTY_PATH, query);
+        String[] result = query.result.toArray(new String[query.result.size()]);
+        // sorted like the results of a directory scan
+        Arrays.sort(result);
+        return result;
+    }
+
+    private void collect(Node directory, TokenizedPath directoryPath, Query query) {
+        for (Node child : directory.children) {
+            if (!query.followSymlinks && child.symbolicLink) {
+                continue;
+            }
+            TokenizedPath path = new TokenizedPath(directoryPath, child.name);
+            if (child.directory) {
+                if (query.directories && query.isIncluded(path)) {
+                    query.result.add(path.toString());
+                }
+                if (query.couldHoldIncluded(path) && !query.contentsExcluded(path)) {
+                    collect(child, path, query);
+                }
+            } else if (!query.directories && query.isIncluded(path)) {
+                query.result.add(path.toString());
+            }
+        }
+    }
+
+    // finds the node of a directory, indexing its base directory first if needed
+    private Node getNode(String directory) {
+        Path path = Paths.get(directory).toAbsolutePath().normalize();
+        for (Map.Entry<Path, Node> root : roots.entrySet()) {
+            if (path.startsWith(root.getKey())) {
+                Node node = root.getValue();
+                for (Path name : root.getKey().relativize(path)) {
+                    if (name.toString().isEmpty()) {
+                        continue;
+                    }
+                    node = node.getChild(name.toString());
+                    if (node == null) {
+                        return null;
+                    }
+                }
+                return node;
+            }
+        }
+        Node root = index(path);
+        if (root != null) {
+            roots.put(path, root);
+        }
+        return root;
+    }
+
+    private boolean isLinked(String directory) {
+        Path path = Paths.get(directory).toAbsolutePath().normalize();
+        for (Map.Entry<Path, Node> root : roots.entrySet()) {
+            if (path.startsWith(root.getKey())) {
+                Node node = root.getValue();
+                if (node.symbolicLink) {
+                    return true;
+                }
+                for (Path name : root.getKey().relativize(path)) {
+                    node = name.toString().isEmpty() ? node : node.getChild(name.toString());
+                    if (node == null || node.symbolicLink) {
+                        return true;
+                    }
+                }
+                return false;
+            }
+        }
+        return false;
+    }
+
+    private Node index(Path path) {
+        try {
+            BasicFileAttributes attributes = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+            Node root = createNode(path, path.toString(), attributes);
+            if (root.directory) {
+                long startTime = System.currentTimeMillis();
+                int[] count = new int[1];
+                walk(path, root, new HashSet<>(), count);
+                logger.debug("Indexed {} entries of {} in {} ms", count[0], path, System.currentTimeMillis() - startTime);
+            }
+            return root;
+        } catch (IOException e) {
+            logger.debug("Failed to index {}: {}", path, e.getMessage());
+            return null;
+        }
+    }
+
+    private Node createNode(Path path, String name, BasicFileAttributes attributes) throws IOException {
+        boolean symbolicLink = attributes.isSymbolicLink();
+        if (symbolicLink) {
+            if (!followSymlinks) {
+                // a directory scan doesn't recognize broken links and reports them as regular files
+                return new Node(name, false, Files.exists(path), 0);
+            }
+            try {
+                attributes = Files.readAttributes(path, BasicFileAttributes.class);
+            } catch (IOException e) {
+                // broken link, kept as a regular file the same way a directory scan reports it
+                return new Node(name, false, false, 0);
+            }
+        }
+        return new Node(name, attributes.isDirectory(), symbolicLink, attributes.lastModifiedTime().toMillis());
+    }
+
+    private void walk(Path path, Node directory, Set<Path> ancestors, int[] count) {
+        Path realPath = realPath(path);
+        if (realPath != null && !ancestors.add(realPath)) {
+            // symbolic link loop
+            return;
+        }
+        directory.children = new ArrayList<>();
+        directory.indexTime = System.currentTimeMillis();
+        try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+            for (Path child : stream) {
+                try {
+                    BasicFileAttributes attributes = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                    Node node = createNode(child, child.getFileName().toString(), attributes);
+                    directory.children.add(node);
+                    count[0]++;
+                    if (node.directory) {
+                        walk(child, node, ancestors, count);
+                    }
+                } catch (IOException e) {
+                    logger.debug("Failed to read the attributes of {}: {}", child, e.getMessage());
+                }
+            }
+        } catch (IOException | DirectoryIteratorException e) {
+            logger.debug("Failed to list {}: {}", path, e.getMessage());
+        }
+        if (realPath != null) {
+            ancestors.remove(realPath);
+        }
+    }
+
+    private void refresh(Path path, Node directory, Set<Path> ancestors, int[] relisted) {
+        long lastModified;
+        try {
+            lastModified = Files.getLastModifiedTime(path).toMillis();
+        } catch (IOException e) {
+            directory.children = Collections.emptyList();
+            return;
+        }
+        if (lastModified != directory.lastModified || directory.lastModified >= directory.indexTime - TIMESTAMP_GRANULARITY) {
+            // relist the directory, unchanged sub directories keep their nodes and are checked below
+            relisted[0]++;
+            Map<String, Node> previous = new HashMap<>();
+            directory.children.forEach(child -> previous.put(child.name, child));
+            directory.lastModified = lastModified;
+            directory.indexTime = System.currentTimeMillis();
+            List<Node> children = new ArrayList<>();
+            try (DirectoryStream<Path> stream = Files.newDirectoryStream(path)) {
+                for (Path child : stream) {
+                    try {
+                        BasicFileAttributes attributes = Files.readAttributes(child, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS);
+                        Node node = createNode(child, child.getFileName().toString(), attributes);
+                        Node existing = previous.get(node.name);
+                        if (existing != null && existing.directory == node.directory && existing.symbolicLink == node.symbolicLink) {
+                            children.add(existing);
+                        } else {
+                            children.add(node);
+                            if (node.directory) {
+                                walk(child, node, new HashSet<>(ancestors), new int[1]);
+                            }
+                        }
+                    } catch (IOException e) {
+                        logger.debug("Failed to read the attributes of {}: {}", child, e.getMessage());
+                    }
+                }
+            } catch (IOException | DirectoryIteratorException e) {
+                logger.debug("Failed to list {}: {}", path, e.getMessage());
+            }
+            directory.children = children;
+        }
+        Path realPath = realPath(path);
+        if (realPath != null && !ancestors.add(realPath)) {
+            return;
+        }
+        for (Node child : directory.children) {
+            if (child.directory && child.children != null) {
+                refresh(path.resolve(child.name), child, ancestors, relisted);
+            }
+        }
+        if (realPath != null) {
+            ancestors.remove(realPath);
+        }
+    }
+
+    private Path realPath(Path path) {
+        if (!followSymlinks) {
+            // without following links the tree can't contain loops
+            return null;
+        }
+        try {
+            return path.toRealPath();
+        } catch (IOException e) {
+            return null;
+        }
+    }
+
+    /* --- Nested classes --- */
+
+    private static class Node {
+
+        private final String name;
+        private final boolean directory;
+        private final boolean symbolicLink;
+        private long lastModified;
+        private long indexTime;
+        private List<Node> children;
+
+        private Node(String name, boolean directory, boolean symbolicLink, long lastModified) {
+            this.name = name;
+            this.directory = directory;
+            this.symbolicLink = symbolicLink;
+            this.lastModified = lastModified;
+            this.children = directory ? new ArrayList<>() : Collections.emptyList();
+        }
+
+        private Node getChild(String childName) {
+            for (Node child : children) {
+                if (child.name.equals(childName)) {
+                    return child;
+                }
+            }
+            return null;
+        }
+
+        private boolean hasSymbolicLinks() {
+            for (Node child : children) {
+                if (child.symbolicLink || (child.directory && child.hasSymbolicLinks())) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    // the includes and excludes of a single query, normalized the same way DirectoryScanner does
+    private static class Query {
+
+        private final TokenizedPattern[] includes;
+        private final TokenizedPattern[] excludes;
+        private final boolean followSymlinks;
+        private final boolean caseSensitive;
+        private final boolean directories;
+        private final List<String> result;
+
+        private Query(String[] includes, String[] excludes, boolean followSymlinks, boolean caseSensitive, boolean directories) {
+            this.includes = tokenize(includes == null ? new String[]{ALL_PATTERN} : includes);
+            this.excludes = tokenize(excludes == null ? new String[0] : excludes);
+            this.followSymlinks = followSymlinks;
+            this.caseSensitive = caseSensitive;
+            this.directories = directories;
+            this.result = new ArrayList<>();
+        }
+
+        private boolean isIncluded(TokenizedPath path) {
+            return matches(includes, path) && !matches(excludes, path);
+        }
+
+        private boolean couldHoldIncluded(TokenizedPath path) {
+            for (TokenizedPattern include : includes) {
+                if (include.matchStartOf(path, caseSensitive)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean contentsExcluded(TokenizedPath path) {
+            for (TokenizedPattern exclude : excludes) {
+                if (exclude.endsWith(ALL_PATTERN) && exclude.withoutLastToken().matchPath(path, caseSensitive)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private boolean matches(TokenizedPattern[] patterns, TokenizedPath path) {
+            for (TokenizedPattern pattern : patterns) {
+                if (pattern.matchPath(path, caseSensitive)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static TokenizedPattern[] tokenize(String[] patterns) {
+            TokenizedPattern[] tokenized = new TokenizedPattern[patterns.length];
+            for (int i = 0; i < patterns.length; i++) {
+                String pattern = patterns[i].replace('/', File.separatorChar).replace('\\', File.separatorChar);
+                if (pattern.endsWith(File.separator)) {
+                    pattern += ALL_PATTERN;
+                }
+                tokenized[i] = new TokenizedPattern(pattern);
+            }
+            return tokenized;
+        }
+    }
+}
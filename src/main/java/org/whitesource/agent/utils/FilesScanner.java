@@ -35,6 +35,23 @@ public class FilesScanner {
 
     private Logger logger = LoggerFactory.getLogger(FilesScanner.class);
 
+    /* --- Members --- */
+
+    private final FileIndex fileIndex;
+
+    /* --- Constructors --- */
+
+    public FilesScanner() {
+        this(null);
+    }
+
+    /**
+     * @param fileIndex index of the scanned folders to query instead of scanning the file system, may be null
+     */
+    public FilesScanner(FileIndex fileIndex) {
+        this.fileIndex = fileIndex;
+    }
+
     /* --- Public methods --- */
 
     public String[] getDirectoryContent(String scannerBaseDir, String[] includes, String[] excludes, boolean followSymlinks, boolean globCaseSensitive) {
@@ -43,6 +60,13 @@ public class FilesScanner {
 
     // get the content of directory by includes, excludes, followSymlinks and globCaseSensitive, the scanDirectories property define if the scanner will scan to find directories
     public String[] getDirectoryContent(String scannerBaseDir, String[] includes, String[] excludes, boolean followSymlinks, boolean globCaseSensitive, boolean scanDirectories) {
+        if (fileIndex != null && fileIndex.canServe(scannerBaseDir, followSymlinks)) {
+            if (!scanDirectories) {
+                return fileIndex.getIncludedFiles(scannerBaseDir, includes, excludes, followSymlinks, globCaseSensitive);
+            } else {
+                return fileIndex.getIncludedDirectories(scannerBaseDir, includes, excludes, followSymlinks, globCaseSensitive);
+            }
+        }
         File file = new File(scannerBaseDir);
         String[] fileNames;
         if (file.exists() && file.isDirectory()) {
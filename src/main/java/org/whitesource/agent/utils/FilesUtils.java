@@ -18,6 +18,7 @@ package org.whitesource.agent.utils;
 import org.apache.commons.io.FileUtils;
 import org.slf4j.Logger;
 import org.whitesource.agent.Constants;
+import org.whitesource.agent.ScanWorkspace;
 
 import java.io.File;
 import java.io.IOException;
@@ -39,8 +40,25 @@ public class FilesUtils {
     /* --- Static members --- */
 
     private final Logger logger = LoggerFactory.getLogger(FilesUtils.class);
-    private final String JAVA_TEMP_DIR = System.getProperty("java.io.tmpdir");
 
+    /* --- Members --- */
+
+    private final FileIndex fileIndex;
+
+    /* --- Constructors --- */
+
+    public FilesUtils() {
+        this(null);
+    }
+
+    /**
+     * @param fileIndex index of the scanned folders shared by all the queries of a scan, may be null
+     */
+    public FilesUtils(FileIndex fileIndex) {
+        this.fileIndex = fileIndex;
+    }
+
+    /* --- Public methods --- */
 
     public String createTmpFolder(boolean addCharToEndOfUrl, String nameOfFolder) {
         String result = getTempDirPackages(addCharToEndOfUrl, nameOfFolder);
@@ -55,8 +73,10 @@ public class FilesUtils {
 
     private String getTempDirPackages(boolean addCharToEndOfUrl, String nameOfFolder) {
         String creationDate = new SimpleDateFormat("yyyyMMddHHmmss").format(new Date());
-        String tempFolder = JAVA_TEMP_DIR.endsWith(File.separator) ? JAVA_TEMP_DIR + nameOfFolder + File.separator + creationDate :
-                JAVA_TEMP_DIR + File.separator + nameOfFolder + File.separator + creationDate;
+        // the temp folders of a scan are created in its own workspace
+        String tempDir = ScanWorkspace.current().getRoot().getPath();
+        String tempFolder = tempDir.endsWith(File.separator) ? tempDir + nameOfFolder + File.separator + creationDate :
+                tempDir + File.separator + nameOfFolder + File.separator + creationDate;
         if (addCharToEndOfUrl) {
             tempFolder = tempFolder + "1";
         }
@@ -66,7 +86,7 @@ public class FilesUtils {
 
     public List<Path> getSubDirectories(String directory, String[] includes, String[] excludesExtended, boolean followSymlinks, boolean globCaseSensitive) {
         String[] files;
-        FilesScanner filesScanner = new FilesScanner();
+        FilesScanner filesScanner = new FilesScanner(fileIndex);
         try {
             files = filesScanner.getDirectoryContent(directory, includes, excludesExtended, followSymlinks, globCaseSensitive,true);
         } catch (Exception ex) {
@@ -83,7 +103,7 @@ public class FilesUtils {
             File file = new File(scannerBaseDir);
             logger.debug("Scanning {}", file.getAbsolutePath());
             if (file.exists()) {
-                FilesScanner filesScanner = new FilesScanner();
+                FilesScanner filesScanner = new FilesScanner(fileIndex);
                 if (file.isDirectory()) {
                     File basedir = new File(scannerBaseDir);
                     String[] fileNames = filesScanner.getDirectoryContent(scannerBaseDir, includes, excludesExtended, followSymlinks, globCaseSensitive);
@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2014 WhiteSource Ltd.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.whitesource.agent.utils;
+
+import java.io.*;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A gzip file persisted by the agent between runs, starting with the format version of its content.
+ * <p>
+ * The file is written to a temp file next to it and then moved over it, atomically where the file system supports
+ * it, so an interrupted run never leaves a corrupted file behind.
+ */
+public class PersistentFile {
+
+    /* --- Static members --- */
+
+    public static final String TEMP_SUFFIX = ".tmp";
+
+    /* --- Members --- */
+
+    private final File file;
+    private final int formatVersion;
+
+    /* --- Constructors --- */
+
+    public PersistentFile(File file, int formatVersion) {
+        this.file = file;
+        this.formatVersion = formatVersion;
+    }
+
+    /* --- Public methods --- */
+
+    /**
+     * Replaces the file with new content.
+     *
+     * @param writer writes the content, after the format version
+     * @throws IOException if the file could not be written, the previous file is then left unchanged
+     */
+    public void write(ContentWriter writer) throws IOException {
+        File parent = file.getAbsoluteFile().getParentFile();
+        File tempFile = new File(parent, file.getName() + TEMP_SUFFIX);
+        try {
+            if (!parent.exists() && !parent.mkdirs()) {
+                throw new IOException("Unable to create directory " + parent);
+            }
+            try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tempFile))))) {
+                out.writeInt(formatVersion);
+                writer.write(out);
+            }
+            replace(tempFile.toPath(), file.toPath());
+        } catch (IOException e) {
+            tempFile.delete();
+            throw e;
+        }
+    }
+
+    /**
+     * Reads the content of the file.
+     *
+     * @param reader reads the content, after the format version
+     * @return false if the file does not exist or was written with another format version, the reader is then not called
+     * @throws IOException if the file could not be read
+     */
+    public boolean read(ContentReader reader) throws IOException {
+        if (!file.isFile()) {
+            return false;
+        }
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))))) {
+            if (in.readInt() != formatVersion) {
+                return false;
+            }
+            reader.read(in);
+            return true;
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Moves a fully written temp file over the target, atomically where the file system supports it.
+     *
+     * @param tempFile the written file
+     * @param target   the file to replace
+     * @throws IOException if the file could not be moved
+     */
+    public static void replace(Path tempFile, Path target) throws IOException {
+        try {
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            Files.move(tempFile, target, StandardCopyOption.REPLACE_EXISTING);
+        }
+    }
+
+    /* --- Nested classes --- */
+
+    public interface ContentWriter {
+        void write(DataOutputStream out) throws IOException;
+    }
+
+    public interface ContentReader {
+        void read(DataInputStream in) throws IOException;
+    }
+}
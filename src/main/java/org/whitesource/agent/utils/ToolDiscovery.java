@@ -0,0 +1,174 @@
+/**
+ * Copyright (C) 2014 WhiteSource Ltd.
+ * <p>
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ * <p>
+ * http://www.apache.org/licenses/LICENSE-2.0
+ * <p>
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.whitesource.agent.utils;
+
+import org.apache.commons.lang.StringUtils;
+import org.slf4j.Logger;
+import org.whitesource.agent.Constants;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Process wide cache of the build tool probes ('mvn -v', 'gem environment gemdir', 'uname -m', ...) and of the local
+ * repository and cache paths they print, shared by all the resolvers.
+ * <p>
+ * Each probe is run once and its output is kept for a limited time, so a long running agent (web mode) notices tools
+ * installed or upgraded in the meantime. Entries are keyed by the command and by the environment variables that decide
+ * which executable runs and where it keeps its files, a probe is never reused for a different PATH.
+ */
+public class ToolDiscovery {
+
+    /* --- Static members --- */
+
+    private static final Logger logger = LoggerFactory.getLogger(ToolDiscovery.class);
+
+    public static final long DEFAULT_TIME_TO_LIVE_MINUTES = 10;
+
+    private static final String DOT_GRADLE = ".gradle";
+    private static final String GRADLE_USER_HOME = "GRADLE_USER_HOME";
+    // the variables changing which executable is found or where it keeps its files
+    private static final List<String> ENVIRONMENT_KEYS = Arrays.asList("PATH", "Path", "JAVA_HOME", "M2_HOME", "MAVEN_HOME",
+            GRADLE_USER_HOME, "GEM_HOME", "GEM_PATH", "npm_config_cache", "NPM_CONFIG_CACHE");
+
+    private static final ToolDiscovery instance = new ToolDiscovery(TimeUnit.MINUTES.toMillis(DEFAULT_TIME_TO_LIVE_MINUTES));
+
+    /* --- Members --- */
+
+    private final long timeToLiveMillis;
+    private final Map<String, Probe> probes;
+
+    /* --- Constructors --- */
+
+    ToolDiscovery(long timeToLiveMillis) {
+        this.timeToLiveMillis = timeToLiveMillis;
+        this.probes = new ConcurrentHashMap<>();
+    }
+
+    /* --- Static methods --- */
+
+    public static ToolDiscovery getInstance() {
+        return instance;
+    }
+
+    /* --- Public methods --- */
+
+    /**
+     * Runs a command whose output does not depend on the folder it runs in, or returns its cached output.
+     *
+     * @param params the command and its arguments
+     * @return the output lines, empty if the command failed
+     */
+    public List<String> getOutput(String[] params) {
+        return getOutput(Constants.DOT, params);
+    }
+
+    /**
+     * Runs a command in a folder, or returns its cached output for that folder.
+     *
+     * @param directory the folder the command runs in
+     * @param params    the command and its arguments
+     * @return the output lines, empty if the command failed
+     */
+    public List<String> getOutput(String directory, String[] params) {
+        List<String> lines = probe(directory, params);
+        return lines == null ? Collections.emptyList() : lines;
+    }
+
+    /**
+     * @param versionParams the command printing the version of the tool, e.g. 'mvn -v'
+     * @return true if the command succeeded
+     */
+    public boolean isInstalled(String[] versionParams) {
+        return probe(Constants.DOT, versionParams) != null;
+    }
+
+    /**
+     * @return the gradle user home, GRADLE_USER_HOME if set, otherwise '~/.gradle'
+     */
+    public String getGradleUserHome() {
+        String gradleUserHome = System.getenv(GRADLE_USER_HOME);
+        if (StringUtils.isNotBlank(gradleUserHome)) {
+            return gradleUserHome;
+        }
+        return Paths.get(System.getProperty(Constants.USER_HOME), DOT_GRADLE).toString();
+    }
+
+    /**
+     * Forgets all the probes, the next lookups run the commands again.
+     */
+    public void clear() {
+        probes.clear();
+    }
+
+    /* --- Protected methods --- */
+
+    /**
+     * @return the output lines of the command, or null if it failed
+     */
+    protected List<String> runProbe(String directory, String[] params) {
+        try {
+            CommandLineProcess commandLineProcess = new CommandLineProcess(directory, params);
+            List<String> lines = commandLineProcess.executeProcess();
+            if (!commandLineProcess.isErrorInProcess()) {
+                return lines;
+            }
+            logger.debug("Failed to run '{}'", String.join(Constants.WHITESPACE, params));
+        } catch (IOException e) {
+            logger.debug("Failed to run '{}': {}", String.join(Constants.WHITESPACE, params), e.getMessage());
+        }
+        return null;
+    }
+
+    /* --- Private methods --- */
+
+    // the output of the command, or null if it failed
+    private List<String> probe(String directory, String[] params) {
+        String key = directory + Constants.PIPE + String.join(Constants.WHITESPACE, params) + Constants.PIPE + getEnvironmentKey();
+        Probe probe = probes.computeIfAbsent(key, k -> new Probe());
+        // concurrent callers of the same probe wait for a single process instead of forking their own
+        synchronized (probe) {
+            if (probe.time == 0 || System.currentTimeMillis() - probe.time > timeToLiveMillis) {
+                List<String> lines = runProbe(directory, params);
+                probe.lines = lines == null ? null : Collections.unmodifiableList(lines);
+                probe.time = System.currentTimeMillis();
+            } else {
+                logger.debug("Using the cached output of '{}'", String.join(Constants.WHITESPACE, params));
+            }
+            return probe.lines;
+        }
+    }
+
+    private String getEnvironmentKey() {
+        StringBuilder key = new StringBuilder();
+        for (String environmentKey : ENVIRONMENT_KEYS) {
+            key.append(StringUtils.defaultString(System.getenv(environmentKey))).append(File.pathSeparatorChar);
+        }
+        return key.toString();
+    }
+
+    /* --- Nested classes --- */
+
+    private static class Probe {
+        // null when the command failed
+        private List<String> lines;
+        private long time;
+    }
+}
@@ -25,6 +25,7 @@ import org.whitesource.agent.ViaLanguage;
 import org.whitesource.agent.api.dispatch.UpdateType;
 import org.whitesource.agent.client.ClientConstants;
 import org.whitesource.agent.dependency.resolver.maven.MavenTreeDependencyCollector;
+import org.whitesource.agent.utils.ChecksumCache;
 import org.whitesource.agent.utils.LoggerFactory;
 import org.whitesource.agent.utils.Pair;
 import org.whitesource.agent.utils.WsStringUtils;
@@ -116,6 +117,10 @@ public class FSAConfiguration {
     private final boolean scanDockerImages;
     private final boolean scanTarImages;
     private final boolean deleteTarImages;
+    private final boolean dockerLayerCache;
+    private final boolean dockerStreamSave;
+    private final int dockerScanThreads;
+    private final long dockerScanMaxTempDiskMB;
 
     private final String scannedFolders;
 
@@ -242,6 +247,10 @@ public class FSAConfiguration {
         scanDockerImages = config.getBooleanProperty(ConfigPropertyKeys.SCAN_DOCKER_IMAGES, false);
         scanTarImages = config.getBooleanProperty(ConfigPropertyKeys.SCAN_TAR_IMAGES, false);
         deleteTarImages = config.getBooleanProperty(ConfigPropertyKeys.DELETE_TAR_FILES, true);
+        dockerLayerCache = config.getBooleanProperty(ConfigPropertyKeys.DOCKER_LAYER_CACHE, false);
+        dockerStreamSave = config.getBooleanProperty(ConfigPropertyKeys.DOCKER_STREAM_SAVE, false);
+        dockerScanThreads = config.getIntProperty(ConfigPropertyKeys.DOCKER_SCAN_THREADS, 1);
+        dockerScanMaxTempDiskMB = config.getLongProperty(ConfigPropertyKeys.DOCKER_SCAN_MAX_TEMP_DISK_MB, 0);
 
         if (dependencyDirs == null)
             dependencyDirs = new ArrayList<>();
@@ -468,6 +477,8 @@ public class FSAConfiguration {
         boolean npmIgnoreNpmLsErrors = config.getBooleanProperty(ConfigPropertyKeys.NPM_IGNORE_NPM_LS_ERRORS, false);
         String npmAccessToken = config.getProperty(ConfigPropertyKeys.NPM_ACCESS_TOKEN);
         boolean npmYarnProject = config.getBooleanProperty(ConfigPropertyKeys.NPM_YARN_PROJECT, false);
+        boolean npmStreamLsJson = config.getBooleanProperty(ConfigPropertyKeys.NPM_STREAM_LS_JSON, false);
+        boolean npmResolveFromLockFile = config.getBooleanProperty(ConfigPropertyKeys.NPM_RESOLVE_FROM_LOCK_FILE, false);
 
         boolean bowerResolveDependencies = config.getBooleanProperty(ConfigPropertyKeys.BOWER_RESOLVE_DEPENDENCIES, resolveAllDependencies);
         boolean bowerRunPreStep = config.getBooleanProperty(ConfigPropertyKeys.BOWER_RUN_PRE_STEP, false);
@@ -484,6 +495,7 @@ public class FSAConfiguration {
         boolean mavenIgnoredPomModules = config.getBooleanProperty(ConfigPropertyKeys.MAVEN_IGNORE_POM_MODULES, true);
         boolean mavenRunPreStep = config.getBooleanProperty(ConfigPropertyKeys.MAVEN_RUN_PRE_STEP, false);
         boolean mavenIgnoreDependencyTreeErrors = config.getBooleanProperty(ConfigPropertyKeys.MAVEN_IGNORE_DEPENDENCY_TREE_ERRORS, false);
+        boolean mavenInProcessResolution = config.getBooleanProperty(ConfigPropertyKeys.MAVEN_IN_PROCESS_RESOLUTION, false);
         String whiteSourceConfiguration = config.getProperty(ConfigPropertyKeys.PROJECT_CONFIGURATION_PATH);
 
         boolean pythonResolveDependencies = config.getBooleanProperty(ConfigPropertyKeys.PYTHON_RESOLVE_DEPENDENCIES, resolveAllDependencies);
@@ -515,6 +527,7 @@ public class FSAConfiguration {
         boolean gradleRunPreStep = config.getBooleanProperty(ConfigPropertyKeys.GRADLE_RUN_PRE_STEP, false);
         String[] gradleIgnoredScopes = config.getListProperty(ConfigPropertyKeys.GRADLE_IGNORE_SCOPES, new String[0]);
         String graldeLocalRepositoryPath = config.getProperty(ConfigPropertyKeys.GRADLE_LOCAL_REPOSITORY_PATH, EMPTY_STRING);
+        boolean gradleSingleInvocation = config.getBooleanProperty(ConfigPropertyKeys.GRADLE_SINGLE_INVOCATION, false);
         String gradlePreferredEnvironment = config.getProperty(ConfigPropertyKeys.GRADLE_PREFERRED_ENVIRONMENT, Constants.GRADLE);
         if (gradlePreferredEnvironment.isEmpty()) {
             gradlePreferredEnvironment = Constants.GRADLE;
@@ -547,6 +560,7 @@ public class FSAConfiguration {
         String sbtTargetFolder = config.getProperty(ConfigPropertyKeys.SBT_TARGET_FOLDER, EMPTY_STRING);
 
         boolean htmlResolveDependencies = config.getBooleanProperty(ConfigPropertyKeys.HTML_RESOLVE_DEPENDENCIES, resolveAllDependencies);
+        boolean htmlStreamingParse = config.getBooleanProperty(ConfigPropertyKeys.HTML_STREAMING_PARSE, false);
         boolean cocoapodsResolveDependencies = config.getBooleanProperty(ConfigPropertyKeys.COCOAPODS_RESOLVE_DEPENDENCIES, resolveAllDependencies);
         boolean cocoapodsRunPreStep = config.getBooleanProperty(ConfigPropertyKeys.COCOAPODS_RUN_PRE_STEP, false);
 
@@ -555,6 +569,10 @@ public class FSAConfiguration {
         boolean hexRunPreStep = config.getBooleanProperty(ConfigPropertyKeys.HEX_RUN_PRE_STEP, false);
         boolean hexAggregateModules = config.getBooleanProperty(ConfigPropertyKeys.HEX_AGGREGATE_MODULES, false);
 
+        // resolvers run one after the other unless more threads are configured
+        int resolveDependenciesThreads = config.getIntProperty(ConfigPropertyKeys.RESOLVE_DEPENDENCIES_THREADS, 1);
+        boolean resolveDependenciesIncremental = config.getBooleanProperty(ConfigPropertyKeys.RESOLVE_DEPENDENCIES_INCREMENTAL, false);
+
         boolean npmIgnoreSourceFiles;
         boolean bowerIgnoreSourceFiles;
         boolean nugetIgnoreSourceFiles;
@@ -598,22 +616,23 @@ public class FSAConfiguration {
         }
 
         return new ResolverConfiguration(npmRunPreStep, npmResolveDependencies, npmIgnoreScripts, npmIncludeDevDependencies, npmIgnoreSourceFiles,
-                npmTimeoutDependenciesCollector, npmAccessToken, npmIgnoreNpmLsErrors, npmYarnProject,
+                npmTimeoutDependenciesCollector, npmAccessToken, npmIgnoreNpmLsErrors, npmYarnProject, npmStreamLsJson, npmResolveFromLockFile,
                 bowerResolveDependencies, bowerRunPreStep, bowerIgnoreSourceFiles,
                 nugetResolveDependencies, nugetRestoreDependencies, nugetRunPreStep, nugetIgnoreSourceFiles, nugetResolvePakcagesConfigFiles, nugetResolveCsProjFiles,
                 mavenResolveDependencies, mavenIgnoredScopes, mavenAggregateModules, mavenIgnoredPomModules, mavenIgnoreSourceFiles, mavenRunPreStep, mavenIgnoreDependencyTreeErrors,
+                mavenInProcessResolution,
                 pythonResolveDependencies, pipPath, pythonPath, pythonIsWssPluginInstalled, pythonUninstallWssPluginInstalled,
                 pythonIgnorePipInstallErrors, pythonInstallVirtualenv, pythonResolveHierarchyTree, pythonRequirementsFileIncludes, pythonResolveSetupPyFiles, pythonIgnoreSourceFiles,
                 pythonIgnorePipenvInstallErrors, pythonRunPipenvPreStep, pythonInstallDevDependencies,
                 ignoreSourceFiles, whiteSourceConfiguration,
                 gradleResolveDependencies, gradleRunAssembleCommand, gradleAggregateModules, gradlePreferredEnvironment, gradleIgnoreSourceFiles, gradleRunPreStep, gradleIgnoredScopes,
-                graldeLocalRepositoryPath, paketResolveDependencies, paketIgnoredScopes, paketRunPreStep, paketPath, paketIgnoreSourceFiles,
+                graldeLocalRepositoryPath, gradleSingleInvocation, paketResolveDependencies, paketIgnoredScopes, paketRunPreStep, paketPath, paketIgnoreSourceFiles,
                 goResolveDependencies, goDependencyManager, goCollectDependenciesAtRuntime, goIgnoreTestPackages, goIgnoreSourceFiles, goGradleEnableTaskAlias,
                 rubyResolveDependencies, rubyRunBundleInstall, rubyOverwriteGemFile, rubyInstallMissingGems, rubyIgnoreSourceFiles,
                 phpResolveDependencies, phpRunPreStep, phpIncludeDevDependencies,
                 sbtResolveDependencies, sbtAggregateModules, sbtRunPreStep, sbtTargetFolder, sbtIgnoreSourceFiles,
-                htmlResolveDependencies, cocoapodsResolveDependencies, cocoapodsRunPreStep, cocoapodsIgnoreSourceFiles,
-                hexResolveDependencies, hexRunPreStep, hexIgnoreSourceFiles, hexAggregateModules, addSha1);
+                htmlResolveDependencies, htmlStreamingParse, cocoapodsResolveDependencies, cocoapodsRunPreStep, cocoapodsIgnoreSourceFiles,
+                hexResolveDependencies, hexRunPreStep, hexIgnoreSourceFiles, hexAggregateModules, resolveDependenciesThreads, resolveDependenciesIncremental, addSha1);
     }
 
     private RequestConfiguration getRequest(FSAConfigProperties config, String apiToken, String userKey, String projectName, String projectToken, String scanComment) {
@@ -695,11 +714,16 @@ public class FSAConfiguration {
         String[] archiveExcludes = config.getProperty(ConfigPropertyKeys.ARCHIVE_EXCLUDES_PATTERN_KEY, EMPTY_STRING).split(FSAConfiguration.INCLUDES_EXCLUDES_SEPARATOR_REGEX);
         String[] pythonRequirementsFileIncludes = config.getPythonIncludes();
         boolean archiveFastUnpack = config.getBooleanProperty(ConfigPropertyKeys.ARCHIVE_FAST_UNPACK_KEY, false);
+        boolean archiveStreaming = config.getBooleanProperty(ConfigPropertyKeys.ARCHIVE_STREAMING_KEY, false);
         boolean archiveFollowSymbolicLinks = config.getBooleanProperty(ConfigPropertyKeys.FOLLOW_SYMBOLIC_LINKS, true);
         boolean dockerScan = config.getBooleanProperty(ConfigPropertyKeys.SCAN_DOCKER_IMAGES, false);
         boolean partialSha1Match = config.getBooleanProperty(ConfigPropertyKeys.PARTIAL_SHA1_MATCH_KEY, false);
         boolean calculateHints = config.getBooleanProperty(ConfigPropertyKeys.CALCULATE_HINTS, false);
         boolean calculateMd5 = config.getBooleanProperty(ConfigPropertyKeys.CALCULATE_MD5, false);
+        int calculateThreads = config.getIntProperty(ConfigPropertyKeys.CALCULATE_THREADS, 0);
+        boolean calculateCache = config.getBooleanProperty(ConfigPropertyKeys.CALCULATE_CACHE, false);
+        int calculateCacheMaxEntries = config.getIntProperty(ConfigPropertyKeys.CALCULATE_CACHE_MAX_ENTRIES, ChecksumCache.DEFAULT_MAX_ENTRIES);
+        int tempFolderQuotaMB = config.getIntProperty(ConfigPropertyKeys.TEMP_FOLDER_QUOTA_MB, 0);
         boolean showProgress = config.getBooleanProperty(ConfigPropertyKeys.SHOW_PROGRESS_BAR, true);
         Pair<Boolean, String> globalCaseSensitive = getGlobalCaseSensitive(config.getProperty(ConfigPropertyKeys.CASE_SENSITIVE_GLOB_PROPERTY_KEY));
 
@@ -708,8 +732,8 @@ public class FSAConfiguration {
         Collection<String> excludesCopyrights = getExcludeCopyrights(config.getProperty(ConfigPropertyKeys.EXCLUDED_COPYRIGHT_KEY, EMPTY_STRING));
 
         return new AgentConfiguration(includes, excludes, dockerIncludes, dockerExcludes,
-                archiveExtractionDepth, archiveIncludes, archiveExcludes, archiveFastUnpack, archiveFollowSymbolicLinks,
-                partialSha1Match, calculateHints, calculateMd5, showProgress, globalCaseSensitive.getKey(), dockerScan, excludesCopyrights, projectPerFolderIncludes,
+                archiveExtractionDepth, archiveIncludes, archiveExcludes, archiveFastUnpack, archiveStreaming, archiveFollowSymbolicLinks,
+                partialSha1Match, calculateHints, calculateMd5, calculateThreads, calculateCache, calculateCacheMaxEntries, tempFolderQuotaMB, showProgress, globalCaseSensitive.getKey(), dockerScan, excludesCopyrights, projectPerFolderIncludes,
                 projectPerFolderExcludes, pythonRequirementsFileIncludes, globalCaseSensitive.getValue());
     }
 
@@ -751,8 +775,12 @@ public class FSAConfiguration {
         String repositoriesPath = config.getProperty(ConfigPropertyKeys.SCM_REPOSITORIES_FILE);
         boolean npmInstall = config.getBooleanProperty(ConfigPropertyKeys.SCM_NPM_INSTALL, true);
         int npmInstallTimeoutMinutes = config.getIntProperty(ConfigPropertyKeys.SCM_NPM_INSTALL_TIMEOUT_MINUTES, 15);
+        String mirrorCachePath = config.getProperty(ConfigPropertyKeys.SCM_MIRROR_CACHE_PATH);
+        boolean sparseCheckout = config.getBooleanProperty(ConfigPropertyKeys.SCM_SPARSE_CHECKOUT, false);
+        int cloneThreads = config.getIntProperty(ConfigPropertyKeys.SCM_CLONE_THREADS, 1);
 
-        return new ScmConfiguration(type, user, pass, ppk, url, branch, tag, repositoriesPath, npmInstall, npmInstallTimeoutMinutes);
+        return new ScmConfiguration(type, user, pass, ppk, url, branch, tag, repositoriesPath, npmInstall, npmInstallTimeoutMinutes,
+                mirrorCachePath, sparseCheckout, cloneThreads);
     }
 
     private RemoteDockerConfiguration getRemoteDockerConfiguration(FSAConfigProperties config) {
@@ -781,6 +809,7 @@ public class FSAConfiguration {
         boolean pullForce = config.getBooleanProperty(ConfigPropertyKeys.DOCKER_PULL_FORCE, false);
         RemoteDockerConfiguration result = new RemoteDockerConfiguration(dockerImagesList, dockerTagsList,
                 dockerDigestsList, forceDelete, enablePulling, maxImagesScan, pullForce, maxImagesPull, loginSudo);
+        result.setPullThreads(config.getIntProperty(ConfigPropertyKeys.DOCKER_PULL_THREADS, 1));
 
         // Amazon configuration
         String[] dockerAmazonRegistryIds = config.getListProperty(ConfigPropertyKeys.DOCKER_AWS_REGISTRY_IDS, empty);
@@ -1042,6 +1071,22 @@ public class FSAConfiguration {
         return deleteTarImages;
     }
 
+    public boolean isDockerLayerCache() {
+        return dockerLayerCache;
+    }
+
+    public boolean isDockerStreamSave() {
+        return dockerStreamSave;
+    }
+
+    public int getDockerScanThreads() {
+        return dockerScanThreads;
+    }
+
+    public long getDockerScanMaxTempDiskMB() {
+        return dockerScanMaxTempDiskMB;
+    }
+
     /* --- Public static methods--- */
 
     public static int getIntProperty(Properties config, String propertyKey, int defaultValue) {
@@ -40,6 +40,10 @@ import java.io.File;
 import java.io.IOException;
 import java.nio.file.Path;
 import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.stream.Collectors;
 
 /**
@@ -217,6 +221,8 @@ public class FileSystemAgent {
         String separatorFiles = NpmLsJsonDependencyCollector.isWindows() ? "\\" : "/";
         Collection<String> scmPaths = new ArrayList<>();
         final boolean[] hasScmConnectors = new boolean[1];
+        FileSystemScanner fileSystemScanner = new FileSystemScanner(config.getResolver(), config.getAgent(), config.getSender().isEnableImpactAnalysis(),
+                getIaLanguage(config.getRequest().getIaLanguage()));
 
         List<ScmConnector> scmConnectors = null;
         if (StringUtils.isNotBlank(config.getScm().getRepositoriesPath())) {
@@ -233,15 +239,35 @@ public class FileSystemAgent {
 
         if (scmConnectors != null && scmConnectors.stream().anyMatch(scm -> scm != null)) {
             //scannerBaseDirs.clear();
-            scmConnectors.stream().forEach(scmConnector -> {
-                if (scmConnector != null) {
-                    logger.info("Connecting to SCM");
-
-                    String scmPath = scmConnector.cloneRepository().getPath();
-                    Pair<String, StatusCode> result = npmInstallScmRepository(config.getScm().isNpmInstall(), config.getScm().getNpmInstallTimeoutMinutes(),
-                            scmConnector, separatorFiles, scmPath);
-                    scmPath = result.getKey();
-                    success[0] = result.getValue();
+            List<ScmConnector> activeScmConnectors = scmConnectors.stream().filter(Objects::nonNull).collect(Collectors.toList());
+            // the resolvers look for their manifest files in the checked out files, whatever the includes are
+            String[] manifestIncludes = fileSystemScanner.getResolversIncludesPattern();
+            // repositories are cloned (and npm installed) ahead by a bounded pool, the scan starts once all of them are ready
+            // TODO scan each repository in its own pool and send its result as soon as it is ready, all the repositories are sent as one project for now
+            int cloneThreads = Math.max(1, Math.min(config.getScm().getCloneThreads(), activeScmConnectors.size()));
+            ExecutorService executorService = Executors.newFixedThreadPool(cloneThreads);
+            try {
+                List<Future<Pair<String, StatusCode>>> clones = activeScmConnectors.stream()
+                        .map(scmConnector -> executorService.submit(() -> cloneScmRepository(scmConnector, separatorFiles, manifestIncludes)))
+                        .collect(Collectors.toList());
+                // the results are added in the order of the repositories, whatever the order they were cloned in
+                for (int i = 0; i < clones.size(); i++) {
+                    ScmConnector scmConnector = activeScmConnectors.get(i);
+                    Pair<String, StatusCode> result;
+                    try {
+                        result = clones.get(i).get();
+                    } catch (ExecutionException e) {
+                        // only this repository is missing from the scan, the clones of the others are still collected
+                        logger.error("Failed to clone {}: {}", scmConnector.getUrl(), e.getCause().getMessage());
+                        logger.debug("Failed to clone " + scmConnector.getUrl(), e.getCause());
+                        scmConnector.deleteCloneDirectory();
+                        success[0] = StatusCode.ERROR;
+                        continue;
+                    }
+                    String scmPath = result.getKey();
+                    if (result.getValue() != StatusCode.SUCCESS) {
+                        success[0] = result.getValue();
+                    }
                     scmPaths.add(scmPath);
                     scannerBaseDirs.add(scmPath);
                     if (!appPathsToDependencyDirs.containsKey(FSAConfiguration.DEFAULT_KEY)) {
@@ -250,7 +276,16 @@ public class FileSystemAgent {
                     appPathsToDependencyDirs.get(FSAConfiguration.DEFAULT_KEY).add(scmPath);
                     hasScmConnectors[0] = true;
                 }
-            });
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                logger.error("Interrupted while cloning the repositories");
+                executorService.shutdownNow();
+                // nothing is scanned, the repositories cloned so far are deleted
+                activeScmConnectors.forEach(ScmConnector::deleteCloneDirectory);
+                return new ProjectsDetails(new ArrayList<>(), StatusCode.ERROR, "Interrupted while cloning the repositories");
+            } finally {
+                executorService.shutdownNow();
+            }
         }
 
         if (StringUtils.isNotBlank(config.getAgent().getError())) {
@@ -262,10 +297,8 @@ public class FileSystemAgent {
         }
 
         Map<AgentProjectInfo, LinkedList<ViaComponents>> projectToAppPathAndLanguage;
-        ViaLanguage viaLanguage = getIaLanguage(config.getRequest().getIaLanguage());
         ProjectConfiguration projectConfiguration = new ProjectConfiguration(config.getAgent(), scannerBaseDirs, appPathsToDependencyDirs, false);
-        projectToAppPathAndLanguage = new FileSystemScanner(config.getResolver(), config.getAgent() , config.getSender().isEnableImpactAnalysis(), viaLanguage)
-                    .createProjects(projectConfiguration);
+        projectToAppPathAndLanguage = fileSystemScanner.createProjects(projectConfiguration);
         ProjectsDetails projectsDetails = new ProjectsDetails(projectToAppPathAndLanguage, success[0], Constants.EMPTY_STRING);
 
         // delete all temp scm files
@@ -293,6 +326,17 @@ public class FileSystemAgent {
         return null;
     }
 
+    private Pair<String, StatusCode> cloneScmRepository(ScmConnector scmConnector, String separatorFiles, String[] manifestIncludes) {
+        logger.info("Connecting to SCM");
+        scmConnector.setMirrorCachePath(config.getScm().getMirrorCachePath());
+        if (config.getScm().isSparseCheckout()) {
+            scmConnector.setSparseCheckoutIncludes(config.getAgent().getIncludes(), manifestIncludes);
+        }
+        String scmPath = scmConnector.cloneRepository().getPath();
+        return npmInstallScmRepository(config.getScm().isNpmInstall(), config.getScm().getNpmInstallTimeoutMinutes(),
+                scmConnector, separatorFiles, scmPath);
+    }
+
     private Pair<String, StatusCode> npmInstallScmRepository(boolean scmNpmInstall, int npmInstallTimeoutMinutes, ScmConnector scmConnector,
                                                              String separatorFiles, String pathToCloneRepoFiles) {
 
@@ -25,6 +25,7 @@ import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
 import org.whitesource.agent.Constants;
 import org.whitesource.agent.ProjectsSender;
+import org.whitesource.agent.ScanWorkspace;
 import org.whitesource.agent.TempFolders;
 import org.whitesource.agent.api.dispatch.UpdateInventoryRequest;
 import org.whitesource.agent.api.model.AgentProjectInfo;
@@ -50,6 +51,7 @@ public class Main {
     public static Logger logger; // don't initialize the logger here, only after setting the
     // ContextInitializer.CONFIG_FILE_PROPERTY property (set inside setLoggerConfiguration method)
     public static final long MAX_TIMEOUT = 1000 * 60 * 60;
+    private static final long WORKSPACE_CLEANUP_TIMEOUT = 1000 * 60;
     private static ProjectsSender projectsSender = null;
     private static Vertx vertx;
     public static int exitCode = 0;
@@ -105,6 +107,7 @@ public class Main {
                 processExitCode = StatusCode.ERROR;
             } finally {
                 new TempFolders().deleteTempFolders();
+                ScanWorkspace.awaitCleanup(WORKSPACE_CLEANUP_TIMEOUT);
             }
 
             logger.info("Process finished with exit code {} ({})", processExitCode.name(), processExitCode.getValue());
@@ -16,9 +16,15 @@
 package org.whitesource.fs;
 
 import ch.qos.logback.classic.Level;
+import com.google.gson.Gson;
 import org.apache.commons.io.FileUtils;
 import org.apache.commons.lang.StringUtils;
 import org.slf4j.Logger;
+import org.whitesource.agent.ScanWorkspace;
+import org.whitesource.agent.dependency.resolver.ScanManifest;
+import org.whitesource.agent.dependency.resolver.html.ScriptFetcher;
+import org.whitesource.agent.dependency.resolver.npm.NpmRegistryClient;
+import org.whitesource.agent.utils.ChecksumCache;
 import org.whitesource.agent.utils.LoggerFactory;
 
 import java.io.File;
@@ -55,9 +61,58 @@ public class ProjectsCalculator {
         // add directory list to appPath map - defaultKey
         fsaConfiguration.getAppPathsToDependencyDirs().get(FSAConfiguration.DEFAULT_KEY).addAll(files);
 
+        // the temp folders and the caches of the scan are isolated from those of other scans in the process
+        ScanWorkspace workspace = ScanWorkspace.open(fsaConfiguration.getAgent().getTempFolderQuotaMB());
+
+        // reuse the checksums of files that did not change since the previous run
+        ChecksumCache checksumCache;
+        boolean incremental = fsaConfiguration.getResolver().isResolveDependenciesIncremental();
+        if (fsaConfiguration.getAgent().isCalculateCache() || incremental) {
+            File cacheFile = new File(fsaConfiguration.getOffline().getWhiteSourceFolderPath(), ChecksumCache.CACHE_FILE_NAME);
+            checksumCache = ChecksumCache.initialize(cacheFile, fsaConfiguration.getAgent().getCalculateCacheMaxEntries());
+        } else {
+            // the cache of a previous scan in the process is not used by a scan without it
+            checksumCache = ChecksumCache.reset();
+        }
+
+        // reuse the checksums of the npm packages looked up in the registry by the previous runs
+        NpmRegistryClient npmRegistryClient;
+        if (fsaConfiguration.getAgent().isCalculateCache() || incremental) {
+            File npmCacheFile = new File(fsaConfiguration.getOffline().getWhiteSourceFolderPath(), NpmRegistryClient.CACHE_FILE_NAME);
+            npmRegistryClient = NpmRegistryClient.initialize(npmCacheFile);
+        } else {
+            npmRegistryClient = NpmRegistryClient.reset();
+        }
+
+        // revalidate the scripts of html files downloaded by the previous runs instead of downloading them again
+        ScriptFetcher scriptFetcher;
+        if (fsaConfiguration.getAgent().isCalculateCache() || incremental) {
+            scriptFetcher = ScriptFetcher.initialize(new File(fsaConfiguration.getOffline().getWhiteSourceFolderPath(), ScriptFetcher.CACHE_FOLDER_NAME));
+        } else {
+            // the scripts and failures kept in memory are those of the run only
+            scriptFetcher = ScriptFetcher.reset();
+        }
+
+        // reuse the resolution results of top folders whose manifest files did not change since the previous run
+        ScanManifest scanManifest;
+        if (incremental) {
+            File manifestFile = new File(fsaConfiguration.getOffline().getWhiteSourceFolderPath(), ScanManifest.MANIFEST_FILE_NAME);
+            scanManifest = ScanManifest.initialize(manifestFile, new Gson().toJson(fsaConfiguration.getResolver()));
+        } else {
+            scanManifest = ScanManifest.reset();
+        }
+
         // run the agent
         FileSystemAgent agent = new FileSystemAgent(fsaConfiguration, files);
-        // create projects as usual
-        return agent.createProjects();
+        try {
+            // create projects as usual
+            return agent.createProjects();
+        } finally {
+            checksumCache.save();
+            npmRegistryClient.save();
+            scriptFetcher.save();
+            scanManifest.save();
+            workspace.close(true);
+        }
     }
 }
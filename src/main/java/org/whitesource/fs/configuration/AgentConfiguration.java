@@ -44,11 +44,16 @@ public class AgentConfiguration {
     @FSAConfigProperty
     private final String[] archiveExcludes;
     private final boolean archiveFastUnpack;
+    private final boolean archiveStreaming;
     @FSAConfigProperty
     private final boolean followSymlinks;
     private final boolean partialSha1Match;
     private final boolean calculateHints;
     private final boolean calculateMd5;
+    private final int calculateThreads;
+    private final boolean calculateCache;
+    private final int calculateCacheMaxEntries;
+    private final int tempFolderQuotaMB;
     @FSAConfigProperty
     private final boolean dockerScan;
     private final boolean showProgressBar;
@@ -75,10 +80,15 @@ public class AgentConfiguration {
                               @JsonProperty(ARCHIVE_INCLUDES_PATTERN_KEY) String[] archiveIncludes,
                               @JsonProperty(ARCHIVE_EXCLUDES_PATTERN_KEY) String[] archiveExcludes,
                               @JsonProperty(ARCHIVE_FAST_UNPACK_KEY) boolean archiveFastUnpack,
+                              @JsonProperty(ARCHIVE_STREAMING_KEY) boolean archiveStreaming,
                               @JsonProperty(FOLLOW_SYMBOLIC_LINKS) boolean followSymlinks,
                               @JsonProperty(PARTIAL_SHA1_MATCH_KEY) boolean partialSha1Match,
                               @JsonProperty(CALCULATE_HINTS) boolean calculateHints,
                               @JsonProperty(CALCULATE_MD5) boolean calculateMd5,
+                              @JsonProperty(CALCULATE_THREADS) int calculateThreads,
+                              @JsonProperty(CALCULATE_CACHE) boolean calculateCache,
+                              @JsonProperty(CALCULATE_CACHE_MAX_ENTRIES) int calculateCacheMaxEntries,
+                              @JsonProperty(TEMP_FOLDER_QUOTA_MB) int tempFolderQuotaMB,
                               @JsonProperty(SHOW_PROGRESS_BAR) boolean showProgressBar,
                               @JsonProperty(CASE_SENSITIVE_GLOB_PROPERTY_KEY) boolean globCaseSensitive,
                               @JsonProperty(SCAN_DOCKER_IMAGES) boolean dockerScan,
@@ -95,11 +105,16 @@ public class AgentConfiguration {
         this.archiveIncludes = archiveIncludes == null ? new String[0] : archiveIncludes;
         this.archiveExcludes = archiveExcludes == null ? new String[0] : archiveExcludes;
         this.archiveFastUnpack = archiveFastUnpack;
+        this.archiveStreaming = archiveStreaming;
         this.followSymlinks = followSymlinks;
         this.dockerScan = dockerScan;
         this.partialSha1Match = partialSha1Match;
         this.calculateHints = calculateHints;
         this.calculateMd5 = calculateMd5;
+        this.calculateThreads = calculateThreads;
+        this.calculateCache = calculateCache;
+        this.calculateCacheMaxEntries = calculateCacheMaxEntries;
+        this.tempFolderQuotaMB = tempFolderQuotaMB;
         this.showProgressBar = showProgressBar;
         this.globCaseSensitive = globCaseSensitive;
         this.error = error;
@@ -159,6 +174,11 @@ public class AgentConfiguration {
         return archiveFastUnpack;
     }
 
+    @JsonProperty(ARCHIVE_STREAMING_KEY)
+    public boolean isArchiveStreaming() {
+        return archiveStreaming;
+    }
+
     @JsonProperty(FOLLOW_SYMBOLIC_LINKS)
     public boolean isFollowSymlinks() {
         return followSymlinks;
@@ -179,6 +199,26 @@ public class AgentConfiguration {
         return calculateMd5;
     }
 
+    @JsonProperty(CALCULATE_THREADS)
+    public int getCalculateThreads() {
+        return calculateThreads;
+    }
+
+    @JsonProperty(CALCULATE_CACHE)
+    public boolean isCalculateCache() {
+        return calculateCache;
+    }
+
+    @JsonProperty(CALCULATE_CACHE_MAX_ENTRIES)
+    public int getCalculateCacheMaxEntries() {
+        return calculateCacheMaxEntries;
+    }
+
+    @JsonProperty(TEMP_FOLDER_QUOTA_MB)
+    public int getTempFolderQuotaMB() {
+        return tempFolderQuotaMB;
+    }
+
     @JsonProperty(DOCKER_INCLUDES_PATTERN_PROPERTY_KEY)
     public String[] getDockerIncludes() {
         return dockerIncludes;
@@ -14,6 +14,7 @@ public class RemoteDockerConfiguration {
     private boolean forcePull;
     private int maxPullImages;
     private boolean loginSudo;
+    private int pullThreads = 1;
 
     // Amazon ECR configurations
     private List<String> amazonRegistryIds;
@@ -86,6 +87,14 @@ public class RemoteDockerConfiguration {
         return loginSudo;
     }
 
+    public int getPullThreads() {
+        return pullThreads;
+    }
+
+    public void setPullThreads(int pullThreads) {
+        this.pullThreads = pullThreads;
+    }
+
     // ------------- Amazon methods -------------
 
     public List<String> getAmazonRegistryIds() {
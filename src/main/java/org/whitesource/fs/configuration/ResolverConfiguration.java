@@ -48,6 +48,8 @@ public class ResolverConfiguration {
             @JsonProperty(NPM_ACCESS_TOKEN) String npmAccessToken,
             @JsonProperty(NPM_IGNORE_NPM_LS_ERRORS) boolean npmIgnoreNpmLsErrors,
             @JsonProperty(NPM_YARN_PROJECT) boolean npmYarnProject,
+            @JsonProperty(NPM_STREAM_LS_JSON) boolean npmStreamLsJson,
+            @JsonProperty(NPM_RESOLVE_FROM_LOCK_FILE) boolean npmResolveFromLockFile,
 
             @JsonProperty(BOWER_RESOLVE_DEPENDENCIES) boolean bowerResolveDependencies,
             @JsonProperty(BOWER_RUN_PRE_STEP) boolean bowerRunPreStep,
@@ -67,6 +69,7 @@ public class ResolverConfiguration {
             @JsonProperty(MAVEN_IGNORE_SOURCE_FILES) boolean mavenIgnoreSourceFiles,
             @JsonProperty(MAVEN_RUN_PRE_STEP) boolean mavenRunPreStep,
             @JsonProperty(MAVEN_IGNORE_DEPENDENCY_TREE_ERRORS) boolean mavenIgnoreDependencyTreeErrors,
+            @JsonProperty(MAVEN_IN_PROCESS_RESOLUTION) boolean mavenInProcessResolution,
 
             @JsonProperty(PYTHON_RESOLVE_DEPENDENCIES) boolean pythonResolveDependencies,
             @JsonProperty(PYTHON_PIP_PATH) String pipPath,
@@ -94,6 +97,7 @@ public class ResolverConfiguration {
             @JsonProperty(GRADLE_RUN_PRE_STEP) boolean gradleRunPreStep,
             @JsonProperty(GRADLE_IGNORE_SCOPES) String[] gradleIgnoredScopes,
             @JsonProperty(GRADLE_LOCAL_REPOSITORY_PATH) String gradleLocalRepositoryPath,
+            @JsonProperty(GRADLE_SINGLE_INVOCATION) boolean gradleSingleInvocation,
 
             @JsonProperty(PAKET_RESOLVE_DEPENDENCIES) boolean paketResolveDependencies,
             @JsonProperty(PAKET_IGNORED_GROUPS) String[] paketIgnoredScopes,
@@ -125,6 +129,7 @@ public class ResolverConfiguration {
             @JsonProperty(SBT_IGNORE_SOURCE_FILES) boolean sbtIgnoreSourceFiles,
 
             @JsonProperty(HTML_RESOLVE_DEPENDENCIES) boolean htmlResolveDependencies,
+            @JsonProperty(HTML_STREAMING_PARSE) boolean htmlStreamingParse,
             @JsonProperty(COCOAPODS_RESOLVE_DEPENDENCIES) boolean cocoapodsResolveDependencies,
             @JsonProperty(COCOAPODS_RUN_PRE_STEP) boolean cocoapodsRunPreStep,
             @JsonProperty(COCOAPODS_IGNORE_SOURCE_FILES) boolean cocoapodsIgnoreSourceFiles,
@@ -132,6 +137,8 @@ public class ResolverConfiguration {
             @JsonProperty(HEX_RUN_PRE_STEP) boolean hexRunPreStep,
             @JsonProperty(HEX_IGNORE_SOURCE_FILES) boolean hexIgnoreSourceFiles,
             @JsonProperty(HEX_AGGREGATE_MODULES) boolean hexAggregateModules,
+            @JsonProperty(RESOLVE_DEPENDENCIES_THREADS) int resolveDependenciesThreads,
+            @JsonProperty(RESOLVE_DEPENDENCIES_INCREMENTAL) boolean resolveDependenciesIncremental,
             @JsonProperty("addSha1") boolean addSha1) {
         this.npmRunPreStep = npmRunPreStep;
         this.npmIgnoreScripts = npmIgnoreScripts;
@@ -141,6 +148,8 @@ public class ResolverConfiguration {
         this.npmAccessToken = npmAccessToken;
         this.npmIgnoreNpmLsErrors = npmIgnoreNpmLsErrors;
         this.npmYarnProject = npmYarnProject;
+        this.npmStreamLsJson = npmStreamLsJson;
+        this.npmResolveFromLockFile = npmResolveFromLockFile;
         this.npmIgnoreSourceFiles = npmIgnoreSourceFiles;
 
         this.bowerResolveDependencies = bowerResolveDependencies;
@@ -161,6 +170,7 @@ public class ResolverConfiguration {
         this.mavenIgnoreSourceFiles = mavenIgnoreSourceFiles;
         this.mavenRunPreStep = mavenRunPreStep;
         this.mavenIgnoreDependencyTreeErrors = mavenIgnoreDependencyTreeErrors;
+        this.mavenInProcessResolution = mavenInProcessResolution;
 
         this.pythonResolveDependencies = pythonResolveDependencies;
         this.pipPath = pipPath;
@@ -187,6 +197,7 @@ public class ResolverConfiguration {
         this.gradleRunPreStep = gradleRunPreStep;
         this.gradleIgnoredScopes = gradleIgnoredScopes;
         this.gradleLocalRepositoryPath = gradleLocalRepositoryPath;
+        this.gradleSingleInvocation = gradleSingleInvocation;
 
         this.paketResolveDependencies = paketResolveDependencies;
         this.paketIgnoredScopes = paketIgnoredScopes;
@@ -220,6 +231,7 @@ public class ResolverConfiguration {
         this.sbtIgnoreSourceFiles = sbtIgnoreSourceFiles;
 
         this.htmlResolveDependencies = htmlResolveDependencies;
+        this.htmlStreamingParse = htmlStreamingParse;
 
         this.cocoapodsResolveDependencies = cocoapodsResolveDependencies;
         this.cocoapodsRunPreStep = cocoapodsRunPreStep;
@@ -230,6 +242,8 @@ public class ResolverConfiguration {
         this.hexIgnoreSourceFiles = hexIgnoreSourceFiles;
         this.hexAggregateModules = hexAggregateModules;
 
+        this.resolveDependenciesThreads = resolveDependenciesThreads;
+        this.resolveDependenciesIncremental = resolveDependenciesIncremental;
         this.addSha1 = addSha1;
     }
 
@@ -256,6 +270,10 @@ public class ResolverConfiguration {
     @FSAConfigProperty
     private boolean npmYarnProject;
     @FSAConfigProperty
+    private boolean npmStreamLsJson;
+    @FSAConfigProperty
+    private boolean npmResolveFromLockFile;
+    @FSAConfigProperty
     private boolean npmIgnoreSourceFiles;
     private String npmAccessToken;
 
@@ -293,6 +311,8 @@ public class ResolverConfiguration {
     private boolean mavenRunPreStep;
     @FSAConfigProperty
     private boolean mavenIgnoreDependencyTreeErrors;
+    @FSAConfigProperty
+    private boolean mavenInProcessResolution;
 
     @FSAConfigProperty
     private boolean pythonResolveDependencies;
@@ -339,6 +359,8 @@ public class ResolverConfiguration {
     private boolean gradleRunPreStep;
     @FSAConfigProperty
     private String[] gradleIgnoredScopes;
+    @FSAConfigProperty
+    private boolean gradleSingleInvocation;
 
     @FSAConfigProperty
     private boolean paketResolveDependencies;
@@ -395,6 +417,8 @@ public class ResolverConfiguration {
 
     @FSAConfigProperty
     private boolean htmlResolveDependencies;
+    @FSAConfigProperty
+    private boolean htmlStreamingParse;
 
     @FSAConfigProperty
     private boolean cocoapodsResolveDependencies;
@@ -412,6 +436,11 @@ public class ResolverConfiguration {
     @FSAConfigProperty
     private boolean hexIgnoreSourceFiles;
 
+    @FSAConfigProperty
+    private int resolveDependenciesThreads;
+    @FSAConfigProperty
+    private boolean resolveDependenciesIncremental;
+
     private boolean addSha1;
 
     /* --- Public getters --- */
@@ -461,6 +490,16 @@ public class ResolverConfiguration {
         return npmYarnProject;
     }
 
+    @JsonProperty(NPM_STREAM_LS_JSON)
+    public boolean isNpmStreamLsJson() {
+        return npmStreamLsJson;
+    }
+
+    @JsonProperty(NPM_RESOLVE_FROM_LOCK_FILE)
+    public boolean isNpmResolveFromLockFile() {
+        return npmResolveFromLockFile;
+    }
+
     @JsonProperty(BOWER_RESOLVE_DEPENDENCIES)
     public boolean isBowerResolveDependencies() {
         return bowerResolveDependencies;
@@ -541,6 +580,11 @@ public class ResolverConfiguration {
         return mavenIgnoreDependencyTreeErrors;
     }
 
+    @JsonProperty(MAVEN_IN_PROCESS_RESOLUTION)
+    public boolean isMavenInProcessResolution() {
+        return mavenInProcessResolution;
+    }
+
     @JsonProperty(IGNORE_SOURCE_FILES)
     public boolean isIgnoreSourceFiles() {
         return ignoreSourceFiles;
@@ -655,6 +699,11 @@ public class ResolverConfiguration {
         return gradleLocalRepositoryPath;
     }
 
+    @JsonProperty(GRADLE_SINGLE_INVOCATION)
+    public boolean isGradleSingleInvocation() {
+        return gradleSingleInvocation;
+    }
+
     @JsonProperty(PAKET_RESOLVE_DEPENDENCIES)
     public boolean isPaketResolveDependencies() {
         return paketResolveDependencies;
@@ -780,6 +829,11 @@ public class ResolverConfiguration {
         return htmlResolveDependencies;
     }
 
+    @JsonProperty(HTML_STREAMING_PARSE)
+    public boolean isHtmlStreamingParse() {
+        return htmlStreamingParse;
+    }
+
     @JsonProperty(COCOAPODS_RESOLVE_DEPENDENCIES)
     public boolean isCocoapodsResolveDependencies() {
         return cocoapodsResolveDependencies;
@@ -819,6 +873,16 @@ public class ResolverConfiguration {
         return this.gradleIgnoredScopes;
     }
 
+    @JsonProperty(RESOLVE_DEPENDENCIES_THREADS)
+    public int getResolveDependenciesThreads() {
+        return resolveDependenciesThreads;
+    }
+
+    @JsonProperty(RESOLVE_DEPENDENCIES_INCREMENTAL)
+    public boolean isResolveDependenciesIncremental() {
+        return resolveDependenciesIncremental;
+    }
+
     public boolean isAddSha1() {
         return addSha1;
     }
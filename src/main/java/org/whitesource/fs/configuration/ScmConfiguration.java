@@ -27,6 +27,11 @@ public class ScmConfiguration {
 
     /* --- Constructors --- */
 
+    public ScmConfiguration(String type, String user, String pass, String ppk, String url, String branch, String tag,
+                            String repositoriesPath, boolean npmInstall, int npmInstallTimeoutMinutes) {
+        this(type, user, pass, ppk, url, branch, tag, repositoriesPath, npmInstall, npmInstallTimeoutMinutes, null, false, 1);
+    }
+
     @JsonCreator
     public ScmConfiguration(
             @JsonProperty(SCM_TYPE_PROPERTY_KEY) String type,
@@ -38,7 +43,10 @@ public class ScmConfiguration {
             @JsonProperty(SCM_TAG_PROPERTY_KEY) String tag,
             @JsonProperty(SCM_REPOSITORIES_FILE) String repositoriesPath,
             @JsonProperty(SCM_NPM_INSTALL) boolean npmInstall,
-            @JsonProperty(SCM_NPM_INSTALL_TIMEOUT_MINUTES) int npmInstallTimeoutMinutes) {
+            @JsonProperty(SCM_NPM_INSTALL_TIMEOUT_MINUTES) int npmInstallTimeoutMinutes,
+            @JsonProperty(SCM_MIRROR_CACHE_PATH) String mirrorCachePath,
+            @JsonProperty(SCM_SPARSE_CHECKOUT) boolean sparseCheckout,
+            @JsonProperty(SCM_CLONE_THREADS) int cloneThreads) {
         this.type = type;
         this.user = user;
         this.pass = pass;
@@ -51,6 +59,9 @@ public class ScmConfiguration {
         this.repositoriesPath = repositoriesPath;
         this.npmInstall = npmInstall;
         this.npmInstallTimeoutMinutes = npmInstallTimeoutMinutes;
+        this.mirrorCachePath = mirrorCachePath;
+        this.sparseCheckout = sparseCheckout;
+        this.cloneThreads = cloneThreads;
     }
 
     /* --- Members --- */
@@ -66,6 +77,9 @@ public class ScmConfiguration {
     private String repositoriesPath;
     private boolean npmInstall;
     private int npmInstallTimeoutMinutes;
+    private String mirrorCachePath;
+    private boolean sparseCheckout;
+    private int cloneThreads;
 
     /* --- Properties --- */
 
@@ -123,4 +137,19 @@ public class ScmConfiguration {
     public int getNpmInstallTimeoutMinutes() {
         return npmInstallTimeoutMinutes;
     }
+
+    @JsonProperty(SCM_MIRROR_CACHE_PATH)
+    public String getMirrorCachePath() {
+        return mirrorCachePath;
+    }
+
+    @JsonProperty(SCM_SPARSE_CHECKOUT)
+    public boolean isSparseCheckout() {
+        return sparseCheckout;
+    }
+
+    @JsonProperty(SCM_CLONE_THREADS)
+    public int getCloneThreads() {
+        return cloneThreads;
+    }
 }
\ No newline at end of file
@@ -3,21 +3,39 @@ package org.whitesource.scm;
 import com.jcraft.jsch.JSch;
 import com.jcraft.jsch.JSchException;
 import com.jcraft.jsch.Session;
+import org.apache.commons.codec.digest.DigestUtils;
 import org.apache.commons.lang.StringUtils;
-import org.eclipse.jgit.api.CloneCommand;
+import org.apache.tools.ant.types.selectors.SelectorUtils;
 import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.api.TransportCommand;
 import org.eclipse.jgit.api.TransportConfigCallback;
 import org.eclipse.jgit.api.errors.GitAPIException;
 import org.eclipse.jgit.dircache.InvalidPathException;
+import org.eclipse.jgit.errors.RevisionSyntaxException;
+import org.eclipse.jgit.lib.Constants;
+import org.eclipse.jgit.lib.FileMode;
+import org.eclipse.jgit.lib.ObjectId;
+import org.eclipse.jgit.lib.Repository;
+import org.eclipse.jgit.revwalk.RevCommit;
+import org.eclipse.jgit.revwalk.RevWalk;
 import org.eclipse.jgit.transport.*;
+import org.eclipse.jgit.treewalk.TreeWalk;
 import org.eclipse.jgit.util.FS;
 import org.slf4j.Logger;
 import org.whitesource.agent.utils.LoggerFactory;
 
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Connector for Git repositories.
+ * <p>
+ * Only the commits of the scanned branch or tag are fetched, and its files are written from the object store without
+ * building an index. When a mirror cache is set, the objects are kept in a bare repository per url between scans, so
+ * the next scans only fetch the new commits.
  *
  * @author tom.shapira
  */
@@ -27,6 +45,17 @@ public class GitConnector extends ScmConnector {
 
     private Logger logger = LoggerFactory.getLogger(GitConnector.class);
 
+    private static final String DOT_GIT = ".git";
+    private static final String PLUS = "+";
+    private static final String COLON = ":";
+    private static final String DASH = "-";
+    private static final String PEEL_COMMIT = "^{commit}";
+    private static final String PARENT_FOLDER = "..";
+    private static final int MIRROR_KEY_LENGTH = 12;
+
+    // scans of the same repository in this process update its mirror one at a time
+    private static final ConcurrentHashMap<String, Object> mirrorLocks = new ConcurrentHashMap<>();
+
     /* --- Constructors --- */
 
     public GitConnector(String privateKey, String username, String password, String url, String branch, String tag) {
@@ -37,72 +66,29 @@ public class GitConnector extends ScmConnector {
 
     @Override
     protected File cloneRepository(File dest) {
-        Git git = null;
+        String refName = getRefName();
         try {
-            // set branch name
-            String branchName = MASTER;;
-            String branch = getBranch();
-            if (StringUtils.isNotBlank(branch)) {
-                branchName = branch;
-            }
-            String tag = getTag();
-            if (StringUtils.isNotBlank(tag)) {
-                branchName = tag;
-            }
-
-            CloneCommand cloneCommand = Git.cloneRepository();
-
-            // use private key if available
-            final String privateKey = getPrivateKey();
-            if (StringUtils.isNotBlank(privateKey)) {
-                final SshSessionFactory sshSessionFactory = new JschConfigSessionFactory() {
-                    @Override
-                    protected void configure(OpenSshConfig.Host host, Session session) {
-                        // set password if available
-                        String password = getPassword();
-                        if (StringUtils.isNotBlank(password)) {
-                            session.setPassword(password);
-                        }
-                    }
-
-                    @Override
-                    protected JSch createDefaultJSch(FS fs) throws JSchException {
-                        JSch defaultJSch = super.createDefaultJSch(fs);
-                        defaultJSch.addIdentity(privateKey);
-                        return defaultJSch;
-                    }
-                };
-                cloneCommand.setTransportConfigCallback(new TransportConfigCallback() {
-                    @Override
-                    public void configure(Transport transport) {
-                        if( transport instanceof SshTransport ) {
-                            SshTransport sshTransport = (SshTransport) transport;
-                            sshTransport.setSshSessionFactory(sshSessionFactory);
-                        } else {
-                            logger.warn("you are not using ssh protocol while using scm.ppk");
-                        }
+            if (StringUtils.isNotBlank(getMirrorCachePath())) {
+                File mirror = getMirrorDirectory();
+                synchronized (mirrorLocks.computeIfAbsent(mirror.getAbsolutePath(), key -> new Object())) {
+                    try (Git git = openMirror(mirror)) {
+                        logger.debug("Updating the mirror {} of {}", mirror.getPath(), getUrl());
+                        fetch(git, refName);
+                        checkout(git.getRepository(), refName, dest);
                     }
-                });
-                cloneCommand.setCredentialsProvider(new passphraseCredentialsProvider(getPassword()));
+                }
             } else {
-                if (getUrlName() != null && getPassword() != null) {
-                    cloneCommand.setCredentialsProvider(new UsernamePasswordCredentialsProvider(getUsername(), getPassword()));
+                try (Git git = Git.init().setDirectory(dest).call()) {
+                    fetch(git, refName);
+                    checkout(git.getRepository(), refName, dest);
                 }
             }
-
-            // clone repository
-            git = cloneCommand.setURI(getUrl())
-                    .setBranch(branchName)
-                    .setDirectory(dest)
-                    .call();
         } catch (InvalidPathException e) {
             logger.warn("Error cloning git repository: {}", e.getMessage());
         } catch (GitAPIException e) {
             logger.warn("Error processing git repository: {}", e.getMessage());
-        } finally {
-            if (git != null) {
-                git.close();
-            }
+        } catch (IOException | RevisionSyntaxException e) {
+            logger.warn("Error checking out {} of git repository: {}", refName, e.getMessage());
         }
         return dest;
     }
@@ -111,4 +97,130 @@ public class GitConnector extends ScmConnector {
     public ScmType getType() {
         return ScmType.GIT;
     }
+
+    /* --- Private methods --- */
+
+    // the full name of the scanned ref, the tag if any, otherwise the branch (master by default)
+    private String getRefName() {
+        String tag = getTag();
+        if (StringUtils.isNotBlank(tag)) {
+            return tag.startsWith(Constants.R_REFS) ? tag : Constants.R_TAGS + tag;
+        }
+        String branch = StringUtils.isNotBlank(getBranch()) ? getBranch() : MASTER;
+        return branch.startsWith(Constants.R_REFS) ? branch : Constants.R_HEADS + branch;
+    }
+
+    private File getMirrorDirectory() {
+        String key = DigestUtils.sha1Hex(getUrl()).substring(0, MIRROR_KEY_LENGTH);
+        String urlName = getUrlName().endsWith(DOT_GIT) ? getUrlName() : getUrlName() + DOT_GIT;
+        return new File(getMirrorCachePath(), key + DASH + urlName);
+    }
+
+    private Git openMirror(File mirror) throws IOException, GitAPIException {
+        if (new File(mirror, Constants.HEAD).isFile()) {
+            return Git.open(mirror);
+        }
+        logger.info("Creating a mirror of {} in {}", getUrl(), mirror.getPath());
+        return Git.init().setBare(true).setDirectory(mirror).call();
+    }
+
+    // fetches the commits of a single ref, jgit does not support shallow fetches so its whole history is fetched once
+    private void fetch(Git git, String refName) throws GitAPIException {
+        RefSpec refSpec = new RefSpec(PLUS + refName + COLON + refName);
+        configureTransport(git.fetch().setRemote(getUrl()).setRefSpecs(refSpec).setTagOpt(TagOpt.NO_TAGS)).call();
+    }
+
+    // writes the files of the ref from the object store, only those matching the sparse checkout includes if set
+    private void checkout(Repository repository, String refName, File dest) throws IOException {
+        ObjectId commitId = repository.resolve(refName + PEEL_COMMIT);
+        if (commitId == null) {
+            throw new IOException(refName + " not found");
+        }
+        String[] includes = getSparseCheckoutIncludes();
+        int files = 0;
+        try (RevWalk revWalk = new RevWalk(repository); TreeWalk treeWalk = new TreeWalk(repository)) {
+            RevCommit commit = revWalk.parseCommit(commitId);
+            treeWalk.addTree(commit.getTree());
+            treeWalk.setRecursive(true);
+            while (treeWalk.next()) {
+                String path = treeWalk.getPathString();
+                FileMode fileMode = treeWalk.getFileMode(0);
+                if (!isIncluded(path, includes) || (fileMode != FileMode.REGULAR_FILE && fileMode != FileMode.EXECUTABLE_FILE)) {
+                    // submodules and symbolic links are not checked out
+                    continue;
+                }
+                File file = new File(dest, path);
+                File parent = file.getParentFile();
+                if (!parent.isDirectory() && !parent.mkdirs()) {
+                    throw new IOException("Unable to create directory " + parent.getPath());
+                }
+                try (OutputStream out = new FileOutputStream(file)) {
+                    repository.open(treeWalk.getObjectId(0)).copyTo(out);
+                }
+                if (fileMode == FileMode.EXECUTABLE_FILE) {
+                    file.setExecutable(true);
+                }
+                files++;
+            }
+        }
+        logger.debug("Checked out {} files of {} ({})", files, refName, commitId.name());
+    }
+
+    private boolean isIncluded(String path, String[] includes) {
+        for (String segment : path.split(org.whitesource.agent.Constants.FORWARD_SLASH)) {
+            if (segment.equals(PARENT_FOLDER)) {
+                return false;
+            }
+        }
+        if (includes == null || includes.length == 0) {
+            return true;
+        }
+        for (String include : includes) {
+            if (SelectorUtils.matchPath(include, path)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private <T extends TransportCommand<?, ?>> T configureTransport(T command) {
+        // use private key if available
+        final String privateKey = getPrivateKey();
+        if (StringUtils.isNotBlank(privateKey)) {
+            final SshSessionFactory sshSessionFactory = new JschConfigSessionFactory() {
+                @Override
+                protected void configure(OpenSshConfig.Host host, Session session) {
+                    // set password if available
+                    String password = getPassword();
+                    if (StringUtils.isNotBlank(password)) {
+                        session.setPassword(password);
+                    }
+                }
+
+                @Override
+                protected JSch createDefaultJSch(FS fs) throws JSchException {
+                    JSch defaultJSch = super.createDefaultJSch(fs);
+                    defaultJSch.addIdentity(privateKey);
+                    return defaultJSch;
+                }
+            };
+            command.setTransportConfigCallback(new TransportConfigCallback() {
+                @Override
+                public void configure(Transport transport) {
+                    if( transport instanceof SshTransport ) {
+                        SshTransport sshTransport = (SshTransport) transport;
+                        sshTransport.setSshSessionFactory(sshSessionFactory);
+                    } else {
+                        logger.warn("you are not using ssh protocol while using scm.ppk");
+                    }
+                }
+            });
+            command.setCredentialsProvider(new passphraseCredentialsProvider(getPassword()));
+        } else {
+            if (getUrlName() != null && getPassword() != null) {
+                command.setCredentialsProvider(new UsernamePasswordCredentialsProvider(getUsername(), getPassword()));
+            }
+        }
+        return command;
+    }
 }
@@ -8,7 +8,10 @@ import org.whitesource.agent.utils.FilesUtils;
 import org.whitesource.agent.utils.LoggerFactory;
 
 import java.io.File;
-import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicInteger;
 
 /**
  * This class holds all components for connecting to repositories using git/svm/mercurial protocol.
@@ -24,6 +27,9 @@ public abstract class ScmConnector {
 
     public static final String MASTER = "master";
 
+    // tells apart the clone folders of repositories with the same name and branch
+    private static final AtomicInteger cloneSequence = new AtomicInteger();
+
     /* --- Members --- */
 
     private final String username;
@@ -33,6 +39,8 @@ public abstract class ScmConnector {
     private final String tag;
     private final String privateKey;
     private File cloneDirectory;
+    private String mirrorCachePath;
+    private String[] sparseCheckoutIncludes;
 
     /* --- Constructors --- */
 
@@ -85,7 +93,7 @@ public abstract class ScmConnector {
     public File cloneRepository() {
         String scmTempFolder = new FilesUtils().createTmpFolder(false, TempFolders.UNIQUE_SCM_TEMP_FOLDER);
         cloneDirectory = new File(scmTempFolder, getType().toString().toLowerCase() + Constants.UNDERSCORE +
-                getUrlName() + Constants.UNDERSCORE + getBranch());
+                getUrlName() + Constants.UNDERSCORE + getBranch() + Constants.UNDERSCORE + cloneSequence.incrementAndGet());
         FilesUtils.deleteDirectory(cloneDirectory); // delete just in case it's not empty
 
         logger.info("Cloning repository {} ...this may take a few minutes", getUrl());
@@ -93,8 +101,13 @@ public abstract class ScmConnector {
         return branchDirectory;
     }
 
+    /**
+     * Deletes the folder of the last clone of this repository, the clones of the other repositories are kept.
+     */
     public void deleteCloneDirectory() {
-        new TempFolders().deleteTempFoldersHelper(Paths.get(System.getProperty("java.io.tmpdir"), TempFolders.UNIQUE_SCM_TEMP_FOLDER).toString());
+        if (cloneDirectory != null) {
+            FilesUtils.deleteDirectory(cloneDirectory);
+        }
     }
 
     /* --- Abstract methods --- */
@@ -144,4 +157,41 @@ public abstract class ScmConnector {
     public String getPrivateKey() {
         return privateKey;
     }
+
+    public String getMirrorCachePath() {
+        return mirrorCachePath;
+    }
+
+    /**
+     * @param mirrorCachePath the folder keeping a local mirror of each repository between scans, null to clone from scratch
+     */
+    public void setMirrorCachePath(String mirrorCachePath) {
+        this.mirrorCachePath = mirrorCachePath;
+    }
+
+    public String[] getSparseCheckoutIncludes() {
+        return sparseCheckoutIncludes;
+    }
+
+    /**
+     * @param sparseCheckoutIncludes the patterns of the files to check out, null to check out all the files
+     */
+    public void setSparseCheckoutIncludes(String[] sparseCheckoutIncludes) {
+        this.sparseCheckoutIncludes = sparseCheckoutIncludes;
+    }
+
+    /**
+     * @param sparseCheckoutIncludes the patterns of the files to check out, null to check out all the files
+     * @param manifestIncludes       the patterns of the manifest files of the enabled resolvers, checked out as well so the
+     *                               resolvers still find them when the includes do not match them
+     */
+    public void setSparseCheckoutIncludes(String[] sparseCheckoutIncludes, String[] manifestIncludes) {
+        if (sparseCheckoutIncludes == null || sparseCheckoutIncludes.length == 0) {
+            setSparseCheckoutIncludes(sparseCheckoutIncludes);
+            return;
+        }
+        Set<String> includes = new LinkedHashSet<>(Arrays.asList(sparseCheckoutIncludes));
+        includes.addAll(Arrays.asList(manifestIncludes));
+        setSparseCheckoutIncludes(includes.toArray(new String[includes.size()]));
+    }
 }
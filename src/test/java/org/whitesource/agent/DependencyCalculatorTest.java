@@ -0,0 +1,75 @@
+package org.whitesource.agent;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.whitesource.agent.api.model.DependencyInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+public class DependencyCalculatorTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldCalculateInParallelInTheOrderOfTheFiles() throws IOException {
+        File folder = temporaryFolder.newFolder("files");
+        List<String> fileNames = new ArrayList<>();
+        for (int i = 0; i < 40; i++) {
+            String fileName = "file" + i + ".txt";
+            FileUtils.writeStringToFile(new File(folder, fileName), "content of file " + i, StandardCharsets.UTF_8);
+            fileNames.add(fileName);
+        }
+        // a file failing with an unexpected exception is skipped without dropping the others
+        List<String> withFailure = new ArrayList<>(fileNames);
+        withFailure.add(20, null);
+        Map<File, Collection<String>> fileMap = Collections.singletonMap(folder, withFailure);
+
+        Collection<DependencyInfo> parallel = new DependencyCalculator(false, 4)
+                .createDependencies(false, withFailure.size(), fileMap, Collections.emptyList(), false);
+        Collection<DependencyInfo> sequential = new DependencyCalculator(false)
+                .createDependencies(false, withFailure.size(), fileMap, Collections.emptyList(), false);
+
+        Assert.assertEquals(fileNames.size(), parallel.size());
+        List<String> artifactIds = new ArrayList<>();
+        List<String> sha1s = new ArrayList<>();
+        for (DependencyInfo dependencyInfo : parallel) {
+            artifactIds.add(dependencyInfo.getArtifactId());
+            sha1s.add(dependencyInfo.getSha1());
+        }
+        Assert.assertEquals(fileNames, artifactIds);
+        List<String> sequentialSha1s = new ArrayList<>();
+        for (DependencyInfo dependencyInfo : sequential) {
+            sequentialSha1s.add(dependencyInfo.getSha1());
+        }
+        Assert.assertEquals(sequentialSha1s, sha1s);
+    }
+
+    @Test
+    public void shouldFailAnInterruptedCalculation() throws IOException {
+        File folder = temporaryFolder.newFolder("files");
+        List<String> fileNames = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            String fileName = "file" + i + ".txt";
+            FileUtils.writeStringToFile(new File(folder, fileName), "content of file " + i, StandardCharsets.UTF_8);
+            fileNames.add(fileName);
+        }
+        Map<File, Collection<String>> fileMap = Collections.singletonMap(folder, fileNames);
+
+        Thread.currentThread().interrupt();
+        try {
+            new DependencyCalculator(false, 4).createDependencies(false, fileNames.size(), fileMap, Collections.emptyList(), false);
+            Assert.fail("an interrupted calculation must not return a partial result");
+        } catch (IllegalStateException e) {
+            Assert.assertTrue(Thread.currentThread().isInterrupted());
+        } finally {
+            Thread.interrupted();
+        }
+    }
+}
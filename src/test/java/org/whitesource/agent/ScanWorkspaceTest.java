@@ -0,0 +1,98 @@
+package org.whitesource.agent;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.whitesource.agent.utils.ChecksumCache;
+import org.whitesource.agent.utils.FilesUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ScanWorkspaceTest {
+
+    @Test
+    public void shouldIsolateTheTempFoldersOfEachScan() throws InterruptedException {
+        File defaultRoot = ScanWorkspace.current().getRoot();
+        ScanWorkspace first = ScanWorkspace.open(0);
+        AtomicReference<ScanWorkspace> second = new AtomicReference<>();
+        AtomicReference<String> secondFolder = new AtomicReference<>();
+        Thread thread = new Thread(() -> {
+            second.set(ScanWorkspace.open(0));
+            secondFolder.set(new FilesUtils().createTmpFolder(false, TempFolders.UNIQUE_HTML_TEMP_FOLDER));
+        });
+        thread.start();
+        thread.join();
+        try {
+            String firstFolder = new FilesUtils().createTmpFolder(false, TempFolders.UNIQUE_HTML_TEMP_FOLDER);
+            Assert.assertNotEquals(first.getRoot(), second.get().getRoot());
+            Assert.assertTrue(firstFolder.startsWith(first.getRoot().getPath()));
+            Assert.assertTrue(secondFolder.get().startsWith(second.get().getRoot().getPath()));
+
+            // the threads started by a scan use its workspace
+            AtomicReference<ScanWorkspace> inherited = new AtomicReference<>();
+            Thread child = new Thread(() -> inherited.set(ScanWorkspace.current()));
+            child.start();
+            child.join();
+            Assert.assertSame(first, inherited.get());
+        } finally {
+            first.close(false);
+            second.get().close(true);
+            ScanWorkspace.awaitCleanup(10000);
+        }
+        Assert.assertFalse(first.getRoot().exists());
+        Assert.assertFalse(second.get().getRoot().exists());
+        Assert.assertEquals(defaultRoot, ScanWorkspace.current().getRoot());
+    }
+
+    @Test
+    public void shouldKeepTheCachesOfEachScan() throws InterruptedException {
+        ScanWorkspace first = ScanWorkspace.open(0);
+        AtomicReference<ChecksumCache> secondCache = new AtomicReference<>();
+        try {
+            ChecksumCache firstCache = ChecksumCache.initialize(new File(first.getRoot(), ChecksumCache.CACHE_FILE_NAME), 10);
+            // a scan started while the first one runs does not replace its cache
+            Thread thread = new Thread(() -> {
+                ScanWorkspace second = ScanWorkspace.open(0);
+                try {
+                    ChecksumCache.reset();
+                    secondCache.set(ChecksumCache.getInstance());
+                } finally {
+                    second.close(false);
+                }
+            });
+            thread.start();
+            thread.join();
+            Assert.assertSame(firstCache, ChecksumCache.getInstance());
+            Assert.assertTrue(ChecksumCache.getInstance().isEnabled());
+            Assert.assertFalse(secondCache.get().isEnabled());
+        } finally {
+            first.close(false);
+        }
+        Assert.assertFalse(ChecksumCache.getInstance().isEnabled());
+    }
+
+    @Test
+    public void shouldReportPeakUsageAndQuota() throws IOException {
+        ScanWorkspace workspace = ScanWorkspace.open(1);
+        try {
+            File folder = new File(workspace.getFolder(TempFolders.UNIQUE_PYTHON_TEMP_FOLDER));
+            Assert.assertTrue(folder.mkdirs());
+            File file = new File(folder, "package.whl");
+            try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw")) {
+                randomAccessFile.setLength(2 * 1024 * 1024);
+            }
+            Assert.assertEquals(2 * 1024 * 1024, workspace.sample());
+            Assert.assertTrue(workspace.isQuotaExceeded());
+
+            Assert.assertTrue(file.delete());
+            Assert.assertEquals(0, workspace.sample());
+            Assert.assertEquals(2 * 1024 * 1024, workspace.getPeakBytes());
+        } finally {
+            workspace.close(false);
+        }
+        Assert.assertFalse(workspace.getRoot().exists());
+        Assert.assertFalse(ScanWorkspace.current().isQuotaExceeded());
+    }
+}
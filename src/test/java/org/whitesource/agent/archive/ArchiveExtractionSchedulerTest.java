@@ -0,0 +1,65 @@
+package org.whitesource.agent.archive;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ArchiveExtractionSchedulerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldWaitForTheRunningExtractionsWhenInterrupted() throws Exception {
+        File archive = temporaryFolder.newFile("archive.zip");
+        ArchiveExtractionScheduler scheduler = new ArchiveExtractionScheduler(1, temporaryFolder.getRoot());
+        CountDownLatch started = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        AtomicBoolean runningDone = new AtomicBoolean();
+        AtomicInteger queuedRuns = new AtomicInteger();
+        scheduler.submit(archive.getPath(), () -> {
+            started.countDown();
+            try {
+                release.await();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            runningDone.set(true);
+        });
+        for (int i = 0; i < 5; i++) {
+            scheduler.submit(archive.getPath(), queuedRuns::incrementAndGet);
+        }
+        Assert.assertTrue(started.await(10, TimeUnit.SECONDS));
+
+        AtomicBoolean returnedBeforeRelease = new AtomicBoolean();
+        AtomicBoolean interruptRestored = new AtomicBoolean();
+        Thread waiter = new Thread(() -> {
+            scheduler.awaitCompletion();
+            returnedBeforeRelease.set(!runningDone.get());
+            interruptRestored.set(Thread.currentThread().isInterrupted());
+        });
+        waiter.start();
+        waiter.interrupt();
+        waiter.join(500);
+        Assert.assertTrue(waiter.isAlive());
+
+        release.countDown();
+        waiter.join(10000);
+        Assert.assertFalse(waiter.isAlive());
+        Assert.assertFalse(returnedBeforeRelease.get());
+        Assert.assertTrue(interruptRestored.get());
+        Assert.assertEquals(0, queuedRuns.get());
+
+        // the scheduler is reused by the next scan
+        scheduler.submit(archive.getPath(), queuedRuns::incrementAndGet);
+        scheduler.awaitCompletion();
+        Assert.assertEquals(1, queuedRuns.get());
+    }
+}
@@ -2,7 +2,9 @@ package org.whitesource.agent.archive;
 
 import org.junit.Assert;
 import org.junit.Ignore;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.whitesource.agent.Constants;
 import org.whitesource.agent.dependency.resolver.npm.TestHelper;
 import org.whitesource.agent.utils.FilesScanner;
@@ -11,15 +13,41 @@ import org.whitesource.agent.utils.Pair;
 import java.io.File;
 import java.io.IOException;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
-import java.util.ArrayList;
-import java.util.HashMap;
-import java.util.List;
-import java.util.Map;
+import java.util.*;
 import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public class ArchiveExtractorTest {
 
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldExtractSameFilesWithFastUnpack() throws IOException {
+        Path baseDir = folder.newFolder("app").toPath();
+        Files.createDirectories(baseDir.resolve("lib"));
+        Map<String, byte[]> library = new LinkedHashMap<>();
+        library.put("inner/inner.jar", ArchiveTestUtils.zip(Collections.singletonMap("deep.js", "deep".getBytes())));
+        library.put("library.js", "library".getBytes());
+        Map<String, byte[]> application = new LinkedHashMap<>();
+        application.put("WEB-INF/lib/library.jar", ArchiveTestUtils.zip(library));
+        application.put("WEB-INF/lib/library.zip", ArchiveTestUtils.zip(library));
+        application.put("index.js", "index".getBytes());
+        Files.write(baseDir.resolve("lib/application.war"), ArchiveTestUtils.zip(application));
+        Files.write(baseDir.resolve("library.zip"), ArchiveTestUtils.zip(library));
+
+        for (int depth = 1; depth <= 4; depth++) {
+            String unpackFolder = new ArchiveExtractor(new String[]{""}, new String[0], new String[0], false)
+                    .extractArchives(baseDir.toString(), depth, new ArrayList<>());
+            String fastUnpackFolder = new ArchiveExtractor(new String[]{""}, new String[0], new String[0], true)
+                    .extractArchives(baseDir.toString(), depth, new ArrayList<>());
+            Assert.assertEquals(getExtractedFiles(unpackFolder), getExtractedFiles(fastUnpackFolder));
+        }
+    }
+
     @Ignore
     @Test
     public void shouldNotUnpackExcludes() {
@@ -129,4 +157,13 @@ public class ArchiveExtractorTest {
         String unzipFolder = archiveExtractor.extractArchives(scannerBaseDir, archiveExtractionDepth, new ArrayList<>());
         return unzipFolder;
     }
-}
\ No newline at end of file
+
+    private Set<String> getExtractedFiles(String unpackFolder) throws IOException {
+        Path root = Paths.get(unpackFolder);
+        try (Stream<Path> files = Files.walk(root)) {
+            return files.filter(Files::isRegularFile)
+                    .map(file -> root.relativize(file).toString())
+                    .collect(Collectors.toCollection(TreeSet::new));
+        }
+    }
+}
@@ -0,0 +1,106 @@
+package org.whitesource.agent.archive;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.compress.compressors.gzip.GzipCompressorOutputStream;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.whitesource.agent.DependencyInfoFactory;
+import org.whitesource.agent.api.model.DependencyInfo;
+import org.whitesource.agent.utils.FilesScanner;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+
+public class ArchiveStreamScannerTest {
+
+    private static final String[] INCLUDES = {"**/*.js", "**/*.jar", "**/*.bin", "**/*.tgz"};
+    private static final String[] EXCLUDES = {};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldFindSameDependenciesAsExtraction() throws IOException {
+        Path baseDir = createArchives();
+        for (int depth = 1; depth <= 3; depth++) {
+            DependencyInfoFactory factory = new DependencyInfoFactory(new ArrayList<>(), false, false, true);
+
+            List<String> archiveDirectories = new ArrayList<>();
+            String unpackDirectory = new ArchiveExtractor(new String[]{""}, new String[0], EXCLUDES)
+                    .extractArchives(baseDir.toString(), depth, archiveDirectories);
+            Map<String, String> expected = new TreeMap<>();
+            for (String fileName : new FilesScanner().getDirectoryContent(unpackDirectory, INCLUDES, EXCLUDES, true, false)) {
+                DependencyInfo dependency = factory.createDependencyInfo(new File(unpackDirectory), fileName);
+                String systemPath = dependency.getSystemPath().replace(unpackDirectory, baseDir.getParent().toString())
+                        .replaceAll(ArchiveExtractor.DEPTH_REGEX, "");
+                expected.put(systemPath, dependency.getSha1() + dependency.getChecksums());
+            }
+
+            ArchiveStreamScanner scanner = new ArchiveStreamScanner(new ArchiveExtractor(new String[]{""}, new String[0], EXCLUDES), factory,
+                    depth, INCLUDES, EXCLUDES, false, new String[0], false);
+            Assert.assertTrue(scanner.scanArchives(baseDir.toString()).isEmpty());
+            Map<String, String> actual = new TreeMap<>();
+            for (DependencyInfo dependency : scanner.getDependencies(EXCLUDES)) {
+                actual.put(dependency.getSystemPath(), dependency.getSha1() + dependency.getChecksums());
+            }
+            Assert.assertEquals(expected, actual);
+        }
+    }
+
+    @Test
+    public void shouldExtractArchivesWithResolverManifests() throws IOException {
+        Path baseDir = createArchives();
+        Map<String, byte[]> entries = new LinkedHashMap<>();
+        entries.put("package/package.json", "{}".getBytes());
+        Files.write(baseDir.resolve("module.zip"), ArchiveTestUtils.zip(entries));
+
+        ArchiveStreamScanner scanner = new ArchiveStreamScanner(new ArchiveExtractor(new String[]{""}, new String[0], EXCLUDES),
+                new DependencyInfoFactory(), 2, INCLUDES, EXCLUDES, false, new String[]{"**/package.json"}, false);
+        Assert.assertEquals(Collections.singleton("module.zip"), scanner.scanArchives(baseDir.toString()));
+        Assert.assertFalse(scanner.getDependencies(new String[]{"**/*.jar"}).stream()
+                .anyMatch(dependency -> dependency.getFilename().endsWith(".jar")));
+    }
+
+    /* --- Private methods --- */
+
+    private Path createArchives() throws IOException {
+        Path baseDir = folder.newFolder("app").toPath();
+        Files.createDirectories(baseDir.resolve("lib"));
+        byte[] binary = new byte[5000];
+        new Random(1).nextBytes(binary);
+
+        Map<String, byte[]> library = new LinkedHashMap<>();
+        library.put("a/library.js", "var a = 1;\r\nvar b;\n".getBytes());
+        library.put("data.bin", binary);
+        library.put("readme.txt", "readme".getBytes());
+        Map<String, byte[]> application = new LinkedHashMap<>();
+        application.put("WEB-INF/lib/library.jar", ArchiveTestUtils.zip(library));
+        application.put("WEB-INF/lib/library.tgz", tarGz(library));
+        application.put("index.js", "init();\n".getBytes());
+
+        Files.write(baseDir.resolve("lib/application.war"), ArchiveTestUtils.zip(application));
+        Files.write(baseDir.resolve("application.tar.gz"), tarGz(application));
+        return baseDir;
+    }
+
+    private byte[] tarGz(Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(new GzipCompressorOutputStream(bytes))) {
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                TarArchiveEntry tarEntry = new TarArchiveEntry(entry.getKey());
+                tarEntry.setSize(entry.getValue().length);
+                tar.putArchiveEntry(tarEntry);
+                tar.write(entry.getValue());
+                tar.closeArchiveEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
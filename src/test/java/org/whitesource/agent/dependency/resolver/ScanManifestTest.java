@@ -0,0 +1,166 @@
+package org.whitesource.agent.dependency.resolver;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.whitesource.agent.api.model.AgentProjectInfo;
+import org.whitesource.agent.api.model.DependencyInfo;
+import org.whitesource.agent.api.model.DependencyType;
+import org.whitesource.agent.dependency.resolver.maven.MavenDependencyResolver;
+import org.whitesource.agent.dependency.resolver.npm.NpmDependencyResolver;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Set;
+
+public class ScanManifestTest {
+
+    private static final String CONFIGURATION = "{\"npm.resolveDependencies\":true}";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void tearDown() {
+        ScanManifest.reset();
+    }
+
+    @Test
+    public void shouldReuseResultsOfUnchangedManifests() throws IOException {
+        File manifestFile = new File(folder.getRoot(), ScanManifest.MANIFEST_FILE_NAME);
+        File packageJson = folder.newFile("package.json");
+        FileUtils.writeStringToFile(packageJson, "{\"name\":\"app\"}");
+        String topFolder = folder.getRoot().getPath();
+        Set<String> bomFiles = Collections.singleton(packageJson.getPath());
+        AbstractDependencyResolver resolver = new NpmDependencyResolver(false, false, 1000, false, false, null, false, false);
+
+        DependencyInfo dependency = new DependencyInfo("lodash", "lodash", "4.17.4");
+        dependency.setSha1("b7d0b2b2e7f6e4b9c4d61b3a7e6d5f0c1a2b3c4d");
+        dependency.getChildren().add(new DependencyInfo("lodash", "lodash.get", "4.4.2"));
+        ScanManifest scanManifest = ScanManifest.initialize(manifestFile, CONFIGURATION);
+        Assert.assertNull(scanManifest.get(resolver, topFolder, bomFiles));
+        scanManifest.put(resolver, topFolder, bomFiles, new ResolutionResult(Arrays.asList(dependency), Arrays.asList("**/*.js"),
+                DependencyType.NPM, topFolder));
+        scanManifest.save();
+
+        // a new run reads the persisted result
+        scanManifest = ScanManifest.initialize(manifestFile, CONFIGURATION);
+        ResolutionResult result = scanManifest.get(resolver, topFolder, bomFiles);
+        Assert.assertNotNull(result);
+        Assert.assertEquals(DependencyType.NPM, result.getDependencyType());
+        Assert.assertEquals(Arrays.asList("**/*.js"), result.getExcludes());
+        AgentProjectInfo project = result.getResolvedProjects().keySet().iterator().next();
+        DependencyInfo cachedDependency = project.getDependencies().iterator().next();
+        Assert.assertEquals(dependency.getSha1(), cachedDependency.getSha1());
+        Assert.assertEquals(1, cachedDependency.getChildren().size());
+
+        // a new lock file invalidates the folder
+        FileUtils.writeStringToFile(new File(folder.getRoot(), "package-lock.json"), "{}");
+        Assert.assertNull(scanManifest.get(resolver, topFolder, bomFiles));
+    }
+
+    @Test
+    public void shouldIgnoreManifestOfAnotherConfiguration() throws IOException {
+        File manifestFile = new File(folder.getRoot(), ScanManifest.MANIFEST_FILE_NAME);
+        File packageJson = folder.newFile("package.json");
+        String topFolder = folder.getRoot().getPath();
+        Set<String> bomFiles = Collections.singleton(packageJson.getPath());
+        AbstractDependencyResolver resolver = new NpmDependencyResolver(false, false, 1000, false, false, null, false, false);
+
+        ScanManifest scanManifest = ScanManifest.initialize(manifestFile, CONFIGURATION);
+        scanManifest.put(resolver, topFolder, bomFiles, new ResolutionResult(Collections.emptyList(), Collections.emptyList(),
+                DependencyType.NPM, topFolder));
+        scanManifest.save();
+
+        scanManifest = ScanManifest.initialize(manifestFile, "{\"npm.resolveDependencies\":false}");
+        Assert.assertNull(scanManifest.get(resolver, topFolder, bomFiles));
+    }
+
+    @Test
+    public void shouldReuseResultsWithoutLockFileForALimitedTime() throws IOException {
+        File manifestFile = new File(folder.getRoot(), ScanManifest.MANIFEST_FILE_NAME);
+        File packageJson = folder.newFile("package.json");
+        FileUtils.writeStringToFile(packageJson, "{\"name\":\"app\",\"dependencies\":{\"lodash\":\"^4.17.4\"}}");
+        String topFolder = folder.getRoot().getPath();
+        Set<String> bomFiles = Collections.singleton(packageJson.getPath());
+        AbstractDependencyResolver resolver = new NpmDependencyResolver(false, false, 1000, false, false, null, false, false);
+        ResolutionResult result = new ResolutionResult(Arrays.asList(new DependencyInfo("lodash", "lodash", "4.17.4")),
+                Collections.emptyList(), DependencyType.NPM, topFolder);
+
+        // the result depends on node_modules, it expires
+        ScanManifest scanManifest = ScanManifest.initialize(manifestFile, CONFIGURATION, 0);
+        scanManifest.put(resolver, topFolder, bomFiles, result);
+        scanManifest.save();
+        Assert.assertNull(ScanManifest.initialize(manifestFile, CONFIGURATION, 0).get(resolver, topFolder, bomFiles));
+
+        // the lock file pins the result
+        FileUtils.writeStringToFile(new File(folder.getRoot(), "package-lock.json"), "{}");
+        scanManifest = ScanManifest.initialize(manifestFile, CONFIGURATION, 0);
+        scanManifest.put(resolver, topFolder, bomFiles, result);
+        scanManifest.save();
+        Assert.assertNotNull(ScanManifest.initialize(manifestFile, CONFIGURATION, 0).get(resolver, topFolder, bomFiles));
+    }
+
+    @Test
+    public void shouldOnlyPinResultsWithTheLockFileOfTheResolver() throws IOException {
+        File manifestFile = new File(folder.getRoot(), ScanManifest.MANIFEST_FILE_NAME);
+        File pom = folder.newFile("pom.xml");
+        FileUtils.writeStringToFile(pom, "<project><dependencies><dependency><version>[1.0,2.0)</version></dependency></dependencies></project>");
+        String topFolder = folder.getRoot().getPath();
+        Set<String> bomFiles = Collections.singleton(pom.getPath());
+        AbstractDependencyResolver resolver = new MavenDependencyResolver(false, new String[0], false, false, false, false);
+
+        // the lock file of another resolver does not pin the version range
+        File yarnLock = new File(folder.getRoot(), "yarn.lock");
+        FileUtils.writeStringToFile(yarnLock, "lodash@^4.17.4:\n  version \"4.17.4\"\n");
+        assertNotReused(manifestFile, resolver, topFolder, bomFiles, "1.5");
+
+        // nor is it an input of the maven result
+        FileUtils.writeStringToFile(pom, "<project><dependencies><dependency><version>1.5</version></dependency></dependencies></project>");
+        ScanManifest scanManifest = ScanManifest.initialize(manifestFile, CONFIGURATION);
+        scanManifest.put(resolver, topFolder, bomFiles, createResult(topFolder, "1.5"));
+        scanManifest.save();
+        FileUtils.writeStringToFile(yarnLock, "lodash@^4.17.4:\n  version \"4.17.5\"\n");
+        Assert.assertNotNull(ScanManifest.initialize(manifestFile, CONFIGURATION).get(resolver, topFolder, bomFiles));
+    }
+
+    @Test
+    public void shouldNotReuseSnapshotAndVersionRangeResults() throws IOException {
+        File manifestFile = new File(folder.getRoot(), ScanManifest.MANIFEST_FILE_NAME);
+        File pom = folder.newFile("pom.xml");
+        String topFolder = folder.getRoot().getPath();
+        Set<String> bomFiles = Collections.singleton(pom.getPath());
+        AbstractDependencyResolver resolver = new NpmDependencyResolver(false, false, 1000, false, false, null, false, false);
+
+        // a SNAPSHOT dependency of the result
+        FileUtils.writeStringToFile(pom, "<project><dependencies><dependency><version>1.0</version></dependency></dependencies></project>");
+        assertNotReused(manifestFile, resolver, topFolder, bomFiles, "1.0-SNAPSHOT");
+        // a version range of the pom
+        FileUtils.writeStringToFile(pom, "<project><dependencies><dependency><version>[1.0,2.0)</version></dependency></dependencies></project>");
+        assertNotReused(manifestFile, resolver, topFolder, bomFiles, "1.5");
+
+        FileUtils.writeStringToFile(pom, "<project><dependencies><dependency><version>1.5</version></dependency></dependencies></project>");
+        ScanManifest scanManifest = ScanManifest.initialize(manifestFile, CONFIGURATION);
+        scanManifest.put(resolver, topFolder, bomFiles, createResult(topFolder, "1.5"));
+        scanManifest.save();
+        Assert.assertNotNull(ScanManifest.initialize(manifestFile, CONFIGURATION).get(resolver, topFolder, bomFiles));
+    }
+
+    private void assertNotReused(File manifestFile, AbstractDependencyResolver resolver, String topFolder, Set<String> bomFiles, String version) {
+        ScanManifest scanManifest = ScanManifest.initialize(manifestFile, CONFIGURATION);
+        scanManifest.put(resolver, topFolder, bomFiles, createResult(topFolder, version));
+        scanManifest.save();
+        Assert.assertNull(ScanManifest.initialize(manifestFile, CONFIGURATION).get(resolver, topFolder, bomFiles));
+    }
+
+    private ResolutionResult createResult(String topFolder, String version) {
+        DependencyInfo dependency = new DependencyInfo("org.example", "parent", "1.0");
+        dependency.getChildren().add(new DependencyInfo("org.example", "library", version));
+        return new ResolutionResult(Arrays.asList(dependency), Collections.emptyList(), DependencyType.MAVEN, topFolder);
+    }
+}
@@ -0,0 +1,65 @@
+package org.whitesource.agent.dependency.resolver.docker;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class DockerImageSchedulerTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldScanAllImagesWithBoundedThreads() {
+        DockerImageScheduler scheduler = new DockerImageScheduler(2, temporaryFolder.getRoot(), 0);
+        ConcurrencyCounter counter = new ConcurrencyCounter();
+        for (int i = 0; i < 8; i++) {
+            scheduler.submit("image" + i, 1, counter::run);
+        }
+        // a failing image does not stop the others
+        scheduler.submit("failing", 1, () -> {
+            throw new IllegalStateException("failure");
+        });
+        scheduler.shutdown();
+
+        Assert.assertEquals(8, counter.done.get());
+        Assert.assertTrue(counter.maxRunning.get() <= 2);
+    }
+
+    @Test
+    public void shouldWaitForTempDiskBudget() {
+        DockerImageScheduler scheduler = new DockerImageScheduler(3, temporaryFolder.getRoot(), 100);
+        ConcurrencyCounter counter = new ConcurrencyCounter();
+        for (int i = 0; i < 4; i++) {
+            scheduler.submit("image" + i, 60, counter::run);
+        }
+        // an image bigger than the budget still runs once no other image is running
+        scheduler.submit("big", 150, counter::run);
+        scheduler.shutdown();
+
+        Assert.assertEquals(5, counter.done.get());
+        Assert.assertEquals(1, counter.maxRunning.get());
+    }
+
+    private static class ConcurrencyCounter {
+
+        private final AtomicInteger running = new AtomicInteger();
+        private final AtomicInteger maxRunning = new AtomicInteger();
+        private final AtomicInteger done = new AtomicInteger();
+
+        private void run() {
+            int current = running.incrementAndGet();
+            maxRunning.accumulateAndGet(current, Math::max);
+            try {
+                Thread.sleep(50);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            running.decrementAndGet();
+            done.incrementAndGet();
+        }
+    }
+}
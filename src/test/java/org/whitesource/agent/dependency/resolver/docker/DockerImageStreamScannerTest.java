@@ -0,0 +1,114 @@
+package org.whitesource.agent.dependency.resolver.docker;
+
+import org.apache.commons.compress.archivers.tar.TarArchiveEntry;
+import org.apache.commons.compress.archivers.tar.TarArchiveOutputStream;
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.whitesource.agent.DependencyInfoFactory;
+import org.whitesource.agent.api.model.DependencyInfo;
+import org.whitesource.agent.archive.ArchiveExtractor;
+import org.whitesource.agent.utils.FilesScanner;
+import org.whitesource.fs.configuration.AgentConfiguration;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+public class DockerImageStreamScannerTest {
+
+    private static final String[] INCLUDES = {"**/*.js", "**/*.jar", "**/installed"};
+    private static final String[] PACKAGE_DATABASE_INCLUDES = {"**/*installed"};
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldFindTheFilesOfTheExtractedImage() throws IOException {
+        Map<String, byte[]> baseLayer = new LinkedHashMap<>();
+        baseLayer.put("lib/apk/db/installed", "P:musl\nV:1.1.18-r3\n".getBytes(StandardCharsets.UTF_8));
+        baseLayer.put("./usr/lib/library.jar", "library".getBytes(StandardCharsets.UTF_8));
+        baseLayer.put("app/old.js", "var old = 1;".getBytes(StandardCharsets.UTF_8));
+        baseLayer.put("app/readme.txt", "readme".getBytes(StandardCharsets.UTF_8));
+        Map<String, byte[]> appLayer = new LinkedHashMap<>();
+        appLayer.put("app/main.js", "var main = 1;".getBytes(StandardCharsets.UTF_8));
+        // deletes app/old.js of the base layer
+        appLayer.put("app/.wh.old.js", new byte[0]);
+        appLayer.put("app/lib/util.js", "var util = 1;".getBytes(StandardCharsets.UTF_8));
+        // written out of the image folder
+        appLayer.put("../../../escape.js", "var escape = 1;".getBytes(StandardCharsets.UTF_8));
+        Map<String, byte[]> image = new LinkedHashMap<>();
+        image.put("manifest.json", "[{\"Layers\":[\"base/layer.tar\",\"app/layer.tar\"]}]".getBytes(StandardCharsets.UTF_8));
+        image.put("base/layer.tar", tar(baseLayer));
+        image.put("app/layer.tar", tar(appLayer));
+        byte[] imageTar = tar(image);
+
+        File imageTarFile = new File(temporaryFolder.newFolder("saved"), "image.tar");
+        FileUtils.writeByteArrayToFile(imageTarFile, imageTar);
+        File extractedImage = new File(temporaryFolder.newFolder("extracted"), "image");
+        new ArchiveExtractor(new String[0], new String[0], INCLUDES).extractDockerImageLayers(imageTarFile, extractedImage, true);
+        Map<String, String> extractedFiles = getExtractedFiles(extractedImage);
+
+        File streamedImage = new File(temporaryFolder.newFolder("streamed"), "image");
+        List<DependencyInfo> streamed = new DockerImageStreamScanner(getAgentConfiguration(), PACKAGE_DATABASE_INCLUDES, false)
+                .scan(new ByteArrayInputStream(imageTar), streamedImage);
+        Map<String, String> streamedFiles = new TreeMap<>();
+        for (DependencyInfo dependencyInfo : streamed) {
+            streamedFiles.put(streamedImage.toPath().relativize(new File(dependencyInfo.getSystemPath()).toPath()).toString(), dependencyInfo.getSha1());
+        }
+
+        // the whiteout markers are extracted as empty files, they are not files of the image
+        Assert.assertNotNull(extractedFiles.remove(path("app", "app", ".wh.old.js")));
+        Assert.assertEquals(extractedFiles, streamedFiles);
+        Assert.assertTrue(streamedFiles.containsKey(path("app", "app", "main.js")));
+        Assert.assertTrue(streamedFiles.containsKey(path("base", "usr", "lib", "library.jar")));
+        for (DependencyInfo dependencyInfo : streamed) {
+            Assert.assertFalse(dependencyInfo.getSystemPath().endsWith("escape.js"));
+        }
+        // the package manager database is written where the package parsers look for it
+        Assert.assertTrue(new File(streamedImage, path("base", "lib", "apk", "db", "installed")).isFile());
+        Assert.assertFalse(new File(streamedImage, path("app", "readme.txt")).exists());
+    }
+
+    private Map<String, String> getExtractedFiles(File imageFolder) {
+        DependencyInfoFactory dependencyInfoFactory = new DependencyInfoFactory(Collections.emptyList(), false, false, false);
+        Map<String, String> files = new TreeMap<>();
+        for (String fileName : new FilesScanner().getDirectoryContent(imageFolder.getPath(), INCLUDES, new String[0], true, false)) {
+            DependencyInfo dependencyInfo = dependencyInfoFactory.createDependencyInfo(imageFolder, fileName);
+            if (dependencyInfo != null) {
+                files.put(fileName, dependencyInfo.getSha1());
+            }
+        }
+        return files;
+    }
+
+    private AgentConfiguration getAgentConfiguration() {
+        return new AgentConfiguration(INCLUDES, new String[0], new String[0], new String[0], 0, new String[0], new String[0],
+                false, false, false, false, false, false, 1, false, 0, 0, false, false, true, Collections.emptyList(),
+                new String[0], new String[0], new String[0], null);
+    }
+
+    private String path(String... names) {
+        return String.join(File.separator, names);
+    }
+
+    private byte[] tar(Map<String, byte[]> entries) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (TarArchiveOutputStream tar = new TarArchiveOutputStream(bytes)) {
+            tar.setLongFileMode(TarArchiveOutputStream.LONGFILE_POSIX);
+            for (Map.Entry<String, byte[]> entry : entries.entrySet()) {
+                TarArchiveEntry tarEntry = new TarArchiveEntry(entry.getKey(), true);
+                tarEntry.setSize(entry.getValue().length);
+                tar.putArchiveEntry(tarEntry);
+                tar.write(entry.getValue());
+                tar.closeArchiveEntry();
+            }
+        }
+        return bytes.toByteArray();
+    }
+}
@@ -0,0 +1,46 @@
+package org.whitesource.agent.dependency.resolver.docker;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.whitesource.agent.api.model.DependencyInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Collections;
+
+public class DockerLayerCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void shouldReuseLayerResultsOfOtherImages() throws IOException {
+        File cacheFile = new File(folder.getRoot(), DockerLayerCache.CACHE_FILE_NAME);
+        File firstLayerFolder = folder.newFolder("first", "layer");
+        File secondLayerFolder = folder.newFolder("second", "layer");
+
+        DockerLayerCache cache = new DockerLayerCache(cacheFile, "configuration");
+        Assert.assertNull(cache.get("sha256:base", firstLayerFolder));
+        DockerLayerCache.LayerScanResult result = new DockerLayerCache.LayerScanResult();
+        DependencyInfo openssl = new DependencyInfo("openssl", "openssl", "1.1.0f");
+        openssl.setSystemPath(new File(firstLayerFolder, "var/lib/dpkg/status").getPath());
+        result.getPackages().put("debian", Collections.singletonList(openssl));
+        DependencyInfo file = new DependencyInfo("sha1");
+        file.setSystemPath(new File(firstLayerFolder, "usr/lib/library.jar").getPath());
+        result.getFiles().add(file);
+        cache.put("sha256:base", firstLayerFolder, result);
+        cache.save();
+
+        // a new run reads the persisted layers, the system paths point to the folder of the current image
+        cache = new DockerLayerCache(cacheFile, "configuration");
+        DockerLayerCache.LayerScanResult cached = cache.get("sha256:base", secondLayerFolder);
+        Assert.assertNotNull(cached);
+        Assert.assertEquals("1.1.0f", cached.getPackages().get("debian").get(0).getVersion());
+        Assert.assertEquals(new File(secondLayerFolder, "usr/lib/library.jar").getPath(), cached.getFiles().get(0).getSystemPath());
+
+        // the layers scanned with another configuration are ignored
+        Assert.assertNull(new DockerLayerCache(cacheFile, "other configuration").get("sha256:base", secondLayerFolder));
+    }
+}
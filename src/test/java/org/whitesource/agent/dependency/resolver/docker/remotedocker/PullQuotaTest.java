@@ -0,0 +1,46 @@
+package org.whitesource.agent.dependency.resolver.docker.remotedocker;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.concurrent.atomic.AtomicBoolean;
+
+public class PullQuotaTest {
+
+    @Test
+    public void shouldWaitForThePullsInProgress() throws InterruptedException {
+        AbstractRemoteDocker.PullQuota pullQuota = new AbstractRemoteDocker.PullQuota(2);
+        Assert.assertTrue(pullQuota.acquire());
+        Assert.assertTrue(pullQuota.acquire());
+
+        // the pulls in progress may reach the maximum, the next pull waits for them
+        AtomicBoolean acquired = new AtomicBoolean();
+        Thread thread = new Thread(() -> acquired.set(pullQuota.acquire()));
+        thread.start();
+        thread.join(300);
+        Assert.assertTrue(thread.isAlive());
+
+        // a failed pull does not count
+        pullQuota.release(false);
+        thread.join(10000);
+        Assert.assertFalse(thread.isAlive());
+        Assert.assertTrue(acquired.get());
+        Assert.assertFalse(pullQuota.isReached());
+
+        pullQuota.release(true);
+        pullQuota.release(true);
+        Assert.assertTrue(pullQuota.isReached());
+        Assert.assertFalse(pullQuota.acquire());
+    }
+
+    @Test
+    public void shouldNotWaitWhenNoPullIsInProgress() {
+        AbstractRemoteDocker.PullQuota pullQuota = new AbstractRemoteDocker.PullQuota(1);
+        Assert.assertTrue(pullQuota.acquire());
+        pullQuota.release(false);
+        Assert.assertTrue(pullQuota.acquire());
+        pullQuota.release(true);
+        Assert.assertTrue(pullQuota.isReached());
+        Assert.assertFalse(pullQuota.acquire());
+    }
+}
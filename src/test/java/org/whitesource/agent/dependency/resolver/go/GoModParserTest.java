@@ -0,0 +1,93 @@
+package org.whitesource.agent.dependency.resolver.go;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.whitesource.agent.api.model.DependencyInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.*;
+import java.util.stream.Collectors;
+
+public class GoModParserTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldBuildModuleTree() throws IOException {
+        File folder = temporaryFolder.getRoot();
+        write(new File(folder, GoModParser.GO_MOD), "module example.com/app // the application\n\n" +
+                "go 1.17\n\n" +
+                "require github.com/a/a v1.2.0\n" +
+                "require (\n" +
+                "\tgithub.com/b/b v0.0.0-20191109021931-daa7c04131f5\n" +
+                "\tgithub.com/c/c v1.1.0 // indirect\n" +
+                "\tgithub.com/d/d v1.0.0 // indirect\n" +
+                "\tgithub.com/local/local v1.0.0\n" +
+                ")\n\n" +
+                "replace github.com/local/local => ../local\n" +
+                "replace (\n" +
+                "\tgithub.com/b/b => github.com/fork/b v1.0.1\n" +
+                ")\n");
+        write(new File(folder, GoModParser.GO_SUM), "github.com/a/a v1.2.0 h1:a=\n" +
+                "github.com/a/a v1.2.0/go.mod h1:amod=\n" +
+                "github.com/fork/b v1.0.1 h1:b=\n" +
+                "github.com/c/c v1.0.0/go.mod h1:c0mod=\n" +
+                "github.com/c/c v1.1.0 h1:c=\n" +
+                "github.com/e/e v1.0.0/go.mod h1:emod=\n" +
+                "github.com/f/f v1.0.0 h1:f=\n");
+
+        GoModParser parser = new GoModParser(false);
+        GoModParser.GoModFile goMod = parser.parseGoMod(new File(folder, GoModParser.GO_MOD));
+        Assert.assertEquals("example.com/app", goMod.getModulePath());
+        Assert.assertEquals(5, goMod.getRequires().size());
+
+        // a requires c v1.0.0 and e (only its go.mod is needed), e requires f, b requires a newer c
+        Map<String, List<GoModParser.Module>> graph = new HashMap<>();
+        graph.put("github.com/a/a@v1.2.0", Arrays.asList(GoModParser.Module.parse("github.com/c/c@v1.0.0"), GoModParser.Module.parse("github.com/e/e@v1.0.0")));
+        graph.put("github.com/e/e@v1.0.0", Collections.singletonList(GoModParser.Module.parse("github.com/f/f@v1.0.0")));
+        graph.put("github.com/b/b@v0.0.0-20191109021931-daa7c04131f5", Collections.singletonList(GoModParser.Module.parse("github.com/c/c@v1.1.0")));
+        List<DependencyInfo> dependencies = parser.buildTree(goMod, module -> graph.getOrDefault(module.toString(), Collections.emptyList()),
+                parser.parseGoSum(new File(folder, GoModParser.GO_SUM)));
+
+        // the local replacement is left out, d has no source hash
+        Assert.assertEquals("[github.com/a/a@v1.2.0, github.com/fork/b@v1.0.1]", names(dependencies));
+        // the highest version of c is selected, f hangs under a since e is not part of the build
+        Assert.assertEquals("[github.com/c/c@v1.1.0, github.com/f/f@v1.0.0]", names(dependencies.get(0).getChildren()));
+        Assert.assertEquals("a", dependencies.get(0).getGroupId());
+        Assert.assertTrue(dependencies.get(1).getChildren().isEmpty());
+    }
+
+    @Test
+    public void shouldReportIndirectRequirementsWithoutGraph() throws IOException {
+        File goModFile = temporaryFolder.newFile(GoModParser.GO_MOD);
+        write(goModFile, "module example.com/app\n\nrequire (\n\tgithub.com/a/a v1.0.0\n\tgithub.com/b/b v0.0.0-20191109021931-daa7c04131f5 // indirect\n)\n");
+        GoModParser parser = new GoModParser(false);
+        List<DependencyInfo> dependencies = parser.buildTree(parser.parseGoMod(goModFile), module -> Collections.emptyList(), Collections.emptyMap());
+        Assert.assertEquals("[github.com/a/a@v1.0.0, github.com/b/b@v0.0.0-20191109021931-daa7c04131f5]", names(dependencies));
+        Assert.assertEquals("daa7c04131f5", dependencies.get(1).getCommit());
+    }
+
+    @Test
+    public void shouldCompareVersions() {
+        Assert.assertTrue(GoModParser.compareVersions("v1.10.0", "v1.9.0") > 0);
+        Assert.assertTrue(GoModParser.compareVersions("v1.0.0", "v1.0.0-rc.1") > 0);
+        Assert.assertTrue(GoModParser.compareVersions("v1.0.0-rc.2", "v1.0.0-rc.10") < 0);
+        Assert.assertTrue(GoModParser.compareVersions("v0.0.0-20191109021931-daa7c04131f5", "v0.1.0") < 0);
+        Assert.assertTrue(GoModParser.compareVersions("v2.0.0+incompatible", "v1.9.0") > 0);
+        Assert.assertEquals(0, GoModParser.compareVersions("v1.2.0", "v1.2.0"));
+    }
+
+    private String names(Collection<DependencyInfo> dependencies) {
+        return dependencies.stream().map(dependency -> dependency.getArtifactId() + "@" + dependency.getVersion()).collect(Collectors.toList()).toString();
+    }
+
+    private void write(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,40 @@
+package org.whitesource.agent.dependency.resolver.gradle;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.whitesource.agent.Constants;
+import org.whitesource.agent.dependency.resolver.DependencyCollector;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+public class GradleCliTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldKeepTheOutputOfAPartiallyFailedBuild() throws IOException {
+        if (DependencyCollector.isWindows()) {
+            return;
+        }
+        File buildFolder = temporaryFolder.newFolder("build");
+        File wrapper = new File(buildFolder, "gradlew");
+        FileUtils.writeStringToFile(wrapper, "#!/bin/sh\necho wsResolvedProject=" + buildFolder.getPath() + "\nexit 1\n", StandardCharsets.UTF_8);
+        Assert.assertTrue(wrapper.setExecutable(true));
+
+        GradleCli gradleCli = new GradleCli(Constants.GRADLE_WRAPPER);
+        gradleCli.setTopLevelFolderGradlew(buildFolder.getPath());
+        List<String> lines = gradleCli.runGradleCmd(buildFolder.getPath(), GradleMvnCommand.DOWNLOAD_DEPENDENCIES, "--continue");
+
+        Assert.assertNotNull(lines);
+        Assert.assertTrue(lines.contains("wsResolvedProject=" + buildFolder.getPath()));
+        // the failed build does not switch the next commands to the other environment
+        Assert.assertEquals(wrapper.getPath(), gradleCli.getGradleCommandParams(GradleMvnCommand.PROJECTS)[0]);
+    }
+}
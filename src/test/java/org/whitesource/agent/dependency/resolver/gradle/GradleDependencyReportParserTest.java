@@ -0,0 +1,63 @@
+package org.whitesource.agent.dependency.resolver.gradle;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.whitesource.agent.api.model.DependencyInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+public class GradleDependencyReportParserTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldBuildDependencyTrees() throws IOException {
+        File projectDir = temporaryFolder.newFolder("app");
+        File guava = temporaryFolder.newFile("guava-20.0.jar");
+        FileUtils.writeStringToFile(guava, "guava", StandardCharsets.UTF_8);
+        File junit = temporaryFolder.newFile("junit-4.12.jar");
+        FileUtils.writeStringToFile(junit, "junit", StandardCharsets.UTF_8);
+        File reportFolder = temporaryFolder.newFolder("report");
+        String report = "{\"path\":\":app\",\"projectDir\":" + quote(projectDir.getPath()) + ",\"configurations\":[" +
+                "{\"name\":\"compileClasspath\",\"dependencies\":[\"project :lib\"],\"components\":{" +
+                "\"project :app\":{\"project\":\":app\",\"dependencies\":[\"project :lib\"]}," +
+                "\"project :lib\":{\"project\":\":lib\",\"dependencies\":[\"com.google.guava:guava:20.0\",\"project :app\"]}," +
+                "\"com.google.guava:guava:20.0\":{\"group\":\"com.google.guava\",\"name\":\"guava\",\"version\":\"20.0\"," +
+                "\"files\":[" + quote(guava.getPath()) + "],\"dependencies\":[]}}}," +
+                "{\"name\":\"testCompileClasspath\",\"dependencies\":[\"com.google.guava:guava:20.0\",\"junit:junit:4.12\"],\"components\":{" +
+                "\"com.google.guava:guava:20.0\":{\"group\":\"com.google.guava\",\"name\":\"guava\",\"version\":\"20.0\"," +
+                "\"files\":[" + quote(guava.getPath()) + "],\"dependencies\":[]}," +
+                "\"junit:junit:4.12\":{\"group\":\"junit\",\"name\":\"junit\",\"version\":\"4.12\"," +
+                "\"files\":[" + quote(junit.getPath()) + "],\"dependencies\":[]}}}]}";
+        FileUtils.writeStringToFile(new File(reportFolder, "_app.json"), report, StandardCharsets.UTF_8);
+
+        GradleDependencyReportParser parser = new GradleDependencyReportParser();
+        Map<String, GradleDependencyReportParser.ProjectReport> reports = parser.readReports(reportFolder);
+        GradleDependencyReportParser.ProjectReport projectReport = reports.get(projectDir.getCanonicalPath());
+        Assert.assertNotNull(projectReport);
+
+        // the dependencies of the project dependency are added in its place, guava is reported once
+        List<DependencyInfo> dependencies = new ArrayList<>(parser.parse(projectReport, new String[0], "build.gradle"));
+        Assert.assertEquals(2, dependencies.size());
+        Assert.assertEquals("guava", dependencies.get(0).getArtifactId());
+        Assert.assertEquals(guava.getPath(), dependencies.get(0).getSystemPath());
+        Assert.assertNotNull(dependencies.get(0).getSha1());
+        Assert.assertEquals("junit", dependencies.get(1).getArtifactId());
+
+        dependencies = parser.parse(projectReport, new String[]{"testCompileClasspath"}, "build.gradle");
+        Assert.assertEquals(1, dependencies.size());
+    }
+
+    private String quote(String value) {
+        return "\"" + value.replace("\\", "\\\\") + "\"";
+    }
+}
@@ -0,0 +1,120 @@
+package org.whitesource.agent.dependency.resolver.html;
+
+import org.apache.commons.codec.digest.DigestUtils;
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.whitesource.agent.api.model.DependencyInfo;
+import org.whitesource.agent.dependency.resolver.ResolutionResult;
+import org.whitesource.agent.utils.StubHttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ScriptFetcherTest {
+
+    private static final String ETAG = "\"v1\"";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private StubHttpServer server;
+    private String serverUrl;
+    private final AtomicInteger notModified = new AtomicInteger();
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StubHttpServer(exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            if (path.startsWith("/missing")) {
+                exchange.sendResponseHeaders(404, -1);
+            } else if (ETAG.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                notModified.incrementAndGet();
+                exchange.sendResponseHeaders(304, -1);
+            } else {
+                exchange.getResponseHeaders().add("ETag", ETAG);
+                StubHttpServer.respond(exchange, 200, getScript(path));
+            }
+        });
+        serverUrl = server.getUrl();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+        // the fetcher of the other tests does not keep scripts in the deleted temp folder
+        ScriptFetcher.reset();
+    }
+
+    @Test
+    public void shouldFetchEachScriptOnce() throws IOException {
+        Set<String> htmlFiles = new LinkedHashSet<>();
+        for (int i = 0; i < 20; i++) {
+            File htmlFile = temporaryFolder.newFile("page" + i + ".html");
+            FileUtils.writeStringToFile(htmlFile, "<html><head>" +
+                    "<script src=\"" + serverUrl + "/lib/jquery.js\"></script>" +
+                    "<script src=\"" + serverUrl + "/lib/page" + (i % 2) + ".js\"></script>" +
+                    "<script src=\"" + serverUrl + "/missing/app.js\"></script>" +
+                    "</head></html>", StandardCharsets.UTF_8);
+            htmlFiles.add(htmlFile.getPath());
+        }
+
+        HtmlDependencyResolver htmlDependencyResolver = new HtmlDependencyResolver();
+        List<DependencyInfo> dependencies = resolve(htmlDependencyResolver, htmlFiles);
+        Assert.assertEquals(4, server.getRequests());
+        Assert.assertEquals(3, dependencies.size());
+        Assert.assertEquals("jquery.js", dependencies.get(0).getArtifactId());
+        Assert.assertEquals(DigestUtils.sha1Hex(getScript("/lib/jquery.js")), dependencies.get(0).getSha1());
+        Assert.assertEquals(htmlFiles.iterator().next(), dependencies.get(0).getSystemPath());
+        Assert.assertTrue(server.getMaxActiveRequests() <= ScriptFetcher.MAX_REQUESTS_PER_HOST);
+
+        // the scripts already found are neither downloaded nor reported again
+        Assert.assertTrue(resolve(htmlDependencyResolver, htmlFiles).isEmpty());
+        Assert.assertEquals(4, server.getRequests());
+    }
+
+    @Test
+    public void shouldLimitRequestsPerHost() {
+        List<String> urls = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            urls.add(serverUrl + "/limit/script" + i + ".js");
+        }
+        Map<String, byte[]> scripts = new ScriptFetcher(null).fetchAll(urls);
+        Assert.assertEquals(32, scripts.size());
+        Assert.assertArrayEquals(getScript("/limit/script7.js"), scripts.get(serverUrl + "/limit/script7.js"));
+        Assert.assertEquals(32, server.getRequests());
+        Assert.assertTrue(server.getMaxActiveRequests() <= ScriptFetcher.MAX_REQUESTS_PER_HOST);
+    }
+
+    @Test
+    public void shouldRevalidateScriptsOfPreviousRuns() {
+        File cacheFolder = new File(temporaryFolder.getRoot(), ScriptFetcher.CACHE_FOLDER_NAME);
+        String url = serverUrl + "/cached/lib.js";
+        ScriptFetcher scriptFetcher = ScriptFetcher.initialize(cacheFolder);
+        Assert.assertArrayEquals(getScript("/cached/lib.js"), scriptFetcher.fetch(url));
+        scriptFetcher.save();
+
+        scriptFetcher = ScriptFetcher.initialize(cacheFolder);
+        Assert.assertArrayEquals(getScript("/cached/lib.js"), scriptFetcher.fetch(url));
+        Assert.assertEquals(2, server.getRequests());
+        Assert.assertEquals(1, notModified.get());
+        Assert.assertEquals(1, new File(cacheFolder, "objects").list().length);
+    }
+
+    private List<DependencyInfo> resolve(HtmlDependencyResolver htmlDependencyResolver, Set<String> htmlFiles) {
+        String folder = temporaryFolder.getRoot().getPath();
+        ResolutionResult resolutionResult = htmlDependencyResolver.resolveDependencies(folder, folder, htmlFiles);
+        return new ArrayList<>(resolutionResult.getResolvedProjects().keySet().iterator().next().getDependencies());
+    }
+
+    private byte[] getScript(String path) {
+        return ("/* " + path + " */\nfunction f() { return '" + path + "'; }\n").getBytes(StandardCharsets.UTF_8);
+    }
+}
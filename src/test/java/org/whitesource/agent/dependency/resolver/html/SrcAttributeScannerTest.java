@@ -0,0 +1,145 @@
+package org.whitesource.agent.dependency.resolver.html;
+
+import org.apache.commons.io.FileUtils;
+import org.jsoup.Jsoup;
+import org.jsoup.nodes.Element;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+public class SrcAttributeScannerTest {
+
+    private static final String[] HTML_FILES = {
+            "<html><head><script src=\"a.js\"></script></head><body><img src='b.png'></body></html>",
+            "<script SRC=\"a.js\" src=\"b.js\"></script><script src=\"a&amp;b.js?x=1&copy=2\"></script>",
+            "<script src=\"a.js\"/><script src=b.js></script><style/><script src=c.js></script>",
+            "<!-- <script src=c.js> --><!----!><script src=d.js></script>--><script src=e.js></script>",
+            "<script>document.write('<script src=\"w.js\"></script>')</script><script src=v.js></script>",
+            "<script><!-- <script> </script> --></script><script src=e.js></script>",
+            "<title>a<img src=t.js></title><textarea><img src=u.js><script src=ok.js></script>",
+            "<noscript><script src=n.js></script><link src=l.js></noscript><p><noscript><img src=m.js></noscript>",
+            "<select><img src=i.js><script src=s.js></script><input src=j.js><img src=k.js>",
+            "<![CDATA[ <script src=c.js> ]]><?xml version=\"1.0\"?><!DOCTYPE html><plaintext><script src=p.js>",
+            "<script src=\"\u0000x.js\"></script><é src=y.js></é><script src=\"a.js",
+            "<script src=1.js></script><script src="
+    };
+
+    // jsoup moves the elements of a table before it, the scanner finds the same values in document order
+    private static final String[] TABLE_FILES = {
+            "<table><tr><td>a</td></tr><img src=i.js><tr><td><img src=j.js>",
+            "<p><table><script src=s.js></script><img src=i.js><tr><td><img src=j.js></td></tr></table><img src=k.js>",
+            "<table><caption><img src=c.js></caption><colgroup><col></colgroup><tbody><input type=hidden src=h.js><embed src=e.js>"
+    };
+
+    // the tree building rules of jsoup drop or copy these elements, the scanner leaves their files to jsoup
+    private static final String[] JSOUP_FILES = {
+            "<frame src=f.js>",
+            "<hr src=h.js><col src=c.js></body>",
+            "<template><noscript><style></style><source src=s.js><head><table>",
+            "<table><br src=br.js><tr><td><select><tr><embed src=e.js>",
+            "<table><tr><td><select><img src=i.js></table><img src=j.js>",
+            "<b src=b.js><p>x</b>y",
+            "<body><body src=b.js><html src=h.js>",
+            "<form><isindex src=x.js>"
+    };
+
+    private static final String[] FRAGMENTS = {"<script src=a.js>", "</script>", "<img src='b.js'>", "<SCRIPT SRC=\"c.js\"/>",
+            "<!--", "-->", "--!>", "<title>", "</TITLE>", "<textarea>", "</textarea>", "<style>", "</style>", "<noscript>",
+            "</noscript>", "<select>", "</select>", "<input src=i.js>", "<p>", "x", " ", "<", ">", "/", "\"", "=", "&amp;",
+            "<![CDATA[", "]]>", "<xmp>", "</xmp>", "<iframe src=f.js>", "</iframe>", "<plaintext>", "<table>", "</table>", "<tr>",
+            "</tr>", "<td>", "</td>", "<col src=c.js>", "<frameset>", "<frame src=f.js>", "<embed src=e.js>", "<source src=s.js>",
+            "<template>", "</template>", "<head>", "<body>", "</body>", "<br src=br.js>", "<hr src=h.js>", "<b>", "</b>", "<a src=a.js>",
+            "</a>", "<i>", "</i>", "<form>", "</form>", "<isindex src=x.js>", "<div>", "</div>", "<caption>", "</caption>", "<tbody>",
+            "<th>", "<td src=td.js>", "<input type=hidden src=h.js>"};
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldFindTheSrcAttributesOfJsoup() {
+        for (String html : HTML_FILES) {
+            Assert.assertEquals(html, getJsoupSrcAttributes(html), getSrcAttributes(html));
+        }
+        boolean reordered = false;
+        for (String html : TABLE_FILES) {
+            List<String> srcAttributes = getSrcAttributes(html);
+            assertSameValues(html, getJsoupSrcAttributes(html), srcAttributes);
+            reordered |= !getJsoupSrcAttributes(html).equals(srcAttributes);
+        }
+        Assert.assertTrue(reordered);
+        for (String html : JSOUP_FILES) {
+            Assert.assertNull(html, getSrcAttributes(html));
+        }
+        Random random = new Random(42);
+        int scanned = 0;
+        for (int i = 0; i < 20000; i++) {
+            StringBuilder html = new StringBuilder();
+            for (int j = random.nextInt(16); j >= 0; j--) {
+                html.append(FRAGMENTS[random.nextInt(FRAGMENTS.length)]);
+            }
+            List<String> srcAttributes = getSrcAttributes(html.toString());
+            if (srcAttributes != null) {
+                assertSameValues(html.toString(), getJsoupSrcAttributes(html.toString()), srcAttributes);
+                scanned++;
+            }
+        }
+        // most of the files are still scanned
+        Assert.assertTrue(scanned > 5000);
+    }
+
+    @Test
+    public void shouldLeaveByteOrderMarkedFilesToJsoup() {
+        Assert.assertNull(SrcAttributeScanner.getSrcAttributes(new byte[]{(byte) 0xFF, (byte) 0xFE, '<', 0}));
+        byte[] utf8 = "\uFEFF<script src=a.js></script>".getBytes(StandardCharsets.UTF_8);
+        Assert.assertEquals(Collections.singletonList("a.js"), SrcAttributeScanner.getSrcAttributes(utf8));
+    }
+
+    @Test
+    public void shouldResolveTheSameUrlsWithStreamingParse() throws IOException {
+        List<String> pages = new ArrayList<>(Arrays.asList(HTML_FILES));
+        pages.addAll(Arrays.asList(TABLE_FILES));
+        Set<String> htmlFiles = new LinkedHashSet<>();
+        for (int i = 0; i < pages.size(); i++) {
+            File htmlFile = temporaryFolder.newFile("page" + i + ".html");
+            FileUtils.writeStringToFile(htmlFile, pages.get(i), StandardCharsets.UTF_8);
+            htmlFiles.add(htmlFile.getPath());
+        }
+        String folder = temporaryFolder.getRoot().getPath();
+        Map<String, List<String>> jsoupUrls = new HtmlDependencyResolver(false).getScriptUrls(htmlFiles);
+        Map<String, List<String>> streamingUrls = new HtmlDependencyResolver(true).getScriptUrls(htmlFiles);
+        Assert.assertEquals(jsoupUrls.keySet(), streamingUrls.keySet());
+        for (Map.Entry<String, List<String>> entry : jsoupUrls.entrySet()) {
+            assertSameValues(entry.getKey(), entry.getValue(), streamingUrls.get(entry.getKey()));
+        }
+        Assert.assertEquals(pages.size(), jsoupUrls.size());
+        Assert.assertTrue(jsoupUrls.get(folder + File.separator + "page0.html").contains("http://a.js"));
+    }
+
+    // the values of the elements jsoup moves out of a table are compared regardless of their order
+    private void assertSameValues(String message, List<String> expected, List<String> actual) {
+        Assert.assertNotNull(message, actual);
+        List<String> sortedExpected = new ArrayList<>(expected);
+        List<String> sortedActual = new ArrayList<>(actual);
+        Collections.sort(sortedExpected);
+        Collections.sort(sortedActual);
+        Assert.assertEquals(message, sortedExpected, sortedActual);
+    }
+
+    private List<String> getSrcAttributes(String html) {
+        return SrcAttributeScanner.getSrcAttributes(html.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private List<String> getJsoupSrcAttributes(String html) {
+        List<String> srcAttributes = new ArrayList<>();
+        for (Element element : Jsoup.parse(html).getElementsByAttribute("src")) {
+            srcAttributes.add(element.attr("src"));
+        }
+        return srcAttributes;
+    }
+}
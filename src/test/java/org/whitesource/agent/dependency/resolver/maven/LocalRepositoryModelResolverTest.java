@@ -0,0 +1,40 @@
+package org.whitesource.agent.dependency.resolver.maven;
+
+import org.apache.maven.model.resolution.UnresolvableModelException;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+
+public class LocalRepositoryModelResolverTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldResolveVersionRangesFromTheLocalRepository() throws IOException, UnresolvableModelException {
+        File repository = temporaryFolder.newFolder("repository");
+        LocalRepositoryModelResolver modelResolver = new LocalRepositoryModelResolver(repository.getPath());
+        for (String version : new String[]{"1.0", "1.2", "2.0"}) {
+            File pomFile = modelResolver.getPomFile("org.example", "lib", version);
+            Assert.assertTrue(pomFile.getParentFile().mkdirs());
+            Assert.assertTrue(pomFile.createNewFile());
+        }
+        // a version folder without a POM is not a candidate
+        Assert.assertTrue(new File(modelResolver.getArtifactFolder("org.example", "lib"), "1.5").mkdirs());
+
+        Assert.assertEquals("1.1", modelResolver.resolveVersion("org.example", "lib", "1.1"));
+        Assert.assertEquals("1.2", modelResolver.resolveVersion("org.example", "lib", "[1.0,2.0)"));
+        Assert.assertEquals("2.0", modelResolver.resolveVersion("org.example", "lib", "[1.0,)"));
+        Assert.assertNotNull(modelResolver.resolveModel("org.example", "lib", "1.0"));
+    }
+
+    @Test(expected = UnresolvableModelException.class)
+    public void shouldFailWhenNoLocalVersionMatches() throws IOException, UnresolvableModelException {
+        LocalRepositoryModelResolver modelResolver = new LocalRepositoryModelResolver(temporaryFolder.newFolder("repository").getPath());
+        modelResolver.resolveVersion("org.example", "lib", "[1.0,2.0)");
+    }
+}
@@ -0,0 +1,85 @@
+package org.whitesource.agent.dependency.resolver.maven;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.whitesource.agent.api.model.AgentProjectInfo;
+import org.whitesource.agent.api.model.DependencyInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+public class MavenModelDependencyCollectorTest {
+
+    private static final String GROUP_ID = "org.example";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldMediateTheDependenciesAsMaven() throws IOException {
+        File repository = temporaryFolder.newFolder("repository");
+        LocalRepositoryModelResolver modelResolver = new LocalRepositoryModelResolver(repository.getPath());
+        writePom(modelResolver, "a", "1.0", dependency("c", "1.0", null) + dependency("x", "1.0", "test") + dependency("e", "1.0", "runtime"));
+        writePom(modelResolver, "b", "1.0", dependency("c", "2.0", null) + dependency("d", "1.0", null) + dependency("g", "1.0", null));
+        writePom(modelResolver, "d", "1.0", dependency("c", "3.0", null));
+        writePom(modelResolver, "p", "1.0", dependency("q", "1.0", null));
+        for (String artifactId : new String[]{"c", "e", "g", "q", "x"}) {
+            writePom(modelResolver, artifactId, "1.0", "");
+        }
+        writePom(modelResolver, "c", "2.0", "");
+        writePom(modelResolver, "c", "3.0", "");
+        writePom(modelResolver, "e", "2.0", "");
+
+        File project = temporaryFolder.newFolder("project");
+        FileUtils.writeStringToFile(new File(project, "pom.xml"), pom("app", "1.0",
+                "<dependencyManagement><dependencies>" + dependency("e", "2.0", null) + "</dependencies></dependencyManagement>" +
+                "<dependencies>" + dependency("a", "1.0", null) +
+                "<dependency><groupId>" + GROUP_ID + "</groupId><artifactId>b</artifactId><version>1.0</version><scope>runtime</scope>" +
+                "<exclusions><exclusion><groupId>" + GROUP_ID + "</groupId><artifactId>g</artifactId></exclusion></exclusions></dependency>" +
+                dependency("p", "1.0", "provided") + "</dependencies>"), StandardCharsets.UTF_8);
+
+        MavenModelDependencyCollector collector = new MavenModelDependencyCollector(new String[0], false, false, false);
+        collector.M2Path = repository.getPath();
+        Collection<AgentProjectInfo> projects = collector.collectDependencies(project.getPath());
+
+        Assert.assertEquals(1, projects.size());
+        List<DependencyInfo> dependencies = new ArrayList<>(projects.iterator().next().getDependencies());
+        Assert.assertEquals(Arrays.asList("a:1.0:compile", "b:1.0:runtime", "p:1.0:provided"), describe(dependencies));
+        // the nearest c wins over the c of b at the same depth by declaration order, and over the deeper c of d
+        // the version of e is managed, a runtime dependency of a compile dependency is runtime
+        Assert.assertEquals(Arrays.asList("c:1.0:compile", "e:2.0:runtime"), describe(dependencies.get(0).getChildren()));
+        // g is excluded, a compile dependency of a runtime dependency is runtime
+        Assert.assertEquals(Collections.singletonList("d:1.0:runtime"), describe(dependencies.get(1).getChildren()));
+        Assert.assertTrue(dependencies.get(1).getChildren().iterator().next().getChildren().isEmpty());
+        // the dependencies of a provided dependency are provided
+        Assert.assertEquals(Collections.singletonList("q:1.0:provided"), describe(dependencies.get(2).getChildren()));
+    }
+
+    private List<String> describe(Collection<DependencyInfo> dependencies) {
+        List<String> descriptions = new ArrayList<>();
+        for (DependencyInfo dependency : dependencies) {
+            descriptions.add(dependency.getArtifactId() + ":" + dependency.getVersion() + ":" + dependency.getScope());
+        }
+        return descriptions;
+    }
+
+    private void writePom(LocalRepositoryModelResolver modelResolver, String artifactId, String version, String dependencies) throws IOException {
+        FileUtils.writeStringToFile(modelResolver.getPomFile(GROUP_ID, artifactId, version),
+                pom(artifactId, version, "<dependencies>" + dependencies + "</dependencies>"), StandardCharsets.UTF_8);
+    }
+
+    private String pom(String artifactId, String version, String content) {
+        return "<project><modelVersion>4.0.0</modelVersion><groupId>" + GROUP_ID + "</groupId><artifactId>" + artifactId +
+                "</artifactId><version>" + version + "</version>" + content + "</project>";
+    }
+
+    private String dependency(String artifactId, String version, String scope) {
+        return "<dependency><groupId>" + GROUP_ID + "</groupId><artifactId>" + artifactId + "</artifactId><version>" + version +
+                "</version>" + (scope == null ? "" : "<scope>" + scope + "</scope>") + "</dependency>";
+    }
+}
@@ -0,0 +1,134 @@
+package org.whitesource.agent.dependency.resolver.npm;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.whitesource.agent.api.model.AgentProjectInfo;
+import org.whitesource.agent.api.model.DependencyInfo;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.stream.Collectors;
+
+public class NpmLockDependencyCollectorTest {
+
+    private static final String SHA1_INTEGRITY = "sha1-d2h3eeYnm0DvMKbJKq9DXYlk+2E=";
+    private static final String SHA1 = "77687779e6279b40ef30a6c92aaf435d8964fb61";
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldCollectPackagesOfLockFileVersion2() throws IOException {
+        File folder = temporaryFolder.newFolder("v2");
+        write(new File(folder, NpmLockDependencyCollector.PACKAGE_LOCK_JSON), "{\"name\":\"app\",\"lockfileVersion\":2,\"packages\":{" +
+                "\"\":{\"name\":\"app\",\"dependencies\":{\"a\":\"^1.0.0\",\"b\":\"^1.0.0\"},\"devDependencies\":{\"d\":\"^1.0.0\"}}," +
+                "\"node_modules/a\":{\"version\":\"1.0.0\",\"integrity\":\"sha512-xyz " + SHA1_INTEGRITY + "\",\"dependencies\":{\"c\":\"^2.0.0\"}}," +
+                "\"node_modules/a/node_modules/c\":{\"version\":\"2.0.0\",\"integrity\":\"" + SHA1_INTEGRITY + "\"}," +
+                "\"node_modules/b\":{\"version\":\"1.0.0\",\"integrity\":\"" + SHA1_INTEGRITY + "\",\"dependencies\":{\"c\":\"^1.0.0\"}}," +
+                "\"node_modules/c\":{\"version\":\"1.0.0\",\"integrity\":\"" + SHA1_INTEGRITY + "\"}," +
+                "\"node_modules/d\":{\"version\":\"1.0.0\",\"integrity\":\"" + SHA1_INTEGRITY + "\",\"dev\":true}}," +
+                "\"dependencies\":{\"ignored\":{\"version\":\"9.9.9\"}}}");
+
+        List<DependencyInfo> dependencies = collect(false, folder);
+        Assert.assertEquals("[a@1.0.0, b@1.0.0]", names(dependencies));
+        // each package resolves its requirements from its own node_modules first
+        Assert.assertEquals("[c@2.0.0]", names(dependencies.get(0).getChildren()));
+        Assert.assertEquals("[c@1.0.0]", names(dependencies.get(1).getChildren()));
+        Assert.assertEquals(SHA1, dependencies.get(0).getSha1());
+        Assert.assertEquals("a-1.0.0.tgz", dependencies.get(0).getArtifactId());
+        Assert.assertEquals(new File(folder, "node_modules/a/package.json").getPath(), dependencies.get(0).getSystemPath());
+
+        Assert.assertEquals("[a@1.0.0, b@1.0.0, d@1.0.0]", names(collect(true, folder)));
+    }
+
+    @Test
+    public void shouldCollectPackagesOfLockFileVersion1() throws IOException {
+        File folder = temporaryFolder.newFolder("v1");
+        write(new File(folder, "package.json"), "{\"name\":\"app\",\"dependencies\":{\"a\":\"^1.0.0\",\"b\":\"^1.0.0\"}}");
+        write(new File(folder, NpmLockDependencyCollector.NPM_SHRINKWRAP_JSON), "{\"name\":\"app\",\"lockfileVersion\":1,\"dependencies\":{" +
+                "\"a\":{\"version\":\"1.0.0\",\"integrity\":\"" + SHA1_INTEGRITY + "\",\"requires\":{\"b\":\"^1.0.0\",\"c\":\"^2.0.0\"}," +
+                "\"dependencies\":{\"c\":{\"version\":\"2.0.0\",\"integrity\":\"" + SHA1_INTEGRITY + "\"}}}," +
+                "\"b\":{\"version\":\"npm:real-b@1.2.0\",\"integrity\":\"" + SHA1_INTEGRITY + "\"}}}");
+
+        List<DependencyInfo> dependencies = collect(false, folder);
+        // b is reported once, at its shallowest position, and under the name of its alias
+        Assert.assertEquals("[a@1.0.0, real-b@1.2.0]", names(dependencies));
+        Assert.assertEquals("[c@2.0.0]", names(dependencies.get(0).getChildren()));
+    }
+
+    @Test
+    public void shouldCollectWorkspaceFromLockFileOfProject() throws IOException {
+        File folder = temporaryFolder.newFolder("workspaces");
+        write(new File(folder, NpmLockDependencyCollector.PACKAGE_LOCK_JSON), "{\"lockfileVersion\":3,\"packages\":{" +
+                "\"\":{\"workspaces\":[\"packages/w\"]}," +
+                "\"packages/w\":{\"version\":\"1.0.0\",\"dependencies\":{\"a\":\"^1.0.0\"}}," +
+                "\"node_modules/w\":{\"resolved\":\"packages/w\",\"link\":true}," +
+                "\"node_modules/a\":{\"version\":\"1.0.0\",\"integrity\":\"" + SHA1_INTEGRITY + "\"}}}");
+        File workspace = new File(folder, "packages/w");
+        Assert.assertTrue(workspace.mkdirs());
+
+        Assert.assertEquals("[a@1.0.0]", names(collect(false, workspace)));
+    }
+
+    @Test
+    public void shouldFollowLinkedPackagesOfProject() throws IOException {
+        for (int lockfileVersion = 2; lockfileVersion <= 3; lockfileVersion++) {
+            File folder = temporaryFolder.newFolder("linked" + lockfileVersion);
+            write(new File(folder, NpmLockDependencyCollector.PACKAGE_LOCK_JSON), "{\"lockfileVersion\":" + lockfileVersion + ",\"packages\":{" +
+                    "\"\":{\"name\":\"app\",\"workspaces\":[\"packages/*\"],\"dependencies\":{\"lib\":\"file:libs/lib\"}}," +
+                    "\"libs/lib\":{\"name\":\"lib\",\"version\":\"0.1.0\",\"dependencies\":{\"b\":\"^1.0.0\"}}," +
+                    "\"packages/w\":{\"name\":\"w\",\"version\":\"1.0.0\",\"dependencies\":{\"a\":\"^1.0.0\",\"lib\":\"*\"}}," +
+                    "\"packages/w/node_modules/a\":{\"version\":\"2.0.0\",\"integrity\":\"" + SHA1_INTEGRITY + "\"}," +
+                    "\"node_modules/lib\":{\"resolved\":\"libs/lib\",\"link\":true}," +
+                    "\"node_modules/w\":{\"resolved\":\"packages/w\",\"link\":true}," +
+                    "\"node_modules/a\":{\"version\":\"1.0.0\",\"integrity\":\"" + SHA1_INTEGRITY + "\"}," +
+                    "\"node_modules/b\":{\"version\":\"1.0.0\",\"integrity\":\"" + SHA1_INTEGRITY + "\"}}}");
+
+            List<DependencyInfo> dependencies = collect(false, folder);
+            // the linked packages are described by the folders they resolve to, the workspaces are packages of the root
+            Assert.assertEquals("[lib@0.1.0, w@1.0.0]", names(dependencies));
+            Assert.assertEquals("[b@1.0.0]", names(dependencies.get(0).getChildren()));
+            Assert.assertEquals(new File(folder, "libs/lib/package.json").getPath(), dependencies.get(0).getSystemPath());
+            // a workspace resolves its requirements from its own node_modules first, lib is already reported
+            Assert.assertEquals("[a@2.0.0]", names(dependencies.get(1).getChildren()));
+        }
+    }
+
+    @Test
+    public void shouldLeaveFoldersWithoutUsableLockFileToNpmLs() throws IOException {
+        NpmLockDependencyCollector collector = new NpmLockDependencyCollector(false, 60, false, true, false, null);
+        File folder = temporaryFolder.newFolder("unreadable");
+        write(new File(folder, NpmLockDependencyCollector.PACKAGE_LOCK_JSON), "[\"not a lock file\"]");
+        Assert.assertNull(collector.collectDependenciesFromLockFile(folder.getPath()));
+
+        // a module of the project which is not one of its workspaces
+        File project = temporaryFolder.newFolder("project");
+        write(new File(project, NpmLockDependencyCollector.PACKAGE_LOCK_JSON), "{\"lockfileVersion\":3,\"packages\":{\"\":{}}}");
+        File module = new File(project, "module");
+        Assert.assertTrue(module.mkdirs());
+        Assert.assertNotNull(collector.collectDependenciesFromLockFile(project.getPath()));
+        Assert.assertNull(collector.collectDependenciesFromLockFile(module.getPath()));
+    }
+
+    private List<DependencyInfo> collect(boolean includeDevDependencies, File folder) {
+        NpmLockDependencyCollector collector = new NpmLockDependencyCollector(includeDevDependencies, 60, false, true, false, null);
+        Collection<AgentProjectInfo> projects = collector.collectDependencies(folder.getPath());
+        Assert.assertFalse(collector.getNpmLsFailureStatus());
+        return new ArrayList<>(projects.iterator().next().getDependencies());
+    }
+
+    private String names(Collection<DependencyInfo> dependencies) {
+        return dependencies.stream().map(dependency -> dependency.getGroupId() + "@" + dependency.getVersion()).collect(Collectors.toList()).toString();
+    }
+
+    private void write(File file, String content) throws IOException {
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+    }
+}
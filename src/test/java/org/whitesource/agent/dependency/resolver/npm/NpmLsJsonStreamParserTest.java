@@ -0,0 +1,106 @@
+package org.whitesource.agent.dependency.resolver.npm;
+
+import org.junit.Assert;
+import org.junit.Test;
+import org.whitesource.agent.api.model.DependencyInfo;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+public class NpmLsJsonStreamParserTest {
+
+    private static final List<String> NPM_LS_JSON = Arrays.asList(
+            "{",
+            "  \"name\": \"app\",",
+            "  \"version\": \"1.0.0\",",
+            "  \"problems\": [\"missing: left-pad@^1.0.0, required by app@1.0.0\"],",
+            "  \"dependencies\": {",
+            "    \"debug\": {",
+            "      \"version\": \"2.6.9\",",
+            "      \"dependencies\": {",
+            "        \"ms\": {\"version\": \"2.0.0\"}",
+            "      }",
+            "    },",
+            "    \"express\": {",
+            "      \"version\": \"4.16.3\",",
+            "      \"dependencies\": {",
+            "        \"debug\": {\"version\": \"2.6.9\"},",
+            "        \"qs\": {\"version\": \"6.5.1\", \"from\": \"qs@6.5.1\"}",
+            "      }",
+            "    },",
+            "    \"left-pad\": {",
+            "      \"required\": \"^1.0.0\",",
+            "      \"missing\": true",
+            "    }",
+            "  }",
+            "}");
+
+    @Test
+    public void shouldBuildDependencyTree() throws IOException {
+        NpmLsJsonStreamParser parser = new NpmLsJsonStreamParser(new NpmLsJsonDependencyCollector(false, 60, false, false, true));
+        NPM_LS_JSON.forEach(parser);
+        List<DependencyInfo> dependencies = new ArrayList<>(parser.getDependencies());
+
+        Assert.assertEquals(2, dependencies.size());
+        DependencyInfo debug = dependencies.get(0);
+        Assert.assertEquals("debug", debug.getGroupId());
+        Assert.assertEquals("2.6.9", debug.getVersion());
+        Assert.assertEquals("debug-2.6.9.tgz", debug.getArtifactId());
+        Assert.assertEquals("ms", debug.getChildren().iterator().next().getGroupId());
+
+        // the deduped debug under express is dropped, the missing left-pad is not reported
+        DependencyInfo express = dependencies.get(1);
+        Assert.assertEquals("express", express.getGroupId());
+        Assert.assertEquals(1, express.getChildren().size());
+        Assert.assertEquals("qs", express.getChildren().iterator().next().getGroupId());
+    }
+
+    @Test
+    public void shouldKeepTheFullDependencyOfAPrunedOccurrence() throws IOException {
+        // the full y@1.0.0 sits under the first p@1.0.0, which has less children than the second one
+        List<String> npmLsJson = Arrays.asList(
+                "{\"name\": \"app\", \"version\": \"1.0.0\", \"dependencies\": {",
+                "  \"a\": {\"version\": \"1.0.0\", \"dependencies\": {",
+                "    \"p\": {\"version\": \"1.0.0\", \"dependencies\": {",
+                "      \"y\": {\"version\": \"1.0.0\", \"dependencies\": {\"z\": {\"version\": \"1.0.0\"}}}",
+                "    }}",
+                "  }},",
+                "  \"b\": {\"version\": \"1.0.0\", \"dependencies\": {",
+                "    \"p\": {\"version\": \"1.0.0\", \"dependencies\": {",
+                "      \"y\": {\"version\": \"1.0.0\"},",
+                "      \"w\": {\"version\": \"1.0.0\"}",
+                "    }}",
+                "  }}",
+                "}}");
+        NpmLsJsonStreamParser parser = new NpmLsJsonStreamParser(new NpmLsJsonDependencyCollector(false, 60, false, false, true));
+        npmLsJson.forEach(parser);
+        List<DependencyInfo> dependencies = new ArrayList<>(parser.getDependencies());
+
+        Assert.assertEquals(Arrays.asList("a", "b"), getGroupIds(dependencies));
+        Assert.assertEquals(0, dependencies.get(1).getChildren().size());
+        DependencyInfo p = dependencies.get(0).getChildren().iterator().next();
+        Assert.assertEquals("p", p.getGroupId());
+        List<DependencyInfo> pChildren = new ArrayList<>(p.getChildren());
+        Assert.assertEquals(Arrays.asList("y", "w"), getGroupIds(pChildren));
+        Assert.assertEquals(Collections.singletonList("z"), getGroupIds(pChildren.get(0).getChildren()));
+    }
+
+    @Test(expected = IOException.class)
+    public void shouldFailOnTruncatedOutput() throws IOException {
+        NpmLsJsonStreamParser parser = new NpmLsJsonStreamParser(new NpmLsJsonDependencyCollector(false, 60, false, false, true));
+        NPM_LS_JSON.subList(0, 10).forEach(parser);
+        parser.getDependencies();
+    }
+
+    private List<String> getGroupIds(Collection<DependencyInfo> dependencies) {
+        List<String> groupIds = new ArrayList<>();
+        for (DependencyInfo dependency : dependencies) {
+            groupIds.add(dependency.getGroupId());
+        }
+        return groupIds;
+    }
+}
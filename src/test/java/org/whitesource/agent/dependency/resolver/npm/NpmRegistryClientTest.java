@@ -0,0 +1,140 @@
+package org.whitesource.agent.dependency.resolver.npm;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.whitesource.agent.dependency.resolver.BomFile;
+import org.whitesource.agent.utils.StubHttpServer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+public class NpmRegistryClientTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private StubHttpServer server;
+    private String registryUrl;
+
+    @Before
+    public void setUp() throws IOException {
+        server = new StubHttpServer(exchange -> {
+            String path = exchange.getRequestURI().getRawPath();
+            String body;
+            if (path.startsWith("/@scope%2Fname")) {
+                body = "{\"versions\":{\"1.0.0\":{\"dist\":{\"shasum\":\"scoped-sha1\"}}}}";
+            } else if (path.startsWith("/name/")) {
+                body = "{\"dist\":{\"shasum\":\"sha1-of-" + path.substring("/name/".length()) + "\"}}";
+            } else {
+                body = "{}";
+            }
+            StubHttpServer.respond(exchange, path.startsWith("/missing") ? 404 : 200, body.getBytes(StandardCharsets.UTF_8));
+        });
+        registryUrl = server.getUrl();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop();
+        // the client of the other tests does not persist to the deleted temp folder
+        NpmRegistryClient.reset();
+    }
+
+    @Test
+    public void shouldCoalesceAndCacheLookups() throws Exception {
+        NpmRegistryClient registryClient = new NpmRegistryClient(null);
+        ExecutorService executorService = Executors.newFixedThreadPool(16);
+        List<Future<String>> lookups = new ArrayList<>();
+        for (int i = 0; i < 16; i++) {
+            lookups.add(executorService.submit(() -> registryClient.getSha1(registryUrl + "/name/1.0.0", false, "1.0.0", RegistryType.NPM_REGISTRY, null)));
+        }
+        for (Future<String> lookup : lookups) {
+            Assert.assertEquals("sha1-of-1.0.0", lookup.get());
+        }
+        Assert.assertEquals(1, server.getRequests());
+
+        Assert.assertEquals("sha1-of-1.0.0", registryClient.getSha1(registryUrl + "/name/1.0.0", false, "1.0.0", RegistryType.NPM_REGISTRY, null));
+        Assert.assertEquals(1, server.getRequests());
+
+        String scopedUrl = registryUrl + "/@scope" + BomFile.DUMMY_PARAMETER_SCOPE_PACKAGE + "name";
+        Assert.assertEquals("scoped-sha1", registryClient.getSha1(scopedUrl, true, "1.0.0", RegistryType.NPM_REGISTRY, "token"));
+        // a version missing from the response and a failed request are not cached
+        Assert.assertEquals("", registryClient.getSha1(scopedUrl, true, "2.0.0", RegistryType.NPM_REGISTRY, null));
+        Assert.assertEquals("", registryClient.getSha1(registryUrl + "/missing", false, "1.0.0", RegistryType.NPM_REGISTRY, null));
+        Assert.assertEquals("", registryClient.getSha1(registryUrl + "/missing", false, "1.0.0", RegistryType.NPM_REGISTRY, null));
+        Assert.assertEquals(5, server.getRequests());
+        executorService.shutdown();
+    }
+
+    @Test
+    public void shouldLimitConcurrentRequests() throws Exception {
+        NpmRegistryClient registryClient = new NpmRegistryClient(null);
+        ExecutorService executorService = Executors.newFixedThreadPool(32);
+        List<Future<String>> lookups = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            String version = "1.0." + i;
+            lookups.add(executorService.submit(() -> registryClient.getSha1(registryUrl + "/name/" + version, false, version, RegistryType.NPM_REGISTRY, null)));
+        }
+        for (Future<String> lookup : lookups) {
+            Assert.assertTrue(lookup.get().startsWith("sha1-of-"));
+        }
+        Assert.assertEquals(32, server.getRequests());
+        Assert.assertTrue(server.getMaxActiveRequests() <= NpmRegistryClient.MAX_CONCURRENT_REQUESTS);
+        executorService.shutdown();
+    }
+
+    @Test
+    public void shouldLookUpOnTheThreadsOfTheClient() {
+        NpmRegistryClient registryClient = new NpmRegistryClient(null);
+        List<CompletableFuture<String>> lookups = new ArrayList<>();
+        for (int i = 0; i < 32; i++) {
+            String version = "1.0." + i;
+            lookups.add(registryClient.getSha1Async(registryUrl + "/name/" + version, false, version, RegistryType.NPM_REGISTRY, null));
+        }
+        for (int i = 0; i < 32; i++) {
+            Assert.assertEquals("sha1-of-1.0." + i, lookups.get(i).join());
+        }
+        Assert.assertEquals(32, server.getRequests());
+        Assert.assertTrue(server.getMaxActiveRequests() <= NpmRegistryClient.MAX_CONCURRENT_REQUESTS);
+
+        // cached checksums are returned without a lookup
+        Assert.assertTrue(registryClient.getSha1Async(registryUrl + "/name/1.0.0", false, "1.0.0", RegistryType.NPM_REGISTRY, null).isDone());
+        Assert.assertEquals(32, server.getRequests());
+    }
+
+    @Test
+    public void shouldReuseChecksumsOfPreviousRuns() {
+        File cacheFile = new File(temporaryFolder.getRoot(), NpmRegistryClient.CACHE_FILE_NAME);
+        NpmRegistryClient registryClient = NpmRegistryClient.initialize(cacheFile);
+        Assert.assertEquals("sha1-of-1.0.0", registryClient.getSha1(registryUrl + "/name/1.0.0", false, "1.0.0", RegistryType.NPM_REGISTRY, null));
+        registryClient.save();
+        Assert.assertTrue(cacheFile.isFile());
+
+        registryClient = NpmRegistryClient.initialize(cacheFile);
+        Assert.assertEquals("sha1-of-1.0.0", registryClient.getSha1(registryUrl + "/name/1.0.0", false, "1.0.0", RegistryType.NPM_REGISTRY, null));
+        Assert.assertEquals(1, server.getRequests());
+    }
+
+    @Test
+    public void shouldCloseTheReplacedClient() {
+        NpmRegistryClient previous = NpmRegistryClient.reset();
+        NpmRegistryClient registryClient = NpmRegistryClient.reset();
+        Assert.assertSame(registryClient, NpmRegistryClient.getInstance());
+        try {
+            previous.getSha1Async(registryUrl + "/name/1.0.0", false, "1.0.0", RegistryType.NPM_REGISTRY, null);
+            Assert.fail("the replaced client must not start new lookups");
+        } catch (RejectedExecutionException e) {
+            // the threads of the replaced client are shut down with its connections
+        }
+        Assert.assertEquals("sha1-of-1.0.0", registryClient.getSha1Async(registryUrl + "/name/1.0.0", false, "1.0.0",
+                RegistryType.NPM_REGISTRY, null).join());
+    }
+}
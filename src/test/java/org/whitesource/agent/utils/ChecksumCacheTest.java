@@ -0,0 +1,98 @@
+package org.whitesource.agent.utils;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.whitesource.agent.api.model.ChecksumType;
+import org.whitesource.agent.hash.ChecksumUtils;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.EnumMap;
+import java.util.Map;
+
+public class ChecksumCacheTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @After
+    public void tearDown() {
+        // the tests in the same JVM must not use a cache in the deleted temporary folder
+        ChecksumCache.reset();
+    }
+
+    @Test
+    public void shouldReuseChecksumsOfUnchangedFiles() throws IOException {
+        File cacheFile = new File(folder.getRoot(), ChecksumCache.CACHE_FILE_NAME);
+        File file = folder.newFile("library.js");
+        FileUtils.writeStringToFile(file, "var a = 1;\r\n");
+        String sha1 = ChecksumUtils.calculateSHA1(file);
+
+        ChecksumCache cache = ChecksumCache.initialize(cacheFile, 10);
+        Assert.assertEquals(sha1, cache.getSha1(file));
+        Assert.assertNull(cache.getChecksums(file));
+        Map<ChecksumType, String> checksums = new EnumMap<>(ChecksumType.class);
+        checksums.put(ChecksumType.SHA1, sha1);
+        checksums.put(ChecksumType.SHA1_OTHER_PLATFORM, "other");
+        cache.putChecksums(file, checksums);
+        cache.save();
+
+        // a new run reads the persisted entries
+        cache = ChecksumCache.initialize(cacheFile, 10);
+        Assert.assertEquals(checksums, cache.getChecksums(file));
+        Assert.assertEquals(sha1, cache.getSha1(file));
+
+        // a modified file is hashed again
+        FileUtils.writeStringToFile(file, "var a = 2;\n");
+        Assert.assertTrue(file.setLastModified(file.lastModified() + 2000));
+        Assert.assertNull(cache.getChecksums(file));
+        Assert.assertEquals(ChecksumUtils.calculateSHA1(file), cache.getSha1(file));
+    }
+
+    @Test
+    public void shouldEvictLeastRecentlyUsedEntries() throws IOException {
+        File cacheFile = new File(folder.getRoot(), ChecksumCache.CACHE_FILE_NAME);
+        ChecksumCache cache = ChecksumCache.initialize(cacheFile, 2);
+        File first = createFile("first.jar");
+        File second = createFile("second.jar");
+        File third = createFile("third.jar");
+
+        cache.putChecksums(first, sha1Checksums(first));
+        cache.putChecksums(second, sha1Checksums(second));
+        cache.getChecksums(first);
+        cache.putChecksums(third, sha1Checksums(third));
+
+        Assert.assertNotNull(cache.getChecksums(first));
+        Assert.assertNull(cache.getChecksums(second));
+        Assert.assertNotNull(cache.getChecksums(third));
+    }
+
+    @Test
+    public void shouldDisableTheCacheOnReset() throws IOException {
+        ChecksumCache.initialize(new File(folder.getRoot(), ChecksumCache.CACHE_FILE_NAME), 10);
+        Assert.assertTrue(ChecksumCache.getInstance().isEnabled());
+        ChecksumCache.reset();
+        Assert.assertFalse(ChecksumCache.getInstance().isEnabled());
+        File file = createFile("library.jar");
+        ChecksumCache.getInstance().putChecksums(file, sha1Checksums(file));
+        Assert.assertNull(ChecksumCache.getInstance().getChecksums(file));
+    }
+
+    /* --- Private methods --- */
+
+    private File createFile(String name) throws IOException {
+        File file = folder.newFile(name);
+        FileUtils.writeStringToFile(file, name);
+        return file;
+    }
+
+    private Map<ChecksumType, String> sha1Checksums(File file) throws IOException {
+        Map<ChecksumType, String> checksums = new EnumMap<>(ChecksumType.class);
+        checksums.put(ChecksumType.SHA1, ChecksumUtils.calculateSHA1(file));
+        return checksums;
+    }
+}
@@ -0,0 +1,109 @@
+package org.whitesource.agent.utils;
+
+import org.apache.commons.io.FileUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.whitesource.agent.DependencyInfoFactory;
+import org.whitesource.agent.api.model.ChecksumType;
+import org.whitesource.agent.api.model.DependencyInfo;
+import org.whitesource.agent.hash.ChecksumUtils;
+import org.whitesource.agent.hash.HashAlgorithm;
+import org.whitesource.agent.hash.HashCalculator;
+import org.whitesource.agent.hash.WssHashException;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Random;
+
+public class FileFingerprintTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldMatchTheHashesOfTextFiles() throws IOException, WssHashException {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 100; i++) {
+            text.append("line ").append(i).append(" of a text file\n");
+        }
+        DependencyInfo unix = assertSameHashes(writeFile("unix.txt", text.toString().getBytes(StandardCharsets.UTF_8)));
+        Assert.assertNotNull(unix.getOtherPlatformSha1());
+        Assert.assertNotNull(unix.getFullHash());
+        assertSameHashes(writeFile("windows.txt", text.toString().replace("\n", "\r\n").getBytes(StandardCharsets.UTF_8)));
+        assertSameHashes(writeFile("bom.txt", ("\uFEFF" + text).getBytes(StandardCharsets.UTF_8)));
+        assertSameHashes(writeFile("small.txt", "a\nb\n".getBytes(StandardCharsets.UTF_8)));
+        StringBuilder script = new StringBuilder("/* comment */\n");
+        for (int i = 0; i < 50; i++) {
+            script.append("function f").append(i).append("() {\n    return ").append(i).append(";\n}\n");
+        }
+        DependencyInfo javaScript = assertSameHashes(writeFile("script.js", script.toString().getBytes(StandardCharsets.UTF_8)));
+        Assert.assertTrue(javaScript.getChecksums().size() > 2);
+    }
+
+    @Test
+    public void shouldMatchTheHashesOfBinaryFiles() throws IOException, WssHashException {
+        byte[] bytes = new byte[200 * 1024];
+        new Random(42).nextBytes(bytes);
+        assertSameHashes(writeFile("random.bin", bytes));
+        assertSameHashes(writeFile("random.dat", bytes));
+        assertSameHashes(writeFile("library.jar", bytes));
+    }
+
+    @Test
+    public void shouldMatchTheHashesOfEmptyFiles() throws IOException, WssHashException {
+        assertSameHashes(writeFile("empty.txt", new byte[0]));
+        assertSameHashes(writeFile("empty.js", new byte[0]));
+    }
+
+    @Test
+    public void shouldNotKeepTheContentOfLargeFiles() throws IOException, WssHashException {
+        StringBuilder text = new StringBuilder();
+        while (text.length() <= FileFingerprint.MAX_CONTENT_SIZE) {
+            text.append("line ").append(text.length()).append(" of a large text file\n");
+        }
+        File file = writeFile("large.txt", text.toString().getBytes(StandardCharsets.UTF_8));
+        Assert.assertFalse(FileFingerprint.calculate(file, true, true).hasContent());
+        DependencyInfo large = assertSameHashes(file);
+        Assert.assertNotNull(large.getFullHash());
+    }
+
+    private File writeFile(String name, byte[] content) throws IOException {
+        File file = new File(temporaryFolder.getRoot(), name);
+        FileUtils.writeByteArrayToFile(file, content);
+        return file;
+    }
+
+    // compares the single pass fingerprint with the hashes of ChecksumUtils, each of them reading the file again
+    private DependencyInfo assertSameHashes(File file) throws IOException, WssHashException {
+        DependencyInfo expected = new DependencyInfo(ChecksumUtils.calculateSHA1(file));
+        expected.addChecksum(ChecksumType.MD5, ChecksumUtils.calculateHash(file, HashAlgorithm.MD5));
+        if (file.getName().endsWith(".js") && file.length() > 0) {
+            for (Map.Entry<ChecksumType, String> entry : new HashCalculator().calculateJavaScriptHashes(file).entrySet()) {
+                expected.addChecksum(entry.getKey(), entry.getValue());
+            }
+        }
+        ChecksumUtils.calculateOtherPlatformSha1(expected, file);
+        ChecksumUtils.calculateSuperHash(expected, file);
+
+        DependencyInfo actual = new DependencyInfoFactory(Collections.emptyList(), false, false, true)
+                .createDependencyInfo(file.getParentFile(), file.getName());
+        String name = file.getName();
+        Assert.assertEquals(name, expected.getSha1(), actual.getSha1());
+        Assert.assertEquals(name, expected.getChecksums(), actual.getChecksums());
+        Assert.assertEquals(name, expected.getOtherPlatformSha1(), actual.getOtherPlatformSha1());
+        Assert.assertEquals(name, expected.getFullHash(), actual.getFullHash());
+        Assert.assertEquals(name, expected.getMostSigBitsHash(), actual.getMostSigBitsHash());
+        Assert.assertEquals(name, expected.getLeastSigBitsHash(), actual.getLeastSigBitsHash());
+
+        FileFingerprint fingerprint = FileFingerprint.calculate(file, true, false);
+        Assert.assertEquals(name, expected.getSha1(), fingerprint.getSha1());
+        Assert.assertEquals(name, expected.getChecksums().get(ChecksumType.MD5), fingerprint.getMd5());
+        Assert.assertFalse(fingerprint.hasContent());
+        return actual;
+    }
+}
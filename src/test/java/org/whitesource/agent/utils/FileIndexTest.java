@@ -0,0 +1,83 @@
+package org.whitesource.agent.utils;
+
+import org.apache.tools.ant.DirectoryScanner;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+public class FileIndexTest {
+
+    private static final String[] FILES = {"pom.xml", "a/pom.xml", "a/b/c.jar", "a/B/D.JAR", "node_modules/x/package.json",
+            "a/node_modules/y/package.json", "package.json", "src/x.js", "src/y.JS", "sub/build.gradle", "sub/lib/l.jar", "a b/c d.txt"};
+    private static final String[][] INCLUDES = {{"**/*"}, {"**/*.jar"}, {"**/pom.xml"}, {"**/package.json", "**/build.gradle"},
+            {"*"}, null, {"a/"}, {"src/*.js"}};
+    private static final String[][] EXCLUDES = {null, {"**/node_modules/**"}, {"**/sub/**"}, {"a\\b/**"}, {"**/*.JAR"}};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Path root;
+
+    @Before
+    public void setUp() throws IOException {
+        root = folder.getRoot().toPath();
+        for (String file : FILES) {
+            Path path = root.resolve(file);
+            Files.createDirectories(path.getParent());
+            Files.write(path, file.getBytes());
+        }
+        Files.createDirectories(root.resolve("empty"));
+    }
+
+    @Test
+    public void shouldMatchDirectoryScanner() {
+        FileIndex fileIndex = new FileIndex(true);
+        for (String baseDir : new String[]{root.toString(), root.resolve("a").toString()}) {
+            for (String[] includes : INCLUDES) {
+                for (String[] excludes : EXCLUDES) {
+                    for (boolean caseSensitive : new boolean[]{true, false}) {
+                        DirectoryScanner scanner = scan(baseDir, includes, excludes, caseSensitive);
+                        Assert.assertArrayEquals(scanner.getIncludedFiles(),
+                                fileIndex.getIncludedFiles(baseDir, includes, excludes, true, caseSensitive));
+                        Assert.assertArrayEquals(scanner.getIncludedDirectories(),
+                                fileIndex.getIncludedDirectories(baseDir, includes, excludes, true, caseSensitive));
+                    }
+                }
+            }
+        }
+    }
+
+    @Test
+    public void shouldReadChangedDirectoriesOnRefresh() throws IOException {
+        FileIndex fileIndex = new FileIndex(true);
+        fileIndex.getIncludedFiles(root.toString(), null, null, true, true);
+
+        Files.write(root.resolve("a/b/new.jar"), new byte[1]);
+        Files.delete(root.resolve("src/x.js"));
+        Files.createDirectories(root.resolve("new/folder"));
+        Files.write(root.resolve("new/folder/other.jar"), new byte[1]);
+        fileIndex.refresh();
+
+        Assert.assertArrayEquals(scan(root.toString(), null, null, true).getIncludedFiles(),
+                fileIndex.getIncludedFiles(root.toString(), null, null, true, true));
+    }
+
+    /* --- Private methods --- */
+
+    private DirectoryScanner scan(String baseDir, String[] includes, String[] excludes, boolean caseSensitive) {
+        DirectoryScanner scanner = new DirectoryScanner();
+        scanner.setBasedir(new File(baseDir));
+        scanner.setIncludes(includes);
+        scanner.setExcludes(excludes);
+        scanner.setCaseSensitive(caseSensitive);
+        scanner.scan();
+        return scanner;
+    }
+}
@@ -0,0 +1,52 @@
+package org.whitesource.agent.utils;
+
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+public class PersistentFileTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    @Test
+    public void shouldReadTheContentOfTheSameVersion() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), "cache/.ws-test.cache");
+        new PersistentFile(file, 1).write(out -> out.writeUTF("content"));
+
+        List<String> content = new ArrayList<>();
+        Assert.assertTrue(new PersistentFile(file, 1).read(in -> content.add(in.readUTF())));
+        Assert.assertEquals(Collections.singletonList("content"), content);
+        Assert.assertFalse(new PersistentFile(file, 2).read(in -> content.add(in.readUTF())));
+        Assert.assertFalse(new PersistentFile(new File(temporaryFolder.getRoot(), "missing.cache"), 1).read(in -> content.add(in.readUTF())));
+        Assert.assertEquals(1, content.size());
+    }
+
+    @Test
+    public void shouldKeepThePreviousFileWhenWritingFails() throws IOException {
+        File file = new File(temporaryFolder.getRoot(), ".ws-test.cache");
+        PersistentFile persistentFile = new PersistentFile(file, 1);
+        persistentFile.write(out -> out.writeUTF("previous"));
+        try {
+            persistentFile.write(out -> {
+                out.writeUTF("partial");
+                throw new IOException("interrupted");
+            });
+            Assert.fail();
+        } catch (IOException e) {
+            Assert.assertEquals("interrupted", e.getMessage());
+        }
+
+        List<String> content = new ArrayList<>();
+        Assert.assertTrue(persistentFile.read(in -> content.add(in.readUTF())));
+        Assert.assertEquals(Collections.singletonList("previous"), content);
+        Assert.assertFalse(new File(temporaryFolder.getRoot(), file.getName() + PersistentFile.TEMP_SUFFIX).exists());
+    }
+}
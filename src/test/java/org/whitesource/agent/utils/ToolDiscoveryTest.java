@@ -0,0 +1,56 @@
+package org.whitesource.agent.utils;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+public class ToolDiscoveryTest {
+
+    @Test
+    public void shouldRunEachProbeOnce() {
+        CountingToolDiscovery toolDiscovery = new CountingToolDiscovery(Long.MAX_VALUE);
+        Assert.assertEquals(Arrays.asList("tool 1.0"), toolDiscovery.getOutput(new String[]{"tool", "-v"}));
+        Assert.assertTrue(toolDiscovery.isInstalled(new String[]{"tool", "-v"}));
+        Assert.assertEquals(1, toolDiscovery.runs.get());
+
+        // a different command or folder is probed on its own
+        toolDiscovery.getOutput("other", new String[]{"tool", "-v"});
+        Assert.assertEquals(2, toolDiscovery.runs.get());
+
+        // failures are cached too
+        Assert.assertFalse(toolDiscovery.isInstalled(new String[]{"missing", "-v"}));
+        Assert.assertTrue(toolDiscovery.getOutput(new String[]{"missing", "-v"}).isEmpty());
+        Assert.assertEquals(3, toolDiscovery.runs.get());
+
+        toolDiscovery.clear();
+        toolDiscovery.getOutput(new String[]{"tool", "-v"});
+        Assert.assertEquals(4, toolDiscovery.runs.get());
+    }
+
+    @Test
+    public void shouldProbeAgainAfterTimeToLive() throws InterruptedException {
+        CountingToolDiscovery toolDiscovery = new CountingToolDiscovery(1);
+        toolDiscovery.getOutput(new String[]{"tool", "-v"});
+        Thread.sleep(10);
+        toolDiscovery.getOutput(new String[]{"tool", "-v"});
+        Assert.assertEquals(2, toolDiscovery.runs.get());
+    }
+
+    private static class CountingToolDiscovery extends ToolDiscovery {
+
+        private final AtomicInteger runs = new AtomicInteger();
+
+        private CountingToolDiscovery(long timeToLiveMillis) {
+            super(timeToLiveMillis);
+        }
+
+        @Override
+        protected List<String> runProbe(String directory, String[] params) {
+            runs.incrementAndGet();
+            return "missing".equals(params[0]) ? null : Arrays.asList(params[0] + " 1.0");
+        }
+    }
+}
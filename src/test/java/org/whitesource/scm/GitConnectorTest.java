@@ -0,0 +1,120 @@
+package org.whitesource.scm;
+
+import org.eclipse.jgit.api.Git;
+import org.eclipse.jgit.lib.Repository;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+public class GitConnectorTest {
+
+    @Rule
+    public TemporaryFolder temporaryFolder = new TemporaryFolder();
+
+    private Git remote;
+    private String remoteUrl;
+
+    @Before
+    public void setUp() throws Exception {
+        File remoteFolder = temporaryFolder.newFolder("remote");
+        remote = Git.init().setDirectory(remoteFolder).call();
+        commit("package.json", "{}");
+        commit("src/index.js", "module.exports = 1;");
+        remote.branchCreate().setName("feature").call();
+        remote.checkout().setName("feature").call();
+        commit("src/feature.js", "module.exports = 2;");
+        remote.checkout().setName("master").call();
+        remote.tag().setName("v1").call();
+        remoteUrl = remoteFolder.toURI().toString();
+    }
+
+    @After
+    public void tearDown() {
+        remote.close();
+    }
+
+    @Test
+    public void shouldCheckOutBranchOrTag() throws IOException {
+        File master = new GitConnector(null, null, null, remoteUrl, null, null).cloneRepository(temporaryFolder.newFolder("master"));
+        Assert.assertTrue(new File(master, "src/index.js").isFile());
+        Assert.assertFalse(new File(master, "src/feature.js").exists());
+
+        File feature = new GitConnector(null, null, null, remoteUrl, "feature", null).cloneRepository(temporaryFolder.newFolder("feature"));
+        Assert.assertTrue(new File(feature, "src/feature.js").isFile());
+
+        File tag = new GitConnector(null, null, null, remoteUrl, null, "v1").cloneRepository(temporaryFolder.newFolder("tag"));
+        Assert.assertTrue(new File(tag, "package.json").isFile());
+        Assert.assertFalse(new File(tag, "src/feature.js").exists());
+    }
+
+    @Test
+    public void shouldCheckOutIncludesOnly() throws IOException {
+        GitConnector gitConnector = new GitConnector(null, null, null, remoteUrl, "feature", null);
+        gitConnector.setSparseCheckoutIncludes(new String[]{"**/*.js"}, new String[]{"**/*pom.xml"});
+        File dest = gitConnector.cloneRepository(temporaryFolder.newFolder("sparse"));
+        Assert.assertTrue(new File(dest, "src/index.js").isFile());
+        Assert.assertTrue(new File(dest, "src/feature.js").isFile());
+        Assert.assertFalse(new File(dest, "package.json").exists());
+
+        // the manifest files of the enabled resolvers are checked out along with the includes
+        gitConnector.setSparseCheckoutIncludes(new String[]{"**/*.js"}, new String[]{"**/*package.json"});
+        File withManifests = gitConnector.cloneRepository(temporaryFolder.newFolder("manifests"));
+        Assert.assertTrue(new File(withManifests, "src/index.js").isFile());
+        Assert.assertTrue(new File(withManifests, "package.json").isFile());
+    }
+
+    @Test
+    public void shouldFetchNewCommitsIntoMirror() throws Exception {
+        File cache = temporaryFolder.newFolder("cache");
+        GitConnector gitConnector = new GitConnector(null, null, null, remoteUrl, null, null);
+        gitConnector.setMirrorCachePath(cache.getPath());
+        File first = gitConnector.cloneRepository(temporaryFolder.newFolder("first"));
+        Assert.assertTrue(new File(first, "src/index.js").isFile());
+        Assert.assertFalse(new File(first, ".git").exists());
+
+        commit("src/new.js", "module.exports = 3;");
+        File second = gitConnector.cloneRepository(temporaryFolder.newFolder("second"));
+        Assert.assertTrue(new File(second, "src/new.js").isFile());
+
+        File[] mirrors = cache.listFiles();
+        Assert.assertEquals(1, mirrors.length);
+        try (Git mirror = Git.open(mirrors[0])) {
+            Repository repository = mirror.getRepository();
+            Assert.assertTrue(repository.isBare());
+            // only the scanned branch is mirrored
+            Assert.assertNotNull(repository.exactRef("refs/heads/master"));
+            Assert.assertNull(repository.exactRef("refs/heads/feature"));
+        }
+    }
+
+    @Test
+    public void shouldIsolateCloneFolders() {
+        GitConnector first = new GitConnector(null, null, null, remoteUrl, null, null);
+        GitConnector second = new GitConnector(null, null, null, remoteUrl, null, null);
+        File firstClone = first.cloneRepository();
+        File secondClone = second.cloneRepository();
+        Assert.assertNotEquals(firstClone, secondClone);
+
+        // deleting a clone keeps the clones of the other repositories
+        first.deleteCloneDirectory();
+        Assert.assertFalse(firstClone.exists());
+        Assert.assertTrue(new File(secondClone, "src/index.js").isFile());
+        second.deleteCloneDirectory();
+    }
+
+    private void commit(String path, String content) throws Exception {
+        File file = new File(remote.getRepository().getWorkTree(), path);
+        file.getParentFile().mkdirs();
+        Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+        remote.add().addFilepattern(path).call();
+        remote.commit().setMessage("add " + path).setAuthor("test", "test@example.com").setCommitter("test", "test@example.com").call();
+    }
+}